@@ -0,0 +1,330 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A binary, columnar, alternative to CSV files. Exporting and importing only copies numbers, so it is much faster than formatting and parsing text.
+ * 
+ * File layout (all numbers are big-endian):
+ *     Header         Magic number, version, and a description of the data structure (sample rate, and the location/name/unit/type/conversion factor of each dataset.)
+ *     Chunks         Up to CHUNK_SIZE samples each. A chunk contains the timestamps, then the values of each dataset.
+ *                    Values are stored at the native width of the dataset: integer types store the raw value, FLOAT32 stores the (converted) float.
+ *     Chunk Index    For each chunk: first sample number, sample count, first and last timestamps, file offset and byte count.
+ *     Footer         File offset of the chunk index, and the magic number.
+ * 
+ * The header and chunk index are read when the file is opened. Importing reads every chunk in order.
+ */
+public class BinaryDataFile {
+	
+	public static final String EXTENSION = ".tvb";
+	public static final int CHUNK_SIZE = SamplePageCache.PAGE_SIZE; // 64K samples
+	private static final int MAGIC = 0x54564246; // "TVBF"
+	private static final int VERSION = 1;
+	private static final int FOOTER_SIZE = 12;
+	private static final int INDEX_ENTRY_SIZE = 40;
+	
+	private final FileChannel file;
+	
+	public final int sampleRate;
+	public final Column[] columns;
+	
+	private final long[] chunkFirstSampleNumber;
+	private final int[]  chunkSampleCount;
+	private final long[] chunkFirstTimestamp;
+	private final long[] chunkOffset;
+	private final int[]  chunkByteCount;
+	
+	/**
+	 * Describes one dataset in the file.
+	 */
+	public static class Column {
+		
+		public final int location;
+		public final String name;
+		public final String unit;
+		public final StorageFloats.Type type;
+		public final float conversionFactor;
+		
+		Column(int location, String name, String unit, StorageFloats.Type type, float conversionFactor) {
+			this.location = location;
+			this.name = name;
+			this.unit = unit;
+			this.type = type;
+			this.conversionFactor = conversionFactor;
+		}
+		
+		/**
+		 * @param raw    A raw value from this column.
+		 * @return       The value, converted to float and scaled by the conversion factor.
+		 */
+		public float toFloat(int raw) {
+			
+			switch(type) {
+				case UINT8:  return (raw & 0xFF)   * conversionFactor;
+				case UINT16: return (raw & 0xFFFF) * conversionFactor;
+				case INT16:  return (short) raw    * conversionFactor;
+				case UINT32: return (raw & 0xFFFFFFFFL) * conversionFactor;
+				default:     return Float.intBitsToFloat(raw);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * The contents of one chunk.
+	 */
+	public static class Chunk {
+		
+		public long firstSampleNumber;
+		public int sampleCount;
+		public long[] timestamps;
+		public int[][] values;          // [columnN][sampleN], raw values, or the bits of the float for FLOAT32 columns
+		
+	}
+	
+	/**
+	 * Opens a file, reading only its header and chunk index.
+	 * 
+	 * @param path            Path to the file.
+	 * @throws IOException    If the file can not be read, or is not a binary data file.
+	 */
+	public BinaryDataFile(String path) throws IOException {
+		
+		file = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+		
+		try {
+			
+			// header
+			DataInputStream header = new DataInputStream(new ByteArrayInputStream(read(0, 12).array()));
+			if(header.readInt() != MAGIC || header.readInt() != VERSION)
+				throw new IOException("Not a Telemetry Viewer binary data file.");
+			int headerByteCount = header.readInt();
+			header = new DataInputStream(new ByteArrayInputStream(read(12, headerByteCount).array()));
+			sampleRate = header.readInt();
+			columns = new Column[header.readInt()];
+			for(int columnN = 0; columnN < columns.length; columnN++)
+				columns[columnN] = new Column(header.readInt(), header.readUTF(), header.readUTF(), StorageFloats.Type.values()[header.readByte()], header.readFloat());
+			
+			// footer and chunk index
+			ByteBuffer footer = read(file.size() - FOOTER_SIZE, FOOTER_SIZE);
+			long indexOffset = footer.getLong();
+			if(footer.getInt() != MAGIC)
+				throw new IOException("The file is incomplete.");
+			ByteBuffer index = read(indexOffset, (int) (file.size() - FOOTER_SIZE - indexOffset));
+			int chunkCount = index.getInt();
+			chunkFirstSampleNumber = new long[chunkCount];
+			chunkSampleCount       = new int[chunkCount];
+			chunkFirstTimestamp    = new long[chunkCount];
+			chunkOffset            = new long[chunkCount];
+			chunkByteCount         = new int[chunkCount];
+			for(int chunkN = 0; chunkN < chunkCount; chunkN++) {
+				chunkFirstSampleNumber[chunkN] = index.getLong();
+				chunkSampleCount[chunkN]       = index.getInt();
+				chunkFirstTimestamp[chunkN]    = index.getLong();
+				index.getLong(); // last timestamp
+				chunkOffset[chunkN]            = index.getLong();
+				chunkByteCount[chunkN]         = index.getInt();
+			}
+		
+		} catch(IOException | RuntimeException e) {
+			file.close();
+			throw (e instanceof IOException) ? (IOException) e : new IOException("The file is corrupt.");
+		}
+		
+	}
+	
+	/**
+	 * @return    Number of chunks in the file.
+	 */
+	public int getChunkCount() {
+		
+		return chunkSampleCount.length;
+		
+	}
+	
+	/**
+	 * @return    Number of samples in the file.
+	 */
+	public long getSampleCount() {
+		
+		int chunkCount = getChunkCount();
+		return (chunkCount == 0) ? 0 : chunkFirstSampleNumber[chunkCount - 1] + chunkSampleCount[chunkCount - 1];
+		
+	}
+	
+	/**
+	 * @return    Timestamp of the first sample, or Long.MAX_VALUE if the file does not contain any samples.
+	 */
+	public long getFirstTimestamp() {
+		
+		return (getChunkCount() == 0) ? Long.MAX_VALUE : chunkFirstTimestamp[0];
+		
+	}
+	
+	/**
+	 * @param chunkN    Chunk number.
+	 * @return          Number of bytes occupied by that chunk.
+	 */
+	public int getChunkByteCount(int chunkN) {
+		
+		return chunkByteCount[chunkN];
+		
+	}
+	
+	/**
+	 * Reads one chunk.
+	 * 
+	 * @param chunkN          Chunk number.
+	 * @return                The chunk.
+	 * @throws IOException    If the chunk can not be read.
+	 */
+	public Chunk readChunk(int chunkN) throws IOException {
+		
+		ByteBuffer buffer = read(chunkOffset[chunkN], chunkByteCount[chunkN]);
+		
+		Chunk chunk = new Chunk();
+		chunk.firstSampleNumber = chunkFirstSampleNumber[chunkN];
+		chunk.sampleCount = chunkSampleCount[chunkN];
+		int count = chunk.sampleCount;
+		
+		chunk.timestamps = new long[count];
+		buffer.asLongBuffer().get(chunk.timestamps);
+		buffer.position(buffer.position() + count * 8);
+		
+		chunk.values = new int[columns.length][count];
+		for(int columnN = 0; columnN < columns.length; columnN++) {
+			int[] values = chunk.values[columnN];
+			switch(columns[columnN].type) {
+				case UINT8:  for(int i = 0; i < count; i++) values[i] = buffer.get();      break;
+				case UINT16:
+				case INT16:  for(int i = 0; i < count; i++) values[i] = buffer.getShort(); break;
+				default:     buffer.asIntBuffer().get(values); buffer.position(buffer.position() + count * 4); break;
+			}
+		}
+		
+		return chunk;
+		
+	}
+	
+	/**
+	 * Closes the file.
+	 */
+	public void close() {
+		
+		try { file.close(); } catch(IOException e) { }
+		
+	}
+	
+	/**
+	 * Reads part of the file.
+	 * 
+	 * @param offset       Where to start reading.
+	 * @param byteCount    Number of bytes to read.
+	 * @return             The bytes, as a ByteBuffer.
+	 */
+	private ByteBuffer read(long offset, int byteCount) throws IOException {
+		
+		ByteBuffer buffer = ByteBuffer.allocate(byteCount);
+		while(buffer.hasRemaining())
+			if(file.read(buffer, offset + buffer.position()) < 0)
+				throw new IOException("The file is incomplete.");
+		buffer.flip();
+		return buffer;
+		
+	}
+	
+	/**
+	 * Exports all samples of a connection.
+	 * 
+	 * @param connection              The connection.
+	 * @param path                    Full path to the file, including the file extension.
+	 * @param completedSampleCount    Variable to increment as progress is made (this is periodically queried by a progress bar.)
+	 * @throws IOException            If the file can not be written.
+	 */
+	public static void export(ConnectionTelemetry connection, String path, AtomicLong completedSampleCount) throws IOException {
+		
+		List<Dataset> list = connection.datasets.getList();
+		int datasetsCount = list.size();
+		long sampleCount = connection.getSampleCount();
+		int chunkCount = (int) ((sampleCount + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		
+		try(FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			
+			// header
+			ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream(headerBytes);
+			header.writeInt(connection.sampleRate);
+			header.writeInt(datasetsCount);
+			for(Dataset dataset : list) {
+				header.writeInt(dataset.location);
+				header.writeUTF(dataset.name);
+				header.writeUTF(dataset.unit);
+				header.writeByte(dataset.floats.getType().ordinal());
+				header.writeFloat(dataset.conversionFactor);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(12 + headerBytes.size());
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(headerBytes.size()).put(headerBytes.toByteArray()).flip();
+			long offset = write(file, 0, buffer);
+			
+			// chunks
+			ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE * 8 + datasetsCount * CHUNK_SIZE * 4);
+			ByteBuffer index = ByteBuffer.allocate(4 + chunkCount * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+			index.putInt(chunkCount);
+			
+			for(int chunkN = 0; chunkN < chunkCount; chunkN++) {
+				
+				long firstSampleNumber = (long) chunkN * CHUNK_SIZE;
+				int count = (int) Long.min(CHUNK_SIZE, sampleCount - firstSampleNumber);
+				chunk.clear();
+				
+				connection.datasets.getTimestamps(firstSampleNumber, count, chunk.asLongBuffer());
+				chunk.position(count * 8);
+				
+				for(Dataset dataset : list)
+					dataset.floats.getRawValues(firstSampleNumber, count, chunk);
+				
+				chunk.flip();
+				index.putLong(firstSampleNumber).putInt(count);
+				index.putLong(chunk.getLong(0)).putLong(chunk.getLong((count - 1) * 8));
+				index.putLong(offset).putInt(chunk.limit());
+				offset = write(file, offset, chunk);
+				
+				completedSampleCount.addAndGet(count);
+				
+			}
+			
+			// chunk index and footer
+			index.putLong(offset).putInt(MAGIC);
+			index.flip();
+			write(file, offset, index);
+			
+		}
+		
+	}
+	
+	/**
+	 * Writes a buffer to a file.
+	 * 
+	 * @param file      The file.
+	 * @param offset    Where to write.
+	 * @param buffer    What to write.
+	 * @return          The offset after the buffer.
+	 */
+	private static long write(FileChannel file, long offset, ByteBuffer buffer) throws IOException {
+		
+		while(buffer.hasRemaining())
+			offset += file.write(buffer, offset);
+		return offset;
+		
+	}
+	
+}
@@ -8,8 +8,10 @@ public class BitfieldEvents {
 	
 	boolean showSampleNumbers;
 	boolean showTimestamps;
-	Map<Integer, EdgeMarker> edgeMarkers; // key is a sample number, value is an object describing all edge events at that sample number
+	Map<Long, EdgeMarker> edgeMarkers; // key is a sample number, value is an object describing all edge events at that sample number
 	Map<Dataset.Bitfield, LevelMarker> levelMarkers; // key is a bitfield, value is a list of level markers for the chosen states
+	List<EdgeMarker> edgeMarkersList = new ArrayList<EdgeMarker>();   // reused by getEdgeMarkers()
+	List<LevelMarker> levelMarkersList = new ArrayList<LevelMarker>(); // reused by getLevelMarkers()
 	
 	/**
 	 * Creates a list of all bitfield events that should be displayed on a chart.
@@ -20,13 +22,40 @@ public class BitfieldEvents {
 	 * @param minSampleNumber      Range of samples numbers to check (inclusive.)
 	 * @param maxSampleNumber      Range of samples numbers to check (inclusive.)
 	 */
-	public BitfieldEvents(boolean showSampleNumbers, boolean showTimestamps, DatasetsInterface datasets, int minSampleNumber, int maxSampleNumber) {
+	public BitfieldEvents(boolean showSampleNumbers, boolean showTimestamps, DatasetsInterface datasets, long minSampleNumber, long maxSampleNumber) {
+		
+		this(showSampleNumbers, showTimestamps);
+		findEvents(datasets, minSampleNumber, maxSampleNumber);
+		
+	}
+	
+	/**
+	 * Creates an empty list of bitfield events. Charts keep one of these and call findEvents() every frame, instead of creating a new object every frame.
+	 * 
+	 * @param showSampleNumbers    True if the sample number should be displayed at the top of each marker.
+	 * @param showTimestamps       True if the date/time should be displayed at the top of each marker.
+	 */
+	public BitfieldEvents(boolean showSampleNumbers, boolean showTimestamps) {
 		
 		this.showSampleNumbers = showSampleNumbers;
 		this.showTimestamps = showTimestamps;
-		edgeMarkers = new TreeMap<Integer, EdgeMarker>();
+		edgeMarkers = new TreeMap<Long, EdgeMarker>();
 		levelMarkers = new TreeMap<Dataset.Bitfield, LevelMarker>();
 		
+	}
+	
+	/**
+	 * Replaces the list of bitfield events with the events in a new range of samples.
+	 * 
+	 * @param datasets           Bitfield edges and levels to check for.
+	 * @param minSampleNumber    Range of samples numbers to check (inclusive.)
+	 * @param maxSampleNumber    Range of samples numbers to check (inclusive.)
+	 */
+	public void findEvents(DatasetsInterface datasets, long minSampleNumber, long maxSampleNumber) {
+		
+		edgeMarkers.clear();
+		levelMarkers.clear();
+		
 		if(maxSampleNumber <= minSampleNumber)
 			return;
 		
@@ -52,7 +81,7 @@ public class BitfieldEvents {
 				marker = new LevelMarker(state.bitfield);
 				levelMarkers.put(state.bitfield, marker);
 			}
-			marker.ranges.add(new int[] {range[0], range[1]});
+			marker.ranges.add(new long[] {range[0], range[1]});
 			marker.labels.add(state.name);
 			marker.glColors.add(state.glColor);
 		});
@@ -65,9 +94,11 @@ public class BitfieldEvents {
 	 * @param sampleNumberToPixelX    Function that takes a Connection and sample number, then returns the corresponding pixelX value.
 	 * @return                        List of all the edge markers.
 	 */
-	public List<EdgeMarker> getEdgeMarkers(BiFunction<ConnectionTelemetry, Integer, Float> sampleNumberToPixelX) {
+	public List<EdgeMarker> getEdgeMarkers(BiFunction<ConnectionTelemetry, Long, Float> sampleNumberToPixelX) {
 		
-		List<EdgeMarker> list = new ArrayList<EdgeMarker>(edgeMarkers.values());
+		List<EdgeMarker> list = edgeMarkersList;
+		list.clear();
+		list.addAll(edgeMarkers.values());
 		for(EdgeMarker marker : list)
 			marker.pixelX = sampleNumberToPixelX.apply(marker.connection, marker.sampleNumber);
 		
@@ -81,11 +112,13 @@ public class BitfieldEvents {
 	 * @param sampleNumberToPixelX    Function that takes a Connection and sample number, then returns the corresponding pixelX value.
 	 * @return                        List of all the level markers.
 	 */
-	public List<LevelMarker> getLevelMarkers(BiFunction<ConnectionTelemetry, Integer, Float> sampleNumberToPixelX) {
+	public List<LevelMarker> getLevelMarkers(BiFunction<ConnectionTelemetry, Long, Float> sampleNumberToPixelX) {
 		
-		List<LevelMarker> list = new ArrayList<LevelMarker>(levelMarkers.values());
+		List<LevelMarker> list = levelMarkersList;
+		list.clear();
+		list.addAll(levelMarkers.values());
 		for(LevelMarker marker : list)
-			for(int[] range : marker.ranges)
+			for(long[] range : marker.ranges)
 				marker.pixelXranges.add(new float[] {sampleNumberToPixelX.apply(marker.bitfield.dataset.connection, range[0]), sampleNumberToPixelX.apply(marker.bitfield.dataset.connection, range[1])});
 		
 		return list;
@@ -98,12 +131,14 @@ public class BitfieldEvents {
 	public class EdgeMarker {
 		
 		ConnectionTelemetry connection;
-		int sampleNumber;
+		long sampleNumber;
 		float pixelX;
 		List<String> text;
 		List<float[]> glColors;
+		int eventCount = 1;         // more than 1 if nearby markers have been collapsed into this marker
+		boolean truncated = false;  // true if some collapsed states are not listed
 		
-		public EdgeMarker(Dataset.Bitfield.State state, int sampleNumber) {
+		public EdgeMarker(Dataset.Bitfield.State state, long sampleNumber) {
 			
 			this.connection = state.dataset.connection;
 			this.sampleNumber = sampleNumber;
@@ -129,6 +164,44 @@ public class BitfieldEvents {
 			
 		}
 		
+		/**
+		 * Collapses another marker into this one, because they are too close together to be drawn separately.
+		 * The first line will show the number of events, and each state will be listed once, up to a limit.
+		 * 
+		 * @param other    The marker to collapse into this one.
+		 */
+		public void collapse(EdgeMarker other) {
+			
+			final int maxStatesCount = 5;
+			
+			if(eventCount == 1) {
+				text.add(0, "");
+				glColors.add(0, null);
+			}
+			eventCount += other.eventCount;
+			text.set(0, eventCount + " events");
+			
+			int statesCount = 0;
+			for(float[] color : glColors)
+				if(color != null)
+					statesCount++;
+			
+			for(int i = 0; i < other.text.size(); i++) {
+				if(other.glColors.get(i) == null || text.contains(other.text.get(i)))
+					continue;
+				if(statesCount < maxStatesCount) {
+					text.add(other.text.get(i));
+					glColors.add(other.glColors.get(i));
+					statesCount++;
+				} else if(!truncated) {
+					text.add("...");
+					glColors.add(null);
+					truncated = true;
+				}
+			}
+			
+		}
+		
 	}
 	
 	/**
@@ -139,7 +212,7 @@ public class BitfieldEvents {
 		Dataset.Bitfield bitfield;  // this object contains a List of all the level markers for this bitfield
 		List<String> labels;        // name of the state
 		List<float[]> glColors;     // color for the state
-		List<int[]> ranges;         // sample number range for the state
+		List<long[]> ranges;        // sample number range for the state
 		List<float[]> pixelXranges; // corresponding pixelX values for those sample number ranges
 		
 		public LevelMarker(Dataset.Bitfield bitfield) {
@@ -147,7 +220,7 @@ public class BitfieldEvents {
 			this.bitfield = bitfield;
 			labels = new ArrayList<String>();
 			glColors = new ArrayList<float[]>();
-			ranges = new ArrayList<int[]>();
+			ranges = new ArrayList<long[]>();
 			pixelXranges = new ArrayList<float[]>(ranges.size());
 			
 		}
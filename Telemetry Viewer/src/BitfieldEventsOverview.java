@@ -0,0 +1,402 @@
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES3;
+
+/**
+ * A compact summary of all bitfield events for one connection, used by the timeline chart.
+ * 
+ * Edges and levels are accumulated into a fixed number of time bins as new samples arrive, so each frame only processes the new samples.
+ * When the recording outgrows the bins, the bin duration is doubled and neighboring bins are merged.
+ * When drawing, the bins are aggregated into pixel columns: a count of edges and a dominant state for each pixel.
+ */
+public class BitfieldEventsOverview {
+	
+	private static final int BIN_COUNT = 4096;
+	
+	private final DatasetsInterface datasets;
+	private ConnectionTelemetry connection = null;
+	private List<Dataset.Bitfield.State> edgeStates = new ArrayList<>();
+	private List<Dataset.Bitfield.State> levelStates = new ArrayList<>();
+	
+	private long firstTimestamp; // start of the first bin
+	private long binDuration;    // milliseconds per bin
+	private long sampleCount;    // number of samples that have been accumulated
+	private long lastTimestamp;  // timestamp of the last accumulated sample
+	
+	private int[][] edgeCounts;  // [edgeStateN][binN] = number of transitions to that state
+	private Level[] levels;      // one for each bitfield that has chosen level states
+	
+	// reused when drawing
+	private float[] pixelAmounts = new float[0];
+	private float[] pixelTotals = new float[0];
+	private float[] pixelMaximums = new float[0];
+	private Dataset.Bitfield.State[] pixelStates = new Dataset.Bitfield.State[0];
+	private FloatBuffer buffer = Buffers.newDirectFloatBuffer(6 * 1024);
+	private long[] transitions = new long[64];
+	
+	/**
+	 * Tracks the chosen level states of one bitfield.
+	 */
+	private static class Level {
+		Dataset.Bitfield bitfield;
+		List<Dataset.Bitfield.State> states = new ArrayList<>(); // chosen states
+		int[] stateIndex;                                        // [bitfield state value] = index into states, or -1 if not chosen
+		long[][] durations;                                      // [stateN][binN] = milliseconds spent in that state
+		int currentState;                                        // bitfield state value of the last accumulated sample
+		long currentStateBegin;                                  // timestamp when the current state began
+	}
+	
+	/**
+	 * @param datasets    Edges and levels to summarize. The chosen edge and level states may be changed at any time.
+	 */
+	public BitfieldEventsOverview(DatasetsInterface datasets) {
+		
+		this.datasets = datasets;
+		reset(null);
+		
+	}
+	
+	/**
+	 * Empties the bins and prepares to accumulate the currently chosen edges and levels.
+	 * 
+	 * @param newConnection    Connection that owns the bitfields.
+	 */
+	private void reset(ConnectionTelemetry newConnection) {
+		
+		connection = newConnection;
+		edgeStates = new ArrayList<>(datasets.edgeStates);
+		levelStates = new ArrayList<>(datasets.levelStates);
+		
+		firstTimestamp = 0;
+		binDuration = 1;
+		sampleCount = 0;
+		lastTimestamp = 0;
+		
+		edgeCounts = new int[edgeStates.size()][BIN_COUNT];
+		
+		List<Level> list = new ArrayList<>();
+		for(Dataset.Bitfield.State state : levelStates) {
+			Level level = list.stream().filter(l -> l.bitfield == state.bitfield).findFirst().orElse(null);
+			if(level == null) {
+				level = new Level();
+				level.bitfield = state.bitfield;
+				level.stateIndex = new int[state.bitfield.states.length];
+				Arrays.fill(level.stateIndex, -1);
+				list.add(level);
+			}
+			level.stateIndex[state.value] = level.states.size();
+			level.states.add(state);
+		}
+		list.sort((a, b) -> a.bitfield.compareTo(b.bitfield));
+		for(Level level : list)
+			level.durations = new long[level.states.size()][BIN_COUNT];
+		levels = list.toArray(new Level[list.size()]);
+		
+	}
+	
+	/**
+	 * Accumulates any samples that were received since the last call. This should be called before drawing.
+	 */
+	public void update() {
+		
+		ConnectionTelemetry newConnection = datasets.connection;
+		long newSampleCount = (newConnection == null) ? 0 : newConnection.getSampleCount();
+		
+		// start over if the chosen states changed, or if the connection was reset
+		if(newConnection != connection || !edgeStates.equals(datasets.edgeStates) || !levelStates.equals(datasets.levelStates) ||
+		   newSampleCount < sampleCount || (sampleCount > 0 && newConnection.datasets.getFirstTimestamp() != firstTimestamp))
+			reset(newConnection);
+		
+		if(newSampleCount == 0 || newSampleCount == sampleCount)
+			return;
+		
+		DatasetsController samples = connection.datasets;
+		if(sampleCount == 0) {
+			firstTimestamp = samples.getTimestamp(0);
+			for(Level level : levels) {
+				level.currentState = ((int) datasets.getSample(level.bitfield.dataset, 0) >> level.bitfield.LSBit) & level.bitfield.bitmask;
+				level.currentStateBegin = firstTimestamp;
+			}
+		}
+		
+		// edges are recorded before the sample count is incremented, so every edge up to the last sample is already available
+		long minSampleNumber = Long.max(sampleCount, 1);
+		long maxSampleNumber = newSampleCount - 1;
+		
+		for(int i = 0; i < edgeStates.size(); i++) {
+			int stateN = i;
+			edgeStates.get(i).forEachEdgeBetween(minSampleNumber, maxSampleNumber, sampleNumber -> edgeCounts[stateN][getBin(samples.getTimestamp(sampleNumber))]++);
+		}
+		
+		for(Level level : levels) {
+			
+			// collect the transitions to any state of this bitfield, as (sampleNumber << 8) | state
+			int[] transitionsCount = new int[1];
+			for(Dataset.Bitfield.State state : level.bitfield.states)
+				state.forEachEdgeBetween(minSampleNumber, maxSampleNumber, sampleNumber -> {
+					if(transitionsCount[0] == transitions.length)
+						transitions = Arrays.copyOf(transitions, transitions.length * 2);
+					transitions[transitionsCount[0]++] = (sampleNumber << 8) | state.value; // bitfields are at most 8 bits
+				});
+			Arrays.sort(transitions, 0, transitionsCount[0]);
+			
+			// each transition ends the current state
+			for(int i = 0; i < transitionsCount[0]; i++) {
+				long timestamp = samples.getTimestamp(transitions[i] >> 8);
+				int stateN = level.stateIndex[level.currentState];
+				if(stateN >= 0)
+					addDuration(level.durations[stateN], level.currentStateBegin, timestamp);
+				level.currentState = (int) (transitions[i] & 0xFF);
+				level.currentStateBegin = timestamp;
+			}
+			
+		}
+		
+		sampleCount = newSampleCount;
+		lastTimestamp = samples.getTimestamp(maxSampleNumber);
+		
+	}
+	
+	/**
+	 * Finds the bin for a timestamp, merging bins if necessary.
+	 * 
+	 * @param timestamp    The timestamp.
+	 * @return             Corresponding bin number.
+	 */
+	private int getBin(long timestamp) {
+		
+		long bin = Long.max(0, timestamp - firstTimestamp) / binDuration;
+		while(bin >= BIN_COUNT) {
+			
+			// double the bin duration by merging pairs of bins
+			for(int[] counts : edgeCounts)
+				for(int i = 0; i < BIN_COUNT; i++)
+					counts[i] = (i < BIN_COUNT / 2) ? counts[2*i] + counts[2*i + 1] : 0;
+			for(Level level : levels)
+				for(long[] durations : level.durations)
+					for(int i = 0; i < BIN_COUNT; i++)
+						durations[i] = (i < BIN_COUNT / 2) ? durations[2*i] + durations[2*i + 1] : 0;
+			
+			binDuration *= 2;
+			bin /= 2;
+			
+		}
+		return (int) bin;
+		
+	}
+	
+	/**
+	 * Adds a time interval to the bins it overlaps.
+	 * 
+	 * @param durations    Bins to update.
+	 * @param begin        Start of the interval, inclusive.
+	 * @param end          End of the interval, exclusive.
+	 */
+	private void addDuration(long[] durations, long begin, long end) {
+		
+		begin = Long.max(begin, firstTimestamp);
+		if(end <= begin)
+			return;
+		
+		int lastBin = getBin(end - 1);
+		for(int bin = getBin(begin); bin <= lastBin; bin++) {
+			long binBegin = firstTimestamp + bin * binDuration;
+			durations[bin] += Long.min(end, binBegin + binDuration) - Long.max(begin, binBegin);
+		}
+		
+	}
+	
+	/**
+	 * Spreads a time interval across the pixel columns it overlaps.
+	 * 
+	 * @param amount             Amount to add, split proportionally to the overlap.
+	 * @param begin              Start of the interval.
+	 * @param end                End of the interval.
+	 * @param minTimestamp       Timestamp at the left edge of the first pixel column.
+	 * @param pixelDuration      Milliseconds per pixel column.
+	 * @param pixelCount         Number of pixel columns.
+	 */
+	private void addToPixels(double amount, double begin, double end, long minTimestamp, double pixelDuration, int pixelCount) {
+		
+		double first = (begin - minTimestamp) / pixelDuration;
+		double last  = (end   - minTimestamp) / pixelDuration;
+		if(last <= 0 || first >= pixelCount || last <= first)
+			return;
+		
+		double amountPerPixel = amount / (last - first);
+		for(int pixel = Integer.max(0, (int) first); pixel < pixelCount && pixel < last; pixel++)
+			pixelAmounts[pixel] += amountPerPixel * (Double.min(last, pixel + 1) - Double.max(first, pixel));
+		
+	}
+	
+	/**
+	 * Draws the edges as a strip of ticks, with a row of levels below it for each bitfield.
+	 * Each tick's height shows the number of edges in that pixel column, and its color shows the most common state.
+	 * Each level row is colored by the state that occupied most of each pixel column.
+	 * 
+	 * @param gl                The OpenGL context.
+	 * @param minTimestamp      Timestamp at the left edge.
+	 * @param maxTimestamp      Timestamp at the right edge.
+	 * @param xLeft             Left edge, in pixels.
+	 * @param xRight            Right edge, in pixels.
+	 * @param yBottom           Bottom edge, in pixels.
+	 * @param yTop              Top edge, in pixels. Rows that do not fit are not drawn.
+	 * @return                  Y location of the top of the drawn region, in pixels.
+	 */
+	public float draw(GL2ES3 gl, long minTimestamp, long maxTimestamp, float xLeft, float xRight, float yBottom, float yTop) {
+		
+		float padding = 6f * ChartsController.getDisplayScalingFactor();
+		float rowHeight = OpenGL.smallTextHeight + padding;
+		int pixelCount = (int) Math.ceil(xRight - xLeft);
+		if(sampleCount == 0 || pixelCount <= 0 || maxTimestamp <= minTimestamp)
+			return yBottom;
+		double pixelDuration = (double) (maxTimestamp - minTimestamp) / (double) pixelCount;
+		
+		if(pixelAmounts.length < pixelCount) {
+			pixelAmounts  = new float[pixelCount];
+			pixelTotals   = new float[pixelCount];
+			pixelMaximums = new float[pixelCount];
+			pixelStates   = new Dataset.Bitfield.State[pixelCount];
+		}
+		int firstBin = (int) Long.min(BIN_COUNT, Long.max(0, minTimestamp - firstTimestamp) / binDuration);
+		int lastBin  = (int) Long.min(BIN_COUNT - 1, Long.max(0, maxTimestamp - firstTimestamp) / binDuration);
+		
+		// draw the level rows, with the first bitfield on top
+		float y = yBottom;
+		for(int levelN = levels.length - 1; levelN >= 0; levelN--) {
+			
+			float yRowBottom = y + padding;
+			float yRowTop = yRowBottom + rowHeight;
+			if(yRowTop > yTop)
+				break;
+			y = yRowTop;
+			
+			Level level = levels[levelN];
+			Arrays.fill(pixelMaximums, 0, pixelCount, 0);
+			Arrays.fill(pixelStates, 0, pixelCount, null);
+			for(int stateN = 0; stateN < level.states.size(); stateN++) {
+				Arrays.fill(pixelAmounts, 0, pixelCount, 0);
+				long[] durations = level.durations[stateN];
+				for(int bin = firstBin; bin <= lastBin; bin++)
+					if(durations[bin] > 0) {
+						long binBegin = firstTimestamp + bin * binDuration;
+						addToPixels(durations[bin], binBegin, binBegin + binDuration, minTimestamp, pixelDuration, pixelCount);
+					}
+				if(level.stateIndex[level.currentState] == stateN)
+					addToPixels(lastTimestamp - level.currentStateBegin, level.currentStateBegin, lastTimestamp, minTimestamp, pixelDuration, pixelCount);
+				for(int pixel = 0; pixel < pixelCount; pixel++)
+					if(pixelAmounts[pixel] > pixelMaximums[pixel]) {
+						pixelMaximums[pixel] = pixelAmounts[pixel];
+						pixelStates[pixel] = level.states.get(stateN);
+					}
+			}
+			
+			// merge neighboring pixel columns that have the same dominant state
+			buffer.rewind();
+			int vertexCount = 0;
+			int runStart = 0;
+			for(int pixel = 1; pixel <= pixelCount; pixel++) {
+				if(pixel < pixelCount && pixelStates[pixel] == pixelStates[runStart])
+					continue;
+				Dataset.Bitfield.State state = pixelStates[runStart];
+				if(state != null) {
+					float xRunLeft = xLeft + runStart;
+					float xRunRight = Float.min(xLeft + pixel, xRight);
+					buffer = putQuad(buffer, state.glColor, xRunLeft, yRowBottom, xRunRight, yRowTop);
+					vertexCount += 6;
+					if(xRunRight - xRunLeft >= OpenGL.smallTextWidth(gl, state.name) + 2*padding) {
+						OpenGL.drawQuadOutline2D(gl, Theme.markerBorderColor, xRunLeft, yRowBottom, xRunRight, yRowTop);
+						OpenGL.drawSmallText(gl, state.name, (int) (xRunLeft + padding), (int) (yRowBottom + padding/2f), 0);
+					}
+				}
+				runStart = pixel;
+			}
+			buffer.rewind();
+			if(vertexCount > 0)
+				OpenGL.drawTrianglesXYRGBA(gl, GL.GL_TRIANGLES, buffer, vertexCount);
+			
+		}
+		
+		// draw the edge ticks above the level rows
+		float yStripBottom = y + padding;
+		float yStripTop = yStripBottom + rowHeight;
+		if(edgeStates.isEmpty() || yStripTop > yTop)
+			return y;
+		
+		Arrays.fill(pixelTotals, 0, pixelCount, 0);
+		Arrays.fill(pixelMaximums, 0, pixelCount, 0);
+		Arrays.fill(pixelStates, 0, pixelCount, null);
+		for(int stateN = 0; stateN < edgeStates.size(); stateN++) {
+			Arrays.fill(pixelAmounts, 0, pixelCount, 0);
+			int[] counts = edgeCounts[stateN];
+			for(int bin = firstBin; bin <= lastBin; bin++)
+				if(counts[bin] > 0) {
+					int pixel = (int) ((firstTimestamp + (bin + 0.5) * binDuration - minTimestamp) / pixelDuration);
+					if(pixel >= 0 && pixel < pixelCount)
+						pixelAmounts[pixel] += counts[bin];
+				}
+			for(int pixel = 0; pixel < pixelCount; pixel++) {
+				pixelTotals[pixel] += pixelAmounts[pixel];
+				if(pixelAmounts[pixel] > pixelMaximums[pixel]) {
+					pixelMaximums[pixel] = pixelAmounts[pixel];
+					pixelStates[pixel] = edgeStates.get(stateN);
+				}
+			}
+		}
+		
+		float maxTotal = 0;
+		for(int pixel = 0; pixel < pixelCount; pixel++)
+			maxTotal = Float.max(maxTotal, pixelTotals[pixel]);
+		
+		buffer.rewind();
+		int vertexCount = 0;
+		for(int pixel = 0; pixel < pixelCount; pixel++)
+			if(pixelTotals[pixel] > 0) {
+				float height = rowHeight * (0.25f + 0.75f * (float) (Math.log1p(pixelTotals[pixel]) / Math.log1p(maxTotal)));
+				buffer = putQuad(buffer, pixelStates[pixel].glColor, xLeft + pixel, yStripBottom, Float.min(xLeft + pixel + 1, xRight), yStripBottom + height);
+				vertexCount += 6;
+			}
+		buffer.rewind();
+		if(vertexCount > 0)
+			OpenGL.drawTrianglesXYRGBA(gl, GL.GL_TRIANGLES, buffer, vertexCount);
+		
+		return yStripTop;
+		
+	}
+	
+	/**
+	 * Appends a quad (two triangles) to a buffer, replacing the buffer with a bigger one if necessary.
+	 * 
+	 * @param buffer    The (x,y,r,g,b,a) buffer.
+	 * @param color     The color, as a float[4].
+	 * @param x1        Lower-left x location.
+	 * @param y1        Lower-left y location.
+	 * @param x2        Upper-right x location.
+	 * @param y2        Upper-right y location.
+	 * @return          The buffer, which may be a new one.
+	 */
+	private static FloatBuffer putQuad(FloatBuffer buffer, float[] color, float x1, float y1, float x2, float y2) {
+		
+		if(buffer.remaining() < 36) {
+			FloatBuffer biggerBuffer = Buffers.newDirectFloatBuffer(buffer.capacity() * 2);
+			buffer.flip();
+			biggerBuffer.put(buffer);
+			buffer = biggerBuffer;
+		}
+		
+		buffer.put(x1); buffer.put(y1); buffer.put(color);
+		buffer.put(x1); buffer.put(y2); buffer.put(color);
+		buffer.put(x2); buffer.put(y1); buffer.put(color);
+		buffer.put(x2); buffer.put(y1); buffer.put(color);
+		buffer.put(x1); buffer.put(y2); buffer.put(color);
+		buffer.put(x2); buffer.put(y2); buffer.put(color);
+		return buffer;
+		
+	}
+	
+}
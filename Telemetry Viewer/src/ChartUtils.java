@@ -1,5 +1,6 @@
 import java.awt.Color;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Date;
@@ -434,6 +435,123 @@ public class ChartUtils {
 		
 	}
 	
+	/**
+	 * Remembers the divisions most recently calculated for one axis of a chart, so they are only recalculated when the axis or the font changes.
+	 * Each axis of each chart should have its own DivisionsCache. The returned Maps are shared, so they must not be modified.
+	 */
+	public static class DivisionsCache {
+		
+		private static final int Y_DIVISIONS_125       = 0;
+		private static final int LOG_Y_DIVISIONS       = 1;
+		private static final int FLOAT_X_DIVISIONS_125 = 2;
+		private static final int TIMESTAMP_DIVISIONS   = 3;
+		
+		private Map<Float, String> divisions = null;
+		private int type;
+		private float size;
+		private double min;
+		private double max;
+		private float fontHeight;
+		private Object timestampFormatter;
+		
+		private Map<Float, String> get(int type, float size, double min, double max) {
+			
+			boolean valid = divisions != null &&
+			                this.type == type &&
+			                this.size == size &&
+			                this.min == min &&
+			                this.max == max &&
+			                fontHeight == OpenGL.smallTextHeight &&
+			                timestampFormatter == SettingsController.timestampFormatterMilliseconds;
+			return valid ? divisions : null;
+			
+		}
+		
+		private Map<Float, String> remember(int type, float size, double min, double max, Map<Float, String> divisions) {
+			
+			this.divisions = divisions;
+			this.type = type;
+			this.size = size;
+			this.min = min;
+			this.max = max;
+			fontHeight = OpenGL.smallTextHeight;
+			timestampFormatter = SettingsController.timestampFormatterMilliseconds;
+			return divisions;
+			
+		}
+		
+		/**
+		 * Same as ChartUtils.getYdivisions125(), but reuses the previous result if possible.
+		 */
+		public Map<Float, String> getYdivisions125(float plotHeight, float minY, float maxY) {
+			
+			Map<Float, String> divisions = get(Y_DIVISIONS_125, plotHeight, minY, maxY);
+			return divisions != null ? divisions : remember(Y_DIVISIONS_125, plotHeight, minY, maxY, ChartUtils.getYdivisions125(plotHeight, minY, maxY));
+			
+		}
+		
+		/**
+		 * Same as ChartUtils.getLogYdivisions(), but reuses the previous result if possible.
+		 */
+		public Map<Float, String> getLogYdivisions(float plotHeight, float minY, float maxY) {
+			
+			Map<Float, String> divisions = get(LOG_Y_DIVISIONS, plotHeight, minY, maxY);
+			return divisions != null ? divisions : remember(LOG_Y_DIVISIONS, plotHeight, minY, maxY, ChartUtils.getLogYdivisions(plotHeight, minY, maxY));
+			
+		}
+		
+		/**
+		 * Same as ChartUtils.getFloatXdivisions125(), but reuses the previous result if possible.
+		 */
+		public Map<Float, String> getFloatXdivisions125(GL2ES3 gl, float plotWidth, float minX, float maxX) {
+			
+			Map<Float, String> divisions = get(FLOAT_X_DIVISIONS_125, plotWidth, minX, maxX);
+			return divisions != null ? divisions : remember(FLOAT_X_DIVISIONS_125, plotWidth, minX, maxX, ChartUtils.getFloatXdivisions125(gl, plotWidth, minX, maxX));
+			
+		}
+		
+		/**
+		 * Same as ChartUtils.getTimestampDivisions(), but reuses the previous result if possible.
+		 */
+		public Map<Float, String> getTimestampDivisions(GL2ES3 gl, float width, long minTimestamp, long maxTimestamp) {
+			
+			Map<Float, String> divisions = get(TIMESTAMP_DIVISIONS, width, minTimestamp, maxTimestamp);
+			return divisions != null ? divisions : remember(TIMESTAMP_DIVISIONS, width, minTimestamp, maxTimestamp, ChartUtils.getTimestampDivisions(gl, width, minTimestamp, maxTimestamp));
+			
+		}
+		
+	}
+	
+	// null if the JVM can not measure how many bytes each thread has allocated
+	private static final com.sun.management.ThreadMXBean allocationBean;
+	static {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean &&
+		   ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported() &&
+		   ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled())
+			allocationBean = (com.sun.management.ThreadMXBean) bean;
+		else
+			allocationBean = null;
+	}
+	
+	/**
+	 * Gets the number of bytes allocated by the current thread so far, for benchmarking.
+	 * 
+	 * @return    Number of bytes, or -1 if the JVM can not measure it.
+	 */
+	public static long getAllocatedBytes() {
+		
+		if(allocationBean == null)
+			return -1;
+		
+		try {
+			return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		} catch(UnsupportedOperationException e) {
+			return -1;
+		}
+		
+	}
+	
 	/**
 	 * Formats a double as a string, limiting the total number of digits to a specific length, but never truncating the integer part.
 	 * 
@@ -711,8 +829,12 @@ public class ChartUtils {
 		
 	}
 	
+	private static OccupiedRegions occupiedRegions = new OccupiedRegions(); // reused by drawMarkers()
+	private static List<BitfieldEvents.EdgeMarker> collapsedMarkers = new ArrayList<BitfieldEvents.EdgeMarker>(); // reused by drawMarkers()
+	
 	/**
 	 * Draws a collection of markers over the plot. If the mouse is over a marker, the marker will be drawn like a clickable element.
+	 * Edge markers that are closer together than their anchors are wide get collapsed into a single marker.
 	 * 
 	 * @param gl              The OpenGL context.
 	 * @param edgeMarkers     List of edge markers to draw.
@@ -734,13 +856,36 @@ public class ChartUtils {
 		
 		float padding = 6f * ChartsController.getDisplayScalingFactor();
 		
-		List<float[]> occupiedRegions = new ArrayList<float[]>(); // [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+		occupiedRegions.reset(topLeftX, bottomRightX, 8 * padding);
 		
 		EventHandler handler = null;
 		
-		// draw each edge event
+		// collapse edge markers that are too close together to be drawn separately
 		boolean insufficientSpace = false;
+		boolean sorted = true;
+		for(int i = 1; i < edgeMarkers.size() && sorted; i++)
+			if(edgeMarkers.get(i).pixelX < edgeMarkers.get(i - 1).pixelX)
+				sorted = false;
+		if(!sorted) {
+			edgeMarkers = new ArrayList<BitfieldEvents.EdgeMarker>(edgeMarkers);
+			edgeMarkers.sort((a, b) -> Float.compare(a.pixelX, b.pixelX));
+		}
+		collapsedMarkers.clear();
 		for(BitfieldEvents.EdgeMarker marker : edgeMarkers) {
+			float xAnchor = marker.pixelX + topLeftX;
+			if(xAnchor < topLeftX || xAnchor > bottomRightX) {
+				insufficientSpace = true; // can't be drawn
+				continue;
+			}
+			BitfieldEvents.EdgeMarker previous = collapsedMarkers.isEmpty() ? null : collapsedMarkers.get(collapsedMarkers.size() - 1);
+			if(previous != null && marker.pixelX - previous.pixelX < padding)
+				previous.collapse(marker);
+			else
+				collapsedMarkers.add(marker);
+		}
+		
+		// draw each edge event
+		for(BitfieldEvents.EdgeMarker marker : collapsedMarkers) {
 			
 			// calculate the box size
 			float maxTextWidth = 0;
@@ -760,14 +905,19 @@ public class ChartUtils {
 			int orientation = UNDEFINED;
 			
 			while(orientation == UNDEFINED) {
-				if(xAnchor - boxWidth >= topLeftX && xAnchor <= bottomRightX && regionAvailable(occupiedRegions, xAnchor - boxWidth, xAnchor, yAnchor, yAnchor + boxHeight + padding))
+				// for each orientation, find the lowest occupied region in the way, or -infinity if the orientation would not fit horizontally
+				float northWest = (xAnchor - boxWidth >= topLeftX && xAnchor <= bottomRightX) ? occupiedRegions.getLowestOverlap(xAnchor - boxWidth, xAnchor, yAnchor, yAnchor + boxHeight + padding) : Float.NEGATIVE_INFINITY;
+				float north = (xAnchor - (boxWidth / 2f) >= topLeftX && xAnchor + (boxWidth / 2f) <= bottomRightX) ? occupiedRegions.getLowestOverlap(xAnchor - (boxWidth / 2f), xAnchor + (boxWidth / 2f), yAnchor, yAnchor + boxHeight + padding) : Float.NEGATIVE_INFINITY;
+				float northEast = (xAnchor >= topLeftX && xAnchor + boxWidth <= bottomRightX) ? occupiedRegions.getLowestOverlap(xAnchor, xAnchor + boxWidth, yAnchor, yAnchor + boxHeight + padding) : Float.NEGATIVE_INFINITY;
+				
+				if(northWest == Float.POSITIVE_INFINITY)
 					orientation = NORTH_WEST;
-				else if(xAnchor - (boxWidth / 2f) >= topLeftX && xAnchor + (boxWidth / 2f) <= bottomRightX && regionAvailable(occupiedRegions, xAnchor - (boxWidth / 2f), xAnchor + (boxWidth / 2f), yAnchor, yAnchor + boxHeight + padding))
+				else if(north == Float.POSITIVE_INFINITY)
 					orientation = NORTH;
-				else if(xAnchor >= topLeftX && xAnchor + boxWidth <= bottomRightX && regionAvailable(occupiedRegions, xAnchor, xAnchor + boxWidth, yAnchor, yAnchor + boxHeight + padding))
+				else if(northEast == Float.POSITIVE_INFINITY)
 					orientation = NORTH_EAST;
 				else
-					yAnchor = yAnchor - 1;
+					yAnchor = Float.max(northWest, Float.max(north, northEast)) - boxHeight - padding; // move down just below the region in the way
 				
 				if(yAnchor < bottomRightY) {
 					// not enough room to draw this marker
@@ -789,7 +939,7 @@ public class ChartUtils {
 				float xAnchorLeft  = xAnchor - (padding / 2f);
 				float xAnchorRight = xAnchor + (padding / 2f);
 				
-				occupiedRegions.add(new float[] {xBoxLeft, xBoxRight, yAnchor, yBoxTop});
+				occupiedRegions.add(xBoxLeft, xBoxRight, yAnchor, yBoxTop);
 				boolean mouseOverMarker = mouseX > xBoxLeft && mouseX < xBoxRight && mouseY > yAnchor && mouseY < yBoxTop;
 				if(mouseOverMarker)
 					handler = EventHandler.onPress(press -> OpenGLChartsView.instance.setPausedView(marker.connection.datasets.getTimestamp(marker.sampleNumber), marker.connection, marker.sampleNumber, true));
@@ -832,7 +982,7 @@ public class ChartUtils {
 				float yBoxTop     = yAnchor + padding + boxHeight;
 				float xAnchorLeft = xAnchor - (0.85f * padding);
 				
-				occupiedRegions.add(new float[] {xBoxLeft, xBoxRight, yAnchor, yBoxTop});
+				occupiedRegions.add(xBoxLeft, xBoxRight, yAnchor, yBoxTop);
 				boolean mouseOverMarker = mouseX > xBoxLeft && mouseX < xBoxRight && mouseY > yAnchor && mouseY < yBoxTop;
 				if(mouseOverMarker)
 					handler = EventHandler.onPress(press -> OpenGLChartsView.instance.setPausedView(marker.connection.datasets.getTimestamp(marker.sampleNumber), marker.connection, marker.sampleNumber, true));
@@ -876,7 +1026,7 @@ public class ChartUtils {
 				OpenGL.drawQuad2D(gl, Theme.tooltipBackgroundColor, xBoxLeft, yBoxBottom, xBoxRight, yBoxTop);
 				OpenGL.drawTriangle2D(gl, Theme.tooltipBackgroundColor, xAnchor, yBoxBottom, xAnchor, yAnchor, xAnchorRight, yBoxBottom);
 				
-				occupiedRegions.add(new float[] {xBoxLeft, xBoxRight, yAnchor, yBoxTop});
+				occupiedRegions.add(xBoxLeft, xBoxRight, yAnchor, yBoxTop);
 				boolean mouseOverMarker = mouseX > xBoxLeft && mouseX < xBoxRight && mouseY > yAnchor && mouseY < yBoxTop;
 				if(mouseOverMarker)
 					handler = EventHandler.onPress(press -> OpenGLChartsView.instance.setPausedView(marker.connection.datasets.getTimestamp(marker.sampleNumber), marker.connection, marker.sampleNumber, true));
@@ -919,8 +1069,8 @@ public class ChartUtils {
 			float yTop          = yBottom + OpenGL.smallTextHeight + padding;
 			float yTextBaseline = yBottom + padding/2f;
 			
-			if(regionAvailable(occupiedRegions, topLeftX, bottomRightX, yBottom, yTop))
-				occupiedRegions.add(new float[] {topLeftX, bottomRightX, yBottom, yTop});
+			if(occupiedRegions.getLowestOverlap(topLeftX, bottomRightX, yBottom, yTop) == Float.POSITIVE_INFINITY)
+				occupiedRegions.add(topLeftX, bottomRightX, yBottom, yTop);
 			else
 				insufficientSpace = true;
 			
@@ -931,6 +1081,7 @@ public class ChartUtils {
 			float yOutlineBottom = 0;
 			float yOutlineTop = 0;
 			
+			float xPreviousRight = Float.NEGATIVE_INFINITY;
 			for(int rangeN = 0; rangeN < marker.pixelXranges.size(); rangeN++) {
 				float[] xRange = marker.pixelXranges.get(rangeN);
 				float xLeft  = (xRange[0] < 0) ? topLeftX : xRange[0] + topLeftX;
@@ -938,6 +1089,12 @@ public class ChartUtils {
 				if(yTop <= topLeftY) {
 					
 					boolean mouseOverMarker = mouseX >= xLeft && mouseX <= xRight && mouseY >= yBottom && mouseY <= yTop;
+					
+					// skip levels that are off-screen, or that would be hidden by the previous level
+					if(xRight < topLeftX || xLeft > bottomRightX || (xRight < xPreviousRight + 1 && !mouseOverMarker))
+						continue;
+					xPreviousRight = xRight;
+					
 					OpenGL.drawQuad2D(gl, marker.glColors.get(rangeN), xLeft, yBottom, xRight, yTop);
 					if(mouseOverMarker) {
 						drawMouseOverOutline = true;
@@ -949,11 +1106,14 @@ public class ChartUtils {
 						OpenGL.drawQuadOutline2D(gl, Theme.markerBorderColor, xLeft, yBottom, xRight, yTop);
 					}
 					
-					int[] originalScissorArgs = new int[4];
-					gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-					gl.glScissor(originalScissorArgs[0] + (int) (xLeft - topLeftX), originalScissorArgs[1] + (int) (yBottom - bottomRightY), Integer.max(0, (int) (xRight - xLeft)), (int) (yTop - yBottom));
-					OpenGL.drawSmallText(gl, marker.labels.get(rangeN), (int) (xLeft + padding), (int) yTextBaseline, 0);
-					gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+					// only draw the label if some of it would be visible
+					if(xRight - xLeft > 2 * padding) {
+						int[] originalScissorArgs = new int[4];
+						OpenGL.getScissorBox(originalScissorArgs);
+						OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) (xLeft - topLeftX), originalScissorArgs[1] + (int) (yBottom - bottomRightY), Integer.max(0, (int) (xRight - xLeft)), (int) (yTop - yBottom));
+						OpenGL.drawSmallText(gl, marker.labels.get(rangeN), (int) (xLeft + padding), (int) yTextBaseline, 0);
+						OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+					}
 					
 					if(mouseOverMarker) {
 						int r = rangeN;
@@ -1033,49 +1193,84 @@ public class ChartUtils {
 	}
 	
 	/**
-	 * Checks if a region overlaps with any occupied regions.
-	 * 
-	 * @param occupiedRegions    A List of float[]'s describing any currently occupied regions. [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
-	 * @param minX               Proposed region's left-most x value.
-	 * @param maxX               Proposed region's right-most x value.
-	 * @param minY               Proposed region's bottom-most y value.
-	 * @param maxY               Proposed region's top-most y value.
-	 * @return                   True if there is no overlap (touching is allowed), false otherwise.
+	 * Regions of the screen that are already occupied by markers.
+	 * The regions are indexed by a uniform grid of columns, so a proposed region only has to be checked against the regions in the columns it spans.
 	 */
-	private static boolean regionAvailable(List<float[]> occupiedRegions, float minX, float maxX, float minY, float maxY) {
+	private static class OccupiedRegions {
+		
+		private float minX;
+		private float columnWidth;
+		private int columnCount;
+		private final List<List<float[]>> columns = new ArrayList<List<float[]>>(); // each float[] is [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+		
+		/**
+		 * Empties the grid and resizes it. The existing columns are reused to avoid reallocating them every frame.
+		 * 
+		 * @param minX           Left-most x value that will typically be used.
+		 * @param maxX           Right-most x value that will typically be used.
+		 * @param columnWidth    Width of each grid column.
+		 */
+		public void reset(float minX, float maxX, float columnWidth) {
+			
+			this.minX = minX;
+			this.columnWidth = columnWidth;
+			columnCount = Integer.max(1, (int) Math.ceil((maxX - minX) / columnWidth));
+			while(columns.size() < columnCount)
+				columns.add(new ArrayList<float[]>());
+			for(List<float[]> column : columns)
+				column.clear();
+			
+		}
 		
-		for(float[] region : occupiedRegions) {
-			float regionMinX = region[0];
-			float regionMaxX = region[1];
-			float regionMinY = region[2];
-			float regionMaxY = region[3];
+		/**
+		 * @param x    An x value.
+		 * @return     The grid column containing that x value. Values outside the grid are clamped to the first or last column.
+		 */
+		private int getColumn(float x) {
+			
+			int column = (int) Math.floor((x - minX) / columnWidth);
+			return Integer.min(columnCount - 1, Integer.max(0, column));
 			
-			if(minX >= regionMinX && minX < regionMaxX) { // x starts inside region
-				if(minY >= regionMinY && minY < regionMaxY) // y starts inside region
-					return false;
-				else if(maxY > regionMinY && maxY <= regionMaxY) // y ends inside region
-					return false;
-				else if(minY < regionMinY && maxY > regionMaxY) // y surrounds region
-					return false;
-			} else if(maxX > regionMinX && maxX <= regionMaxX) { // x ends inside region
-				if(minY >= regionMinY && minY < regionMaxY) // y starts inside region
-					return false;
-				else if(maxY > regionMinY && maxY <= regionMaxY) // y ends inside region
-					return false;
-				else if(minY < regionMinY && maxY > regionMaxY) // y surrounds region
-					return false;
-			} else if(minX <= regionMinX && maxX >= regionMaxX) { // x surrounds region
-				if(minY >= regionMinY && minY < regionMaxY) // y starts inside region
-					return false;
-				else if(maxY > regionMinY && maxY <= regionMaxY) // y ends inside region
-					return false;
-				else if(minY < regionMinY && maxY > regionMaxY) // y surrounds region
-					return false;
-			}
 		}
 		
-		// not occupied
-		return true;
+		/**
+		 * Marks a region as occupied.
+		 * 
+		 * @param minX    Region's left-most x value.
+		 * @param maxX    Region's right-most x value.
+		 * @param minY    Region's bottom-most y value.
+		 * @param maxY    Region's top-most y value.
+		 */
+		public void add(float minX, float maxX, float minY, float maxY) {
+			
+			float[] region = new float[] {minX, maxX, minY, maxY};
+			int lastColumn = getColumn(maxX);
+			for(int column = getColumn(minX); column <= lastColumn; column++)
+				columns.get(column).add(region);
+			
+		}
+		
+		/**
+		 * Checks if a region overlaps with any occupied regions.
+		 * 
+		 * @param minX    Proposed region's left-most x value.
+		 * @param maxX    Proposed region's right-most x value.
+		 * @param minY    Proposed region's bottom-most y value.
+		 * @param maxY    Proposed region's top-most y value.
+		 * @return        The bottom-most y value of all overlapping regions, or positive infinity if there is no overlap (touching is allowed.)
+		 */
+		public float getLowestOverlap(float minX, float maxX, float minY, float maxY) {
+			
+			float lowest = Float.POSITIVE_INFINITY;
+			int lastColumn = getColumn(maxX);
+			for(int column = getColumn(minX); column <= lastColumn; column++)
+				for(float[] region : columns.get(column))
+					if(minX < region[1] && maxX > region[0] && minY < region[3] && maxY > region[2] && region[2] < lowest)
+						lowest = region[2];
+			
+			return lowest;
+			
+		}
 		
 	}
 	
@@ -52,7 +52,7 @@ public class CommunicationView extends JPanel {
 			
 			JFileChooser inputFiles = new JFileChooser(System.getProperty("user.home") + "/Desktop/");
 			inputFiles.setMultiSelectionEnabled(true);
-			inputFiles.setFileFilter(new FileNameExtensionFilter("Files Exported from Telemetry Viewer", "txt", "csv", "mkv"));
+			inputFiles.setFileFilter(new FileNameExtensionFilter("Files Exported from Telemetry Viewer", "txt", "tvs", "csv", "tvb", "mkv"));
 			JFrame parentWindow = (JFrame) SwingUtilities.windowForComponent(this);
 			if(inputFiles.showOpenDialog(parentWindow) == JFileChooser.APPROVE_OPTION) {
 				File[] files = inputFiles.getSelectedFiles();
@@ -75,6 +75,7 @@ public class CommunicationView extends JPanel {
 			JCheckBox settingsFileCheckbox = new JCheckBox("Settings file (the data structures, chart settings, and GUI settings)", true);
 			List<Map.Entry<JCheckBox, ConnectionTelemetry>> csvFileCheckboxes = new ArrayList<Map.Entry<JCheckBox, ConnectionTelemetry>>();
 			List<Map.Entry<JCheckBox, ConnectionCamera>> cameraFileCheckboxes = new ArrayList<Map.Entry<JCheckBox, ConnectionCamera>>();
+			JCheckBox binaryFormatCheckbox = new JCheckBox("Use the binary format (.tvb) instead of CSV (much faster to export and import, but not human-readable)", false);
 			
 			for(ConnectionTelemetry connection : ConnectionsController.telemetryConnections)
 				if(connection.getSampleCount() > 0)
@@ -121,7 +122,7 @@ public class CommunicationView extends JPanel {
 					for(Entry<JCheckBox, ConnectionCamera> entry : cameraFileCheckboxes)
 						if(entry.getKey().isSelected())
 							camerasList.add(entry.getValue());
-					ConnectionsController.exportFiles(absolutePath, exportSettingsFile, connectionsList, camerasList);
+					ConnectionsController.exportFiles(absolutePath, exportSettingsFile, binaryFormatCheckbox.isSelected(), connectionsList, camerasList);
 					exportWindow.dispose();
 				}
 				
@@ -135,6 +136,8 @@ public class CommunicationView extends JPanel {
 			exportWindow.add(settingsFileCheckbox);
 			for(Entry<JCheckBox, ConnectionTelemetry> entry : csvFileCheckboxes)
 				exportWindow.add(entry.getKey());
+			if(!csvFileCheckboxes.isEmpty())
+				exportWindow.add(binaryFormatCheckbox, "gapleft " + (Theme.padding * 4));
 			for(Entry<JCheckBox, ConnectionCamera> entry : cameraFileCheckboxes)
 				exportWindow.add(entry.getKey());
 			exportWindow.add(buttonsPanel, "grow x");
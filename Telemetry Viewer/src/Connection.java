@@ -61,12 +61,12 @@ public abstract class Connection {
 	 * @param sampleNumber    The sample or frame number.
 	 * @return                Corresponding timestamp.
 	 */
-	public abstract long getTimestamp(int sampleNumber);
+	public abstract long getTimestamp(long sampleNumber);
 	
 	/**
 	 * @return    The number of samples or frames available.
 	 */
-	public abstract int getSampleCount();
+	public abstract long getSampleCount();
 	
 	/**
 	 * Removes all samples or frames. This is a non-permanent version of dispose().
@@ -1,16 +1,8 @@
 import java.awt.Dimension;
-import java.awt.Point;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
-import java.awt.image.Raster;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
@@ -24,25 +16,28 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-import javax.imageio.ImageIO;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
-import org.libjpegturbo.turbojpeg.TJ;
-import org.libjpegturbo.turbojpeg.TJCompressor;
-import org.libjpegturbo.turbojpeg.TJDecompressor;
 
 import com.github.sarxos.webcam.Webcam;
 import com.github.sarxos.webcam.WebcamException;
@@ -68,8 +63,23 @@ public class ConnectionCamera extends Connection {
 		new Dimension(3840, 2160)
 	};
 	
-	// threading
-	private AtomicInteger liveJpegThreads = new AtomicInteger(0); // number of currently live sub-threads encoding or decoding jpeg's
+	// jpeg encoding/decoding is done by JpegCodecPool
+	private final AtomicInteger pendingCodecTasks = new AtomicInteger(0); // number of queued or running encode/decode tasks for this camera
+	private final AtomicReference<LiveJpeg> pendingLiveJpeg = new AtomicReference<LiveJpeg>(); // newest received jpeg that has not been decoded yet
+	private final AtomicBoolean liveDecodeScheduled = new AtomicBoolean(false); // true while a decode task for this camera is queued or running
+	private final ArrayBlockingQueue<byte[]> recycledRgbBuffers = new ArrayBlockingQueue<byte[]>(8); // raw image buffers that can be reused by saveImage()
+	private final AtomicInteger liveMaxWidth  = new AtomicInteger(0); // largest region requested by getLiveImage() since the last decode, in pixels
+	private final AtomicInteger liveMaxHeight = new AtomicInteger(0);
+	private int liveDecodeWidth = 0;  // region used for the previous decode, reused if no chart requested an image since then
+	private int liveDecodeHeight = 0;
+	private final Object saveLock = new Object(); // encoded frames are appended to the file in order, while holding this lock
+	private long encodeSequenceNumber = 0; // incremented by the receiver thread for each frame submitted to saveImage()
+	private long saveSequenceNumber = 0;   // incremented (while holding saveLock) after each frame from saveImage() is saved or discarded
+	private class LiveJpeg {
+		byte[] bytes;
+		long timestamp;
+		public LiveJpeg(byte[] bytes, long timestamp) { this.bytes = bytes; this.timestamp = timestamp; }
+	}
 
 	// camera state
 	private boolean isMjpeg;
@@ -78,19 +88,28 @@ public class ConnectionCamera extends Connection {
 	
 	// images in memory
 	private volatile GLframe liveImage = new GLframe(null, true, 1, 1, "[waiting]", 0);
-	private volatile GLframe oldImage  = new GLframe(null, true, 1, 1, "[waiting]", 0);
+	private GLframe previousLiveImage = null; // guarded by recycledDirectBuffers, recycled after the next replacement because a chart may still be drawing it
+	
+	// pixel buffers of replaced or evicted images, reused for new images of the same size
+	private static final int MAX_RECYCLED_DIRECT_BUFFER_COUNT = 8;
+	private final ArrayDeque<ByteBuffer> recycledDirectBuffers = new ArrayDeque<ByteBuffer>(); // oldest first
+	
+	// decoded images for playback, in least-recently-used order
+	private static final long MAX_DECODED_BYTE_COUNT = 128 * 1024 * 1024;
+	private static final int PREFETCH_FRAME_COUNT = 4; // frames to decode ahead of the playback direction
+	private final LinkedHashMap<Integer, GLframe> decodedFrames = new LinkedHashMap<Integer, GLframe>(16, 0.75f, true); // key = frame number
+	private final Set<Integer> prefetchingFrames = new HashSet<Integer>(); // frame numbers queued for decoding, guarded by decodedFrames
+	private long decodedByteCount = 0; // guarded by decodedFrames
+	private int previousPlaybackFrameNumber = -1;
+	private volatile int playbackMaxWidth = 0;  // region requested by the most recent call to getImageAtOrBeforeTimestamp(), in pixels
+	private volatile int playbackMaxHeight = 0;
 	
 	// images archived to disk
-	private class FrameInfo {
-		long timestamp; // when this frame was captured, milliseconds since 1970-01-01
-		long offset;    // byte offset in the file where the jpeg starts
-		int  length;    // byte count of the jpeg
-		public FrameInfo(long timestamp, long offset, int length) { this.timestamp = timestamp; this.offset = offset; this.length = length; }
-	}
-	private volatile List<FrameInfo> framesIndex = Collections.synchronizedList(new ArrayList<FrameInfo>()); // index = frame number
+	private final StorageFrames framesIndex = new StorageFrames(); // index = frame number
 	private volatile Path pathOnDisk = Paths.get("cache/" + this.toString() + ".mjpg");
 	private volatile FileChannel file;
 	private volatile boolean fileIsImported;
+	private volatile MappedFile mappedFile; // only used if fileIsImported
 	
 	public ConnectionCamera() {
 		
@@ -308,8 +327,9 @@ public class ConnectionCamera extends Connection {
 		// it's also possible that the file is closed if we imported a CSV file without importing the corresponding camera files.
 		if(fileIsImported || !file.isOpen()) {
 			try {
+				mappedFile = null;
 				file.close();
-				framesIndex.clear();
+				clearFramesIndex();
 				CommunicationView.instance.redraw();
 				file = FileChannel.open(pathOnDisk, StandardOpenOption.CREATE,
 				                                    StandardOpenOption.TRUNCATE_EXISTING,
@@ -331,15 +351,12 @@ public class ConnectionCamera extends Connection {
 				try {
 					
 					// connect to the stream
-					liveImage = new GLframe(null, true, 1, 1, "[connecting...]", 0);
+					setLiveImage(new GLframe(null, true, 1, 1, "[connecting...]", 0));
 					URLConnection stream = new URL(name.substring(mjpegOverHttp.length() + 1)).openConnection(); // trim off leading "MJPEG over HTTP "
 					stream.setConnectTimeout(5000);
 					stream.setReadTimeout(5000);
 					stream.connect();
-					InputStream is = stream.getInputStream();
-					
-					StringWriter buffer = null;
-					int i = 0;
+					MjpegStreamParser parser = new MjpegStreamParser(stream.getInputStream(), stream.getContentType());
 					
 					connected = true;
 					CommunicationView.instance.redraw();
@@ -350,39 +367,8 @@ public class ConnectionCamera extends Connection {
 					// enter an infinite loop that gets the frames
 					while(true) {
 						
-						// wait for (and skip over) the content-type and content-length fields
-						buffer = new StringWriter();
-						while(true) {
-							i = is.read();
-							if(i == -1)
-								throw new Exception();
-							if(buffer.getBuffer().length() > 5000)
-								throw new ConnectException();
-							buffer.write(i);
-							String text = buffer.toString().toLowerCase();
-							if(text.contains("content-type: image/jpeg") && text.endsWith("content-length: "))
-								break;
-						}
-						
-						// get the content-length
-						buffer = new StringWriter();
-						while(true) {
-							i = is.read();
-							if(i == -1)
-								throw new Exception();
-							if(buffer.getBuffer().length() > 5000)
-								throw new ConnectException();
-							buffer.write(i);
-							if(buffer.toString().endsWith("\r\n\r\n"))
-								break;
-						}
-						int contentLength = Integer.parseInt(buffer.toString().trim());
-						
 						// get the jpeg bytes
-						byte[] jpegBytes = new byte[contentLength];
-						int bytesReceivedCount = 0;
-						while(bytesReceivedCount < contentLength)
-							bytesReceivedCount += is.read(jpegBytes, bytesReceivedCount, contentLength - bytesReceivedCount);
+						byte[] jpegBytes = parser.readFrame();
 						
 						// save and show the jpeg
 						long timestamp = System.currentTimeMillis();
@@ -397,12 +383,12 @@ public class ConnectionCamera extends Connection {
 					
 				} catch (Exception e) {
 					
-					while(liveJpegThreads.get() > 0); // wait
+					waitForCodecTasks();
 					
-					     if(e instanceof ConnectException)       liveImage = new GLframe(null, true, 1, 1, "[unable to connect]",    0);
-					else if(e instanceof SocketTimeoutException) liveImage = new GLframe(null, true, 1, 1, "[connection timed out]", 0);
-					else if(e instanceof InterruptedException)   liveImage = new GLframe(null, true, 1, 1, "[stopped]",              0);
-					else                                         liveImage = new GLframe(null, true, 1, 1, "[stream ended]",         0);
+					     if(e instanceof ConnectException)       setLiveImage(new GLframe(null, true, 1, 1, "[unable to connect]",    0));
+					else if(e instanceof SocketTimeoutException) setLiveImage(new GLframe(null, true, 1, 1, "[connection timed out]", 0));
+					else if(e instanceof InterruptedException)   setLiveImage(new GLframe(null, true, 1, 1, "[stopped]",              0));
+					else                                         setLiveImage(new GLframe(null, true, 1, 1, "[stream ended]",         0));
 					     
 					if(e instanceof MalformedURLException)
 						SwingUtilities.invokeLater(() -> disconnect("Unable to connect to " + name.substring(mjpegOverHttp.length() + 1))); // invokeLater to prevent deadlock
@@ -421,17 +407,17 @@ public class ConnectionCamera extends Connection {
 		
 			receiverThread = new Thread(() -> {
 				
-				liveImage = new GLframe(null, true, 1, 1, "[connecting...]", 0);
+				setLiveImage(new GLframe(null, true, 1, 1, "[connecting...]", 0));
 				
 				// check if the camera exists
 				if(camera == null) {
-					liveImage = new GLframe(null, true, 1, 1, "[camera does not exist]", 0);
+					setLiveImage(new GLframe(null, true, 1, 1, "[camera does not exist]", 0));
 					return;
 				}
 				
 				// check if the camera is already being used
 				if(camera.isOpen()) {
-					liveImage = new GLframe(null, true, 1, 1, "[camera already in use]", 0);
+					setLiveImage(new GLframe(null, true, 1, 1, "[camera already in use]", 0));
 					return;
 				}
 				
@@ -452,18 +438,18 @@ public class ConnectionCamera extends Connection {
 						NotificationsController.showHintUntil("Add a chart by clicking on a tile, or by clicking-and-dragging across multiple tiles.", () -> !ChartsController.getCharts().isEmpty(), true);
 		
 					// enter an infinite loop that acquires images
-					int frameCount = framesIndex.size();
+					// saveImage() and showImage() copy the image, so one buffer is reused for every capture
+					ByteBuffer buffer = Buffers.newDirectByteBuffer(resolution.width * resolution.height * 3);
 					while(true) {
 						
 						// acquire a new image
-						ByteBuffer buffer = Buffers.newDirectByteBuffer(resolution.width * resolution.height * 3);
+						buffer.clear();
 						camera.getImageBytes(buffer);
 						
 						// save and show the image
 						long timestamp = System.currentTimeMillis();
-						saveImage(frameCount, buffer, resolution, timestamp);
+						saveImage(buffer, resolution, timestamp);
 						showImage(buffer, resolution, timestamp);
-						frameCount++;
 						
 						// stop if requested
 						if(!connected)
@@ -473,12 +459,12 @@ public class ConnectionCamera extends Connection {
 					
 				} catch(Exception e) {
 					
-					while(liveJpegThreads.get() > 0); // wait
+					waitForCodecTasks();
 					camera.close();
 					
-					     if(e instanceof WebcamException)     liveImage = new GLframe(null, true, 1, 1, "[unable to connect]", 0);
-					else if(e instanceof WebcamLockException) liveImage = new GLframe(null, true, 1, 1, "[unable to connect]", 0);
-					else						              liveImage = new GLframe(null, true, 1, 1, "[stopped]", 0);
+					     if(e instanceof WebcamException)     setLiveImage(new GLframe(null, true, 1, 1, "[unable to connect]", 0));
+					else if(e instanceof WebcamLockException) setLiveImage(new GLframe(null, true, 1, 1, "[unable to connect]", 0));
+					else						              setLiveImage(new GLframe(null, true, 1, 1, "[stopped]", 0));
 					
 					connected = false;
 					CommunicationView.instance.redraw();
@@ -524,7 +510,7 @@ public class ConnectionCamera extends Connection {
 		
 		CommunicationView.instance.redraw();
 		
-		liveImage = new GLframe(null, true, 1, 1, "[stopped]", 0);
+		setLiveImage(new GLframe(null, true, 1, 1, "[stopped]", 0));
 		
 	}
 	
@@ -533,8 +519,8 @@ public class ConnectionCamera extends Connection {
 	 */
 	public long getFileSize() {
 		
-		int frameCount = getSampleCount();
-		return framesIndex.get(frameCount - 1).offset + framesIndex.get(frameCount - 1).length;
+		int frameCount = framesIndex.size();
+		return framesIndex.getOffset(frameCount - 1) + framesIndex.getLength(frameCount - 1);
 		
 	}
 
@@ -558,9 +544,10 @@ public class ConnectionCamera extends Connection {
 			ChartsController.removeAllCharts();
 		
 		try {
+			mappedFile = null;
 			file.close();
 			Files.deleteIfExists(pathOnDisk);
-			framesIndex.clear();
+			clearFramesIndex();
 			CommunicationView.instance.redraw();
 		} catch(Exception e) {
 			NotificationsController.showCriticalFault("Unable the delete the cache file for " + name + "\n" + e.getMessage());
@@ -575,7 +562,7 @@ public class ConnectionCamera extends Connection {
 			try {
 				file.truncate(0);
 				file.force(true);
-				framesIndex.clear();
+				clearFramesIndex();
 				CommunicationView.instance.redraw();
 			} catch(Exception e) {
 				NotificationsController.showCriticalFault("Unable the clear the cache file for " + name + "\n" + e.getMessage());
@@ -590,10 +577,15 @@ public class ConnectionCamera extends Connection {
 	/**
 	 * Gets the most recent image.
 	 * 
-	 * @return    A GLframe object containing the most recent image and related information.
+	 * @param maxWidth     Width of the region the image will be fit into, in pixels. Future JPEGs will be decoded at a scale that just covers this region.
+	 * @param maxHeight    Height of the region the image will be fit into, in pixels.
+	 * @return             A GLframe object containing the most recent image and related information.
 	 */
-	public GLframe getLiveImage() {
+	public GLframe getLiveImage(int maxWidth, int maxHeight) {
 		
+		// multiple charts may show this camera, so use the largest region requested by any of them
+		liveMaxWidth.accumulateAndGet(maxWidth, Math::max);
+		liveMaxHeight.accumulateAndGet(maxHeight, Math::max);
 		return liveImage;
 		
 	}
@@ -609,13 +601,10 @@ public class ConnectionCamera extends Connection {
 	 */
 	public long getClosestTimestampAtOrBefore(long timestamp) {
 
-		// get the closest frame number
-		for(int frameNumber = framesIndex.size() - 1; frameNumber >= 0; frameNumber--)
-			if(framesIndex.get(frameNumber).timestamp <= timestamp)
-				return framesIndex.get(frameNumber).timestamp;
+		int frameNumber = framesIndex.getFrameNumberAtOrBefore(timestamp);
 		
 		// edge cases: no frames, or every frame is *after* the desired timestamp
-		return 0;
+		return (frameNumber < 0) ? 0 : framesIndex.getTimestamp(frameNumber);
 		
 	}
 	
@@ -628,88 +617,180 @@ public class ConnectionCamera extends Connection {
 	 */
 	public long getClosestTimestampAtOrAfter(long timestamp) {
 
-		// get the closest frame number
-		for(int frameNumber = 0; frameNumber < framesIndex.size(); frameNumber++)
-			if(framesIndex.get(frameNumber).timestamp >= timestamp)
-				return framesIndex.get(frameNumber).timestamp;
+		int frameNumber = framesIndex.getFrameNumberAtOrAfter(timestamp);
 		
 		// edge cases: no frames, or every frame is *before* the desired timestamp
-		return 0;
+		return (frameNumber < 0) ? 0 : framesIndex.getTimestamp(frameNumber);
 		
 	}
 	
 	/**
 	 * Gets the closest image at or just before a certain moment in time.
+	 * Decoded images are cached, and a few frames ahead of the playback direction are decoded in the background.
 	 * 
 	 * @param timestamp    The moment in time (milliseconds since 1970-01-01.)
+	 * @param maxWidth     Width of the region the image will be fit into, in pixels. The JPEG will be decoded at a scale that just covers this region.
+	 * @param maxHeight    Height of the region the image will be fit into, in pixels.
 	 * @return             The image and related information, as a GLframe object.
 	 */
-	public GLframe getImageAtOrBeforeTimestamp(long timestamp) {
+	public GLframe getImageAtOrBeforeTimestamp(long timestamp, int maxWidth, int maxHeight) {
+		
+		playbackMaxWidth = maxWidth;
+		playbackMaxHeight = maxHeight;
 		
-		// give up if there's no images
-		if(framesIndex.isEmpty())
+		// give up if there's no frame at or before the specified timestamp
+		int frameNumber = framesIndex.getFrameNumberAtOrBefore(timestamp);
+		if(frameNumber < 0)
 			return new GLframe(null, true, 1, 1, "[no image]", 0);
 		
-		// determine the frame index
-		int frameIndex = framesIndex.size() - 1;
-		long frameTimestamp = framesIndex.get(frameIndex).timestamp;
+		GLframe frame = getDecodedFrame(frameNumber);
 		
-		for(int i = frameIndex - 1; i >= 0; i--) {
-			long timestamp2 = framesIndex.get(i).timestamp;
-			if(timestamp2 <= timestamp) {
-				frameIndex = i;
-				frameTimestamp = timestamp2;
-				break;
+		// obtain and decompress the jpeg if it's not cached, or if the cached image was scaled down too much
+		if(frame == null || !frame.covers(maxWidth, maxHeight)) {
+			ByteBuffer jpegBytes = null;
+			try {
+				jpegBytes = readJpeg(frameNumber);
+			} catch(Exception e) {
+				e.printStackTrace();
+				return new GLframe(null, true, 1, 1, "[error reading image from disk]", 0);
+			}
+			try {
+				frame = decodeJpeg(frameNumber, jpegBytes, maxWidth, maxHeight);
+				cacheDecodedFrame(frameNumber, frame);
+			} catch(Exception e) {
+				e.printStackTrace();
+				return new GLframe(null, true, 1, 1, "[error decoding image]", 0);
 			}
 		}
 		
-		// give up if there's no frame before the specified timestamp
-		if(frameTimestamp > timestamp)
-			return new GLframe(null, true, 1, 1, "[no image]", 0);
+		// decode the next few frames in the background
+		if(frameNumber != previousPlaybackFrameNumber) {
+			int direction = (frameNumber > previousPlaybackFrameNumber) ? 1 : -1;
+			previousPlaybackFrameNumber = frameNumber;
+			int frameCount = framesIndex.size();
+			for(int i = 1; i <= PREFETCH_FRAME_COUNT; i++) {
+				int prefetchFrameNumber = frameNumber + i * direction;
+				if(prefetchFrameNumber < 0 || prefetchFrameNumber >= frameCount)
+					break;
+				synchronized(decodedFrames) {
+					GLframe cachedFrame = decodedFrames.get(prefetchFrameNumber);
+					if((cachedFrame != null && cachedFrame.covers(maxWidth, maxHeight)) || !prefetchingFrames.add(prefetchFrameNumber))
+						continue;
+				}
+				JpegCodecPool.submit(() -> {
+					try {
+						cacheDecodedFrame(prefetchFrameNumber, decodeJpeg(prefetchFrameNumber, readJpeg(prefetchFrameNumber), playbackMaxWidth, playbackMaxHeight));
+					} catch(Exception e) {
+						// ignore, the frame will be decoded again if it's actually shown
+					}
+					synchronized(decodedFrames) {
+						prefetchingFrames.remove(prefetchFrameNumber);
+					}
+				});
+			}
+		}
 		
-		// return cached image if appropriate
-		if(frameTimestamp == oldImage.timestamp)
-			return oldImage;
+		return frame;
 		
-		// obtain and decompress the jpeg
-		FrameInfo info = framesIndex.get(frameIndex);
-		byte[] jpegBytes = new byte[info.length];
-		try {
-			file.read(ByteBuffer.wrap(jpegBytes), info.offset);
-		} catch(Exception e) {
-			e.printStackTrace();
-			return new GLframe(null, true, 1, 1, "[error reading image from disk]", 0);
-		}
+	}
+	
+	/**
+	 * Gets the JPEG for a frame. If the file was imported, this is a slice of the memory-mapped file, so nothing is copied.
+	 * 
+	 * @param frameNumber    The frame number.
+	 * @return               The JPEG bytes.
+	 * @throws IOException   If the file could not be read.
+	 */
+	private ByteBuffer readJpeg(int frameNumber) throws IOException {
 		
-		int width = 0;
-		int height = 0;
-		byte[] bgrBytes = null;
-		String label = String.format("%s (%s)", isMjpeg ? name.substring(mjpegOverHttp.length() + 1) : name, timestampFormatter.format(new Date(info.timestamp)));
+		MappedFile mapping = mappedFile;
+		if(mapping != null)
+			return mapping.slice(framesIndex.getOffset(frameNumber), framesIndex.getLength(frameNumber));
 		
-		try {
-			// try to use the libjpeg-turbo library
-			TJDecompressor tjd = new TJDecompressor(jpegBytes);
-			width = tjd.getWidth();
-			height = tjd.getHeight();
-			bgrBytes = new byte[width * height * 3];
-			tjd.decompress(bgrBytes, 0, 0, width, 0, height, TJ.PF_BGR, 0);
-			tjd.close();
-			oldImage = new GLframe(bgrBytes, true, width, height, label, info.timestamp);
-			return oldImage;
-		} catch(Error | Exception e) {
-			// fallback to the JRE library
-			try {
-				BufferedImage bi = ImageIO.read(new ByteArrayInputStream(jpegBytes));
-				width = bi.getWidth();
-				height = bi.getHeight();
-				bgrBytes = ((DataBufferByte)bi.getRaster().getDataBuffer()).getData();
-				oldImage = new GLframe(bgrBytes, true, width, height, label, info.timestamp);
-				return oldImage;
-			} catch(Exception e2) {
-				e.printStackTrace();
-				return new GLframe(null, true, 1, 1, "[error decoding image]", 0);
+		ByteBuffer jpegBytes = ByteBuffer.allocate(framesIndex.getLength(frameNumber));
+		file.read(jpegBytes, framesIndex.getOffset(frameNumber));
+		return jpegBytes.flip();
+		
+	}
+	
+	/**
+	 * Decodes the JPEG for a frame, using the calling thread's codec.
+	 * 
+	 * @param frameNumber    The frame number.
+	 * @param jpegBytes      The JPEG bytes.
+	 * @param maxWidth       Width of the region the image will be fit into, in pixels.
+	 * @param maxHeight      Height of the region the image will be fit into, in pixels.
+	 * @return               The image and related information, as a GLframe object.
+	 * @throws Exception     If the image could not be decoded.
+	 */
+	private GLframe decodeJpeg(int frameNumber, ByteBuffer jpegBytes, int maxWidth, int maxHeight) throws Exception {
+		
+		long timestamp = framesIndex.getTimestamp(frameNumber);
+		String label = String.format("%s (%s)", isMjpeg ? name.substring(mjpegOverHttp.length() + 1) : name, timestampFormatter.format(new Date(timestamp)));
+		JpegCodecPool.Codec codec = JpegCodecPool.getCodec();
+		codec.decode(jpegBytes, maxWidth, maxHeight);
+		GLframe frame = new GLframe(copyToDirectBuffer(codec.pixels, codec.width * codec.height * 3), codec.width, codec.height, label, timestamp);
+		frame.isBgr = true;
+		frame.isScaledDown = codec.isScaledDown;
+		return frame;
+		
+	}
+	
+	/**
+	 * @param frameNumber    The frame number.
+	 * @return               The cached decoded image, or null if it is not cached.
+	 */
+	private GLframe getDecodedFrame(int frameNumber) {
+		
+		synchronized(decodedFrames) {
+			GLframe frame = decodedFrames.get(frameNumber);
+			// the frames index may have been cleared and refilled since this frame was decoded
+			if(frame != null && frame.timestamp != framesIndex.getTimestamp(frameNumber)) {
+				decodedFrames.remove(frameNumber);
+				decodedByteCount -= frame.buffer.capacity();
+				frame = null;
 			}
+			return frame;
+		}
+		
+	}
+	
+	/**
+	 * Adds a decoded image to the cache, evicting the least-recently-used images if the cache is full.
+	 * 
+	 * @param frameNumber    The frame number.
+	 * @param frame          The decoded image.
+	 */
+	private void cacheDecodedFrame(int frameNumber, GLframe frame) {
+		
+		synchronized(decodedFrames) {
+			GLframe oldFrame = decodedFrames.put(frameNumber, frame);
+			if(oldFrame != null)
+				decodedByteCount -= oldFrame.buffer.capacity();
+			decodedByteCount += frame.buffer.capacity();
+			
+			Iterator<GLframe> iterator = decodedFrames.values().iterator();
+			while(decodedByteCount > MAX_DECODED_BYTE_COUNT && decodedFrames.size() > 1) {
+				ByteBuffer evicted = iterator.next().buffer;
+				decodedByteCount -= evicted.capacity();
+				iterator.remove();
+				recycleDirectBuffer(evicted);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Empties the frames index and the cache of decoded images.
+	 */
+	private void clearFramesIndex() {
+		
+		framesIndex.clear();
+		synchronized(decodedFrames) {
+			decodedFrames.clear();
+			decodedByteCount = 0;
 		}
+		previousPlaybackFrameNumber = -1;
 		
 	}
 
@@ -766,13 +847,13 @@ public class ConnectionCamera extends Connection {
 		
 	}
 
-	@Override public long getTimestamp(int sampleNumber) {
+	@Override public long getTimestamp(long sampleNumber) {
 
-		return framesIndex.get(sampleNumber).timestamp;
+		return framesIndex.getTimestamp((int) sampleNumber); // frames are indexed with an int, which is enough for years of video
 		
 	}
 	
-	@Override public int getSampleCount() {
+	@Override public long getSampleCount() {
 		
 		return framesIndex.size();
 		
@@ -791,6 +872,8 @@ public class ConnectionCamera extends Connection {
 		// remove any existing frames and the cache file
 		try {
 			removeAllData();
+			clearFramesIndex();
+			mappedFile = null;
 			file.close();
 			Files.deleteIfExists(pathOnDisk);
 		} catch(Exception e) {
@@ -806,6 +889,12 @@ public class ConnectionCamera extends Connection {
 			name = details.connectionName;
 			file = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
 			fileIsImported = true;
+			
+			// memory-map the file, so frames can be decoded directly from the mapping
+			int maxFrameLength = 0;
+			for(int i = 0; i < framesIndexBuffer.capacity() / 20; i++)
+				maxFrameLength = Math.max(maxFrameLength, framesIndexBuffer.getInt(i * 20 + 16));
+			mappedFile = new MappedFile(file, maxFrameLength);
 		} catch(Exception e) {
 			NotificationsController.showFailureForMilliseconds("Unable to import the MKV file for " + name + "\n" + e.getMessage(), 5000, false);
 			e.printStackTrace();
@@ -844,7 +933,7 @@ public class ConnectionCamera extends Connection {
 						break; // not real-time, and interrupted again, so abort
 					}
 					
-					framesIndex.add(new FrameInfo(timestamp, offset, length));
+					framesIndex.append(timestamp, offset, length);
 					if(getSampleCount() == 1)
 						CommunicationView.instance.redraw();
 					completedByteCount.addAndGet(length);
@@ -890,7 +979,7 @@ public class ConnectionCamera extends Connection {
 	private void saveJpeg(byte[] jpegBytes, long timestamp) {
 		
 		try {
-			framesIndex.add(new FrameInfo(timestamp, file.size(), jpegBytes.length));
+			framesIndex.append(timestamp, file.size(), jpegBytes.length);
 			if(getSampleCount() == 1)
 				CommunicationView.instance.redraw();
 			file.write(ByteBuffer.wrap(jpegBytes));
@@ -904,137 +993,152 @@ public class ConnectionCamera extends Connection {
 	}
 	
 	/**
-	 * Spawns a new thread that will decode a JPEG image and update the liveImage object.
-	 * If there is a backlog of images to decode, this image may be skipped.
+	 * Queues a JPEG image to be decoded by the JpegCodecPool, which will then update the liveImage object.
+	 * Only the newest image is kept: if a previous image is still waiting to be decoded, it will be skipped.
 	 * 
 	 * @param jpegBytes    The image to decode.
 	 * @param timestamp    When the image was captured (milliseconds since 1970-01-01.)
 	 */
 	private void showJpeg(byte[] jpegBytes, long timestamp) {
 		
-		// skip this frame if backlogged
-		int threadCount = liveJpegThreads.incrementAndGet();
-		if(threadCount > 5) {
-			liveJpegThreads.decrementAndGet();
-			return;
+		pendingLiveJpeg.set(new LiveJpeg(jpegBytes, timestamp));
+		
+		// only one decode task per camera, so decoded images can't be shown out of order
+		if(liveDecodeScheduled.compareAndSet(false, true)) {
+			pendingCodecTasks.incrementAndGet();
+			JpegCodecPool.submit(this::decodeLiveJpeg);
 		}
 		
-		new Thread(() -> {
+	}
+	
+	/**
+	 * Decodes the newest queued JPEG image and updates the liveImage object. This runs on a JpegCodecPool thread.
+	 * If another image was queued in the meantime, a new task is submitted for it, so one camera can't monopolize a pool thread.
+	 */
+	private void decodeLiveJpeg() {
+		
+		LiveJpeg jpeg = pendingLiveJpeg.getAndSet(null);
+		
+		if(jpeg != null) {
 			try {
-				
-				int width = 0;
-				int height = 0;
-				byte[] bgrBytes = null;
-				
-				try {
-					// try to use the libjpeg-turbo library
-					TJDecompressor tjd = new TJDecompressor(jpegBytes);
-					width = tjd.getWidth();
-					height = tjd.getHeight();
-					bgrBytes = new byte[width * height * 3];
-					tjd.decompress(bgrBytes, 0, 0, width, 0, height, TJ.PF_BGR, 0);
-					tjd.close();
-				} catch(Error | Exception e) {
-					// fallback to the JRE library
-					BufferedImage bi = ImageIO.read(new ByteArrayInputStream(jpegBytes));
-					width = bi.getWidth();
-					height = bi.getHeight();
-					bgrBytes = ((DataBufferByte)bi.getRaster().getDataBuffer()).getData();
+				// decode at a scale that covers the largest region requested since the previous decode
+				int maxWidth = liveMaxWidth.getAndSet(0);
+				int maxHeight = liveMaxHeight.getAndSet(0);
+				if(maxWidth > 0 && maxHeight > 0) {
+					liveDecodeWidth = maxWidth;
+					liveDecodeHeight = maxHeight;
 				}
+				JpegCodecPool.Codec codec = JpegCodecPool.getCodec();
+				codec.decode(jpeg.bytes, jpeg.bytes.length, liveDecodeWidth, liveDecodeHeight);
 				
 				// update the liveImage object
 				int frameCount = framesIndex.size();
 				double fps = 0;
 				if(frameCount > 30)
-					fps = 30000.0 / (double) (framesIndex.get(frameCount - 1).timestamp - framesIndex.get(frameCount - 30).timestamp);
-				String label = String.format("%s (%d x %d, %01.1f FPS)", isMjpeg ? name.substring(mjpegOverHttp.length() + 1) : name, width, height, fps);
-				liveImage = new GLframe(bgrBytes, true, width, height, label, timestamp);
-				
-				liveJpegThreads.decrementAndGet();
-				
+					fps = 30000.0 / (double) (framesIndex.getTimestamp(frameCount - 1) - framesIndex.getTimestamp(frameCount - 30));
+				String label = String.format("%s (%d x %d, %01.1f FPS)", isMjpeg ? name.substring(mjpegOverHttp.length() + 1) : name, codec.nativeWidth, codec.nativeHeight, fps);
+				GLframe frame = new GLframe(copyToDirectBuffer(codec.pixels, codec.width * codec.height * 3), codec.width, codec.height, label, jpeg.timestamp);
+				frame.isBgr = true;
+				frame.isScaledDown = codec.isScaledDown;
+				setLiveImage(frame);
 			} catch(Exception e) {
-				
 				NotificationsController.showFailureForMilliseconds("Unable to decode one of the frames from " + name + "\n" + e.getMessage(), 5000, true);
 				e.printStackTrace();
-				liveJpegThreads.decrementAndGet();
-				
 			}
-		}).start();
+		}
+		
+		// reschedule if a newer image arrived, otherwise allow showJpeg() to schedule the next task
+		liveDecodeScheduled.set(false);
+		if(pendingLiveJpeg.get() != null && liveDecodeScheduled.compareAndSet(false, true)) {
+			pendingCodecTasks.incrementAndGet();
+			JpegCodecPool.submit(this::decodeLiveJpeg);
+		}
+		codecTaskFinished();
 		
 	}
 	
 	/**
-	 * Spawns a new thread that will encode a raw image into a JPEG and store that in the dataset.
+	 * Queues a raw image to be encoded into a JPEG by the JpegCodecPool, which will then store it in the dataset.
+	 * Every image is encoded, and they are appended to the file in the order they were received.
 	 * 
-	 * @param frameNumber    The frame number.
-	 * @param image          The image.
-	 * @param resolution     Size of the image, in pixels.
-	 * @param timestamp      When the image was captured (milliseconds since 1970-01-01.)
+	 * @param image         The image.
+	 * @param resolution    Size of the image, in pixels.
+	 * @param timestamp     When the image was captured (milliseconds since 1970-01-01.)
 	 */
-	private void saveImage(int frameNumber, ByteBuffer image, Dimension resolution, long timestamp) {
+	private void saveImage(ByteBuffer image, Dimension resolution, long timestamp) {
 		
-		byte[] bytes = new byte[image.capacity()];
+		byte[] recycled = recycledRgbBuffers.poll();
+		byte[] bytes = (recycled != null && recycled.length == image.capacity()) ? recycled : new byte[image.capacity()];
 		image.get(bytes);
-		liveJpegThreads.incrementAndGet();
+		long sequenceNumber = encodeSequenceNumber++;
+		pendingCodecTasks.incrementAndGet();
 		
-		new Thread(() -> {
-			
-			byte[] jpegBytes = null;
-			int jpegBytesLength = 0;
+		// tasks are started in submission order, so any earlier frame is already being encoded by another pool thread when this one waits for it
+		JpegCodecPool.submit(() -> {
 			
+			JpegCodecPool.Codec codec = JpegCodecPool.getCodec();
+			boolean encoded = false;
 			try {
-				// try to use the libjpeg-turbo library
-				TJCompressor tjc = new TJCompressor(bytes, 0, 0, resolution.width, 0, resolution.height, TJ.PF_RGB);
-				tjc.setJPEGQuality(80);
-				tjc.setSubsamp(TJ.SAMP_422);
-				jpegBytes = tjc.compress(0);
-				jpegBytesLength = tjc.getCompressedSize();
-				tjc.close();
-			} catch(Error | Exception e) {
-				// fallback to the JRE library
+				codec.encode(bytes, resolution.width, resolution.height);
+				encoded = true;
+			} catch(Exception e) {
+				NotificationsController.showFailureForMilliseconds("Unable to encode one of the frames from " + name + "\n" + e.getMessage(), 5000, true);
+				e.printStackTrace();
+			}
+			recycledRgbBuffers.offer(bytes);
+			
+			synchronized(saveLock) {
+				
+				// wait for previous frames to be saved before inserting this frame
+				while(saveSequenceNumber < sequenceNumber)
+					try { saveLock.wait(); } catch(InterruptedException e) { }
+				
+				// save to disk, or discard the frame if it could not be encoded
 				try {
-					// convert rgb to bgr
-					for(int i = 0; i < bytes.length; i +=3) {
-						byte red  = bytes[i];
-						byte blue = bytes[i+2];
-						bytes[i]   = blue;
-						bytes[i+2] = red;
+					if(encoded) {
+						framesIndex.append(timestamp, file.size(), codec.jpegLength);
+						if(getSampleCount() == 1)
+							CommunicationView.instance.redraw();
+						file.write(ByteBuffer.wrap(codec.jpeg, 0, codec.jpegLength));
+						file.force(true);
 					}
-					BufferedImage bi = new BufferedImage(resolution.width, resolution.height, BufferedImage.TYPE_3BYTE_BGR);
-					bi.setData(Raster.createRaster(bi.getSampleModel(), new DataBufferByte(bytes, bytes.length), new Point()));
-					ByteArrayOutputStream baos = new ByteArrayOutputStream();
-					ImageIO.write(bi, "jpg", baos);
-					jpegBytes = baos.toByteArray();
-					jpegBytesLength = jpegBytes.length;
-					baos.close();
-				} catch(Exception e2) {
-					NotificationsController.showFailureForMilliseconds("Unable to encode one of the frames from " + name + "\n" + e.getMessage(), 5000, true);
+				} catch (Exception e) {
+					NotificationsController.showCriticalFault("Unable to save one of the frames from " + name + "\n" + e.getMessage());
 					e.printStackTrace();
-					liveJpegThreads.decrementAndGet();
-					return;
 				}
+				
+				saveSequenceNumber++;
+				saveLock.notifyAll();
+				
 			}
 			
-			// wait for previous encoding threads to finish before inserting this frame
-			while(framesIndex.size() < frameNumber);
-			
-			// save to disk
-			try {
-				framesIndex.add(new FrameInfo(timestamp, file.size(), jpegBytesLength));
-				if(getSampleCount() == 1)
-					CommunicationView.instance.redraw();
-				file.write(ByteBuffer.wrap(jpegBytes, 0, jpegBytesLength));
-				file.force(true);
-			} catch (Exception e) {
-				NotificationsController.showCriticalFault("Unable to save one of the frames from " + name + "\n" + e.getMessage());
-				e.printStackTrace();
-				liveJpegThreads.decrementAndGet();
-				return;
-			}
-			
-			liveJpegThreads.decrementAndGet();
+			codecTaskFinished();
 			
-		}).start();
+		});
+		
+	}
+	
+	/**
+	 * Called by a JpegCodecPool task when it has finished.
+	 */
+	private void codecTaskFinished() {
+		
+		synchronized(pendingCodecTasks) {
+			if(pendingCodecTasks.decrementAndGet() == 0)
+				pendingCodecTasks.notifyAll();
+		}
+		
+	}
+	
+	/**
+	 * Blocks until all queued or running JpegCodecPool tasks for this camera have finished.
+	 */
+	private void waitForCodecTasks() {
+		
+		synchronized(pendingCodecTasks) {
+			while(pendingCodecTasks.get() > 0)
+				try { pendingCodecTasks.wait(); } catch(InterruptedException e) { }
+		}
 		
 	}
 	
@@ -1050,11 +1154,84 @@ public class ConnectionCamera extends Connection {
 		int frameCount = framesIndex.size();
 		double fps = 0;
 		if(frameCount > 30)
-			fps = 30000.0 / (double) (framesIndex.get(frameCount - 1).timestamp - framesIndex.get(frameCount - 30).timestamp);
+			fps = 30000.0 / (double) (framesIndex.getTimestamp(frameCount - 1) - framesIndex.getTimestamp(frameCount - 30));
 		String label = String.format("%s (%d x %d, %01.1f FPS)", isMjpeg ? name.substring(mjpegOverHttp.length() + 1) : name, resolution.width, resolution.height, fps);
 		
 		image.rewind();
-		liveImage = new GLframe(image, resolution.width, resolution.height, label, timestamp);
+		ByteBuffer buffer = getDirectBuffer(image.remaining());
+		buffer.put(image).rewind();
+		setLiveImage(new GLframe(buffer, resolution.width, resolution.height, label, timestamp));
+		
+	}
+	
+	/**
+	 * Replaces the liveImage object.
+	 * The pixel buffer of the image it replaced is recycled after the next replacement, because a chart may still be drawing that image.
+	 * 
+	 * @param frame    The new image.
+	 */
+	private void setLiveImage(GLframe frame) {
+		
+		synchronized(recycledDirectBuffers) {
+			if(previousLiveImage != null)
+				recycleDirectBuffer(previousLiveImage.buffer);
+			previousLiveImage = liveImage;
+			liveImage = frame;
+		}
+		
+	}
+	
+	/**
+	 * Gets a direct buffer for an image, reusing a recycled buffer of the same size if possible.
+	 * 
+	 * @param byteCount    Size of the buffer, in bytes.
+	 * @return             The buffer, with its position at 0.
+	 */
+	private ByteBuffer getDirectBuffer(int byteCount) {
+		
+		synchronized(recycledDirectBuffers) {
+			Iterator<ByteBuffer> iterator = recycledDirectBuffers.iterator();
+			while(iterator.hasNext()) {
+				ByteBuffer buffer = iterator.next();
+				if(buffer.capacity() == byteCount) {
+					iterator.remove();
+					buffer.clear();
+					return buffer;
+				}
+			}
+		}
+		
+		return Buffers.newDirectByteBuffer(byteCount);
+		
+	}
+	
+	/**
+	 * Copies pixels into a direct buffer for an image.
+	 * 
+	 * @param bytes        The pixels. This may be larger than the image if it is a reused decode buffer.
+	 * @param byteCount    Size of the image, in bytes.
+	 * @return             The direct buffer, with its position at 0.
+	 */
+	private ByteBuffer copyToDirectBuffer(byte[] bytes, int byteCount) {
+		
+		ByteBuffer buffer = getDirectBuffer(byteCount);
+		buffer.put(bytes, 0, byteCount).rewind();
+		return buffer;
+		
+	}
+	
+	/**
+	 * Makes a direct buffer available to getDirectBuffer(). The oldest recycled buffer is discarded if too many are waiting to be reused.
+	 * 
+	 * @param buffer    The buffer, which must no longer be used by any image.
+	 */
+	private void recycleDirectBuffer(ByteBuffer buffer) {
+		
+		synchronized(recycledDirectBuffers) {
+			if(recycledDirectBuffers.size() == MAX_RECYCLED_DIRECT_BUFFER_COUNT)
+				recycledDirectBuffers.removeFirst();
+			recycledDirectBuffers.addLast(buffer);
+		}
 		
 	}
 	
@@ -1068,6 +1245,7 @@ public class ConnectionCamera extends Connection {
 		int height;
 		String label;
 		long timestamp;
+		boolean isScaledDown; // if the image was decoded at less than its native resolution
 		
 		public GLframe(byte[] bytes, boolean isBgr, int width, int height, String label, long timestamp) {
 			this.buffer = Buffers.newDirectByteBuffer(width * height * 3);
@@ -1077,7 +1255,7 @@ public class ConnectionCamera extends Connection {
 			this.label = label;
 			this.timestamp = timestamp;
 			if(bytes != null) {
-				buffer.put(bytes);
+				buffer.put(bytes, 0, width * height * 3); // bytes may be larger than the image if it is a reused decode buffer
 				buffer.rewind();
 			} else {
 				byte black = 0;
@@ -1095,6 +1273,15 @@ public class ConnectionCamera extends Connection {
 			this.label = label;
 			this.timestamp = timestamp;
 		}
+		
+		/**
+		 * @param maxWidth     Width of the region the image will be fit into, in pixels.
+		 * @param maxHeight    Height of the region the image will be fit into, in pixels.
+		 * @return             True if this image has at least one pixel per screen pixel when fit into that region, or if it is at its native resolution.
+		 */
+		public boolean covers(int maxWidth, int maxHeight) {
+			return !isScaledDown || Math.min((float) maxWidth / (float) width, (float) maxHeight / (float) height) <= 1f;
+		}
 	}
 	
 	private static class MkvDetails {
@@ -1159,6 +1346,11 @@ public class ConnectionCamera extends Connection {
 		private final byte[] CUE_TRACK            = new byte[] {(byte) 0xF7};
 		private final byte[] CUE_CLUSTER_POSITION = new byte[] {(byte) 0xF1};
 		
+		// Cluster limits when exporting
+		private static final long MAX_CLUSTER_DURATION = 1000; // milliseconds, must be <= 32767 because SimpleBlock timestamps are int16
+		private static final long MAX_CLUSTER_BYTE_COUNT = 5 * 1024 * 1024;
+		private static final int CUE_POINT_MAX_BYTE_COUNT = 9 + (1+8+8) + 9 + (1+8+1) + (1+8+8);
+		
 		/**
 		 * Exports the acquired images to an MKV file (containing an MJPEG video stream with no audio.)
 		 * 
@@ -1185,7 +1377,7 @@ public class ConnectionCamera extends Connection {
 			if(frameCount < 1 || framesIndex.size() < frameCount)
 				return;
 			
-			long duration = framesIndex.get(frameCount - 1).timestamp - framesIndex.get(0).timestamp;
+			long duration = framesIndex.getTimestamp(frameCount - 1) - framesIndex.getTimestamp(0);
 			path += ".mkv";
 			
 			// general purpose buffer used for several things
@@ -1268,47 +1460,50 @@ public class ConnectionCamera extends Connection {
 				                                             closeTag();
 				                                         closeTag();
 				
-				long firstTimestamp = framesIndex.get(0).timestamp;
+				long firstTimestamp = framesIndex.getTimestamp(0);
 					
-				// using one Cluster per frame, and one CuePoint per Cluster
-				long[] clusterOffset  = new long[frameCount];
-				long[] frameTimestamp = new long[frameCount];
+				// group frames into Clusters of up to 1 second or 5MB, with one CuePoint per Cluster
+				long[] clusterOffset    = new long[frameCount];
+				long[] clusterTimestamp = new long[frameCount];
+				int clusterCount = 0;
 				int frameN = 0;
 				long cuesOffset = 0;
 				buffer.flip();
 				while(frameN < frameCount) {
-					FrameInfo frame = framesIndex.get(frameN);
-					clusterOffset[frameN] = outputFile.size() - segmentContentsOffset;
-					frameTimestamp[frameN] = frame.timestamp - firstTimestamp;
+					long clusterStart = framesIndex.getTimestamp(frameN) - firstTimestamp;
+					long clusterByteCount = 0;
+					clusterOffset[clusterCount] = outputFile.size() - segmentContentsOffset;
+					clusterTimestamp[clusterCount] = clusterStart;
+					clusterCount++;
 					
 					                                     openTag(CLUSTER);
-					                                         putTag(TIMESTAMP, frameTimestamp[frameN]);
-					long mkvFileOffset =                     putSimpleBlock(0, frame.offset, frame.length);
+					                                         putTag(TIMESTAMP, clusterStart);
+					do {
+						long timestamp = framesIndex.getTimestamp(frameN);
+						long offset = framesIndex.getOffset(frameN);
+						int length = framesIndex.getLength(frameN);
+						long mkvFileOffset =                 putSimpleBlock(timestamp - firstTimestamp - clusterStart, offset, length);
+						
+						buffer.putLong(timestamp);
+						buffer.putLong(mkvFileOffset);
+						buffer.putInt(length);
+						
+						clusterByteCount += length;
+						completedByteCount.addAndGet(length);
+						frameN++;
+					} while(frameN < frameCount &&
+					        framesIndex.getTimestamp(frameN) - firstTimestamp - clusterStart < MAX_CLUSTER_DURATION &&
+					        clusterByteCount + framesIndex.getLength(frameN) <= MAX_CLUSTER_BYTE_COUNT);
 					cuesOffset =                         closeTag();
-					
-					buffer.putLong(frame.timestamp);
-					buffer.putLong(mkvFileOffset);
-					buffer.putInt(frame.length);
-					
-					completedByteCount.addAndGet(frame.length);
-					frameN++;
-					if(frameN % 30 == 0)
-						outputFile.force(true);
 				}
-					
-				                                         openTag(CUES);
-				frameN = 0;
-				while(frameN < frameCount) {
-				                                             openTag(CUE_POINT);
-				                                                 putTag(CUE_TIME, frameTimestamp[frameN]);
-				                                                 openTag(CUE_TRACK_POSITIONS);
-				                                                     putTag(CUE_TRACK, 1);
-				                                                     putTag(CUE_CLUSTER_POSITION, clusterOffset[frameN++]);
-				                                                 closeTag();
-				                                             closeTag();
-				}
-				                                         closeTag();
+				
+				// the CuePoints are assembled in memory and written with a single write() call
+				ByteBuffer cuePoints = ByteBuffer.allocate(clusterCount * CUE_POINT_MAX_BYTE_COUNT);
+				for(int clusterN = 0; clusterN < clusterCount; clusterN++)
+					appendCuePoint(cuePoints, clusterTimestamp[clusterN], clusterOffset[clusterN]);
+				                                         putTag(CUES, cuePoints.flip());
 				                                     closeTag();
+				outputFile.force(true);
 				
 				// update the placeholders for framesIndex and SeekHead
 				outputFile.write(buffer.flip(),                                                           framesIndexOffset);
@@ -1565,6 +1760,65 @@ public class ConnectionCamera extends Connection {
 			
 		}
 		
+		/**
+		 * Appends a CuePoint tag to a buffer (not the file.)
+		 * The CuePoint contains a CueTime and CueTrackPositions, which contains the CueTrack and CueClusterPosition.
+		 * 
+		 * @param buffer             Buffer to append to. This must have at least CUE_POINT_MAX_BYTE_COUNT bytes remaining.
+		 * @param timestamp          Timestamp of the Cluster.
+		 * @param clusterPosition    Offset of the Cluster, relative to the start of the Segment's contents.
+		 */
+		private void appendCuePoint(ByteBuffer buffer, long timestamp, long clusterPosition) {
+			
+			int trackPositionsByteCount = (CUE_TRACK.length + 8 + 1) + (CUE_CLUSTER_POSITION.length + 8 + getByteCount(clusterPosition));
+			int cuePointByteCount = (CUE_TIME.length + 8 + getByteCount(timestamp)) + (CUE_TRACK_POSITIONS.length + 8 + trackPositionsByteCount);
+			
+			buffer.put(CUE_POINT);
+			buffer.putLong(cuePointByteCount | (1L << 56L));
+			appendTag(buffer, CUE_TIME, timestamp);
+			buffer.put(CUE_TRACK_POSITIONS);
+			buffer.putLong(trackPositionsByteCount | (1L << 56L));
+			appendTag(buffer, CUE_TRACK, 1);
+			appendTag(buffer, CUE_CLUSTER_POSITION, clusterPosition);
+			
+		}
+		
+		/**
+		 * Appends a tag to a buffer (not the file.)
+		 * 
+		 * @param buffer    Buffer to append to.
+		 * @param tagId     The tag ID.
+		 * @param data      The tag data, as a long.
+		 */
+		private void appendTag(ByteBuffer buffer, byte[] tagId, long data) {
+			
+			int dataByteCount = getByteCount(data);
+			buffer.put(tagId); // tag ID
+			buffer.putLong(dataByteCount | (1L << 56L)); // tag size
+			for(int i = 0; i < dataByteCount; i++) {
+				int bits = (dataByteCount - i - 1) * 8;
+				buffer.put((byte) ((data >> bits) & 0xFF));
+			}
+			
+		}
+		
+		/**
+		 * @param data    An unsigned integer.
+		 * @return        Number of bytes needed to store it (1-8.)
+		 */
+		private int getByteCount(long data) {
+			
+			return (data & 0xFF00000000000000L) != 0 ? 8 :
+			       (data & 0x00FF000000000000L) != 0 ? 7 :
+			       (data & 0x0000FF0000000000L) != 0 ? 6 :
+			       (data & 0x000000FF00000000L) != 0 ? 5 :
+			       (data & 0x00000000FF000000L) != 0 ? 4 :
+			       (data & 0x0000000000FF0000L) != 0 ? 3 :
+			       (data & 0x000000000000FF00L) != 0 ? 2 :
+			                                           1;
+			
+		}
+		
 		/**
 		 * Appends one frame to the file.
 		 * 
@@ -1588,7 +1842,7 @@ public class ConnectionCamera extends Connection {
 			buffer.put((byte) 0x81); // track number, EBML encoded, but this can NOT simply be padded to 8-bytes like the tag size
 			buffer.put((byte) ((relativeTimestamp >> 8) & 0xFF)); // relative timestamp (int16 relative to the enclosing cluster's timestamp)
 			buffer.put((byte) ((relativeTimestamp >> 0) & 0xFF));
-			buffer.put((byte) 0); // lacing option (no lacing)
+			buffer.put((byte) 0x80); // flags (keyframe, no lacing)
 			
 			// write to file
 			outputFile.write(buffer.flip());
@@ -1651,14 +1905,7 @@ public class ConnectionCamera extends Connection {
 		private void assertTagFound(byte[] tagId, long tagData) throws AssertionError, IOException {
 			
 			int idByteCount = tagId.length;
-			int dataByteCount = (tagData & 0xFF00000000000000L) != 0 ? 8 :
-			                    (tagData & 0x00FF000000000000L) != 0 ? 7 :
-			                    (tagData & 0x0000FF0000000000L) != 0 ? 6 :
-			                    (tagData & 0x000000FF00000000L) != 0 ? 5 :
-			                    (tagData & 0x00000000FF000000L) != 0 ? 4 :
-			                    (tagData & 0x0000000000FF0000L) != 0 ? 3 :
-			                    (tagData & 0x000000000000FF00L) != 0 ? 2 :
-			                                                           1;
+			int dataByteCount = getByteCount(tagData);
 			
 			// read enough of the file for this id/size/data
 			ByteBuffer buffer = Buffers.newDirectByteBuffer(idByteCount + 8 + dataByteCount);
@@ -1837,17 +2084,18 @@ public class ConnectionCamera extends Connection {
 			// read the tag size
 			long dataByteCount = buffer.position(idByteCount).getLong() & ~(1L << 56L);
 			
-			// read the data
-			buffer = Buffers.newDirectByteBuffer((int) dataByteCount);
+			// map the data instead of reading it, so large attachments (like the frames index) are paged in only as needed
+			long dataOffset = inputFile.position();
+			buffer = inputFile.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataByteCount);
 			buffer.order(ByteOrder.BIG_ENDIAN);
-			inputFile.read(buffer);
+			inputFile.position(dataOffset + dataByteCount);
 			
 			// if any parent tags exist, update their sizes
 			if(!importTagSizes.isEmpty())
 				for(int i = 0; i < importTagSizes.size(); i++)
 					importTagSizes.set(i, importTagSizes.get(i) - idByteCount - 8 - dataByteCount);
 			
-			return buffer.flip();
+			return buffer;
 			
 		}
 		
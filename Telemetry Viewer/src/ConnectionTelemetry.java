@@ -65,6 +65,7 @@ public class ConnectionTelemetry extends Connection {
 	}
 	
 	// reminder: fields are shared with multiple threads, so they must be final or volatile or atomic.
+	public final SessionJournal journal = new SessionJournal(this); // makes the samples durable, so the session can be reopened later
 	public final DatasetsController datasets = new DatasetsController(this); // used to store "normal telemetry"
 	
 	public enum Mode {UART, TCP, UDP, DEMO, STRESS_TEST};
@@ -737,7 +738,7 @@ public class ConnectionTelemetry extends Connection {
 					
 					// enter an infinite loop that checks for activity. if the TCP port is idle for >10 seconds, abandon it so another device can try to connect.
 					long previousTimestamp = System.currentTimeMillis();
-					int previousSampleNumber = getSampleCount();
+					long previousSampleNumber = getSampleCount();
 					while(true) {
 						int byteCount = is.available();
 						if(byteCount > 0) {
@@ -747,7 +748,7 @@ public class ConnectionTelemetry extends Connection {
 							continue;
 						}
 						Thread.sleep(1);
-						int sampleNumber = getSampleCount();
+						long sampleNumber = getSampleCount();
 						long timestamp = System.currentTimeMillis();
 						if(sampleNumber > previousSampleNumber) {
 							previousSampleNumber = sampleNumber;
@@ -900,8 +901,8 @@ public class ConnectionTelemetry extends Connection {
 		transmitterThread = new Thread(() -> {
 			
 			long startTime = System.currentTimeMillis();
-			int startSampleNumber = getSampleCount();
-			int sampleNumber = startSampleNumber;
+			long startSampleNumber = getSampleCount();
+			long sampleNumber = startSampleNumber;
 			
 			double oscillatingFrequency = 100; // Hz
 			boolean oscillatingHigher = true;
@@ -1355,6 +1356,17 @@ public class ConnectionTelemetry extends Connection {
 	
 	@Override public long readFirstTimestamp(String path) {
 		
+		if(path.endsWith(BinaryDataFile.EXTENSION)) {
+			try {
+				BinaryDataFile file = new BinaryDataFile(path);
+				long timestamp = file.getFirstTimestamp();
+				file.close();
+				return timestamp;
+			} catch(IOException e) {
+				return Long.MAX_VALUE;
+			}
+		}
+		
 		try {
 			
 			long timestamp = 0;
@@ -1378,13 +1390,13 @@ public class ConnectionTelemetry extends Connection {
 		
 	}
 	
-	@Override public long getTimestamp(int sampleNumber) {
+	@Override public long getTimestamp(long sampleNumber) {
 		
 		return datasets.getTimestamp(sampleNumber);
 		
 	}
 	
-	@Override public int getSampleCount() {
+	@Override public long getSampleCount() {
 		
 		return datasets.getSampleCount();
 		
@@ -1398,7 +1410,7 @@ public class ConnectionTelemetry extends Connection {
 	}
 
 	/**
-	 * Reads CSV samples from a file, instead of a live connection.
+	 * Reads CSV or binary samples from a file, instead of a live connection.
 	 * 
 	 * @param path                       Path to the file.
 	 * @param firstTimestamp             Timestamp when the first sample from ANY connection was acquired. This is used to allow importing to happen in real time.
@@ -1407,6 +1419,11 @@ public class ConnectionTelemetry extends Connection {
 	 */
 	@Override public void importDataFile(String path, long firstTimestamp, long beginImportingTimestamp, AtomicLong completedByteCount) {
 
+		if(path.endsWith(BinaryDataFile.EXTENSION)) {
+			importBinaryDataFile(path, firstTimestamp, beginImportingTimestamp, completedByteCount);
+			return;
+		}
+		
 		removeAllData();
 		
 		receiverThread = new Thread(() -> {
@@ -1460,7 +1477,7 @@ public class ConnectionTelemetry extends Connection {
 				// parse the lines of data
 				String line = file.nextLine();
 				completedByteCount.addAndGet((long) (line.length() + 2));
-				int sampleNumber = getSampleCount();
+				long sampleNumber = getSampleCount();
 				while(true) {
 					tokens = line.split(",");
 					if(ConnectionsController.realtimeImporting) {
@@ -1511,6 +1528,130 @@ public class ConnectionTelemetry extends Connection {
 
 	}
 	
+	/**
+	 * Reads samples from a binary data file, instead of a live connection.
+	 * Each chunk is read with a single read, and its values are copied into the datasets without any parsing.
+	 * 
+	 * @param path                       Path to the file.
+	 * @param firstTimestamp             Timestamp when the first sample from ANY connection was acquired. This is used to allow importing to happen in real time.
+	 * @param beginImportingTimestamp    Timestamp when all import threads should begin importing.
+	 * @param completedByteCount         Variable to increment as progress is made (this is periodically queried by a progress bar.)
+	 */
+	private void importBinaryDataFile(String path, long firstTimestamp, long beginImportingTimestamp, AtomicLong completedByteCount) {
+		
+		removeAllData();
+		
+		receiverThread = new Thread(() -> {
+			
+			BinaryDataFile file = null;
+			
+			try {
+				
+				// open the file
+				file = new BinaryDataFile(path);
+				
+				connected = true;
+				CommunicationView.instance.redraw();
+				
+				// sanity checks
+				int datasetsCount = datasets.getCount();
+				boolean correctColumns = file.columns.length == datasetsCount;
+				for(int i = 0; correctColumns && i < datasetsCount; i++) {
+					Dataset d = datasets.getByIndex(i);
+					if(!file.columns[i].name.equals(d.name) || !file.columns[i].unit.equals(d.unit))
+						correctColumns = false;
+				}
+				if(!correctColumns) {
+					SwingUtilities.invokeLater(() -> disconnect("The binary data file does not match the current data structure."));
+					file.close();
+					return;
+				}
+				
+				if(file.getChunkCount() == 0) {
+					SwingUtilities.invokeLater(() -> disconnect("The binary data file does not contain any samples."));
+					file.close();
+					return;
+				}
+				
+				// raw values can be stored as-is if the storage type and conversion factor have not changed
+				Dataset[] list = datasets.getList().toArray(new Dataset[datasetsCount]);
+				boolean[] sameType = new boolean[datasetsCount];
+				for(int i = 0; i < datasetsCount; i++) {
+					Dataset d = list[i];
+					sameType[i] = file.columns[i].type != StorageFloats.Type.FLOAT32 && file.columns[i].type == d.floats.getType() && file.columns[i].conversionFactor == d.conversionFactor;
+				}
+				
+				// copy the chunks into the datasets
+				long sampleNumber = getSampleCount();
+				boolean aborted = false;
+				for(int chunkN = 0; chunkN < file.getChunkCount() && !aborted; chunkN++) {
+					BinaryDataFile.Chunk chunk = file.readChunk(chunkN);
+					for(int i = 0; i < chunk.sampleCount; i++) {
+						if(ConnectionsController.realtimeImporting) {
+							if(Thread.interrupted()) {
+								ConnectionsController.realtimeImporting = false;
+								CommunicationView.instance.redraw();
+							} else {
+								long delay = (chunk.timestamps[i] - firstTimestamp) - (System.currentTimeMillis() - beginImportingTimestamp);
+								if(delay > 0)
+									try {
+										Thread.sleep(delay);
+									} catch(Exception e) {
+										ConnectionsController.realtimeImporting = false;
+										CommunicationView.instance.redraw();
+									}
+							}
+						} else if(Thread.interrupted()) {
+							aborted = true; // not real-time, and interrupted again, so abort
+							break;
+						}
+						for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+							int raw = chunk.values[datasetN][i];
+							if(sameType[datasetN])
+								list[datasetN].setRawSample(sampleNumber, raw);
+							else
+								list[datasetN].setConvertedSample(sampleNumber, file.columns[datasetN].toFloat(raw));
+						}
+						sampleNumber++;
+						datasets.incrementSampleCountWithTimestamp(chunk.timestamps[i]);
+					}
+					completedByteCount.addAndGet(file.getChunkByteCount(chunkN));
+				}
+				
+				// done
+				SwingUtilities.invokeLater(() -> disconnect(null));
+				file.close();
+				
+			} catch (IOException e) {
+				if(file != null)
+					file.close();
+				SwingUtilities.invokeLater(() -> disconnect("Unable to read the binary data file: " + e.getMessage()));
+			}
+			
+		});
+		
+		receiverThread.setPriority(Thread.MAX_PRIORITY);
+		receiverThread.setName("Binary File Import Thread");
+		receiverThread.start();
+		
+	}
+	
+	/**
+	 * Exports all samples to a binary data file.
+	 * 
+	 * @param path                  Full path with file name but without the file extension.
+	 * @param completedByteCount    Variable to increment as progress is made (this is periodically queried by a progress bar.)
+	 */
+	public void exportBinaryDataFile(String path, AtomicLong completedByteCount) {
+		
+		try {
+			BinaryDataFile.export(this, path + BinaryDataFile.EXTENSION, completedByteCount);
+		} catch(IOException e) {
+			NotificationsController.showFailureForMilliseconds("Unable to export the binary data file: " + e.getMessage(), 5000, true);
+		}
+		
+	}
+	
 	/**
 	 * Exports all samples to a CSV file.
 	 * 
@@ -1521,7 +1662,7 @@ public class ConnectionTelemetry extends Connection {
 		
 		List<Dataset> list = datasets.getList();
 		int datasetsCount = list.size();
-		int sampleCount = getSampleCount();
+		long sampleCount = getSampleCount();
 		
 		try {
 			
@@ -1539,14 +1680,14 @@ public class ConnectionTelemetry extends Connection {
 			// split the work into one worker thread per CSV column, with each thread processing up to 8192 samples at a time
 			// worker threads return the corresponding text that belongs in their CSV column
 			// this thread then collects the data and outputs it to the CSV file
-			int startingSampleNumber = 0;
+			long startingSampleNumber = 0;
 			final int MAX_SAMPLE_COUNT_PER_THREAD = 8192;
 			ExecutorService pool = Executors.newCachedThreadPool();
 			List<Future<String[]>> futures = new ArrayList<Future<String[]>>(datasetsCount + 2);
 			List<String[]> results = new ArrayList<String[]>(datasetsCount + 2);
 			
 			// submit first batch
-			int count = Integer.min(MAX_SAMPLE_COUNT_PER_THREAD, sampleCount - startingSampleNumber);
+			int count = (int) Long.min(MAX_SAMPLE_COUNT_PER_THREAD, sampleCount - startingSampleNumber);
 			for(int columnN = 0; columnN < datasetsCount + 2; columnN++)
 				futures.add(pool.submit(new ExportWorker(columnN, startingSampleNumber, count)));
 			
@@ -1559,7 +1700,7 @@ public class ConnectionTelemetry extends Connection {
 				startingSampleNumber += count;
 				
 				// if more samples to export, submit another batch BEFORE processing the above results
-				int nextCount = Integer.min(MAX_SAMPLE_COUNT_PER_THREAD, sampleCount - startingSampleNumber);
+				int nextCount = (int) Long.min(MAX_SAMPLE_COUNT_PER_THREAD, sampleCount - startingSampleNumber);
 				if(startingSampleNumber < sampleCount) {
 					for(int columnN = 0; columnN < datasetsCount + 2; columnN++)
 						futures.add(pool.submit(new ExportWorker(columnN, startingSampleNumber, nextCount)));
@@ -1590,7 +1731,7 @@ public class ConnectionTelemetry extends Connection {
 	private class ExportWorker implements Callable<String[]> {
 		
 		private final int csvColumnNumber;
-		private final int firstSampleNumber;
+		private final long firstSampleNumber;
 		private final int sampleCount;
 		
 		/**
@@ -1602,7 +1743,7 @@ public class ConnectionTelemetry extends Connection {
 		 * @param firstSampleNumber    First sample number to process, inclusive.
 		 * @param sampleCount          Total number of samples to process.
 		 */
-		public ExportWorker(int csvColumnNumber, int firstSampleNumber, int sampleCount) {
+		public ExportWorker(int csvColumnNumber, long firstSampleNumber, int sampleCount) {
 			this.csvColumnNumber = csvColumnNumber;
 			this.firstSampleNumber = firstSampleNumber;
 			this.sampleCount = sampleCount;
@@ -1620,7 +1761,7 @@ public class ConnectionTelemetry extends Connection {
 			if(csvColumnNumber == 0) {
 				// first column is the sample number
 				for(int i = 0; i < sampleCount; i++)
-					text[i] = Integer.toString(firstSampleNumber + i);
+					text[i] = Long.toString(firstSampleNumber + i);
 			} else if(csvColumnNumber == 1) {
 				// second column is the UNIX timestamp
 				for(int i = 0; i < sampleCount; i++)
@@ -1632,6 +1773,7 @@ public class ConnectionTelemetry extends Connection {
 				FloatBuffer buffer = dataset.getSamplesBuffer(firstSampleNumber, firstSampleNumber + sampleCount - 1, cache);
 				for(int i = 0; i < sampleCount; i++)
 					text[i] = Float.toString(buffer.get());
+				cache.dispose();
 			}
 			
 			return text;
@@ -1683,7 +1825,7 @@ public class ConnectionTelemetry extends Connection {
 			                             mode == Mode.TCP  ? "The TCP server is running and receiving telemetry." :
 			                             mode == Mode.UDP  ? "The UDP listener is running and receiving telemetry." :
 			                                                                    "";
-			int oldSampleCount = getSampleCount();
+			long oldSampleCount = getSampleCount();
 			Timer t = new Timer(100, event -> {
 				
 				if(mode == Mode.DEMO || mode == Mode.STRESS_TEST)
@@ -1724,12 +1866,7 @@ public class ConnectionTelemetry extends Connection {
 						for(int i = 0; i < numberForLocation.length; i++)
 							numberForLocation[i] = Float.parseFloat(tokens[i]);
 						
-						int sampleNumber = getSampleCount();
-						if(sampleNumber + 1 < 0) { // <0 because of overflow
-							SwingUtilities.invokeLater(() -> disconnect("Reached maximum sample count. Disconnected.")); // invokeLater to prevent deadlock
-							throw new InterruptedException();
-						}
-						
+						long sampleNumber = getSampleCount();
 						for(Dataset d : list)
 							d.setSample(sampleNumber, numberForLocation[d.location]);
 						datasets.incrementSampleCount();
@@ -1779,12 +1916,7 @@ public class ConnectionTelemetry extends Connection {
 						// process the received telemetry packets
 						while(packets.count > 0) {
 							
-							int sampleNumber = getSampleCount();
-							if(sampleNumber + packets.count < 0) { // <0 because of overflow
-								SwingUtilities.invokeLater(() -> disconnect("Reached maximum sample count. Disconnected.")); // invokeLater to prevent deadlock
-								throw new InterruptedException();
-							}
-							
+							long sampleNumber = getSampleCount();
 							boolean blockAligned = sampleNumber % StorageFloats.BLOCK_SIZE == 0;
 							int blocksRemaining = packets.count / StorageFloats.BLOCK_SIZE;
 							
@@ -1801,6 +1933,10 @@ public class ConnectionTelemetry extends Connection {
 								}
 								allThreadsDone.await();
 								allThreadsDone.reset();
+								for(Parser thread : parsingThreads)
+									thread.emitEdges();
+								for(Dataset dataset : list)
+									dataset.updateTriggerDetectors(sampleNumber - blocksPerThread * THREAD_COUNT * StorageFloats.BLOCK_SIZE, sampleNumber - 1);
 								for(int i = 0; i < blocksPerThread * THREAD_COUNT; i++)
 									datasets.incrementSampleCountBlock();
 								
@@ -1808,8 +1944,8 @@ public class ConnectionTelemetry extends Connection {
 								
 								// process packets individually
 								for(Dataset dataset : list) {
-									float rawNumber = dataset.processor.extractValue(packets.buffer, packets.offset + dataset.location);
-									dataset.setSample(sampleNumber, rawNumber);
+									int rawNumber = dataset.processor.extractRawValue(packets.buffer, packets.offset + dataset.location);
+									dataset.setRawSample(sampleNumber, rawNumber);
 								}
 								datasets.incrementSampleCount();
 								packets.count--;
@@ -1930,12 +2066,7 @@ public class ConnectionTelemetry extends Connection {
 								float dMinusVoltage   = getUint32.apply(currentPacket, 100) / 100f; // converting to volts
 								
 								// populate the datasets
-								int sampleNumber = getSampleCount();
-								if(sampleNumber + 1 < 0) { // <0 because of overflow
-									SwingUtilities.invokeLater(() -> disconnect("Reached maximum sample count. Disconnected.")); // invokeLater to prevent deadlock
-									throw new InterruptedException();
-								}
-								
+								long sampleNumber = getSampleCount();
 								list.get(0).setConvertedSample (sampleNumber, voltage);
 								list.get(1).setConvertedSample (sampleNumber, current);
 								list.get(2).setConvertedSample (sampleNumber, power);
@@ -1987,10 +2118,19 @@ public class ConnectionTelemetry extends Connection {
 		private volatile byte[] buffer;         // stream of telemetry packets
 		private volatile int offset;            // where in the buffer this object should start parsing
 		private volatile int blockCount;        // how many blocks this thread should parse
-		private volatile int firstSampleNumber; // which sample number the first packet corresponds to
+		private volatile long firstSampleNumber; // which sample number the first packet corresponds to
 		
 		private final float[][] minimumValue;   // [blockN][datasetN]
 		private final float[][] maximumValue;   // [blockN][datasetN]
+		private final double[][] sum;           // [blockN][datasetN]
+		private final double[][] sumOfSquaredDeviations; // [blockN][datasetN]
+		
+		// bitfield transitions are detected in parallel, then emitted in order by emitEdges()
+		private final List<Dataset> datasets;
+		private final int[] firstValue;                   // [datasetN]
+		private final int[] changesCount;                 // [datasetN]
+		private final long[][] changedSampleNumbers;      // [datasetN][changeN]
+		private final int[][] changedValues;              // [datasetN][changeN]
 		
 		/**
 		 * Configures this object, but does not start to parse any data.
@@ -2005,6 +2145,19 @@ public class ConnectionTelemetry extends Connection {
 			int datasetsCount = datasets.size();
 			minimumValue = new float[maxBlockCount][datasetsCount];
 			maximumValue = new float[maxBlockCount][datasetsCount];
+			sum = new double[maxBlockCount][datasetsCount];
+			sumOfSquaredDeviations = new double[maxBlockCount][datasetsCount];
+			
+			this.datasets = datasets;
+			firstValue = new int[datasetsCount];
+			changesCount = new int[datasetsCount];
+			changedSampleNumbers = new long[datasetsCount][];
+			changedValues = new int[datasetsCount][];
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+				int maxChangesCount = datasets.get(datasetN).isBitfield ? maxBlockCount * StorageFloats.BLOCK_SIZE : 0;
+				changedSampleNumbers[datasetN] = new long[maxChangesCount];
+				changedValues[datasetN] = new int[maxChangesCount];
+			}
 			
 			newData = new CyclicBarrier(2);
 			thread = new Thread(() -> {
@@ -2016,7 +2169,10 @@ public class ConnectionTelemetry extends Connection {
 						// wait for data to parse
 						newData.await();
 						
-						float[][] slots = new float[datasetsCount][];
+						Object[] slots = new Object[datasetsCount];
+						int[] previousValue = new int[datasetsCount];
+						for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
+							changesCount[datasetN] = 0;
 							
 						// parse each packet of each block
 						for(int blockN = 0; blockN < blockCount; blockN++) {
@@ -2024,35 +2180,62 @@ public class ConnectionTelemetry extends Connection {
 							for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
 								slots[datasetN] = datasets.get(datasetN).getSlot(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE));
 							
-							int slotOffset = (firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE)) % StorageFloats.SLOT_SIZE;
+							int slotOffset = (int) ((firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE)) % StorageFloats.SLOT_SIZE);
+							int firstSlotOffset = slotOffset;
 							float[] minVal = minimumValue[blockN];
 							float[] maxVal = maximumValue[blockN];
+							double[] sumVal = sum[blockN];
 							for(int packetN = 0; packetN < StorageFloats.BLOCK_SIZE; packetN++) {
 								
 								for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
 									Dataset d = datasets.get(datasetN);
-									float f = d.processor.extractValue(buffer, offset + d.location) * d.conversionFactor;
-									slots[datasetN][slotOffset] = f;
+									float f = d.floats.store(slots[datasetN], slotOffset, d.processor.extractRawValue(buffer, offset + d.location));
 									if(packetN == 0) {
 										minVal[datasetN] = f;
 										maxVal[datasetN] = f;
+										sumVal[datasetN] = 0;
 									}
 									if(f < minVal[datasetN])
 										minVal[datasetN] = f;
 									if (f > maxVal[datasetN])
 										maxVal[datasetN] = f;
+									sumVal[datasetN] += f;
+									if(d.isBitfield) {
+										int value = (int) f;
+										if(blockN == 0 && packetN == 0) {
+											firstValue[datasetN] = value;
+										} else if(value != previousValue[datasetN]) {
+											int changeN = changesCount[datasetN]++;
+											changedSampleNumbers[datasetN][changeN] = firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE) + packetN;
+											changedValues[datasetN][changeN] = value;
+										}
+										previousValue[datasetN] = value;
+									}
 								}
 								
 								offset += packetByteCount;
 								slotOffset++;
 								
 							}
+							
+							// second pass over the block (while it's still in the CPU cache) to get the sum of squared deviations without catastrophic cancellation
+							for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+								StorageFloats storage = datasets.get(datasetN).floats;
+								Object values = slots[datasetN];
+								double mean = sumVal[datasetN] / StorageFloats.BLOCK_SIZE;
+								double squaredDeviations = 0;
+								for(int i = firstSlotOffset; i < firstSlotOffset + StorageFloats.BLOCK_SIZE; i++) {
+									double deviation = storage.getValue(values, i) - mean;
+									squaredDeviations += deviation * deviation;
+								}
+								sumOfSquaredDeviations[blockN][datasetN] = squaredDeviations;
+							}
 						}
 						
 						// update datasets
 						for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
 							for(int blockN = 0; blockN < blockCount; blockN++)
-								datasets.get(datasetN).setRangeOfBlock(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE), minimumValue[blockN][datasetN], maximumValue[blockN][datasetN]);
+								datasets.get(datasetN).setSummaryOfBlock(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE), minimumValue[blockN][datasetN], maximumValue[blockN][datasetN], sum[blockN][datasetN], sumOfSquaredDeviations[blockN][datasetN]);
 						
 						// done
 						allThreadsDone.await();
@@ -2079,7 +2262,7 @@ public class ConnectionTelemetry extends Connection {
 		 * @param blockCount           Number of blocks to parse.
 		 * @param firstSampleNumber    Which sample number the first packet corresponds to.
 		 */
-		public void process(byte[] buffer, int offset, int blockCount, int firstSampleNumber) throws InterruptedException {
+		public void process(byte[] buffer, int offset, int blockCount, long firstSampleNumber) throws InterruptedException {
 			
 			this.buffer            = buffer;
 			this.offset            = offset;
@@ -2095,6 +2278,23 @@ public class ConnectionTelemetry extends Connection {
 			
 		}
 		
+		/**
+		 * Updates the bitfield edge indexes with the transitions found while parsing.
+		 * This must be called after the data has been parsed, and for each Parser in the order that the data was received.
+		 */
+		public void emitEdges() {
+			
+			for(int datasetN = 0; datasetN < datasets.size(); datasetN++) {
+				Dataset dataset = datasets.get(datasetN);
+				if(!dataset.isBitfield)
+					continue;
+				dataset.updateEdges(firstSampleNumber, firstValue[datasetN]);
+				for(int changeN = 0; changeN < changesCount[datasetN]; changeN++)
+					dataset.updateEdges(changedSampleNumbers[datasetN][changeN], changedValues[datasetN][changeN]);
+			}
+			
+		}
+		
 		/**
 		 * Forces this thread to end. Blocks until done.
 		 */
@@ -151,7 +151,7 @@ public class ConnectionsController {
 		
 		for(Connection connection : ConnectionsController.allConnections)
 			if(connection.getSampleCount() > 0) {
-				int lastSampleNumber = connection.getSampleCount() - 1;
+				long lastSampleNumber = connection.getSampleCount() - 1;
 				long lastTimestamp = connection.getTimestamp(lastSampleNumber);
 				if(lastTimestamp > timestamp)
 					timestamp = lastTimestamp;
@@ -188,7 +188,9 @@ public class ConnectionsController {
 		
 		// sanity check
 		int settingsFileCount = 0;
+		int sessionFileCount = 0;
 		int csvFileCount = 0;
+		int tvbFileCount = 0;
 		int mkvFileCount = 0;
 		int invalidFileCount = 0;
 		
@@ -197,15 +199,26 @@ public class ConnectionsController {
 		for(String filepath : filepaths)
 			if(filepath.endsWith(".txt"))
 				settingsFileCount++;
+			else if(filepath.endsWith(".tvs"))
+				sessionFileCount++;
 			else if(filepath.endsWith(".csv"))
 				csvFileCount++;
+			else if(filepath.endsWith(BinaryDataFile.EXTENSION))
+				tvbFileCount++;
 			else if(filepath.endsWith(".mkv"))
 				mkvFileCount++;
 			else
 				invalidFileCount++;
 		
 		if(invalidFileCount > 0) {
-			NotificationsController.showFailureForMilliseconds("Unsupported file type. Only files exported from TelemetryViewer can be imported:\nSettings files (.txt)\nCSV files (.csv)\nCamera files (.mkv)", 5000, true);
+			NotificationsController.showFailureForMilliseconds("Unsupported file type. Only files exported from TelemetryViewer can be imported:\nSettings files (.txt)\nSession files (.tvs)\nCSV files (.csv)\nBinary data files (.tvb)\nCamera files (.mkv)", 5000, true);
+			return;
+		}
+		if(sessionFileCount > 0) {
+			if(filepaths.length > 1)
+				NotificationsController.showFailureForMilliseconds("A session file (.tvs) must be opened by itself.", 5000, true);
+			else
+				SessionJournal.openSessionFile(filepaths[0]);
 			return;
 		}
 		if(settingsFileCount > 1) {
@@ -226,7 +239,7 @@ public class ConnectionsController {
 			removeAllConnections();
 			for(String filepath : filepaths)
 				if(filepath.endsWith(".txt"))
-					if(!importSettingsFile(filepath, csvFileCount + mkvFileCount == 0)) {
+					if(!importSettingsFile(filepath, csvFileCount + tvbFileCount + mkvFileCount == 0)) {
 						ConnectionsController.removeAllConnections();
 						ConnectionsController.addConnection(new ConnectionTelemetry());
 						return;
@@ -234,10 +247,11 @@ public class ConnectionsController {
 		}
 		
 		for(String filepath : filepaths) {
-			if(filepath.endsWith(".csv")) {
+			if(filepath.endsWith(".csv") || filepath.endsWith(BinaryDataFile.EXTENSION)) {
+				String extension = filepath.substring(filepath.lastIndexOf("."));
 				for(int connectionN = 0; connectionN < ConnectionsController.allConnections.size(); connectionN++) {
 					Connection connection = ConnectionsController.allConnections.get(connectionN);
-					if(filepath.endsWith(" - connection " + connectionN + " - " + connection.name.replaceAll(filenameSanitizer, "") + ".csv"))
+					if(filepath.endsWith(" - connection " + connectionN + " - " + connection.name.replaceAll(filenameSanitizer, "") + extension))
 						imports.put(connection, filepath);
 				}
 			} else if(filepath.endsWith(".mkv")) {
@@ -251,7 +265,7 @@ public class ConnectionsController {
 		
 		// allow importing an MKV file by itself
 		boolean moviePlayerMode = false;
-		if(settingsFileCount == 0 && csvFileCount == 0 && mkvFileCount == 1) {
+		if(settingsFileCount == 0 && csvFileCount == 0 && tvbFileCount == 0 && mkvFileCount == 1) {
 			String cameraName = Paths.get(filepaths[0]).getFileName().toString(); // remove directories
 			cameraName = cameraName.substring(0, cameraName.lastIndexOf(".")); // remove file extension
 			int index = cameraName.lastIndexOf("- ");
@@ -279,12 +293,12 @@ public class ConnectionsController {
 			moviePlayerMode = true;
 		}
 		
-		if(csvFileCount + mkvFileCount != imports.size()) {
+		if(csvFileCount + tvbFileCount + mkvFileCount != imports.size()) {
 			NotificationsController.showFailureForMilliseconds("Data file does not correspond with an existing connection.", 5000, true);
 			return;
 		}
 		
-		boolean importingInProgress = csvFileCount + mkvFileCount > 0;
+		boolean importingInProgress = csvFileCount + tvbFileCount + mkvFileCount > 0;
 		if(importingInProgress) {
 			
 			importing = true;
@@ -293,7 +307,7 @@ public class ConnectionsController {
 			
 			long totalByteCount = 0;
 			for(String filepath : filepaths)
-				if(filepath.endsWith(".csv") || filepath.endsWith(".mkv"))
+				if(filepath.endsWith(".csv") || filepath.endsWith(BinaryDataFile.EXTENSION) || filepath.endsWith(".mkv"))
 					try { totalByteCount += Files.size(Paths.get(filepath)); } catch(Exception e) { }
 			
 			AtomicLong completedByteCount = NotificationsController.showProgressBar("Importing...", totalByteCount);
@@ -351,10 +365,11 @@ public class ConnectionsController {
 	 * 
 	 * @param filepath               The absolute path, including the part of the filename that will be common to all exported files.
 	 * @param exportSettingsFile     If true, export a settings file.
+	 * @param binaryDataFiles        If true, export telemetry as binary data (.tvb) files instead of CSV files.
 	 * @param telemetryToExport      List of ConnectionTelemetrys to export.
 	 * @param camerasToExport        List of ConnectionCameras to export.
 	 */
-	public static void exportFiles(String filepath, boolean exportSettingsFile, List<ConnectionTelemetry> telemetryToExport, List<ConnectionCamera> camerasToExport) {
+	public static void exportFiles(String filepath, boolean exportSettingsFile, boolean binaryDataFiles, List<ConnectionTelemetry> telemetryToExport, List<ConnectionCamera> camerasToExport) {
 		
 		exportThread = new Thread(() -> {
 			
@@ -378,7 +393,10 @@ public class ConnectionsController {
 			for(ConnectionTelemetry connection : telemetryToExport) {
 				int connectionN = ConnectionsController.allConnections.indexOf(connection);
 				String filename = filepath + " - connection " + connectionN + " - " + connection.name.replaceAll(filenameSanitizer, "");
-				connection.exportDataFile(filename, completedSampleCount);
+				if(binaryDataFiles)
+					connection.exportBinaryDataFile(filename, completedSampleCount);
+				else
+					connection.exportDataFile(filename, completedSampleCount);
 			}
 	
 			for(ConnectionCamera connection : camerasToExport) {
@@ -497,7 +515,7 @@ public class ConnectionsController {
 	 * @param connect    True to connect, or false to just configure things without connecting to the device.
 	 * @return           True on success, or false on error.
 	 */
-	private static boolean importSettingsFile(String path, boolean connect) {
+	static boolean importSettingsFile(String path, boolean connect) {
 		
 		QueueOfLines lines = null;
 		NotificationsController.removeIfConnectionRelated();
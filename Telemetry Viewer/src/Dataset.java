@@ -2,6 +2,8 @@ import java.awt.Color;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
 
 /**
  * Defines all of the details about one CSV column or Binary packet field, stores all of its samples, and provides several ways to get the samples.
@@ -25,6 +27,8 @@ public class Dataset {
 	
 	StorageFloats floats;
 	
+	List<TriggerDetector> triggerDetectors = new CopyOnWriteArrayList<TriggerDetector>();
+	
 	/**
 	 * Creates a new object that describes one dataset and stores all of its samples.
 	 * 
@@ -53,7 +57,9 @@ public class Dataset {
 		this.isBitfield        = false;
 		this.bitfields         = new ArrayList<Bitfield>();
 		
-		floats = new StorageFloats(connection);
+		// binary mode integer fields are stored at their native width, everything else is stored as float32
+		StorageFloats.Type type = (processor != null && connection.packetType == ConnectionTelemetry.PacketType.BINARY) ? processor.getStorageType() : StorageFloats.Type.FLOAT32;
+		floats = new StorageFloats(connection, type, conversionFactor);
 		
 	}
 	
@@ -121,7 +127,7 @@ public class Dataset {
 	 * @param cache           Place to cache samples.
 	 * @return                The sample, as a float.
 	 */
-	public float getSample(int sampleNumber, StorageFloats.Cache cache) {
+	public float getSample(long sampleNumber, StorageFloats.Cache cache) {
 		
 		return floats.getSample(sampleNumber, cache);
 		
@@ -134,7 +140,7 @@ public class Dataset {
 	 * @param cache           Place to cache samples.
 	 * @return                The sample, formatted as a String.
 	 */
-	public String getSampleAsString(int sampleNumber, StorageFloats.Cache cache) {
+	public String getSampleAsString(long sampleNumber, StorageFloats.Cache cache) {
 		
 		float value = getSample(sampleNumber, cache);
 		
@@ -153,7 +159,7 @@ public class Dataset {
 	 * @param cache                Place to cache samples.
 	 * @return                     The samples, as a FloatBuffer, positioned at the first sample number.
 	 */
-	public FloatBuffer getSamplesBuffer(int firstSampleNumber, int lastSampleNumber, StorageFloats.Cache cache) {
+	public FloatBuffer getSamplesBuffer(long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
 		
 		return floats.getSamplesBuffer(firstSampleNumber, lastSampleNumber, cache);
 		
@@ -167,9 +173,9 @@ public class Dataset {
 	 * @param cache                Place to cache samples.
 	 * @return                     The samples, as a float[].
 	 */
-	public float[] getSamplesArray(int firstSampleNumber, int lastSampleNumber, StorageFloats.Cache cache) {
+	public float[] getSamplesArray(long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
 		
-		float[] array = new float[lastSampleNumber - firstSampleNumber + 1];
+		float[] array = new float[(int) (lastSampleNumber - firstSampleNumber + 1)];
 		floats.getSamplesBuffer(firstSampleNumber, lastSampleNumber, cache).get(array);
 		return array;
 		
@@ -181,7 +187,7 @@ public class Dataset {
 	 * @param sampleNumber    Which sample number to populate.
 	 * @param value           New sample to be converted and then written into the dataset.
 	 */
-	public void setSample(int sampleNumber, float value) {
+	public void setSample(long sampleNumber, float value) {
 		
 		setConvertedSample(sampleNumber, value * conversionFactor);
 		
@@ -193,35 +199,157 @@ public class Dataset {
 	 * @param sampleNumber    Which sample number to populate.
 	 * @param value           New sample to be written into the dataset. It will be written as-is, NOT converted.
 	 */
-	public void setConvertedSample(int sampleNumber, float value) {
+	public void setConvertedSample(long sampleNumber, float value) {
+		
+		value = floats.setValue(sampleNumber, value);
+		if(isBitfield)
+			updateEdges(sampleNumber, (int) value);
+		for(TriggerDetector detector : triggerDetectors)
+			detector.process(sampleNumber, value);
+		
+	}
+	
+	/**
+	 * Appends a new raw sample to the dataset.
+	 * 
+	 * @param sampleNumber    Which sample number to populate.
+	 * @param raw             New sample, as provided by BinaryFieldProcessor.extractRawValue(). It will be stored as-is, and converted when read.
+	 */
+	public void setRawSample(long sampleNumber, int raw) {
 		
-		floats.setValue(sampleNumber, value);
+		float value = floats.setRawValue(sampleNumber, raw);
+		if(isBitfield)
+			updateEdges(sampleNumber, (int) value);
+		for(TriggerDetector detector : triggerDetectors)
+			detector.process(sampleNumber, value);
+		
+	}
+	
+	/**
+	 * Runs any trigger detectors over blocks that were populated by the Parser threads.
+	 * This must be called AFTER setSummaryOfBlock(), but BEFORE the sample count has been incremented.
+	 * 
+	 * @param firstSampleNumber    First sample number of the first block.
+	 * @param lastSampleNumber     Last sample number of the last block.
+	 */
+	public void updateTriggerDetectors(long firstSampleNumber, long lastSampleNumber) {
+		
+		for(TriggerDetector detector : triggerDetectors)
+			detector.processBlocks(firstSampleNumber, lastSampleNumber);
+		
+	}
+	
+	/**
+	 * Registers a trigger detector, so it will test each sample as telemetry is received.
+	 * 
+	 * @param detector    The detector.
+	 */
+	public void addTriggerDetector(TriggerDetector detector) {
+		
+		triggerDetectors.add(detector);
+		
+	}
+	
+	/**
+	 * Unregisters a trigger detector.
+	 * 
+	 * @param detector    The detector.
+	 */
+	public void removeTriggerDetector(TriggerDetector detector) {
+		
+		triggerDetectors.remove(detector);
+		
+	}
+	
+	/**
+	 * Updates the edge index of each Bitfield State if a new sample causes a transition.
+	 * This must be called for every sample, in order, unless the caller knows the value has not changed since the previous sample.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param sampleNumber    Sample number.
+	 * @param value           The raw (bitfield) value of that sample.
+	 */
+	public void updateEdges(long sampleNumber, int value) {
+		
+		for(Bitfield bitfield : bitfields) {
+			int state = (value >> bitfield.LSBit) & bitfield.bitmask;
+			if(sampleNumber > 0 && state != bitfield.previousState)
+				bitfield.states[state].edges.append(sampleNumber);
+			bitfield.previousState = state;
+		}
+		
+	}
+	
+	/**
+	 * Rebuilds the edge index of each Bitfield State after samples have been restored from disk by the SessionJournal.
+	 * Blocks where every sample equals the previous sample can not contain an edge, so only their summary is checked.
+	 * 
+	 * @param sampleCount    Number of samples that have been restored.
+	 */
+	public void restoreEdges(long sampleCount) {
+		
+		if(!isBitfield)
+			return;
+		
+		StorageFloats.Cache cache = floats.createCache();
+		int previousValue = 0;
+		for(long blockN = 0; blockN < sampleCount / StorageFloats.BLOCK_SIZE; blockN++) {
+			long firstSampleNumber = blockN * StorageFloats.BLOCK_SIZE;
+			float min = floats.getMinimumOfBlock(blockN);
+			float max = floats.getMaximumOfBlock(blockN);
+			if(firstSampleNumber > 0 && min == max && (int) min == previousValue)
+				continue;
+			for(long sampleNumber = firstSampleNumber; sampleNumber < firstSampleNumber + StorageFloats.BLOCK_SIZE; sampleNumber++) {
+				previousValue = (int) floats.getSample(sampleNumber, cache);
+				updateEdges(sampleNumber, previousValue);
+			}
+		}
+		cache.dispose();
+		
+	}
+	
+	/**
+	 * Empties the edge index of each Bitfield State, and the index of each trigger detector.
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 */
+	public void clearIndexes() {
+		
+		for(Bitfield bitfield : bitfields)
+			for(Bitfield.State state : bitfield.states)
+				state.edges.clear();
+		
+		for(TriggerDetector detector : triggerDetectors)
+			detector.clear();
 		
 	}
 	
 	/**
 	 * Obtains the samples buffer so that multiple Parser threads may write directly into it (in parallel.)
+	 * Use floats.store() and floats.getValue() to access it, because the array type depends on the storage type.
 	 * 
 	 * @param sampleNumber    The sample number whose buffer is wanted.
-	 * @return                Corresponding buffer.
+	 * @return                Corresponding buffer: a float[], byte[], short[] or int[].
 	 */
-	public synchronized float[] getSlot(int sampleNumber) {
+	public synchronized Object getSlot(long sampleNumber) {
 		
 		return floats.getSlot(sampleNumber);
 		
 	}
 	
 	/**
-	 * Specifies the minimum and maximum values found in a block.
+	 * Specifies the minimum, maximum, sum and sum of squared deviations of the values in a block.
 	 * This method must be called AFTER any Parser threads have populated a block, but BEFORE the sample count has been incremented.
 	 * 
-	 * @param firstSampleNumber    First sample number of the block.
-	 * @param minValue             Minimum value in the block.
-	 * @param maxValue             Maximum value in the block.
+	 * @param firstSampleNumber         First sample number of the block.
+	 * @param minValue                  Minimum value in the block.
+	 * @param maxValue                  Maximum value in the block.
+	 * @param sum                       Sum of the values in the block.
+	 * @param sumOfSquaredDeviations    Sum of (value - mean)^2 for the values in the block.
 	 */
-	public synchronized void setRangeOfBlock(int firstSampleNumber, float minValue, float maxValue) {
+	public synchronized void setSummaryOfBlock(long firstSampleNumber, float minValue, float maxValue, double sum, double sumOfSquaredDeviations) {
 		
-		floats.setRangeOfBlock(firstSampleNumber, minValue, maxValue);
+		floats.setSummaryOfBlock(firstSampleNumber, minValue, maxValue, sum, sumOfSquaredDeviations);
 		
 	}
 	
@@ -233,12 +361,26 @@ public class Dataset {
 	 * @param cache                Place to cache samples.
 	 * @return                     A MinMax object, which has "min" and "max" fields.
 	 */
-	public StorageFloats.MinMax getRange(int firstSampleNumber, int lastSampleNumber, StorageFloats.Cache cache) {
+	public StorageFloats.MinMax getRange(long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
 	
 		return floats.getRange(firstSampleNumber, lastSampleNumber, cache);
 		
 	}
 	
+	/**
+	 * Gets the count, mean and sum of squared deviations of a sequence of samples.
+	 * 
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive.
+	 * @param cache                Place to cache samples.
+	 * @return                     An Aggregate object, which can provide the mean, standard deviation, RMS, etc.
+	 */
+	public StorageFloats.Aggregate getAggregate(long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
+	
+		return floats.getAggregate(firstSampleNumber, lastSampleNumber, cache);
+		
+	}
+	
 	/**
 	 * Describes one bitfield, which has 2^n states.
 	 * Each Dataset can contain zero or more Bitfields.
@@ -250,6 +392,7 @@ public class Dataset {
 		final int bitmask; // (raw dataset value >> LSBit) & bitmask = bitfield state
 		final State[] states;
 		final Dataset dataset;
+		int previousState = -1; // state of the most recently received sample, used to detect transitions
 		
 		public Bitfield(int MSBit, int LSBit) {
 			
@@ -272,12 +415,32 @@ public class Dataset {
 		 * @param cache           Place to cache samples.
 		 * @return                State of this bitfield at the specified sample number.
 		 */
-		int getStateAt(int sampleNumber, StorageFloats.Cache cache) {
+		int getStateAt(long sampleNumber, StorageFloats.Cache cache) {
 			int value = (int) Dataset.this.getSample(sampleNumber, cache);
 			int state = (value >> LSBit) & bitmask;
 			return state;
 		}
 
+		/**
+		 * Finds the first transition to any state other than the specified state.
+		 * 
+		 * @param except                 State to ignore.
+		 * @param minimumSampleNumber    First sample number to test, inclusive.
+		 * @param maximumSampleNumber    Last sample number to test, inclusive.
+		 * @return                       Sample number of the first transition, or -1 if there is none.
+		 */
+		long getFirstTransitionBetween(State except, long minimumSampleNumber, long maximumSampleNumber) {
+			long first = -1;
+			for(State state : states) {
+				if(state == except)
+					continue;
+				long edge = state.edges.getFirstBetween(minimumSampleNumber, first < 0 ? maximumSampleNumber : first - 1);
+				if(edge >= 0)
+					first = edge;
+			}
+			return first;
+		}
+
 		/**
 		 * For sorting a Collection of Bitfields so the fields occupying less-significant bits come first.
 		 */
@@ -304,8 +467,7 @@ public class Dataset {
 			Dataset dataset;                         // owner of this State
 			Bitfield bitfield;                       // owner of this State
 			
-			List<Integer> edgesCache = new ArrayList<Integer>(); // cache of the sample numbers for each transition to this state
-			int lastSampleNumberInCache = -1;
+			StorageEdges edges = new StorageEdges(); // sample numbers for each transition to this state, populated as telemetry is received
 			
 			public State(int value, String label) {
 				this.label = label;
@@ -323,59 +485,15 @@ public class Dataset {
 			}
 			
 			/**
-			 * Updates the edges cache if necessary.
-			 * 
-			 * @param maxSampleNumber    Ensure the cache has all edge events that occurred until at least this sample number.
-			 * @param samplesCache       Place to cache raw dataset samples.
-			 */
-			private void updateEdgesCache(int maxSampleNumber, StorageFloats.Cache samplesCache) {
-				
-				if(maxSampleNumber <= lastSampleNumberInCache || maxSampleNumber == 0)
-					return;
-				
-				int minSampleNumber = lastSampleNumberInCache;
-				if(minSampleNumber < 0)
-					minSampleNumber = 0;
-				
-				int previousValue = (int) dataset.getSample(minSampleNumber, samplesCache);
-				int previousState = (previousValue >> bitfield.LSBit) & bitfield.bitmask;
-				
-				for(int sampleNumber = minSampleNumber + 1; sampleNumber <= maxSampleNumber; sampleNumber++) {
-					int currentValue = (int) dataset.getSample(sampleNumber, samplesCache);
-					if(currentValue != previousValue) {
-						int currentState = (currentValue >> bitfield.LSBit) & bitfield.bitmask;
-						if(currentState != previousState && currentState == value)
-							edgesCache.add(sampleNumber);
-						previousState = currentState;
-					}
-					previousValue = currentValue;
-				}
-				
-				lastSampleNumberInCache = maxSampleNumber;
-				
-			}
-			
-			/**
-			 * Gets a List of sample numbers for when this Bitfield transitioned to this State.
+			 * Iterates over the sample numbers for when this Bitfield transitioned to this State.
 			 * 
 			 * @param minimumSampleNumber    First sample number to test, inclusive.
 			 * @param maximumSampleNumber    Last sample number to test, inclusive.
-			 * @param samplesCache           Place to cache raw dataset samples.
-			 * @return                       List of sample numbers for when this Bitfield State occurred.
+			 * @param consumer               Will be called with the sample number of each edge event, in ascending order.
 			 */
-			public List<Integer> getEdgeEventsBetween(int minimumSampleNumber, int maximumSampleNumber, StorageFloats.Cache samplesCache) {
+			public void forEachEdgeBetween(long minimumSampleNumber, long maximumSampleNumber, LongConsumer consumer) {
 				
-				updateEdgesCache(maximumSampleNumber, samplesCache);
-				
-				List<Integer> edges = new ArrayList<Integer>();
-				for(int sampleNumber : edgesCache) {
-					if(sampleNumber >= minimumSampleNumber && sampleNumber <= maximumSampleNumber)
-						edges.add(sampleNumber);
-					else if(sampleNumber > maximumSampleNumber)
-						break;
-				}
-				
-				return edges;
+				edges.forEachBetween(minimumSampleNumber, maximumSampleNumber, consumer);
 				
 			}
 			
@@ -387,33 +505,21 @@ public class Dataset {
 			 * @param samplesCache           Place to cache raw dataset samples.
 			 * @return                       List of ranges ([0] minSampleNumber, [1] maxSampleNumber) for when this Bitfield State existed.
 			 */
-			public List<int[]> getLevelsBetween(int minimumSampleNumber, int maximumSampleNumber, StorageFloats.Cache samplesCache) {
+			public List<long[]> getLevelsBetween(long minimumSampleNumber, long maximumSampleNumber, StorageFloats.Cache samplesCache) {
 				
-				updateEdgesCache(maximumSampleNumber, samplesCache);
+				List<long[]> levels = new ArrayList<long[]>();
 				
-				List<int[]> levels = new ArrayList<int[]>();
-				List<Integer> edges = getEdgeEventsBetween(minimumSampleNumber, maximumSampleNumber - 1, samplesCache);
-				
-				if(edges.isEmpty() || edges.get(0) != minimumSampleNumber) {
-					int firstValue = (int) dataset.getSample(minimumSampleNumber, samplesCache);
-					int firstState = (firstValue >> bitfield.LSBit) & bitfield.bitmask;
-					if(firstState == value)
-						edges.add(0, minimumSampleNumber);
-				}
+				// a level may already be in progress
+				long levelBegin = bitfield.getStateAt(minimumSampleNumber, samplesCache) == value ? minimumSampleNumber :
+				                                                                                  edges.getFirstBetween(minimumSampleNumber, maximumSampleNumber - 1);
 				
-				for(int i = 0; i < edges.size(); i++) {
-					int levelBegin = edges.get(i);
-					int levelEnd = i+1 < edges.size() ? edges.get(i+1) : maximumSampleNumber; // "worse case scenario"
-					// check if level ended earlier
-					if(levelEnd - levelBegin > 1)
-						for(State s : bitfield.states) {
-							if(s == this)
-								continue;
-							List<Integer> edgesOfOtherState = s.getEdgeEventsBetween(levelBegin + 1, levelEnd - 1, samplesCache);
-							if(!edgesOfOtherState.isEmpty())
-								levelEnd = edgesOfOtherState.get(0);
-						}
-					levels.add(new int[] {levelBegin, levelEnd});
+				while(levelBegin >= 0) {
+					// the level ends when any other state begins
+					long levelEnd = bitfield.getFirstTransitionBetween(this, levelBegin + 1, maximumSampleNumber - 1);
+					if(levelEnd < 0)
+						levelEnd = maximumSampleNumber;
+					levels.add(new long[] {levelBegin, levelEnd});
+					levelBegin = edges.getFirstBetween(levelEnd, maximumSampleNumber - 1);
 				}
 				
 				return levels;
@@ -1,17 +1,18 @@
 import java.awt.Color;
 import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatasetsController {
 
 	public ConnectionTelemetry connection;
 	private Map<Integer, Dataset> datasets = new TreeMap<Integer, Dataset>();
-	private AtomicInteger sampleCount = new AtomicInteger(0);
-	private StorageTimestamps timestamps;
+	private AtomicLong sampleCount = new AtomicLong(0);
+	StorageTimestamps timestamps; // package-private so the SessionJournal can index and restore it
 	private long firstTimestamp = 0;
 	
 	public byte syncWord = (byte) 0xAA;
@@ -28,6 +29,8 @@ public class DatasetsController {
 			@Override public String getJavaTypeName()                      { return "Byte"; }
 			@Override public boolean isLittleEndian()                      { return true; }
 			@Override public int getByteCount()                            { return 1; }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.UINT8; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return 0xFF & buffer[offset]; }
 			@Override public float extractValue(byte[] buffer, int offset) { return (float) (0xFF & buffer[offset]); }
 		};
 		binaryFieldProcessors[1] = new BinaryFieldProcessor() {
@@ -35,6 +38,8 @@ public class DatasetsController {
 			@Override public String getJavaTypeName()                      { return "Byte"; }
 			@Override public boolean isLittleEndian()                      { return true; }
 			@Override public int getByteCount()                            { return 1; }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.UINT8; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return 0xFF & buffer[offset]; }
 			@Override public float extractValue(byte[] buffer, int offset) { return (float) (0xFF & buffer[offset]); }
 		};
 		binaryFieldProcessors[2] = new BinaryFieldProcessor() {
@@ -42,72 +47,88 @@ public class DatasetsController {
 			@Override public String getJavaTypeName()                      { return "Short"; }
 			@Override public boolean isLittleEndian()                      { return true; }
 			@Override public int getByteCount()                            { return 2; }
-			@Override public float extractValue(byte[] buffer, int offset) { return (float) (((0xFF & buffer[0+offset]) << 0) |
-					                                                                         ((0xFF & buffer[1+offset]) << 8)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.UINT16; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return ((0xFF & buffer[0+offset]) << 0) |
+			                                                                          ((0xFF & buffer[1+offset]) << 8); }
+			@Override public float extractValue(byte[] buffer, int offset) { return (float) extractRawValue(buffer, offset); }
 		};
 		binaryFieldProcessors[3] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "uint16 MSB First"; }
 			@Override public String getJavaTypeName()                      { return "Short"; }
 			@Override public boolean isLittleEndian()                      { return false; }
 			@Override public int getByteCount()                            { return 2; }
-			@Override public float extractValue(byte[] buffer, int offset) { return (float) (((0xFF & buffer[1+offset]) << 0) |
-			                                                                                 ((0xFF & buffer[0+offset]) << 8)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.UINT16; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return ((0xFF & buffer[1+offset]) << 0) |
+			                                                                          ((0xFF & buffer[0+offset]) << 8); }
+			@Override public float extractValue(byte[] buffer, int offset) { return (float) extractRawValue(buffer, offset); }
 		};
 		binaryFieldProcessors[4] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "uint32 LSB First"; }
 			@Override public String getJavaTypeName()                      { return "Int"; }
 			@Override public boolean isLittleEndian()                      { return true; }
 			@Override public int getByteCount()                            { return 4; }
-			@Override public float extractValue(byte[] buffer, int offset) { return (float)(int) (((0xFF & buffer[0+offset]) << 0) |
-					                                                                              ((0xFF & buffer[1+offset]) << 8) |
-					                                                                              ((0xFF & buffer[2+offset]) << 16) |
-					                                                                              ((0xFF & buffer[3+offset]) << 24)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.UINT32; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return ((0xFF & buffer[0+offset]) << 0)  |
+			                                                                          ((0xFF & buffer[1+offset]) << 8)  |
+			                                                                          ((0xFF & buffer[2+offset]) << 16) |
+			                                                                          ((0xFF & buffer[3+offset]) << 24); }
+			@Override public float extractValue(byte[] buffer, int offset) { return (float) (0xFFFFFFFFL & extractRawValue(buffer, offset)); }
 		};
 		binaryFieldProcessors[5] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "uint32 MSB First"; }
 			@Override public String getJavaTypeName()                      { return "Int"; }
 			@Override public boolean isLittleEndian()                      { return false; }
 			@Override public int getByteCount()                            { return 4; }
-			@Override public float extractValue(byte[] buffer, int offset) { return (float)(int) (((0xFF & buffer[3+offset]) << 0) |
-			                                                                                      ((0xFF & buffer[2+offset]) << 8) |
-			                                                                                      ((0xFF & buffer[1+offset]) << 16) |
-			                                                                                      ((0xFF & buffer[0+offset]) << 24)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.UINT32; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return ((0xFF & buffer[3+offset]) << 0)  |
+			                                                                          ((0xFF & buffer[2+offset]) << 8)  |
+			                                                                          ((0xFF & buffer[1+offset]) << 16) |
+			                                                                          ((0xFF & buffer[0+offset]) << 24); }
+			@Override public float extractValue(byte[] buffer, int offset) { return (float) (0xFFFFFFFFL & extractRawValue(buffer, offset)); }
 		};
 		binaryFieldProcessors[6] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "int16 LSB First"; }
 			@Override public String getJavaTypeName()                      { return "Short"; }
 			@Override public boolean isLittleEndian()                      { return true; }
 			@Override public int getByteCount()                            { return 2; }
-			@Override public float extractValue(byte[] buffer, int offset) { return (float)(short) (((0xFF & buffer[0+offset]) << 0) |
-					                                                                                ((0xFF & buffer[1+offset]) << 8)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.INT16; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return (short) (((0xFF & buffer[0+offset]) << 0) |
+			                                                                                  ((0xFF & buffer[1+offset]) << 8)); }
+			@Override public float extractValue(byte[] buffer, int offset) { return (float) extractRawValue(buffer, offset); }
 		};
 		binaryFieldProcessors[7] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "int16 MSB First"; }
 			@Override public String getJavaTypeName()                      { return "Short"; }
 			@Override public boolean isLittleEndian()                      { return false; }
 			@Override public int getByteCount()                            { return 2; }
-			@Override public float extractValue(byte[] buffer, int offset) { return (float)(short) (((0xFF & buffer[1+offset]) << 0) |
-			                                                                                        ((0xFF & buffer[0+offset]) << 8)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.INT16; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return (short) (((0xFF & buffer[1+offset]) << 0) |
+			                                                                                  ((0xFF & buffer[0+offset]) << 8)); }
+			@Override public float extractValue(byte[] buffer, int offset) { return (float) extractRawValue(buffer, offset); }
 		};
 		binaryFieldProcessors[8] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "float32 LSB First"; }
 			@Override public String getJavaTypeName()                      { return "Float"; }
 			@Override public boolean isLittleEndian()                      { return true; }
 			@Override public int getByteCount()                            { return 4; }
-			@Override public float extractValue(byte[] buffer, int offset) { return Float.intBitsToFloat(((0xFF & buffer[0+offset]) <<  0) |
-			                                                                                             ((0xFF & buffer[1+offset]) <<  8) |
-			                                                                                             ((0xFF & buffer[2+offset]) << 16) |
-			                                                                                             ((0xFF & buffer[3+offset]) << 24)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.FLOAT32; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return ((0xFF & buffer[0+offset]) <<  0) |
+			                                                                          ((0xFF & buffer[1+offset]) <<  8) |
+			                                                                          ((0xFF & buffer[2+offset]) << 16) |
+			                                                                          ((0xFF & buffer[3+offset]) << 24); }
+			@Override public float extractValue(byte[] buffer, int offset) { return Float.intBitsToFloat(extractRawValue(buffer, offset)); }
 		};
 		binaryFieldProcessors[9] = new BinaryFieldProcessor() {
 			@Override public String toString()                             { return "float32 MSB First"; }
 			@Override public String getJavaTypeName()                      { return "Float"; }
 			@Override public boolean isLittleEndian()                      { return false; }
 			@Override public int getByteCount()                            { return 4; }
-			@Override public float extractValue(byte[] buffer, int offset) { return Float.intBitsToFloat(((0xFF & buffer[3+offset]) <<  0) |
-                                                                                                         ((0xFF & buffer[2+offset]) <<  8) |
-                                                                                                         ((0xFF & buffer[1+offset]) << 16) |
-                                                                                                         ((0xFF & buffer[0+offset]) << 24)); }
+			@Override public StorageFloats.Type getStorageType()           { return StorageFloats.Type.FLOAT32; }
+			@Override public int extractRawValue(byte[] buffer, int offset) { return ((0xFF & buffer[3+offset]) <<  0) |
+			                                                                          ((0xFF & buffer[2+offset]) <<  8) |
+			                                                                          ((0xFF & buffer[1+offset]) << 16) |
+			                                                                          ((0xFF & buffer[0+offset]) << 24); }
+			@Override public float extractValue(byte[] buffer, int offset) { return Float.intBitsToFloat(extractRawValue(buffer, offset)); }
 		};
 		binaryChecksumProcessors[0] = new BinaryChecksumProcessor() {
 			@Override public String toString()                             { return "uint8 Checksum"; }
@@ -299,14 +320,19 @@ public class DatasetsController {
 		});
 		chartsToRemove.forEach(chart -> ChartsController.removeChart(chart));
 		
-		datasets.remove(location);
-		dataset.floats.dispose();
+		synchronized(connection.journal) {
+			datasets.remove(location);
+			dataset.floats.dispose();
+		}
 		
 		// remove timestamps if nothing is left
 		if(datasets.isEmpty()) {
-			timestamps.clear();
-			sampleCount.set(0);
-			firstTimestamp = 0;
+			synchronized(connection.journal) {
+				connection.journal.reset();
+				timestamps.clear();
+				sampleCount.set(0);
+				firstTimestamp = 0;
+			}
 			
 			CommunicationView.instance.redraw();
 			OpenGLChartsView.instance.switchToLiveView();
@@ -341,16 +367,33 @@ public class DatasetsController {
 	}
 	
 	/**
-	 * Removes all samples, timestamps and camera images, but does not remove the Dataset, Chart or Camera objects.
+	 * Closes the files used by the timestamps and datasets, but leaves them on disk so the SessionJournal can reopen them later.
 	 */
-	public void removeAllData() {
+	public void close() {
 		
+		timestamps.close();
 		for(Dataset dataset : getList())
-			dataset.floats.clear();
+			dataset.floats.close();
 		
-		timestamps.clear();
-		sampleCount.set(0);
-		firstTimestamp = 0;
+	}
+	
+	/**
+	 * Removes all samples, timestamps and camera images, but does not remove the Dataset, Chart or Camera objects.
+	 */
+	public void removeAllData() {
+		
+		synchronized(connection.journal) {
+			connection.journal.reset();
+			
+			for(Dataset dataset : getList()) {
+				dataset.floats.clear();
+				dataset.clearIndexes();
+			}
+			
+			timestamps.clear();
+			sampleCount.set(0);
+			firstTimestamp = 0;
+		}
 		
 		CommunicationView.instance.redraw();
 		OpenGLChartsView.instance.switchToLiveView();
@@ -581,7 +624,7 @@ public class DatasetsController {
 		long timestamp = System.currentTimeMillis();
 		timestamps.appendTimestamp(timestamp);
 		
-		int newSampleCount = sampleCount.incrementAndGet();
+		long newSampleCount = sampleCount.incrementAndGet();
 		if(newSampleCount == 1) {
 			firstTimestamp = timestamp;
 			CommunicationView.instance.redraw();
@@ -607,6 +650,19 @@ public class DatasetsController {
 		
 	}
 	
+	/**
+	 * Sets the sample count after the SessionJournal has restored entire slots of timestamps and samples from disk.
+	 * 
+	 * @param sampleCount    Number of samples that were restored.
+	 */
+	public void setRestoredSampleCount(long sampleCount) {
+		
+		this.sampleCount.set(sampleCount);
+		firstTimestamp = (sampleCount > 0) ? timestamps.getTimestamp(0) : 0;
+		CommunicationView.instance.redraw();
+		
+	}
+	
 	/**
 	 * Increments the sample count and sets the timestamp to a specific value.
 	 * Call this function when importing a file, after all datasets have received a new value.
@@ -615,7 +671,7 @@ public class DatasetsController {
 		
 		timestamps.appendTimestamp(timestamp);
 		
-		int newSampleCount = sampleCount.incrementAndGet();
+		long newSampleCount = sampleCount.incrementAndGet();
 		if(newSampleCount == 1) {
 			firstTimestamp = timestamp;
 			CommunicationView.instance.redraw();
@@ -623,15 +679,15 @@ public class DatasetsController {
 		
 	}
 	
-	public int getClosestSampleNumberAtOrBefore(long timestamp, int maxSampleNumber) {
+	public long getClosestSampleNumberAtOrBefore(long timestamp, long maxSampleNumber) {
 		
-		return timestamps.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
+		return FrameQueryCache.getClosestSampleNumberAtOrBefore(timestamps, timestamp, maxSampleNumber);
 		
 	}
 	
-	public int getClosestSampleNumberAfter(long timestamp) {
+	public long getClosestSampleNumberAfter(long timestamp) {
 		
-		return timestamps.getClosestSampleNumberAfter(timestamp);
+		return FrameQueryCache.getClosestSampleNumberAfter(timestamps, timestamp);
 		
 	}
 	
@@ -650,7 +706,7 @@ public class DatasetsController {
 	 * @param sampleNumber    Which sample to check.
 	 * @return                The corresponding UNIX timestamp.
 	 */
-	public long getTimestamp(int sampleNumber) {
+	public long getTimestamp(long sampleNumber) {
 		
 		if(sampleNumber < 0)
 			return firstTimestamp;
@@ -659,16 +715,29 @@ public class DatasetsController {
 		
 	}
 	
-	public FloatBuffer getTimestampsBuffer(int firstSampleNumber, int lastSampleNumber, StorageTimestamps.Cache cache, long plotMinX) {
+	/**
+	 * Gets a sequence of timestamps.
+	 * 
+	 * @param firstSampleNumber    First sample number to obtain, inclusive.
+	 * @param count                Number of timestamps to obtain.
+	 * @param destination          Where the timestamps will be written, starting at its current position.
+	 */
+	public void getTimestamps(long firstSampleNumber, int count, LongBuffer destination) {
+		
+		timestamps.getTimestamps(firstSampleNumber, count, destination);
+		
+	}
+	
+	public FloatBuffer getTimestampsBuffer(long firstSampleNumber, long lastSampleNumber, StorageTimestamps.Cache cache, long plotMinX, FloatBuffer buffer) {
 		
-		return timestamps.getTampstamps(firstSampleNumber, lastSampleNumber, cache, plotMinX);
+		return timestamps.getTampstamps(firstSampleNumber, lastSampleNumber, cache, plotMinX, buffer);
 		
 	}
 	
 	/**
 	 * @return    The current number of samples stored in the Datasets.
 	 */
-	public int getSampleCount() {
+	public long getSampleCount() {
 		
 		return sampleCount.get();
 		
@@ -696,12 +765,24 @@ public class DatasetsController {
 		 */
 		public int getByteCount();
 		
+		/**
+		 * @return    How samples of this field should be stored. Integer fields are stored at their native width.
+		 */
+		public StorageFloats.Type getStorageType();
+		
 		/**
 		 * @param buffer    Unprocessed telemetry packet, without the sync word.
 		 * @param offset    Where in the buffer this value starts.
 		 * @return          The corresponding number, as a float. This number has *not* been scaled by the Dataset conversion factors.
 		 */
 		public float extractValue(byte[] buffer, int offset);
+		
+		/**
+		 * @param buffer    Unprocessed telemetry packet, without the sync word.
+		 * @param offset    Where in the buffer this value starts.
+		 * @return          The raw bits of this field, as an int. Integer fields are zero-extended or sign-extended, float32 fields are the IEEE 754 bits.
+		 */
+		public int extractRawValue(byte[] buffer, int offset);
 
 	}
 	
@@ -4,12 +4,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Charts and exportFiles() must access a connection's datasets through a "DatasetsInterface" which automatically manages caching.
  * 
  * All interactions are thread-safe *if* each thread creates its own DatasetsInterface,
  * therefore the charts and exportFiles() should each create their own DatasetsInterface.
+ * 
+ * While the charts are being drawn, ranges/aggregates/sample buffers are shared between charts through the FrameQueryCache.
  */
 public class DatasetsInterface {
 	
@@ -18,6 +21,7 @@ public class DatasetsInterface {
 	public List<Dataset.Bitfield.State> levelStates = new ArrayList<>();
 	public ConnectionTelemetry connection = null;
 	private Map<Dataset, StorageFloats.Cache> caches = new HashMap<>();
+	private List<StorageFloats.Cache> replacedCaches = new ArrayList<>(); // released by the thread that uses the caches, guarded by itself
 	
 	/**
 	 * Sets the normal (non-bitfield) datasets that can be subsequently accessed, replacing any existing ones.
@@ -31,6 +35,9 @@ public class DatasetsInterface {
 		normalDatasets.addAll(newDatasets);
 		
 		// update caches
+		synchronized(replacedCaches) {
+			replacedCaches.addAll(caches.values());
+		}
 		caches.clear();
 		normalDatasets.forEach(dataset -> caches.put(dataset, dataset.createCache()));
 		edgeStates.forEach(state -> caches.put(state.dataset, state.dataset.createCache()));
@@ -56,6 +63,9 @@ public class DatasetsInterface {
 		edgeStates.addAll(newEdges);
 		
 		// update caches
+		synchronized(replacedCaches) {
+			replacedCaches.addAll(caches.values());
+		}
 		caches.clear();
 		normalDatasets.forEach(dataset -> caches.put(dataset, dataset.createCache()));
 		edgeStates.forEach(state -> caches.put(state.dataset, state.dataset.createCache()));
@@ -81,6 +91,9 @@ public class DatasetsInterface {
 		levelStates.addAll(newLevels);
 		
 		// update caches
+		synchronized(replacedCaches) {
+			replacedCaches.addAll(caches.values());
+		}
 		caches.clear();
 		normalDatasets.forEach(dataset -> caches.put(dataset, dataset.createCache()));
 		edgeStates.forEach(state -> caches.put(state.dataset, state.dataset.createCache()));
@@ -152,7 +165,7 @@ public class DatasetsInterface {
 	 * @param sampleNumber    Sample number.
 	 * @return                The sample, as a float32.
 	 */
-	public float getSample(Dataset dataset, int sampleNumber) {
+	public float getSample(Dataset dataset, long sampleNumber) {
 		
 		StorageFloats.Cache cache = cacheFor(dataset);
 		return dataset.getSample(sampleNumber, cache);
@@ -166,7 +179,7 @@ public class DatasetsInterface {
 	 * @param sampleNumber    Sample number.
 	 * @return                The sample, as a String.
 	 */
-	public String getSampleAsString(Dataset dataset, int sampleNumber) {
+	public String getSampleAsString(Dataset dataset, long sampleNumber) {
 		
 		StorageFloats.Cache cache = cacheFor(dataset);
 		return dataset.getSampleAsString(sampleNumber, cache);
@@ -181,7 +194,7 @@ public class DatasetsInterface {
 	 * @param maxSampleNumber    Last sample number, inclusive.
 	 * @return                   A float[] of the samples.
 	 */
-	public float[] getSamplesArray(Dataset dataset, int minSampleNumber, int maxSampleNumber) {
+	public float[] getSamplesArray(Dataset dataset, long minSampleNumber, long maxSampleNumber) {
 		
 		StorageFloats.Cache cache = cacheFor(dataset);
 		return dataset.getSamplesArray(minSampleNumber, maxSampleNumber, cache);
@@ -196,10 +209,10 @@ public class DatasetsInterface {
 	 * @param maxSampleNumber    Last sample number, inclusive.
 	 * @return                   A FloatBuffer of the samples.
 	 */
-	public FloatBuffer getSamplesBuffer(Dataset dataset, int minSampleNumber, int maxSampleNumber) {
+	public FloatBuffer getSamplesBuffer(Dataset dataset, long minSampleNumber, long maxSampleNumber) {
 		
 		StorageFloats.Cache cache = cacheFor(dataset);
-		return dataset.getSamplesBuffer(minSampleNumber, maxSampleNumber, cache);
+		return FrameQueryCache.getSamplesBuffer(dataset, minSampleNumber, maxSampleNumber, cache);
 		
 	}
 	
@@ -212,13 +225,13 @@ public class DatasetsInterface {
 	 *                           If there are no normal datasets, [-1, 1] will be returned.
 	 *                           If the range is a single value, [value +/- 0.001] will be returned.
 	 */
-	public float[] getRange(int minSampleNumber, int maxSampleNumber) {
+	public float[] getRange(long minSampleNumber, long maxSampleNumber) {
 		
 		float[] minMax = new float[] {Float.MAX_VALUE, -Float.MAX_VALUE};
 
 		normalDatasets.forEach(dataset -> {
 			if(!dataset.isBitfield) {
-				StorageFloats.MinMax range = dataset.getRange((int) minSampleNumber, (int) maxSampleNumber, cacheFor(dataset));
+				StorageFloats.MinMax range = FrameQueryCache.getRange(dataset, minSampleNumber, maxSampleNumber, cacheFor(dataset));
 				if(range.min < minMax[0])
 					minMax[0] = range.min;
 				if(range.max > minMax[1])
@@ -249,12 +262,12 @@ public class DatasetsInterface {
 	 *                           If there are no normal datasets, [-1, 1] will be returned.
 	 *                           If the range is a single value, [value +/- 0.001] will be returned.
 	 */
-	public float[] getRange(Dataset dataset, int minSampleNumber, int maxSampleNumber) {
+	public float[] getRange(Dataset dataset, long minSampleNumber, long maxSampleNumber) {
 		
 		float[] minMax = new float[] {Float.MAX_VALUE, -Float.MAX_VALUE};
 
 		if(!dataset.isBitfield) {
-			StorageFloats.MinMax range = dataset.getRange((int) minSampleNumber, (int) maxSampleNumber, cacheFor(dataset));
+			StorageFloats.MinMax range = FrameQueryCache.getRange(dataset, minSampleNumber, maxSampleNumber, cacheFor(dataset));
 			if(range.min < minMax[0])
 				minMax[0] = range.min;
 			if(range.max > minMax[1])
@@ -274,12 +287,27 @@ public class DatasetsInterface {
 		
 	}
 	
+	/**
+	 * Gets the count, mean and sum of squared deviations of one normal dataset.
+	 * 
+	 * @param dataset            The dataset.
+	 * @param minSampleNumber    Minimum sample number, inclusive.
+	 * @param maxSampleNumber    Maximum sample number, inclusive.
+	 * @return                   An Aggregate object, which can provide the mean, standard deviation, RMS, etc.
+	 */
+	public StorageFloats.Aggregate getAggregate(Dataset dataset, long minSampleNumber, long maxSampleNumber) {
+		
+		return FrameQueryCache.getAggregate(dataset, minSampleNumber, maxSampleNumber, cacheFor(dataset));
+		
+	}
+	
 	/**
 	 * Iterates over all selected normal datasets.
 	 * 
 	 * @param consumer    BiConsumer that accepts a dataset and its corresponding samples cache.
 	 */
 	public void forEachNormal(BiConsumer<Dataset, StorageFloats.Cache> consumer) {
+		releaseReplacedCaches();
 		for(int i = 0; i < normalDatasets.size(); i++) {
 			Dataset dataset = normalDatasets.get(i);
 			StorageFloats.Cache cache = caches.get(dataset);
@@ -294,10 +322,10 @@ public class DatasetsInterface {
 	 * @param maxSampleNumber    Last sample number to check, inclusive.
 	 * @param consumer           BiConsumer that accepts a bitfield state and its corresponding edge event sample number.
 	 */
-	public void forEachEdge(int minSampleNumber, int maxSampleNumber, BiConsumer<Dataset.Bitfield.State, Integer> consumer) {
+	public void forEachEdge(long minSampleNumber, long maxSampleNumber, ObjLongConsumer<Dataset.Bitfield.State> consumer) {
 		
 		edgeStates.forEach(state -> {
-			state.getEdgeEventsBetween(minSampleNumber, maxSampleNumber, cacheFor(state.dataset)).forEach(eventSampleNumber -> {
+			state.forEachEdgeBetween(minSampleNumber, maxSampleNumber, eventSampleNumber -> {
 				consumer.accept(state, eventSampleNumber);
 			});
 		});
@@ -311,7 +339,7 @@ public class DatasetsInterface {
 	 * @param maxSampleNumber    Last sample number to check, inclusive.
 	 * @param consumer           BiConsumer that accepts a bitfield state and its corresponding sample number range ([0] = start, [1] = end.)
 	 */
-	public void forEachLevel(int minSampleNumber, int maxSampleNumber, BiConsumer<Dataset.Bitfield.State, int[]> consumer) {
+	public void forEachLevel(long minSampleNumber, long maxSampleNumber, BiConsumer<Dataset.Bitfield.State, long[]> consumer) {
 		
 		levelStates.forEach(state -> {
 			state.getLevelsBetween(minSampleNumber, maxSampleNumber, cacheFor(state.dataset)).forEach(range -> {
@@ -327,8 +355,35 @@ public class DatasetsInterface {
 	 */
 	private StorageFloats.Cache cacheFor(Dataset dataset) {
 		
+		releaseReplacedCaches();
 		return caches.get(dataset);
 		
 	}
 	
+	/**
+	 * Releases any samples held by caches that were replaced when the datasets changed.
+	 * This is done lazily by the thread that uses the caches, because the datasets may be changed by another thread while a chart is being drawn.
+	 */
+	private void releaseReplacedCaches() {
+		
+		synchronized(replacedCaches) {
+			if(replacedCaches.isEmpty())
+				return;
+			replacedCaches.forEach(cache -> cache.dispose());
+			replacedCaches.clear();
+		}
+		
+	}
+	
+	/**
+	 * Releases any samples held by the caches, so shared sample pages and windows can be reused.
+	 * This must be called by the thread that uses the caches. This object remains usable, and the caches will be repopulated if needed.
+	 */
+	public void dispose() {
+		
+		releaseReplacedCaches();
+		caches.values().forEach(cache -> cache.dispose());
+		
+	}
+	
 }
\ No newline at end of file
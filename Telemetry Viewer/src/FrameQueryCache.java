@@ -0,0 +1,230 @@
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of dataset queries for the duration of one frame, so charts that show the same datasets and time window can share them.
+ * 
+ * Several charts often show the same dataset over the same range of samples (a time domain chart, a histogram, a statistics chart, etc.)
+ * Each chart has its own DatasetsInterface, so without this class every chart would separately calculate the same ranges,
+ * aggregates, sample windows and timestamp lookups every frame.
+ * 
+ * Only the thread that is drawing the charts uses these results. Other threads (exporting, triggers, etc.) always calculate their own.
+ * Results are discarded at the end of every frame, so new samples are always reflected in the next frame.
+ */
+public class FrameQueryCache {
+	
+	private static final int RANGE            = 0;
+	private static final int AGGREGATE        = 1;
+	private static final int SAMPLES          = 2;
+	private static final int SAMPLE_AT_BEFORE = 3;
+	private static final int SAMPLE_AFTER     = 4;
+	
+	private static volatile Thread frameThread = null;
+	private static final Map<Key, Object> results = new HashMap<Key, Object>();
+	private static final Key lookupKey = new Key(); // reused for lookups, a new Key is only created when a result is stored
+	
+	private static int hitCount = 0;
+	private static int queryCount = 0;
+	private static int previousHitCount = 0;
+	private static int previousQueryCount = 0;
+	
+	/**
+	 * Called by the charts view before drawing a frame. Any results from the previous frame are discarded.
+	 */
+	public static void beginFrame() {
+		
+		results.clear();
+		frameThread = Thread.currentThread();
+		hitCount = 0;
+		queryCount = 0;
+		
+	}
+	
+	/**
+	 * Called by the charts view after drawing a frame. Results are discarded so the memory can be reclaimed.
+	 */
+	public static void endFrame() {
+		
+		frameThread = null;
+		results.clear();
+		previousHitCount = hitCount;
+		previousQueryCount = queryCount;
+		
+	}
+	
+	/**
+	 * @return    Description of how many queries were shared during the previous frame, for the benchmarking overlay.
+	 */
+	public static String getPreviousFrameSummary() {
+		
+		return "Shared queries = " + previousHitCount + " of " + previousQueryCount;
+		
+	}
+	
+	/**
+	 * Gets the minimum and maximum of a sequence of samples.
+	 * 
+	 * @param dataset              Dataset to check.
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive.
+	 * @param cache                Place to cache samples, if the range must be calculated.
+	 * @return                     A MinMax object. This may be shared with other charts, so it must not be modified.
+	 */
+	public static StorageFloats.MinMax getRange(Dataset dataset, long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
+		
+		if(Thread.currentThread() != frameThread)
+			return dataset.getRange(firstSampleNumber, lastSampleNumber, cache);
+		
+		StorageFloats.MinMax range = (StorageFloats.MinMax) lookup(RANGE, dataset, firstSampleNumber, lastSampleNumber);
+		if(range == null) {
+			range = dataset.getRange(firstSampleNumber, lastSampleNumber, cache);
+			store(RANGE, dataset, firstSampleNumber, lastSampleNumber, range);
+		}
+		return range;
+		
+	}
+	
+	/**
+	 * Gets the count, mean and sum of squared deviations of a sequence of samples.
+	 * 
+	 * @param dataset              Dataset to check.
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive.
+	 * @param cache                Place to cache samples, if the aggregate must be calculated.
+	 * @return                     An Aggregate object. This may be shared with other charts, so it must not be modified.
+	 */
+	public static StorageFloats.Aggregate getAggregate(Dataset dataset, long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
+		
+		if(Thread.currentThread() != frameThread)
+			return dataset.getAggregate(firstSampleNumber, lastSampleNumber, cache);
+		
+		StorageFloats.Aggregate aggregate = (StorageFloats.Aggregate) lookup(AGGREGATE, dataset, firstSampleNumber, lastSampleNumber);
+		if(aggregate == null) {
+			aggregate = dataset.getAggregate(firstSampleNumber, lastSampleNumber, cache);
+			store(AGGREGATE, dataset, firstSampleNumber, lastSampleNumber, aggregate);
+		}
+		return aggregate;
+		
+	}
+	
+	/**
+	 * Gets a sequence of samples.
+	 * If another chart already got the same samples during this frame, and that chart's cache still holds them, its buffer is shared.
+	 * 
+	 * @param dataset              Dataset to read from.
+	 * @param firstSampleNumber    First sample number to obtain, inclusive.
+	 * @param lastSampleNumber     Last sample number to obtain, inclusive.
+	 * @param cache                Place to cache samples, if they must be read.
+	 * @return                     The samples, as a FloatBuffer, positioned at the first sample number.
+	 */
+	public static FloatBuffer getSamplesBuffer(Dataset dataset, long firstSampleNumber, long lastSampleNumber, StorageFloats.Cache cache) {
+		
+		if(Thread.currentThread() != frameThread)
+			return dataset.getSamplesBuffer(firstSampleNumber, lastSampleNumber, cache);
+		
+		SamplesWindow window = (SamplesWindow) lookup(SAMPLES, dataset, firstSampleNumber, lastSampleNumber);
+		if(window != null && window.cache.getGeneration() == window.generation)
+			return window.buffer.duplicate(); // the samples are still in the other chart's cache
+		
+		FloatBuffer buffer = dataset.getSamplesBuffer(firstSampleNumber, lastSampleNumber, cache);
+		store(SAMPLES, dataset, firstSampleNumber, lastSampleNumber, new SamplesWindow(buffer.duplicate(), cache)); // duplicate, so the position is not affected by the caller
+		return buffer;
+		
+	}
+	
+	/**
+	 * Gets the closest sample number that occurred at or before a timestamp.
+	 * 
+	 * @param timestamps         Timestamps of the connection.
+	 * @param timestamp          The timestamp to search for.
+	 * @param maxSampleNumber    Largest sample number to consider.
+	 * @return                   The sample number.
+	 */
+	public static long getClosestSampleNumberAtOrBefore(StorageTimestamps timestamps, long timestamp, long maxSampleNumber) {
+		
+		if(Thread.currentThread() != frameThread)
+			return timestamps.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
+		
+		Long sampleNumber = (Long) lookup(SAMPLE_AT_BEFORE, timestamps, timestamp, maxSampleNumber);
+		if(sampleNumber == null) {
+			sampleNumber = timestamps.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
+			store(SAMPLE_AT_BEFORE, timestamps, timestamp, maxSampleNumber, sampleNumber);
+		}
+		return sampleNumber;
+		
+	}
+	
+	/**
+	 * Gets the closest sample number that occurred after a timestamp.
+	 * 
+	 * @param timestamps    Timestamps of the connection.
+	 * @param timestamp     The timestamp to search for.
+	 * @return              The sample number.
+	 */
+	public static long getClosestSampleNumberAfter(StorageTimestamps timestamps, long timestamp) {
+		
+		if(Thread.currentThread() != frameThread)
+			return timestamps.getClosestSampleNumberAfter(timestamp);
+		
+		Long sampleNumber = (Long) lookup(SAMPLE_AFTER, timestamps, timestamp, 0);
+		if(sampleNumber == null) {
+			sampleNumber = timestamps.getClosestSampleNumberAfter(timestamp);
+			store(SAMPLE_AFTER, timestamps, timestamp, 0, sampleNumber);
+		}
+		return sampleNumber;
+		
+	}
+	
+	private static Object lookup(int type, Object owner, long a, long b) {
+		
+		queryCount++;
+		lookupKey.set(type, owner, a, b);
+		Object result = results.get(lookupKey);
+		if(result != null)
+			hitCount++;
+		return result;
+		
+	}
+	
+	private static void store(int type, Object owner, long a, long b, Object result) {
+		
+		Key key = new Key();
+		key.set(type, owner, a, b);
+		results.put(key, result);
+		
+	}
+	
+	private static class Key {
+		
+		int type;
+		Object owner;
+		long a;
+		long b;
+		
+		void set(int type, Object owner, long a, long b) { this.type = type; this.owner = owner; this.a = a; this.b = b; }
+		
+		@Override public boolean equals(Object other) {
+			if(!(other instanceof Key))
+				return false;
+			Key key = (Key) other;
+			return key.type == type && key.owner == owner && key.a == a && key.b == b;
+		}
+		
+		@Override public int hashCode() {
+			return ((System.identityHashCode(owner) * 31 + type) * 31 + Long.hashCode(a)) * 31 + Long.hashCode(b);
+		}
+		
+	}
+	
+	private static class SamplesWindow {
+		
+		final FloatBuffer buffer;
+		final StorageFloats.Cache cache;
+		final int generation; // if the cache's generation changes, its contents were replaced and this buffer is no longer valid
+		
+		SamplesWindow(FloatBuffer buffer, StorageFloats.Cache cache) { this.buffer = buffer; this.cache = cache; this.generation = cache.getGeneration(); }
+		
+	}
+	
+}
@@ -0,0 +1,231 @@
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import org.libjpegturbo.turbojpeg.TJ;
+import org.libjpegturbo.turbojpeg.TJCompressor;
+import org.libjpegturbo.turbojpeg.TJDecompressor;
+import org.libjpegturbo.turbojpeg.TJScalingFactor;
+
+/**
+ * A fixed-size pool of threads that encode and decode JPEG images for all cameras.
+ * 
+ * Each thread that uses a codec (the pool threads, and any other thread that calls getCodec()) gets its own Codec object.
+ * A Codec keeps its TJCompressor, TJDecompressor, pixel buffer and JPEG buffer, and reuses them for every image it handles,
+ * so encoding or decoding a frame does not allocate anything unless the resolution increases.
+ */
+public class JpegCodecPool {
+	
+	private static final int THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+	private static final ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT, task -> {
+		Thread thread = new Thread(task);
+		thread.setName("JPEG Codec Thread");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final ThreadLocal<Codec> codecs = ThreadLocal.withInitial(() -> new Codec());
+	
+	/**
+	 * Queues a task that will be run by one of the pool threads.
+	 * Tasks are started in the order they were submitted.
+	 * 
+	 * @param task    The task to run. It should use getCodec() for any encoding or decoding.
+	 */
+	public static void submit(Runnable task) {
+		
+		pool.execute(task);
+		
+	}
+	
+	/**
+	 * @return    The Codec owned by the calling thread.
+	 */
+	public static Codec getCodec() {
+		
+		return codecs.get();
+		
+	}
+	
+	/**
+	 * Encodes and decodes JPEG images with libjpeg-turbo, falling back to the JRE library if libjpeg-turbo is not available.
+	 * A Codec must only be used by the thread that owns it.
+	 */
+	public static class Codec {
+		
+		private TJDecompressor decompressor;
+		private TJCompressor compressor;
+		private TJScalingFactor[] scalingFactors;
+		private boolean turboUnavailable = false;
+		
+		/** BGR pixels of the most recently decoded image. Only valid until the next call to decode(). */
+		public byte[] pixels = new byte[0];
+		public int width;
+		public int height;
+		public int nativeWidth;
+		public int nativeHeight;
+		public boolean isScaledDown; // true if width and height are smaller than the native resolution
+		
+		/** The most recently encoded image. Only the first jpegLength bytes are valid, and only until the next call to encode(). */
+		public byte[] jpeg = new byte[0];
+		public int jpegLength;
+		
+		private byte[] jpegInput = new byte[0]; // reused when decoding JPEGs that are not stored in a byte[]
+		
+		private Codec() {
+			
+			try {
+				decompressor = new TJDecompressor();
+				compressor = new TJCompressor();
+				compressor.setJPEGQuality(80);
+				compressor.setSubsamp(TJ.SAMP_422);
+				scalingFactors = TJ.getScalingFactors();
+			} catch(Error | Exception e) {
+				turboUnavailable = true;
+			}
+			
+		}
+		
+		/**
+		 * Decodes a JPEG image at its native resolution into the pixels buffer (BGR byte order).
+		 * 
+		 * @param jpegBytes     The JPEG image.
+		 * @param length        Number of bytes in the JPEG image.
+		 * @throws Exception    If the image could not be decoded.
+		 */
+		public void decode(byte[] jpegBytes, int length) throws Exception {
+			
+			decode(jpegBytes, length, 0, 0);
+			
+		}
+		
+		/**
+		 * Decodes a JPEG image into the pixels buffer (BGR byte order) and updates the width, height, native size and isScaledDown fields.
+		 * 
+		 * If libjpeg-turbo is available, the image is decoded at the smallest scaling factor (1/8, 1/4, 1/2, etc.)
+		 * that still has at least one pixel per screen pixel when the image is fit into the specified region.
+		 * This is much faster than decoding at the native resolution, and results in a smaller texture.
+		 * 
+		 * @param jpegBytes     The JPEG image.
+		 * @param length        Number of bytes in the JPEG image.
+		 * @param maxWidth      Width of the region the image will be fit into, in pixels. Use 0 to decode at the native resolution.
+		 * @param maxHeight     Height of the region the image will be fit into, in pixels. Use 0 to decode at the native resolution.
+		 * @throws Exception    If the image could not be decoded.
+		 */
+		public void decode(byte[] jpegBytes, int length, int maxWidth, int maxHeight) throws Exception {
+			
+			if(!turboUnavailable) {
+				try {
+					decompressor.setSourceImage(jpegBytes, length);
+					nativeWidth = decompressor.getWidth();
+					nativeHeight = decompressor.getHeight();
+					width = nativeWidth;
+					height = nativeHeight;
+					if(maxWidth > 0 && maxHeight > 0) {
+						double requiredScale = Math.min((double) maxWidth / (double) nativeWidth, (double) maxHeight / (double) nativeHeight);
+						for(TJScalingFactor factor : scalingFactors) {
+							double scale = (double) factor.getNum() / (double) factor.getDenom();
+							int scaledWidth = factor.getScaled(nativeWidth);
+							int scaledHeight = factor.getScaled(nativeHeight);
+							if(scale >= requiredScale && scaledWidth * scaledHeight < width * height) {
+								width = scaledWidth;
+								height = scaledHeight;
+							}
+						}
+					}
+					isScaledDown = (width < nativeWidth);
+					if(pixels.length < width * height * 3)
+						pixels = new byte[width * height * 3];
+					decompressor.decompress(pixels, 0, 0, width, 0, height, TJ.PF_BGR, 0);
+					return;
+				} catch(Error | Exception e) {
+					// fall through to the JRE library
+				}
+			}
+			
+			BufferedImage bi = ImageIO.read(new ByteArrayInputStream(jpegBytes, 0, length));
+			width = bi.getWidth();
+			height = bi.getHeight();
+			nativeWidth = width;
+			nativeHeight = height;
+			isScaledDown = false;
+			pixels = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+			
+		}
+		
+		/**
+		 * Decodes a JPEG image into the pixels buffer (BGR byte order) and updates the width, height, native size and isScaledDown fields.
+		 * 
+		 * libjpeg-turbo's Java API only accepts byte[]s, so if the JPEG is not in an array (for example, a slice of a memory-mapped file)
+		 * it is copied into an array that is reused for every image.
+		 * 
+		 * @param jpeg          The JPEG image, from position to limit. The position is not changed.
+		 * @param maxWidth      Width of the region the image will be fit into, in pixels. Use 0 to decode at the native resolution.
+		 * @param maxHeight     Height of the region the image will be fit into, in pixels. Use 0 to decode at the native resolution.
+		 * @throws Exception    If the image could not be decoded.
+		 */
+		public void decode(ByteBuffer jpeg, int maxWidth, int maxHeight) throws Exception {
+			
+			int length = jpeg.remaining();
+			if(jpeg.hasArray() && jpeg.arrayOffset() + jpeg.position() == 0) {
+				decode(jpeg.array(), length, maxWidth, maxHeight);
+			} else {
+				if(jpegInput.length < length)
+					jpegInput = new byte[length];
+				jpeg.duplicate().get(jpegInput, 0, length);
+				decode(jpegInput, length, maxWidth, maxHeight);
+			}
+			
+		}
+		
+		/**
+		 * Encodes an image into the jpeg buffer and updates the jpegLength field.
+		 * 
+		 * @param rgbBytes      The image, in RGB byte order. This array may be modified if the JRE library has to be used.
+		 * @param width         Width of the image, in pixels.
+		 * @param height        Height of the image, in pixels.
+		 * @throws Exception    If the image could not be encoded.
+		 */
+		public void encode(byte[] rgbBytes, int width, int height) throws Exception {
+			
+			if(!turboUnavailable) {
+				try {
+					int maxLength = TJ.bufSize(width, height, TJ.SAMP_422);
+					if(jpeg.length < maxLength)
+						jpeg = new byte[maxLength];
+					compressor.setSourceImage(rgbBytes, 0, 0, width, 0, height, TJ.PF_RGB);
+					compressor.compress(jpeg, 0);
+					jpegLength = compressor.getCompressedSize();
+					return;
+				} catch(Error | Exception e) {
+					// fall through to the JRE library
+				}
+			}
+			
+			// convert rgb to bgr
+			for(int i = 0; i < width * height * 3; i += 3) {
+				byte red  = rgbBytes[i];
+				byte blue = rgbBytes[i+2];
+				rgbBytes[i]   = blue;
+				rgbBytes[i+2] = red;
+			}
+			BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+			bi.setData(Raster.createRaster(bi.getSampleModel(), new DataBufferByte(rgbBytes, width * height * 3), new Point()));
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageIO.write(bi, "jpg", baos);
+			jpeg = baos.toByteArray();
+			jpegLength = jpeg.length;
+			baos.close();
+			
+		}
+		
+	}
+
+}
@@ -97,7 +97,7 @@ public class Main {
 			@Override public void windowLostFocus(WindowEvent we)   { }
 		});
 		
-		// allow the user to drag-n-drop settings/CSV/camera files
+		// allow the user to drag-n-drop settings/session/CSV/binary/camera files
 		window.setDropTarget(new DropTarget() {			
 			@Override public void drop(DropTargetDropEvent event) {
 				try {
@@ -135,8 +135,9 @@ public class Main {
 						return; // don't close
 				}
 				
-				// close connections and remove their cache files
-				ConnectionsController.allConnections.forEach(connection -> connection.dispose());
+				// close connections, keep the session so it can be reopened later, and remove the camera cache files
+				SessionJournal.closeSession();
+				ConnectionsController.cameraConnections.forEach(connection -> connection.dispose());
 				try { Files.deleteIfExists(cacheDir); } catch(Exception e) { }
 				
 				// die
@@ -150,6 +151,9 @@ public class Main {
 		window.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE); // so the windowClosing listener can cancel the close
 		window.setVisible(true);
 		
+		// offer to recover the previous session if the program crashed
+		SwingUtilities.invokeLater(() -> SessionJournal.offerRecovery());
+		
 	}
 	
 	/**
@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of an entire file, which may be larger than the 2GB limit of a single MappedByteBuffer.
+ * 
+ * The file is mapped as a series of overlapping regions, so any range of up to maxSliceLength bytes is entirely inside one region
+ * and can be returned as a slice of the mapping without copying. The OS pages the file in on demand, so mapping is nearly instant
+ * regardless of the file size.
+ */
+public class MappedFile {
+	
+	private static final long REGION_SIZE = 1L << 30;
+	private final MappedByteBuffer[] regions;
+	private final int maxSliceLength;
+	
+	/**
+	 * Maps a file.
+	 * 
+	 * @param file              The file, which must be open for reading.
+	 * @param maxSliceLength    Maximum number of bytes that will be requested from slice(). This must be less than 1GB.
+	 * @throws IOException      If the file could not be mapped.
+	 */
+	public MappedFile(FileChannel file, int maxSliceLength) throws IOException {
+		
+		long fileSize = file.size();
+		int regionCount = (int) ((fileSize + REGION_SIZE - 1) / REGION_SIZE);
+		regions = new MappedByteBuffer[regionCount];
+		for(int i = 0; i < regionCount; i++) {
+			long start = i * REGION_SIZE;
+			long end = Math.min(fileSize, start + REGION_SIZE + maxSliceLength);
+			regions[i] = file.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		}
+		this.maxSliceLength = maxSliceLength;
+		
+	}
+	
+	/**
+	 * Gets part of the file, without copying it.
+	 * 
+	 * @param offset    Byte offset into the file.
+	 * @param length    Number of bytes. This must not exceed the maxSliceLength specified when the file was mapped.
+	 * @return          A ByteBuffer backed by the mapping, with position 0 and limit = length.
+	 */
+	public ByteBuffer slice(long offset, int length) {
+		
+		if(length > maxSliceLength)
+			throw new IllegalArgumentException("Requested " + length + " bytes, but the file was mapped for slices of at most " + maxSliceLength + " bytes.");
+		
+		int regionN = (int) (offset / REGION_SIZE);
+		int start = (int) (offset - regionN * REGION_SIZE);
+		ByteBuffer buffer = regions[regionN].duplicate();
+		buffer.limit(start + length);
+		buffer.position(start);
+		return buffer.slice();
+		
+	}
+
+}
@@ -0,0 +1,205 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits an MJPEG-over-HTTP stream (a multipart/x-mixed-replace response) into JPEG images.
+ * 
+ * The stream is read in large chunks into a buffer that is reused for every frame, and part headers are found by scanning bytes
+ * instead of building strings. If a part has a Content-Length header, the JPEG is read directly from the stream into its final array.
+ * Otherwise the part ends at the next multipart boundary, or at the JPEG end-of-image marker if the response did not specify a boundary.
+ */
+public class MjpegStreamParser {
+	
+	private static final int MAX_HEADER_BYTE_COUNT = 5000;
+	private static final int MAX_PART_BYTE_COUNT = 16 * 1024 * 1024; // larger parts are treated as corrupt, so a bad header can't exhaust the heap
+	
+	private final InputStream stream;
+	private final byte[] delimiter; // "--" followed by the boundary, or null if the response did not specify a boundary
+	private byte[] buffer = new byte[65536];
+	private int start = 0; // first unconsumed byte in the buffer
+	private int end = 0;   // one past the last valid byte in the buffer
+	
+	/**
+	 * @param stream         The HTTP response body.
+	 * @param contentType    The HTTP response's Content-Type header, which should specify the boundary. May be null.
+	 */
+	public MjpegStreamParser(InputStream stream, String contentType) {
+		
+		this.stream = stream;
+		
+		// some cameras include the leading "--" in the boundary parameter, so strip it and search for "--boundary" which matches either way
+		String boundary = null;
+		if(contentType != null)
+			for(String parameter : contentType.split(";")) {
+				parameter = parameter.trim();
+				if(parameter.toLowerCase().startsWith("boundary="))
+					boundary = parameter.substring(9).replace("\"", "").trim();
+			}
+		while(boundary != null && boundary.startsWith("-"))
+			boundary = boundary.substring(1);
+		delimiter = (boundary == null || boundary.isEmpty()) ? null : ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+		
+	}
+	
+	/**
+	 * Blocks until the next JPEG has been received.
+	 * 
+	 * @return                     The JPEG, in an array of exactly the right size. The caller owns this array.
+	 * @throws EOFException        If the stream ended.
+	 * @throws ConnectException    If the stream does not appear to contain MJPEG data, or a part is malformed or larger than MAX_PART_BYTE_COUNT.
+	 * @throws IOException         If the stream could not be read.
+	 */
+	public byte[] readFrame() throws IOException {
+		
+		while(true) {
+			
+			// skip over any line breaks left over from the previous part
+			while(true) {
+				if(start == end)
+					fill();
+				if(buffer[start] != '\r' && buffer[start] != '\n')
+					break;
+				start++;
+			}
+			
+			// find the end of the part headers (the boundary line is treated as just another header line)
+			int headerEnd = -1;
+			int scanned = start;
+			while(headerEnd < 0) {
+				for(int i = Math.max(scanned, start + 3); i < end; i++)
+					if(buffer[i] == '\n' && buffer[i-1] == '\r' && buffer[i-2] == '\n' && buffer[i-3] == '\r') {
+						headerEnd = i + 1;
+						break;
+					}
+				if(headerEnd < 0) {
+					if(end - start > MAX_HEADER_BYTE_COUNT)
+						throw new ConnectException();
+					scanned = end;
+					int shift = start;
+					fill();
+					scanned -= shift - start;
+				}
+			}
+			
+			// parse the headers
+			String headers = new String(buffer, start, headerEnd - start, StandardCharsets.ISO_8859_1).toLowerCase();
+			start = headerEnd;
+			int contentLength = -1;
+			boolean isJpeg = true;
+			for(String line : headers.split("\r\n")) {
+				if(line.startsWith("content-length:")) {
+					try {
+						contentLength = Integer.parseInt(line.substring(15).trim());
+					} catch(NumberFormatException e) {
+						throw new ConnectException("Invalid Content-Length header.");
+					}
+					if(contentLength < 0 || contentLength > MAX_PART_BYTE_COUNT)
+						throw new ConnectException("Invalid Content-Length header.");
+				} else if(line.startsWith("content-type:"))
+					isJpeg = line.contains("image/jpeg");
+			}
+			
+			byte[] part = (contentLength >= 0) ? readBytes(contentLength) : readUntilDelimiter();
+			if(isJpeg)
+				return part;
+			
+		}
+		
+	}
+	
+	/**
+	 * Reads a known number of bytes. Bytes already in the buffer are copied, and the rest are read directly into the returned array.
+	 * 
+	 * @param byteCount    Number of bytes to read.
+	 * @return             The bytes.
+	 */
+	private byte[] readBytes(int byteCount) throws IOException {
+		
+		byte[] bytes = new byte[byteCount];
+		int buffered = Math.min(byteCount, end - start);
+		System.arraycopy(buffer, start, bytes, 0, buffered);
+		start += buffered;
+		
+		int received = buffered;
+		while(received < byteCount) {
+			int count = stream.read(bytes, received, byteCount - received);
+			if(count < 0)
+				throw new EOFException();
+			received += count;
+		}
+		return bytes;
+		
+	}
+	
+	/**
+	 * Reads until the next multipart boundary, or until the JPEG end-of-image marker if the boundary is unknown.
+	 * The delimiter is left in the buffer, and trailing line breaks are removed from the returned bytes.
+	 * 
+	 * @return    The bytes.
+	 */
+	private byte[] readUntilDelimiter() throws IOException {
+		
+		int scanned = start;
+		while(true) {
+			if(delimiter != null) {
+				int last = end - delimiter.length;
+				outer:
+				for(int i = scanned; i <= last; i++) {
+					for(int j = 0; j < delimiter.length; j++)
+						if(buffer[i + j] != delimiter[j])
+							continue outer;
+					int partEnd = i;
+					while(partEnd > start && (buffer[partEnd - 1] == '\n' || buffer[partEnd - 1] == '\r'))
+						partEnd--;
+					byte[] bytes = Arrays.copyOfRange(buffer, start, partEnd);
+					start = i;
+					return bytes;
+				}
+				scanned = Math.max(start, last + 1);
+			} else {
+				for(int i = Math.max(scanned, start + 1); i < end; i++)
+					if(buffer[i] == (byte) 0xD9 && buffer[i-1] == (byte) 0xFF) {
+						byte[] bytes = Arrays.copyOfRange(buffer, start, i + 1);
+						start = i + 1;
+						return bytes;
+					}
+				scanned = end;
+			}
+			int shift = start;
+			fill();
+			scanned -= shift - start;
+		}
+		
+	}
+	
+	/**
+	 * Reads more of the stream into the buffer. Unconsumed bytes are moved to the front of the buffer, and the buffer grows if it is full.
+	 * 
+	 * @throws ConnectException    If the buffer is full and can not grow, because a part is larger than MAX_PART_BYTE_COUNT.
+	 */
+	private void fill() throws IOException {
+		
+		if(start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, end - start);
+			end -= start;
+			start = 0;
+		}
+		if(end == buffer.length) {
+			int maxLength = MAX_PART_BYTE_COUNT + MAX_HEADER_BYTE_COUNT;
+			if(buffer.length >= maxLength)
+				throw new ConnectException("No boundary or end-of-image marker was found.");
+			buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxLength));
+		}
+		
+		int count = stream.read(buffer, end, buffer.length - end);
+		if(count < 0)
+			throw new EOFException();
+		end += count;
+		
+	}
+
+}
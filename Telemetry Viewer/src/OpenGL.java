@@ -1,7 +1,9 @@
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.nio.ByteBuffer;
@@ -9,6 +11,10 @@ import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL2ES3;
@@ -30,6 +36,8 @@ public class OpenGL {
 	 */
 	public static void drawPointsY(GL2ES3 gl, float[] color, FloatBuffer buffer, int vertexCount, int xOffset) {
 		
+		flush(gl);
+		
 		// send data to the GPU
 		gl.glUseProgram(PointsY.programHandle);
 		gl.glBindVertexArray(PointsY.vaoHandle);
@@ -39,7 +47,6 @@ public class OpenGL {
 		gl.glUniform4fv(PointsY.colorHandle, 1, color, 0);
 		gl.glUniform1i(PointsY.xOffsetHandle, xOffset);
 		gl.glUniform1f(PointsY.pointWidthHandle, Theme.pointWidth);
-		int[] viewportDimensions = new int[4]; // x,y,w,h
 		gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 		gl.glUniform1f(PointsY.widthPixelsHandle,  viewportDimensions[2]);
 		gl.glUniform1f(PointsY.heightPixelsHandle, viewportDimensions[3]);
@@ -59,6 +66,8 @@ public class OpenGL {
 	 */
 	public static void drawPointsXy(GL2ES3 gl, float[] color, FloatBuffer buffer, int vertexCount) {
 		
+		flush(gl);
+		
 		// send data to the GPU
 		gl.glUseProgram(PointsXY.programHandle);
 		gl.glBindVertexArray(PointsXY.vaoHandle);
@@ -67,7 +76,6 @@ public class OpenGL {
 		gl.glUniformMatrix4fv(PointsXY.matrixHandle, 1, false, currentMatrix, 0);
 		gl.glUniform4fv(PointsXY.colorHandle, 1, color, 0);
 		gl.glUniform1f(PointsXY.pointWidthHandle, Theme.pointWidth);
-		int[] viewportDimensions = new int[4]; // x,y,w,h
 		gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 		gl.glUniform1f(PointsXY.widthPixelsHandle,  viewportDimensions[2]);
 		gl.glUniform1f(PointsXY.heightPixelsHandle, viewportDimensions[3]);
@@ -88,6 +96,8 @@ public class OpenGL {
 	 */
 	public static void drawPointsX_Y(GL2ES3 gl, float[] color, FloatBuffer bufferX, FloatBuffer bufferY, int vertexCount) {
 		
+		flush(gl);
+		
 		// send data to the GPU
 		gl.glUseProgram(PointsX_Y.programHandle);
 		gl.glBindVertexArray(PointsX_Y.vaoHandle);
@@ -98,7 +108,6 @@ public class OpenGL {
 		gl.glUniformMatrix4fv(PointsX_Y.matrixHandle, 1, false, currentMatrix, 0);
 		gl.glUniform4fv(PointsX_Y.colorHandle, 1, color, 0);
 		gl.glUniform1f(PointsX_Y.pointWidthHandle, Theme.pointWidth);
-		int[] viewportDimensions = new int[4]; // x,y,w,h
 		gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 		gl.glUniform1f(PointsX_Y.widthPixelsHandle,  viewportDimensions[2]);
 		gl.glUniform1f(PointsX_Y.heightPixelsHandle, viewportDimensions[3]);
@@ -121,6 +130,8 @@ public class OpenGL {
 	 */
 	public static void drawLinesY(GL2ES3 gl, int lineType, float[] color, FloatBuffer buffer, int vertexCount, int xOffset) {
 		
+		flush(gl);
+		
 		// send data to the GPU
 		if(Theme.lineWidth == 1) {
 			gl.glUseProgram(ThinLinesY.programHandle);
@@ -139,7 +150,6 @@ public class OpenGL {
 			gl.glUniform4fv(ThickLinesY.colorHandle, 1, color, 0);
 			gl.glUniform1i(ThickLinesY.xOffsetHandle, xOffset);
 			gl.glUniform1f(ThickLinesY.lineWidthHandle, Theme.lineWidth);
-			int[] viewportDimensions = new int[4]; // x,y,w,h
 			gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 			gl.glUniform1f(ThickLinesY.widthPixelsHandle,  viewportDimensions[2]);
 			gl.glUniform1f(ThickLinesY.heightPixelsHandle, viewportDimensions[3]);
@@ -152,6 +162,7 @@ public class OpenGL {
 	
 	/**
 	 * Draws a buffer of (x,y) vertices as GL_LINES or GL_LINE_STRIP or GL_LINE_LOOP.
+	 * Small draws (up to MAX_QUEUED_VERTEX_COUNT vertices) are queued, and drawn along with other queued geometry when flush() is called.
 	 * 
 	 * @param gl             The OpenGL context.
 	 * @param lineType       GL_LINES or GL_LINE_STRIP or GL_LINE_LOOP.
@@ -161,6 +172,14 @@ public class OpenGL {
 	 */
 	public static void drawLinesXy(GL2ES3 gl, int lineType, float[] color, FloatBuffer buffer, int vertexCount) {
 		
+		// small draws are queued, so they can share a draw call
+		if(vertexCount <= MAX_QUEUED_VERTEX_COUNT) {
+			queueLines(gl, lineType, color, buffer, vertexCount);
+			return;
+		}
+		
+		flush(gl);
+		
 		// send data to the GPU
 		if(Theme.lineWidth == 1) {
 			gl.glUseProgram(ThinLinesXY.programHandle);
@@ -177,7 +196,6 @@ public class OpenGL {
 			gl.glUniformMatrix4fv(ThickLinesXY.matrixHandle, 1, false, currentMatrix, 0);
 			gl.glUniform4fv(ThickLinesXY.colorHandle, 1, color, 0);
 			gl.glUniform1f(ThickLinesXY.lineWidthHandle, Theme.lineWidth);
-			int[] viewportDimensions = new int[4]; // x,y,w,h
 			gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 			gl.glUniform1f(ThickLinesXY.widthPixelsHandle,  viewportDimensions[2]);
 			gl.glUniform1f(ThickLinesXY.heightPixelsHandle, viewportDimensions[3]);
@@ -190,6 +208,7 @@ public class OpenGL {
 	
 	/**
 	 * Draws a buffer of (x,y,r,g,b,a,...) vertices as GL_LINES or GL_LINE_STRIP or GL_LINE_LOOP.
+	 * Small draws (up to MAX_QUEUED_VERTEX_COUNT vertices) are queued, and drawn along with other queued geometry when flush() is called.
 	 * 
 	 * @param gl             The OpenGL context.
 	 * @param lineType       GL_LINES or GL_LINE_STRIP or GL_LINE_LOOP.
@@ -198,6 +217,14 @@ public class OpenGL {
 	 */
 	public static void drawLinesXyrgba(GL2ES3 gl, int lineType, FloatBuffer buffer, int vertexCount) {
 		
+		// small draws are queued, so they can share a draw call
+		if(vertexCount <= MAX_QUEUED_VERTEX_COUNT) {
+			queueLines(gl, lineType, null, buffer, vertexCount);
+			return;
+		}
+		
+		flush(gl);
+		
 		// send data to the GPU
 		if(Theme.lineWidth == 1) {
 			gl.glUseProgram(ThinLinesXYRGBA.programHandle);
@@ -212,7 +239,6 @@ public class OpenGL {
 			gl.glBufferData(GL3.GL_ARRAY_BUFFER, vertexCount * 6 * 4, buffer, GL3.GL_DYNAMIC_DRAW);
 			gl.glUniformMatrix4fv(ThickLinesXYRGBA.matrixHandle, 1, false, currentMatrix, 0);
 			gl.glUniform1f(ThickLinesXYRGBA.lineWidthHandle, Theme.lineWidth);
-			int[] viewportDimensions = new int[4]; // x,y,w,h
 			gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 			gl.glUniform1f(ThickLinesXYRGBA.widthPixelsHandle,  viewportDimensions[2]);
 			gl.glUniform1f(ThickLinesXYRGBA.heightPixelsHandle, viewportDimensions[3]);
@@ -235,6 +261,8 @@ public class OpenGL {
 	 */
 	public static void drawLinesX_Y(GL2ES3 gl, int lineType, float[] color, FloatBuffer bufferX, FloatBuffer bufferY, int vertexCount) {
 		
+		flush(gl);
+		
 		// send data to the gpu
 		if(Theme.lineWidth == 1) {
 			gl.glUseProgram(ThinLinesX_Y.programHandle);
@@ -255,7 +283,6 @@ public class OpenGL {
 			gl.glUniformMatrix4fv(ThickLinesX_Y.matrixHandle, 1, false, currentMatrix, 0);
 			gl.glUniform4fv(ThickLinesX_Y.colorHandle, 1, color, 0);
 			gl.glUniform1f(ThickLinesX_Y.lineWidthHandle, Theme.lineWidth);
-			int[] viewportDimensions = new int[4]; // x,y,w,h
 			gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
 			gl.glUniform1f(ThickLinesX_Y.widthPixelsHandle,  viewportDimensions[2]);
 			gl.glUniform1f(ThickLinesX_Y.heightPixelsHandle, viewportDimensions[3]);
@@ -268,6 +295,7 @@ public class OpenGL {
 	
 	/**
 	 * Draws a buffer of (x,y) vertices as GL_TRIANGLES or GL_TRIANGLE_STRIP or GL_TRIANGLE_FAN.
+	 * Small draws (up to MAX_QUEUED_VERTEX_COUNT vertices) are queued, and drawn along with other queued geometry when flush() is called.
 	 * 
 	 * @param gl              The OpenGL context.
 	 * @param triangleType    GL_TRIANGLES or GL_TRIANGLE_STRIP or GL_TRIANGLE_FAN.
@@ -277,6 +305,14 @@ public class OpenGL {
 	 */
 	public static void drawTrianglesXY(GL2ES3 gl, int triangleType, float[] color, FloatBuffer buffer, int vertexCount) {
 		
+		// small draws are queued, so they can share a draw call
+		if(vertexCount <= MAX_QUEUED_VERTEX_COUNT) {
+			queueTriangles(gl, triangleType, color, buffer, vertexCount);
+			return;
+		}
+		
+		flush(gl);
+		
 		// send data to the GPU
 		gl.glUseProgram(TrianglesXY.programHandle);
 		gl.glBindVertexArray(TrianglesXY.vaoHandle);
@@ -292,6 +328,7 @@ public class OpenGL {
 	
 	/**
 	 * Draws a buffer of (x,y,r,g,b,a) vertices as GL_TRIANGLES or GL_TRIANGLE_STRIP or GL_TRIANGLE_FAN.
+	 * Small draws (up to MAX_QUEUED_VERTEX_COUNT vertices) are queued, and drawn along with other queued geometry when flush() is called.
 	 * 
 	 * @param gl              The OpenGL context.
 	 * @param triangleType    GL_TRIANGLES or GL_TRIANGLE_STRIP or GL_TRIANGLE_FAN.
@@ -300,6 +337,14 @@ public class OpenGL {
 	 */
 	public static void drawTrianglesXYRGBA(GL2ES3 gl, int triangleType, FloatBuffer buffer, int vertexCount) {
 		
+		// small draws are queued, so they can share a draw call
+		if(vertexCount <= MAX_QUEUED_VERTEX_COUNT) {
+			queueTriangles(gl, triangleType, null, buffer, vertexCount);
+			return;
+		}
+		
+		flush(gl);
+		
 		// send data to the GPU
 		gl.glUseProgram(ThinLinesXYRGBA.programHandle);
 		gl.glBindVertexArray(ThinLinesXYRGBA.vaoHandle);
@@ -322,6 +367,8 @@ public class OpenGL {
 	 */
 	public static void drawTrianglesXYZUVW(GL2ES3 gl, int triangleType, FloatBuffer buffer, int vertexCount) {
 		
+		flush(gl);
+		
 		// send data to the GPU
 		gl.glUseProgram(TrianglesXYZUVW.programHandle);
 		gl.glBindVertexArray(TrianglesXYZUVW.vaoHandle);
@@ -371,6 +418,8 @@ public class OpenGL {
 	 */
 	public static void drawTriangleStripTextured2D(GL2ES3 gl, FloatBuffer buffer, int textureHandle, boolean isFboTexture, int vertexCount) {
 		
+		flush(gl);
+		
 		// send data to the GPU
 		if(isFboTexture && SettingsController.getAntialiasingLevel() > 1) {
 			gl.glUseProgram(TrianglesXYSTmultisample.programHandle);
@@ -485,6 +534,7 @@ public class OpenGL {
 	
 	/**
 	 * Draws text with the small font.
+	 * The text is queued, and drawn along with any other queued text when flush() is called.
 	 * 
 	 * @param gl         The OpenGL context.
 	 * @param text       Text to draw.
@@ -494,226 +544,418 @@ public class OpenGL {
 	 */
 	public static void drawSmallText(GL2ES3 gl, String text, int x, int y, float degrees) {
 		
-		if(text.length() > buffer.capacity() / 5)
-			return;
+		queueText(gl, smallFont, text, x, y, degrees);
 		
-		y -= smallFontBaselineOffset;
+	}
+	
+	/**
+	 * Draws text with the medium font.
+	 * The text is queued, and drawn along with any other queued text when flush() is called.
+	 * 
+	 * @param gl         The OpenGL context.
+	 * @param text       Text to draw.
+	 * @param x          Lower-left corner, in pixels.
+	 * @param y          Lower-left corner, in pixels.
+	 * @param degrees    Amount to rotate counter-clockwise, pivoting around (x,y).
+	 */
+	public static void drawMediumText(GL2ES3 gl, String text, int x, int y, float degrees) {
 		
-		// modify the matrix if rotating
-		float[] rotatedMatrix = null;
-		if(degrees != 0) {
-			rotatedMatrix = Arrays.copyOf(currentMatrix, currentMatrix.length);
-			translateMatrix(rotatedMatrix, x, y, 0);
-			rotateMatrix(rotatedMatrix, degrees, 0, 0, 1);
-			translateMatrix(rotatedMatrix, -x, -y, 0);
-		}
+		queueText(gl, mediumFont, text, x, y, degrees);
 		
-		// calculate the (x,y,s,t,w) "vertex" for each character
-		buffer.rewind();
-		for(int i = 0; i < text.length(); i++) {
-			char c = text.charAt(i);
-			int charIndex = c - firstAsciiChar;
-			int atlasX = 0;
-			int atlasY = 0;
-			int atlasWidth = 0;
-			if(charIndex < smallFontAsciiCharWidthLUT.length && charIndex >= 0) {
-				atlasX = (charIndex % smallFontCharsPerRow) * smallFontMaxCharWidth;
-				atlasY = (charIndex / smallFontCharsPerRow) * smallFontMaxCharHeight;
-				atlasWidth = smallFontAsciiCharWidthLUT[charIndex];
-			} else {
-				int[] details = nonAsciiCharMap.get(c);
-				if(details != null) {
-					atlasX = details[0];
-					atlasY = details[1];
-					atlasWidth = details[2];
-				} else {
-					// character not in the texture atlas. so check for any other missing characters, then regenerate the atlas, then call this function again
-					for(int j = 0; j < text.length(); j++) {
-						char c2 = text.charAt(j);
-						if((c2 > lastAsciiChar || c2 < firstAsciiChar) && !nonAsciiCharMap.containsKey(c2))
-							nonAsciiCharMap.put(c2, new int[9]);
-					}
-					updateFontTextures(gl);
-					drawSmallText(gl, text, x, y, degrees);
-					return;
-				}
-			}
-			buffer.put(x);
-			buffer.put(y);
-			buffer.put(atlasX);
-			buffer.put(atlasY);
-			buffer.put(atlasWidth);
-			x += atlasWidth;
-		}
-		buffer.rewind();
+	}
+	
+	/**
+	 * Draws text with the large font.
+	 * The text is queued, and drawn along with any other queued text when flush() is called.
+	 * 
+	 * @param gl         The OpenGL context.
+	 * @param text       Text to draw.
+	 * @param x          Lower-left corner, in pixels.
+	 * @param y          Lower-left corner, in pixels.
+	 * @param degrees    Amount to rotate counter-clockwise, pivoting around (x,y).
+	 */
+	public static void drawLargeText(GL2ES3 gl, String text, int x, int y, float degrees) {
 		
-		// send data to the GPU
-		gl.glUseProgram(FontRenderer.programHandle);
-		gl.glBindVertexArray(FontRenderer.vaoHandle);
-		gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, FontRenderer.vboHandle);
-		gl.glBufferData(GL3.GL_ARRAY_BUFFER, text.length() * 5 * 4, buffer, GL3.GL_DYNAMIC_DRAW);
-		gl.glUniformMatrix4fv(FontRenderer.matrixHandle, 1, false, degrees == 0 ? currentMatrix : rotatedMatrix, 0);
-		gl.glUniform1f(FontRenderer.lineHeightHandle, smallFontMaxCharHeight);
-		gl.glBindTexture(GL3.GL_TEXTURE_2D, FontRenderer.smallFontTextureHandle[0]);
-
-		// draw "points" (which become textured quads)
-		gl.glDrawArrays(GL3.GL_POINTS, 0, text.length());
+		queueText(gl, largeFont, text, x, y, degrees);
 		
 	}
 	
 	/**
-	 * Draws text with the medium font.
+	 * Appends the (x,y,s,t,w) "vertex" for each character to the font's queue.
 	 * 
 	 * @param gl         The OpenGL context.
+	 * @param atlas      Font to use.
 	 * @param text       Text to draw.
 	 * @param x          Lower-left corner, in pixels.
 	 * @param y          Lower-left corner, in pixels.
 	 * @param degrees    Amount to rotate counter-clockwise, pivoting around (x,y).
 	 */
-	public static void drawMediumText(GL2ES3 gl, String text, int x, int y, float degrees) {
+	private static void queueText(GL2ES3 gl, FontAtlas atlas, String text, int x, int y, float degrees) {
 		
-		if(text.length() > buffer.capacity() / 5)
-			return;
+		// make sure every character is in the texture atlases before queueing anything, because adding them may regenerate the atlases
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if((c > lastAsciiChar || c < firstAsciiChar) && !nonAsciiCharMap.containsKey(c))
+				addCharacter(gl, c);
+		}
 		
-		y -= mediumFontBaselineOffset;
+		y -= atlas.baselineOffset;
 		
 		// modify the matrix if rotating
-		float[] rotatedMatrix = null;
+		float[] matrix = currentMatrix;
 		if(degrees != 0) {
-			rotatedMatrix = Arrays.copyOf(currentMatrix, currentMatrix.length);
-			translateMatrix(rotatedMatrix, x, y, 0);
-			rotateMatrix(rotatedMatrix, degrees, 0, 0, 1);
-			translateMatrix(rotatedMatrix, -x, -y, 0);
+			matrix = Arrays.copyOf(currentMatrix, currentMatrix.length);
+			translateMatrix(matrix, x, y, 0);
+			rotateMatrix(matrix, degrees, 0, 0, 1);
+			translateMatrix(matrix, -x, -y, 0);
+		}
+		
+		prepareQueue(gl, matrix);
+		
+		// grow the queue if necessary
+		if(atlas.queue.remaining() < text.length() * 5) {
+			FloatBuffer biggerQueue = Buffers.newDirectFloatBuffer(Math.max(atlas.queue.capacity() * 2, atlas.queue.position() + text.length() * 5));
+			atlas.queue.flip();
+			biggerQueue.put(atlas.queue);
+			atlas.queue = biggerQueue;
 		}
 		
 		// calculate the (x,y,s,t,w) "vertex" for each character
-		buffer.rewind();
+		int xLeft = x;
 		for(int i = 0; i < text.length(); i++) {
 			char c = text.charAt(i);
 			int charIndex = c - firstAsciiChar;
 			int atlasX = 0;
 			int atlasY = 0;
 			int atlasWidth = 0;
-			if(charIndex < mediumFontAsciiCharWidthLUT.length && charIndex >= 0) {
-				atlasX = (charIndex % mediumFontCharsPerRow) * mediumFontMaxCharWidth;
-				atlasY = (charIndex / mediumFontCharsPerRow) * mediumFontMaxCharHeight;
-				atlasWidth = mediumFontAsciiCharWidthLUT[charIndex];
+			if(charIndex < atlas.asciiCharWidthLUT.length && charIndex >= 0) {
+				atlasX = (charIndex % atlas.charsPerRow) * atlas.maxCharWidth;
+				atlasY = (charIndex / atlas.charsPerRow) * atlas.maxCharHeight;
+				atlasWidth = atlas.asciiCharWidthLUT[charIndex];
 			} else {
 				int[] details = nonAsciiCharMap.get(c);
-				if(details != null) {
-					atlasX = details[3];
-					atlasY = details[4];
-					atlasWidth = details[5];
-				} else {
-					// character not in the texture atlas. so check for any other missing characters, then regenerate the atlas, then call this function again
-					for(int j = 0; j < text.length(); j++) {
-						char c2 = text.charAt(j);
-						if((c2 > lastAsciiChar || c2 < firstAsciiChar) && !nonAsciiCharMap.containsKey(c2))
-							nonAsciiCharMap.put(c2, new int[9]);
-					}
-					updateFontTextures(gl);
-					drawSmallText(gl, text, x, y, degrees);
-					return;
-				}
+				atlasX     = details[atlas.detailsOffset];
+				atlasY     = details[atlas.detailsOffset + 1];
+				atlasWidth = details[atlas.detailsOffset + 2];
 			}
-			buffer.put(x);
-			buffer.put(y);
-			buffer.put(atlasX);
-			buffer.put(atlasY);
-			buffer.put(atlasWidth);
+			atlas.queue.put(x);
+			atlas.queue.put(y);
+			atlas.queue.put(atlasX);
+			atlas.queue.put(atlasY);
+			atlas.queue.put(atlasWidth);
 			x += atlasWidth;
 		}
-		buffer.rewind();
+		atlas.queuedCharCount += text.length();
+		queuedCharCount += text.length();
+		expandRegion(queuedTextRegion, xLeft, x, y, y + atlas.maxCharHeight);
 		
-		// send data to the GPU
-		gl.glUseProgram(FontRenderer.programHandle);
-		gl.glBindVertexArray(FontRenderer.vaoHandle);
-		gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, FontRenderer.vboHandle);
-		gl.glBufferData(GL3.GL_ARRAY_BUFFER, text.length() * 5 * 4, buffer, GL3.GL_DYNAMIC_DRAW);
-		gl.glUniformMatrix4fv(FontRenderer.matrixHandle, 1, false, degrees == 0 ? currentMatrix : rotatedMatrix, 0);
-		gl.glUniform1f(FontRenderer.lineHeightHandle, mediumFontMaxCharHeight);
-		gl.glBindTexture(GL3.GL_TEXTURE_2D, FontRenderer.mediumFontTextureHandle[0]);
-
-		// draw "points" (which become textured quads)
-		gl.glDrawArrays(GL3.GL_POINTS, 0, text.length());
+	}
+	
+	/**
+	 * Converts GL_TRIANGLES or GL_TRIANGLE_STRIP or GL_TRIANGLE_FAN vertices into GL_TRIANGLES (x,y,r,g,b,a) vertices, and appends them to the queue.
+	 * 
+	 * @param gl              The OpenGL context.
+	 * @param triangleType    GL_TRIANGLES or GL_TRIANGLE_STRIP or GL_TRIANGLE_FAN.
+	 * @param color           The color, as a float[] {r,g,b,a}, or null if the buffer contains per-vertex colors.
+	 * @param buffer          Vertex buffer containing (x1,y1,x2,y2,...) or (x1,y1,r1,g1,b1,a1,...)
+	 * @param vertexCount     Number of vertices in the buffer.
+	 */
+	private static void queueTriangles(GL2ES3 gl, int triangleType, float[] color, FloatBuffer buffer, int vertexCount) {
+		
+		if(vertexCount < 3)
+			return;
+		
+		prepareQueue(gl, currentMatrix);
+		
+		// queued lines and text get drawn after the triangles, so they must be flushed if these triangles should be on top of them
+		calculateRegion(newRegion, color, buffer, vertexCount, 0);
+		if(regionsOverlap(queuedLines.region, newRegion) || regionsOverlap(queuedTextRegion, newRegion))
+			flush(gl);
+		
+		int triangleCount = (triangleType == GL3.GL_TRIANGLES) ? vertexCount / 3 : vertexCount - 2;
+		queuedTriangles.ensureCapacity(triangleCount * 3);
+		for(int i = 0; i < triangleCount; i++) {
+			if(triangleType == GL3.GL_TRIANGLES) {
+				queueVertex(queuedTriangles, color, buffer, 3*i);
+				queueVertex(queuedTriangles, color, buffer, 3*i + 1);
+				queueVertex(queuedTriangles, color, buffer, 3*i + 2);
+			} else if(triangleType == GL3.GL_TRIANGLE_STRIP) {
+				queueVertex(queuedTriangles, color, buffer, i);
+				queueVertex(queuedTriangles, color, buffer, i + 1);
+				queueVertex(queuedTriangles, color, buffer, i + 2);
+			} else {
+				queueVertex(queuedTriangles, color, buffer, 0);
+				queueVertex(queuedTriangles, color, buffer, i + 1);
+				queueVertex(queuedTriangles, color, buffer, i + 2);
+			}
+		}
+		queuedTriangles.vertexCount += triangleCount * 3;
+		expandRegion(queuedTriangles.region, newRegion[0], newRegion[1], newRegion[2], newRegion[3]);
 		
 	}
 	
 	/**
-	 * Draws text with the large font.
+	 * Converts GL_LINES or GL_LINE_STRIP or GL_LINE_LOOP vertices into GL_LINES (x,y,r,g,b,a) vertices, and appends them to the queue.
 	 * 
-	 * @param gl         The OpenGL context.
-	 * @param text       Text to draw.
-	 * @param x          Lower-left corner, in pixels.
-	 * @param y          Lower-left corner, in pixels.
-	 * @param degrees    Amount to rotate counter-clockwise, pivoting around (x,y).
+	 * @param gl             The OpenGL context.
+	 * @param lineType       GL_LINES or GL_LINE_STRIP or GL_LINE_LOOP.
+	 * @param color          The color, as a float[] {r,g,b,a}, or null if the buffer contains per-vertex colors.
+	 * @param buffer         Vertex buffer containing (x1,y1,x2,y2,...) or (x1,y1,r1,g1,b1,a1,...)
+	 * @param vertexCount    Number of vertices in the buffer.
 	 */
-	public static void drawLargeText(GL2ES3 gl, String text, int x, int y, float degrees) {
+	private static void queueLines(GL2ES3 gl, int lineType, float[] color, FloatBuffer buffer, int vertexCount) {
 		
-		if(text.length() > buffer.capacity() / 5)
+		if(vertexCount < 2)
 			return;
 		
-		y -= largeFontBaselineOffset;
+		prepareQueue(gl, currentMatrix);
 		
-		// modify the matrix if rotating
-		float[] rotatedMatrix = null;
-		if(degrees != 0) {
-			rotatedMatrix = Arrays.copyOf(currentMatrix, currentMatrix.length);
-			translateMatrix(rotatedMatrix, x, y, 0);
-			rotateMatrix(rotatedMatrix, degrees, 0, 0, 1);
-			translateMatrix(rotatedMatrix, -x, -y, 0);
+		// queued text gets drawn after the lines, so it must be flushed if these lines should be on top of it
+		calculateRegion(newRegion, color, buffer, vertexCount, Theme.lineWidth);
+		if(regionsOverlap(queuedTextRegion, newRegion))
+			flush(gl);
+		
+		int lineCount = (lineType == GL3.GL_LINES) ? vertexCount / 2 : (lineType == GL3.GL_LINE_STRIP) ? vertexCount - 1 : vertexCount;
+		queuedLines.ensureCapacity(lineCount * 2);
+		for(int i = 0; i < lineCount; i++) {
+			if(lineType == GL3.GL_LINES) {
+				queueVertex(queuedLines, color, buffer, 2*i);
+				queueVertex(queuedLines, color, buffer, 2*i + 1);
+			} else {
+				queueVertex(queuedLines, color, buffer, i);
+				queueVertex(queuedLines, color, buffer, (i + 1) % vertexCount);
+			}
 		}
+		queuedLines.vertexCount += lineCount * 2;
+		expandRegion(queuedLines.region, newRegion[0], newRegion[1], newRegion[2], newRegion[3]);
 		
-		// calculate the (x,y,s,t,w) "vertex" for each character
-		buffer.rewind();
-		for(int i = 0; i < text.length(); i++) {
-			char c = text.charAt(i);
-			int charIndex = c - firstAsciiChar;
-			int atlasX = 0;
-			int atlasY = 0;
-			int atlasWidth = 0;
-			if(charIndex < largeFontAsciiCharWidthLUT.length && charIndex >= 0) {
-				atlasX = (charIndex % largeFontCharsPerRow) * largeFontMaxCharWidth;
-				atlasY = (charIndex / largeFontCharsPerRow) * largeFontMaxCharHeight;
-				atlasWidth = largeFontAsciiCharWidthLUT[charIndex];
+	}
+	
+	/**
+	 * Appends one (x,y,r,g,b,a) vertex to a queue. The caller must ensure there is enough space.
+	 * 
+	 * @param queue     The queue.
+	 * @param color     The color, as a float[] {r,g,b,a}, or null if the buffer contains per-vertex colors.
+	 * @param buffer    Vertex buffer containing (x1,y1,x2,y2,...) or (x1,y1,r1,g1,b1,a1,...)
+	 * @param index     Which vertex to append.
+	 */
+	private static void queueVertex(GeometryQueue queue, float[] color, FloatBuffer buffer, int index) {
+		
+		int offset = buffer.position() + index * (color == null ? 6 : 2);
+		queue.vertices.put(buffer.get(offset));
+		queue.vertices.put(buffer.get(offset + 1));
+		if(color == null) {
+			queue.vertices.put(buffer.get(offset + 2));
+			queue.vertices.put(buffer.get(offset + 3));
+			queue.vertices.put(buffer.get(offset + 4));
+			queue.vertices.put(buffer.get(offset + 5));
+		} else {
+			queue.vertices.put(color, 0, 4);
+		}
+		
+	}
+	
+	/**
+	 * Calculates the area covered by some vertices.
+	 * 
+	 * @param region         The region will be saved here: [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+	 * @param color          The color, as a float[] {r,g,b,a}, or null if the buffer contains per-vertex colors.
+	 * @param buffer         Vertex buffer containing (x1,y1,x2,y2,...) or (x1,y1,r1,g1,b1,a1,...)
+	 * @param vertexCount    Number of vertices in the buffer.
+	 * @param padding        Amount to grow the region by on each side. (used for thick lines)
+	 */
+	private static void calculateRegion(float[] region, float[] color, FloatBuffer buffer, int vertexCount, float padding) {
+		
+		int stride = (color == null) ? 6 : 2;
+		float minX = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		for(int i = 0; i < vertexCount; i++) {
+			float x = buffer.get(buffer.position() + i * stride);
+			float y = buffer.get(buffer.position() + i * stride + 1);
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		region[0] = minX - padding;
+		region[1] = maxX + padding;
+		region[2] = minY - padding;
+		region[3] = maxY + padding;
+		
+	}
+	
+	/**
+	 * Empties a region, so it does not overlap anything.
+	 * 
+	 * @param region    The region to empty: [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+	 * @return          The same region.
+	 */
+	private static float[] clearRegion(float[] region) {
+		
+		region[0] = Float.POSITIVE_INFINITY;
+		region[1] = Float.NEGATIVE_INFINITY;
+		region[2] = Float.POSITIVE_INFINITY;
+		region[3] = Float.NEGATIVE_INFINITY;
+		return region;
+		
+	}
+	
+	/**
+	 * Grows a region so it also covers another area.
+	 * 
+	 * @param region    The region to grow: [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+	 * @param minX      The other area.
+	 * @param maxX      The other area.
+	 * @param minY      The other area.
+	 * @param maxY      The other area.
+	 */
+	private static void expandRegion(float[] region, float minX, float maxX, float minY, float maxY) {
+		
+		region[0] = Math.min(region[0], minX);
+		region[1] = Math.max(region[1], maxX);
+		region[2] = Math.min(region[2], minY);
+		region[3] = Math.max(region[3], maxY);
+		
+	}
+	
+	/**
+	 * @param a    A region: [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+	 * @param b    Another region.
+	 * @return     True if the regions overlap.
+	 */
+	private static boolean regionsOverlap(float[] a, float[] b) {
+		
+		return a[0] <= b[1] && a[1] >= b[0] && a[2] <= b[3] && a[3] >= b[2];
+		
+	}
+	
+	/**
+	 * @return    True if nothing is queued.
+	 */
+	private static boolean queueIsEmpty() {
+		
+		return queuedTriangles.vertexCount == 0 && queuedLines.vertexCount == 0 && queuedCharCount == 0;
+		
+	}
+	
+	/**
+	 * Must be called before adding something to the queue.
+	 * Everything in the queue shares one matrix and scissor test, so the queue is flushed if they changed.
+	 * 
+	 * @param gl        The OpenGL context.
+	 * @param matrix    The matrix that will be used for what is about to be queued.
+	 */
+	private static void prepareQueue(GL2ES3 gl, float[] matrix) {
+		
+		if(!queueIsEmpty() && (!Arrays.equals(matrix, queuedMatrix) || scissorEnabled != queuedScissorEnabled || (scissorEnabled && !Arrays.equals(scissorBox, queuedScissorBox))))
+			flush(gl);
+		
+		if(queueIsEmpty()) {
+			System.arraycopy(matrix, 0, queuedMatrix, 0, 16);
+			queuedScissorEnabled = scissorEnabled;
+			System.arraycopy(scissorBox, 0, queuedScissorBox, 0, 4);
+		}
+		
+	}
+	
+	/**
+	 * Draws everything that has been queued: first the triangles, then the lines, then the text with one draw call per font.
+	 * This is called automatically before anything else is drawn, and must be called at the end of each frame.
+	 * 
+	 * @param gl    The OpenGL context.
+	 */
+	public static void flush(GL2ES3 gl) {
+		
+		if(queueIsEmpty())
+			return;
+		
+		// send any newly rasterized characters to the GPU
+		for(RasterizedChar c = rasterizedChars.poll(); c != null; c = rasterizedChars.poll())
+			if(c.generation == c.atlas.generation)
+				writeTextureRegion(gl, c.atlas.textureHandle, c.x, c.y, c.width, c.height, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, c.pixels); // actually ABGR, so swizzling it in the fragment shader
+		
+		// temporarily restore the scissor test that was used when things were queued
+		boolean scissorChanged = scissorEnabled != queuedScissorEnabled || (scissorEnabled && !Arrays.equals(scissorBox, queuedScissorBox));
+		if(scissorChanged) {
+			if(queuedScissorEnabled) {
+				gl.glEnable(GL3.GL_SCISSOR_TEST);
+				gl.glScissor(queuedScissorBox[0], queuedScissorBox[1], queuedScissorBox[2], queuedScissorBox[3]);
 			} else {
-				int[] details = nonAsciiCharMap.get(c);
-				if(details != null) {
-					atlasX = details[6];
-					atlasY = details[7];
-					atlasWidth = details[8];
-				} else {
-					// character not in the texture atlas. so check for any other missing characters, then regenerate the atlas, then call this function again
-					for(int j = 0; j < text.length(); j++) {
-						char c2 = text.charAt(j);
-						if((c2 > lastAsciiChar || c2 < firstAsciiChar) && !nonAsciiCharMap.containsKey(c2))
-							nonAsciiCharMap.put(c2, new int[9]);
-					}
-					updateFontTextures(gl);
-					drawSmallText(gl, text, x, y, degrees);
-					return;
-				}
+				gl.glDisable(GL3.GL_SCISSOR_TEST);
 			}
-			buffer.put(x);
-			buffer.put(y);
-			buffer.put(atlasX);
-			buffer.put(atlasY);
-			buffer.put(atlasWidth);
-			x += atlasWidth;
 		}
-		buffer.rewind();
 		
-		// send data to the GPU
-		gl.glUseProgram(FontRenderer.programHandle);
-		gl.glBindVertexArray(FontRenderer.vaoHandle);
-		gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, FontRenderer.vboHandle);
-		gl.glBufferData(GL3.GL_ARRAY_BUFFER, text.length() * 5 * 4, buffer, GL3.GL_DYNAMIC_DRAW);
-		gl.glUniformMatrix4fv(FontRenderer.matrixHandle, 1, false, degrees == 0 ? currentMatrix : rotatedMatrix, 0);
-		gl.glUniform1f(FontRenderer.lineHeightHandle, largeFontMaxCharHeight);
-		gl.glBindTexture(GL3.GL_TEXTURE_2D, FontRenderer.largeFontTextureHandle[0]);
-
-		// draw "points" (which become textured quads)
-		gl.glDrawArrays(GL3.GL_POINTS, 0, text.length());
+		// draw the triangles
+		if(queuedTriangles.vertexCount > 0) {
+			queuedTriangles.vertices.flip();
+			gl.glUseProgram(ThinLinesXYRGBA.programHandle);
+			gl.glBindVertexArray(ThinLinesXYRGBA.vaoHandle);
+			gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, ThinLinesXYRGBA.vboHandle);
+			gl.glBufferData(GL3.GL_ARRAY_BUFFER, queuedTriangles.vertexCount * 6 * 4, queuedTriangles.vertices, GL3.GL_DYNAMIC_DRAW);
+			gl.glUniformMatrix4fv(ThinLinesXYRGBA.matrixHandle, 1, false, queuedMatrix, 0);
+			gl.glDrawArrays(GL3.GL_TRIANGLES, 0, queuedTriangles.vertexCount);
+			queuedTriangles.vertices.clear();
+			queuedTriangles.vertexCount = 0;
+			clearRegion(queuedTriangles.region);
+		}
+		
+		// draw the lines
+		if(queuedLines.vertexCount > 0) {
+			queuedLines.vertices.flip();
+			if(Theme.lineWidth == 1) {
+				gl.glUseProgram(ThinLinesXYRGBA.programHandle);
+				gl.glBindVertexArray(ThinLinesXYRGBA.vaoHandle);
+				gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, ThinLinesXYRGBA.vboHandle);
+				gl.glBufferData(GL3.GL_ARRAY_BUFFER, queuedLines.vertexCount * 6 * 4, queuedLines.vertices, GL3.GL_DYNAMIC_DRAW);
+				gl.glUniformMatrix4fv(ThinLinesXYRGBA.matrixHandle, 1, false, queuedMatrix, 0);
+			} else {
+				gl.glUseProgram(ThickLinesXYRGBA.programHandle);
+				gl.glBindVertexArray(ThickLinesXYRGBA.vaoHandle);
+				gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, ThickLinesXYRGBA.vboHandle);
+				gl.glBufferData(GL3.GL_ARRAY_BUFFER, queuedLines.vertexCount * 6 * 4, queuedLines.vertices, GL3.GL_DYNAMIC_DRAW);
+				gl.glUniformMatrix4fv(ThickLinesXYRGBA.matrixHandle, 1, false, queuedMatrix, 0);
+				gl.glUniform1f(ThickLinesXYRGBA.lineWidthHandle, Theme.lineWidth);
+				gl.glGetIntegerv(GL3.GL_VIEWPORT, viewportDimensions, 0);
+				gl.glUniform1f(ThickLinesXYRGBA.widthPixelsHandle,  viewportDimensions[2]);
+				gl.glUniform1f(ThickLinesXYRGBA.heightPixelsHandle, viewportDimensions[3]);
+			}
+			gl.glDrawArrays(GL3.GL_LINES, 0, queuedLines.vertexCount);
+			queuedLines.vertices.clear();
+			queuedLines.vertexCount = 0;
+			clearRegion(queuedLines.region);
+		}
+		
+		// draw the text as "points" (which become textured quads)
+		if(queuedCharCount > 0) {
+			gl.glUseProgram(FontRenderer.programHandle);
+			gl.glBindVertexArray(FontRenderer.vaoHandle);
+			gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, FontRenderer.vboHandle);
+			gl.glUniformMatrix4fv(FontRenderer.matrixHandle, 1, false, queuedMatrix, 0);
+			for(FontAtlas atlas : fontAtlases) {
+				if(atlas.queuedCharCount == 0)
+					continue;
+				atlas.queue.flip();
+				gl.glBufferData(GL3.GL_ARRAY_BUFFER, atlas.queuedCharCount * 5 * 4, atlas.queue, GL3.GL_DYNAMIC_DRAW);
+				gl.glUniform1f(FontRenderer.lineHeightHandle, atlas.maxCharHeight);
+				gl.glBindTexture(GL3.GL_TEXTURE_2D, atlas.textureHandle[0]);
+				gl.glDrawArrays(GL3.GL_POINTS, 0, atlas.queuedCharCount);
+				atlas.queue.clear();
+				atlas.queuedCharCount = 0;
+			}
+			queuedCharCount = 0;
+			clearRegion(queuedTextRegion);
+		}
+		
+		// put the scissor test back
+		if(scissorChanged) {
+			if(scissorEnabled)
+				gl.glEnable(GL3.GL_SCISSOR_TEST);
+			else
+				gl.glDisable(GL3.GL_SCISSOR_TEST);
+			gl.glScissor(scissorBox[0], scissorBox[1], scissorBox[2], scissorBox[3]);
+		}
 		
 	}
 	
@@ -724,30 +966,7 @@ public class OpenGL {
 	 */
 	public static float smallTextWidth(GL2ES3 gl, String text) {
 		
-		float width = 0;
-		for(int i = 0; i < text.length(); i++) {
-			char c = text.charAt(i);
-			int charIndex = c - firstAsciiChar;
-			if(charIndex < smallFontAsciiCharWidthLUT.length && charIndex >= 0) {
-				width += smallFontAsciiCharWidthLUT[charIndex];
-			} else {
-				int[] details = nonAsciiCharMap.get(c);
-				if(details != null) {
-					width += details[2];
-				} else {
-					// character not in the texture atlas. so check for any other missing characters, then regenerate the atlas, then call this function again
-					for(int j = 0; j < text.length(); j++) {
-						char c2 = text.charAt(j);
-						if((c2 > lastAsciiChar || c2 < firstAsciiChar) && !nonAsciiCharMap.containsKey(c2))
-							nonAsciiCharMap.put(c2, new int[9]);
-					}
-					updateFontTextures(gl);
-					return smallTextWidth(gl, text);
-				}
-			}
-			
-		}
-		return width;
+		return textWidth(gl, smallFont, text);
 		
 	}
 	
@@ -758,30 +977,7 @@ public class OpenGL {
 	 */
 	public static float mediumTextWidth(GL2ES3 gl, String text) {
 		
-		float width = 0;
-		for(int i = 0; i < text.length(); i++) {
-			char c = text.charAt(i);
-			int charIndex = c - firstAsciiChar;
-			if(charIndex < mediumFontAsciiCharWidthLUT.length && charIndex >= 0) {
-				width += mediumFontAsciiCharWidthLUT[charIndex];
-			} else {
-				int[] details = nonAsciiCharMap.get(c);
-				if(details != null) {
-					width += details[5];
-				} else {
-					// character not in the texture atlas. so check for any other missing characters, then regenerate the atlas, then call this function again
-					for(int j = 0; j < text.length(); j++) {
-						char c2 = text.charAt(j);
-						if((c2 > lastAsciiChar || c2 < firstAsciiChar) && !nonAsciiCharMap.containsKey(c2))
-							nonAsciiCharMap.put(c2, new int[9]);
-					}
-					updateFontTextures(gl);
-					return mediumTextWidth(gl, text);
-				}
-			}
-			
-		}
-		return width;
+		return textWidth(gl, mediumFont, text);
 		
 	}
 	
@@ -792,208 +988,159 @@ public class OpenGL {
 	 */
 	public static float largeTextWidth(GL2ES3 gl, String text) {
 		
+		return textWidth(gl, largeFont, text);
+		
+	}
+	
+	/**
+	 * @param gl       The OpenGL context.
+	 * @param atlas    Font to use.
+	 * @param text     The text.
+	 * @return         Width, in pixels.
+	 */
+	private static float textWidth(GL2ES3 gl, FontAtlas atlas, String text) {
+		
 		float width = 0;
 		for(int i = 0; i < text.length(); i++) {
 			char c = text.charAt(i);
 			int charIndex = c - firstAsciiChar;
-			if(charIndex < largeFontAsciiCharWidthLUT.length && charIndex >= 0) {
-				width += largeFontAsciiCharWidthLUT[charIndex];
+			if(charIndex < atlas.asciiCharWidthLUT.length && charIndex >= 0) {
+				width += atlas.asciiCharWidthLUT[charIndex];
 			} else {
 				int[] details = nonAsciiCharMap.get(c);
-				if(details != null) {
-					width += details[8];
-				} else {
-					// character not in the texture atlas. so check for any other missing characters, then regenerate the atlas, then call this function again
-					for(int j = 0; j < text.length(); j++) {
-						char c2 = text.charAt(j);
-						if((c2 > lastAsciiChar || c2 < firstAsciiChar) && !nonAsciiCharMap.containsKey(c2))
-							nonAsciiCharMap.put(c2, new int[9]);
-					}
-					updateFontTextures(gl);
-					return largeTextWidth(gl, text);
+				if(details == null) {
+					addCharacter(gl, c);
+					details = nonAsciiCharMap.get(c);
 				}
+				width += details[atlas.detailsOffset + 2];
 			}
-			
 		}
 		return width;
 		
 	}
 	
 	/**
-	 * Draws new texture atlases for each font and updates the variables/GPU accordingly.
+	 * Adds a non-ASCII character to the texture atlases.
+	 * 
+	 * If every atlas has an unused slot, the character is measured now and assigned a slot, but it gets drawn by the glyph rasterizer thread.
+	 * It will be sent to the GPU the next time text is flushed, so it may be missing from the frame where it first appears.
+	 * If any atlas is full, all of the atlases get regenerated with room to spare, like when the theme changes.
 	 * 
 	 * @param gl    The OpenGL context.
+	 * @param c     The character.
 	 */
-	public static void updateFontTextures(GL2ES3 gl) {
-		
-		int asciiCharCount = lastAsciiChar - firstAsciiChar + 1;
-		int nonAsciiCharCount = nonAsciiCharMap.size();
-		int charCount = asciiCharCount + nonAsciiCharCount;
+	private static void addCharacter(GL2ES3 gl, char c) {
 		
-		int textureWidth = 128;
-		int maxCharWidth = 100;
-		int maxCharHeight = 100;
-		BufferedImage image = null;
-		Graphics2D g = null;
-		int baselineOffset = 0;
-		int x = 0;
-		int y = 0;
-		ByteBuffer buffer = null;
+		nonAsciiCharMap.put(c, new int[9]);
 		
-		// prepare for small font texture
-		while((textureWidth / maxCharWidth) * (textureWidth / maxCharHeight) < charCount) {
-			textureWidth *= 2;
-			image = new BufferedImage(textureWidth, textureWidth, BufferedImage.TYPE_4BYTE_ABGR);
-			g = image.createGraphics();
-			g.setColor(Color.BLACK);
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-			g.setFont(Theme.smallFont);
-			FontMetrics fm = g.getFontMetrics();
-			maxCharWidth = fm.getMaxAdvance();
-			maxCharHeight = fm.getMaxAscent() + fm.getMaxDescent();
-			baselineOffset = fm.getMaxDescent() + 1;
-			int charsPerRow = textureWidth / maxCharWidth;
-			smallFontMaxCharWidth = maxCharWidth;
-			smallFontMaxCharHeight = maxCharHeight;
-			smallFontCharsPerRow = charsPerRow;
-			smallFontAsciiCharWidthLUT = new int[asciiCharCount];
-			smallTextHeight = fm.getAscent() - baselineOffset;
-			smallFontBaselineOffset = baselineOffset;
+		if(smallFont.nextSlot >= smallFont.slotCount || mediumFont.nextSlot >= mediumFont.slotCount || largeFont.nextSlot >= largeFont.slotCount) {
+			updateFontTextures(gl);
+			return;
 		}
 		
-		// draw the small font texture atlas
-		x = 0;
-		y = maxCharHeight;
-		for(char c = firstAsciiChar; c <= lastAsciiChar; c++) {
-			String s = new String(c + "");
-			int charWidth = (int) Math.ceil(Theme.smallFont.getStringBounds(s, g.getFontRenderContext()).getWidth());
-			smallFontAsciiCharWidthLUT[c - firstAsciiChar] = charWidth;
-			g.drawString(s, x, y-baselineOffset);
-			x += maxCharWidth;
-			if(x + maxCharWidth > textureWidth) {
-				x = 0;
-				y += maxCharHeight;
-			}
-		}
-		for(Map.Entry<Character, int[]> nonAsciiChar : nonAsciiCharMap.entrySet()) {
-			char c = nonAsciiChar.getKey();
-			int[] details = nonAsciiChar.getValue();
-			String s = new String(c + "");
-			int charWidth = (int) Math.ceil(Theme.smallFont.getStringBounds(s, g.getFontRenderContext()).getWidth());
-			details[0] = x;
-			details[1] = y - maxCharHeight;
-			details[2] = charWidth;
-			g.drawString(s, x, y-baselineOffset);
-			x += maxCharWidth;
-			if(x + maxCharWidth > textureWidth) {
-				x = 0;
-				y += maxCharHeight;
-			}
+		int[] details = nonAsciiCharMap.get(c);
+		for(FontAtlas atlas : fontAtlases) {
+			int x = (atlas.nextSlot % atlas.charsPerRow) * atlas.maxCharWidth;
+			int y = (atlas.nextSlot / atlas.charsPerRow) * atlas.maxCharHeight;
+			atlas.nextSlot++;
+			details[atlas.detailsOffset]     = x;
+			details[atlas.detailsOffset + 1] = y;
+			details[atlas.detailsOffset + 2] = (int) Math.ceil(atlas.font.getStringBounds(c + "", atlas.fontRenderContext).getWidth());
+			
+			Font font = atlas.font;
+			int generation = atlas.generation;
+			int width = atlas.maxCharWidth;
+			int height = atlas.maxCharHeight;
+			int baselineOffset = atlas.baselineOffset;
+			glyphRasterizer.execute(() -> {
+				BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+				Graphics2D g = image.createGraphics();
+				g.setColor(Color.BLACK);
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				g.setFont(font);
+				g.drawString(c + "", 0, height - baselineOffset);
+				g.dispose();
+				ByteBuffer pixels = Buffers.newDirectByteBuffer(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+				rasterizedChars.add(new RasterizedChar(atlas, generation, x, y, width, height, pixels));
+			});
 		}
 		
-		// send the small font texture to the GPU
-		buffer = Buffers.newDirectByteBuffer(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
-		writeTexture(gl, FontRenderer.smallFontTextureHandle, textureWidth, textureWidth, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, buffer); // actually ABGR, so swizzling it in the fragment shader
-		
-//		JFrame small = new JFrame("Small Font Atlas");
-//		small.add(new JLabel(new ImageIcon(image)));
-//		small.pack();
-//		small.setVisible(true);
+	}
+	
+	/**
+	 * Draws new texture atlases for each font and updates the variables/GPU accordingly.
+	 * Each atlas is sized so there are unused slots for as many characters again, so new characters can usually be added without regenerating.
+	 * 
+	 * @param gl    The OpenGL context.
+	 */
+	public static void updateFontTextures(GL2ES3 gl) {
 		
-		// prepare for medium font texture
-		textureWidth = 128;
-		maxCharWidth = 100;
-		maxCharHeight = 100;
-		while((textureWidth / maxCharWidth) * (textureWidth / maxCharHeight) < charCount) {
-			textureWidth *= 2;
-			image = new BufferedImage(textureWidth, textureWidth, BufferedImage.TYPE_4BYTE_ABGR);
-			g = image.createGraphics();
-			g.setColor(Color.BLACK);
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-			g.setFont(Theme.mediumFont);
-			FontMetrics fm = g.getFontMetrics();
-			maxCharWidth = fm.getMaxAdvance();
-			maxCharHeight = fm.getMaxAscent() + fm.getMaxDescent();
-			baselineOffset = fm.getMaxDescent() + 1;
-			int charsPerRow = textureWidth / maxCharWidth;
-			mediumFontMaxCharWidth = maxCharWidth;
-			mediumFontMaxCharHeight = maxCharHeight;
-			mediumFontCharsPerRow = charsPerRow;
-			mediumFontAsciiCharWidthLUT = new int[asciiCharCount];
-			mediumTextHeight = fm.getAscent() - baselineOffset;
-			mediumFontBaselineOffset = baselineOffset;
-		}
+		// any queued text refers to the old atlases
+		flush(gl);
 		
-		// draw the medium font texture atlas
-		x = 0;
-		y = maxCharHeight;
-		for(char c = firstAsciiChar; c <= lastAsciiChar; c++) {
-			String s = new String(c + "");
-			int charWidth = (int) Math.ceil(Theme.mediumFont.getStringBounds(s, g.getFontRenderContext()).getWidth());
-			mediumFontAsciiCharWidthLUT[c - firstAsciiChar] = charWidth;
-			g.drawString(s, x, y-baselineOffset);
-			x += maxCharWidth;
-			if(x + maxCharWidth > textureWidth) {
-				x = 0;
-				y += maxCharHeight;
-			}
-		}
-		for(Map.Entry<Character, int[]> nonAsciiChar : nonAsciiCharMap.entrySet()) {
-			char c = nonAsciiChar.getKey();
-			int[] details = nonAsciiChar.getValue();
-			String s = new String(c + "");
-			int charWidth = (int) Math.ceil(Theme.mediumFont.getStringBounds(s, g.getFontRenderContext()).getWidth());
-			details[3] = x;
-			details[4] = y - maxCharHeight;
-			details[5] = charWidth;
-			g.drawString(s, x, y-baselineOffset);
-			x += maxCharWidth;
-			if(x + maxCharWidth > textureWidth) {
-				x = 0;
-				y += maxCharHeight;
-			}
-		}
+		int asciiCharCount = lastAsciiChar - firstAsciiChar + 1;
+		int nonAsciiCharCount = nonAsciiCharMap.size();
+		int charCount = asciiCharCount + nonAsciiCharCount;
 		
-		// send the medium font texture to the GPU
-		buffer = Buffers.newDirectByteBuffer(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
-		writeTexture(gl, FontRenderer.mediumFontTextureHandle, textureWidth, textureWidth, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, buffer); // actually ABGR, so swizzling it in the fragment shader
+		updateFontTexture(gl, smallFont,  Theme.smallFont,  charCount);
+		updateFontTexture(gl, mediumFont, Theme.mediumFont, charCount);
+		updateFontTexture(gl, largeFont,  Theme.largeFont,  charCount);
 		
-//		JFrame medium = new JFrame("Medium Font Atlas");
-//		medium.add(new JLabel(new ImageIcon(image)));
-//		medium.pack();
-//		medium.setVisible(true);
+		smallTextHeight  = smallFont.textHeight;
+		mediumTextHeight = mediumFont.textHeight;
+		largeTextHeight  = largeFont.textHeight;
 		
-		// prepare for large font texture
-		textureWidth = 128;
-		maxCharWidth = 100;
-		maxCharHeight = 100;
-		while((textureWidth / maxCharWidth) * (textureWidth / maxCharHeight) < charCount) {
+	}
+	
+	/**
+	 * Draws a new texture atlas for one font and updates its variables/GPU accordingly.
+	 * 
+	 * @param gl           The OpenGL context.
+	 * @param atlas        The atlas to regenerate.
+	 * @param font         The font to draw with.
+	 * @param charCount    Number of characters that must fit in the atlas.
+	 */
+	private static void updateFontTexture(GL2ES3 gl, FontAtlas atlas, Font font, int charCount) {
+		
+		// measure the font
+		BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setFont(font);
+		FontMetrics fm = g.getFontMetrics();
+		int maxCharWidth = fm.getMaxAdvance();
+		int maxCharHeight = fm.getMaxAscent() + fm.getMaxDescent();
+		int baselineOffset = fm.getMaxDescent() + 1;
+		g.dispose();
+		
+		// size the texture
+		int textureWidth = 128;
+		while((textureWidth / maxCharWidth) * (textureWidth / maxCharHeight) < 2 * charCount)
 			textureWidth *= 2;
-			image = new BufferedImage(textureWidth, textureWidth, BufferedImage.TYPE_4BYTE_ABGR);
-			g = image.createGraphics();
-			g.setColor(Color.BLACK);
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-			g.setFont(Theme.largeFont);
-			FontMetrics fm = g.getFontMetrics();
-			maxCharWidth = fm.getMaxAdvance();
-			maxCharHeight = fm.getMaxAscent() + fm.getMaxDescent();
-			baselineOffset = fm.getMaxDescent() + 1;
-			int charsPerRow = textureWidth / maxCharWidth;
-			largeFontMaxCharWidth = maxCharWidth;
-			largeFontMaxCharHeight = maxCharHeight;
-			largeFontCharsPerRow = charsPerRow;
-			largeFontAsciiCharWidthLUT = new int[asciiCharCount];
-			largeTextHeight = fm.getAscent() - baselineOffset;
-			largeFontBaselineOffset = baselineOffset;
-		}
 		
-		// draw the large font texture atlas
-		x = 0;
-		y = maxCharHeight;
+		image = new BufferedImage(textureWidth, textureWidth, BufferedImage.TYPE_4BYTE_ABGR);
+		g = image.createGraphics();
+		g.setColor(Color.BLACK);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setFont(font);
+		atlas.font = font;
+		atlas.fontRenderContext = g.getFontRenderContext();
+		atlas.maxCharWidth = maxCharWidth;
+		atlas.maxCharHeight = maxCharHeight;
+		atlas.charsPerRow = textureWidth / maxCharWidth;
+		atlas.slotCount = atlas.charsPerRow * (textureWidth / maxCharHeight);
+		atlas.asciiCharWidthLUT = new int[lastAsciiChar - firstAsciiChar + 1];
+		atlas.textHeight = fm.getAscent() - baselineOffset;
+		atlas.baselineOffset = baselineOffset;
+		atlas.generation++;
+		
+		// draw the texture atlas
+		int x = 0;
+		int y = maxCharHeight;
 		for(char c = firstAsciiChar; c <= lastAsciiChar; c++) {
 			String s = new String(c + "");
-			int charWidth = (int) Math.ceil(Theme.largeFont.getStringBounds(s, g.getFontRenderContext()).getWidth());
-			largeFontAsciiCharWidthLUT[c - firstAsciiChar] = charWidth;
+			int charWidth = (int) Math.ceil(font.getStringBounds(s, atlas.fontRenderContext).getWidth());
+			atlas.asciiCharWidthLUT[c - firstAsciiChar] = charWidth;
 			g.drawString(s, x, y-baselineOffset);
 			x += maxCharWidth;
 			if(x + maxCharWidth > textureWidth) {
@@ -1005,10 +1152,10 @@ public class OpenGL {
 			char c = nonAsciiChar.getKey();
 			int[] details = nonAsciiChar.getValue();
 			String s = new String(c + "");
-			int charWidth = (int) Math.ceil(Theme.largeFont.getStringBounds(s, g.getFontRenderContext()).getWidth());
-			details[6] = x;
-			details[7] = y - maxCharHeight;
-			details[8] = charWidth;
+			int charWidth = (int) Math.ceil(font.getStringBounds(s, atlas.fontRenderContext).getWidth());
+			details[atlas.detailsOffset]     = x;
+			details[atlas.detailsOffset + 1] = y - maxCharHeight;
+			details[atlas.detailsOffset + 2] = charWidth;
 			g.drawString(s, x, y-baselineOffset);
 			x += maxCharWidth;
 			if(x + maxCharWidth > textureWidth) {
@@ -1016,15 +1163,17 @@ public class OpenGL {
 				y += maxCharHeight;
 			}
 		}
+		atlas.nextSlot = charCount;
+		g.dispose();
 		
-		// send the large font texture to the GPU
-		buffer = Buffers.newDirectByteBuffer(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
-		writeTexture(gl, FontRenderer.largeFontTextureHandle, textureWidth, textureWidth, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, buffer); // actually ABGR, so swizzling it in the fragment shader
+		// send the texture to the GPU
+		ByteBuffer buffer = Buffers.newDirectByteBuffer(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+		writeTexture(gl, atlas.textureHandle, textureWidth, textureWidth, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, buffer); // actually ABGR, so swizzling it in the fragment shader
 		
-//		JFrame large = new JFrame("Large Font Atlas");
-//		large.add(new JLabel(new ImageIcon(image)));
-//		large.pack();
-//		large.setVisible(true);
+//		JFrame frame = new JFrame("Font Atlas");
+//		frame.add(new JLabel(new ImageIcon(image)));
+//		frame.pack();
+//		frame.setVisible(true);
 		
 	}
 	
@@ -1072,6 +1221,26 @@ public class OpenGL {
 		
 	}
 	
+	/**
+	 * Replaces a rectangular region of a non-multisampled texture.
+	 * 
+	 * @param gl               The OpenGL context.
+	 * @param textureHandle    Handle to the texture.
+	 * @param xOffset          Left edge of the region, in pixels.
+	 * @param yOffset          Bottom edge of the region, in pixels.
+	 * @param width            Width of the region, in pixels.
+	 * @param height           Height of the region, in pixels.
+	 * @param pixelFormat      GL_RGB or GL_BGR or GL_RGBA.
+	 * @param pixelType        GL_UNSIGNED_BYTE or GL_FLOAT.
+	 * @param pixels           ByteBuffer of pixel data for just that region.
+	 */
+	public static void writeTextureRegion(GL2ES3 gl, int[] textureHandle, int xOffset, int yOffset, int width, int height, int pixelFormat, int pixelType, ByteBuffer pixels) {
+
+		gl.glBindTexture(GL3.GL_TEXTURE_2D, textureHandle[0]);
+		gl.glTexSubImage2D(GL3.GL_TEXTURE_2D, 0, xOffset, yOffset, width, height, pixelFormat, pixelType, pixels);
+		
+	}
+	
 	/**
 	 * Creates an off-screen framebuffer and corresponding multisample texture to use with it.
 	 * The texture is configured for RGBA uint8, with min/mag filter set to nearest.
@@ -1082,6 +1251,8 @@ public class OpenGL {
 	 */
 	public static void createOffscreenFramebuffer(GL2ES3 gl, int[] fboHandle, int[] textureHandle) {
 		
+		flush(gl);
+		
 		// create and use a framebuffer
 		gl.glGenFramebuffers(1, fboHandle, 0);
 		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, fboHandle[0]);
@@ -1111,6 +1282,7 @@ public class OpenGL {
 	}
 	
 	private static int[] onscreenViewport = new int[4]; // x,y,w,h
+	private static int[] viewportDimensions = new int[4]; // x,y,w,h, reused by the draw functions to avoid allocating every draw call
 	private static int[] onscreenScissor  = new int[4]; // x,y,w,h
 	
 	/**
@@ -1127,9 +1299,11 @@ public class OpenGL {
 	 */
 	public static void startDrawingOffscreen(GL2ES3 gl, float[] offscreenMatrix, int[] fboHandle, int[] textureHandle, int width, int height) {
 		
+		flush(gl);
+		
 		// save the on-screen viewport and scissor settings
 		gl.glGetIntegerv(GL3.GL_VIEWPORT, onscreenViewport, 0);
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, onscreenScissor, 0);
+		getScissorBox(onscreenScissor);
 
 		// switch to the off-screen framebuffer and corresponding texture
 		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, fboHandle[0]);
@@ -1146,7 +1320,7 @@ public class OpenGL {
 
 		// set the viewport and disable the scissor test
 		gl.glViewport(0, 0, width, height);
-		gl.glDisable(GL3.GL_SCISSOR_TEST);
+		disableScissorTest(gl);
 		
 		// set the matrix
 		useMatrix(gl, offscreenMatrix);
@@ -1173,9 +1347,11 @@ public class OpenGL {
 	 */
 	public static void continueDrawingOffscreen(GL2ES3 gl, float[] offscreenMatrix, int[] fboHandle, int[] textureHandle, int width, int height) {
 		
+		flush(gl);
+		
 		// save the on-screen viewport and scissor settings
 		gl.glGetIntegerv(GL3.GL_VIEWPORT, onscreenViewport, 0);
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, onscreenScissor, 0);
+		getScissorBox(onscreenScissor);
 
 		// switch to the off-screen framebuffer and corresponding texture
 		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, fboHandle[0]);
@@ -1186,7 +1362,7 @@ public class OpenGL {
 
 		// set the viewport and disable the scissor test
 		gl.glViewport(0, 0, width, height);
-		gl.glDisable(GL3.GL_SCISSOR_TEST);
+		disableScissorTest(gl);
 		
 		// set the matrix
 		useMatrix(gl, offscreenMatrix);
@@ -1204,15 +1380,17 @@ public class OpenGL {
 	 */
 	public static void stopDrawingOffscreen(GL2ES3 gl, float[] onscreenMatrix) {
 		
+		flush(gl);
+		
 		// switch back to the screen framebuffer
 		gl.glBindFramebuffer(GL3.GL_FRAMEBUFFER, 0);
 		
 		// restore the on-screen viewport and scissor settings
 		gl.glViewport(onscreenViewport[0], onscreenViewport[1], onscreenViewport[2], onscreenViewport[3]);
-		gl.glScissor(onscreenScissor[0], onscreenScissor[1], onscreenScissor[2], onscreenScissor[3]);
+		setScissorBox(gl, onscreenScissor[0], onscreenScissor[1], onscreenScissor[2], onscreenScissor[3]);
 		
 		// enable the scissor test
-		gl.glEnable(GL3.GL_SCISSOR_TEST);
+		enableScissorTest(gl);
 		
 		// set the matrix
 		useMatrix(gl, onscreenMatrix);
@@ -1289,6 +1467,35 @@ public class OpenGL {
 		
 	}
 	
+	/**
+	 * Helper function that draws a vertical ring-buffer texture onto an axis-aligned quad.
+	 * The texture must use GL_REPEAT wrapping for the y-axis (this is the default for textures made with createTexture().)
+	 * 
+	 * @param gl               The OpenGL context.
+	 * @param textureHandle    Handle to the texture.
+	 * @param lowerLeftX       Lower-left x location.
+	 * @param lowerLeftY       Lower-left y location.
+	 * @param width            Width of the quad.
+	 * @param height           Height of the quad.
+	 * @param offset           Used to stretch the texture so its pixels are half-way through the left and right edge of the quad.
+	 * @param startY           The texture's y value to render at the bottom edge of the quad.
+	 */
+	public static void drawVerticalRingbufferTexturedBox(GL2ES3 gl, int[] textureHandle, float lowerLeftX, float lowerLeftY, float width, float height, float offset, float startY) {
+
+		buffer.rewind();
+		buffer.put(lowerLeftX);         buffer.put(lowerLeftY + height); // x,y
+		buffer.put(0 + offset);         buffer.put(1 + startY);          // u,v
+		buffer.put(lowerLeftX);         buffer.put(lowerLeftY);
+		buffer.put(0 + offset);         buffer.put(0 + startY);
+		buffer.put(lowerLeftX + width); buffer.put(lowerLeftY + height);
+		buffer.put(1 - offset);         buffer.put(1 + startY);
+		buffer.put(lowerLeftX + width); buffer.put(lowerLeftY);
+		buffer.put(1 - offset);         buffer.put(0 + startY);
+		buffer.rewind();
+		drawTriangleStripTextured2D(gl, buffer, textureHandle[0], false, 4);
+		
+	}
+	
 	/**
 	 * Fills a float[16] with an orthographic projection matrix.
 	 * 
@@ -1511,6 +1718,62 @@ public class OpenGL {
 		
 	}
 	
+	// the scissor test is only changed through the functions below, so its state is known without querying OpenGL
+	private static boolean scissorEnabled = false;
+	private static int[] scissorBox = new int[4]; // x,y,w,h
+	
+	/**
+	 * Enables the scissor test.
+	 * 
+	 * @param gl    The OpenGL context.
+	 */
+	public static void enableScissorTest(GL2ES3 gl) {
+		
+		gl.glEnable(GL3.GL_SCISSOR_TEST);
+		scissorEnabled = true;
+		
+	}
+	
+	/**
+	 * Disables the scissor test.
+	 * 
+	 * @param gl    The OpenGL context.
+	 */
+	public static void disableScissorTest(GL2ES3 gl) {
+		
+		gl.glDisable(GL3.GL_SCISSOR_TEST);
+		scissorEnabled = false;
+		
+	}
+	
+	/**
+	 * Sets the region used by the scissor test.
+	 * 
+	 * @param gl        The OpenGL context.
+	 * @param x         Bottom-left corner, in pixels.
+	 * @param y         Bottom-left corner, in pixels.
+	 * @param width     Width, in pixels.
+	 * @param height    Height, in pixels.
+	 */
+	public static void setScissorBox(GL2ES3 gl, int x, int y, int width, int height) {
+		
+		gl.glScissor(x, y, width, height);
+		scissorBox[0] = x;
+		scissorBox[1] = y;
+		scissorBox[2] = width;
+		scissorBox[3] = height;
+		
+	}
+	
+	/**
+	 * @param box    Array to fill with the current scissor region: x,y,w,h
+	 */
+	public static void getScissorBox(int[] box) {
+		
+		System.arraycopy(scissorBox, 0, box, 0, 4);
+		
+	}
+	
 	private static class ThinLinesY {
 		static int programHandle;
 		static int colorHandle;
@@ -1657,29 +1920,91 @@ public class OpenGL {
 		static int programHandle;
 		static int matrixHandle;
 		static int lineHeightHandle;
-		static int[] smallFontTextureHandle = new int[1];
-		static int[] mediumFontTextureHandle = new int[1];
-		static int[] largeFontTextureHandle = new int[1];
 		static int vaoHandle;
 		static int vboHandle;
 	}
-	private static int[] smallFontAsciiCharWidthLUT;
-	private static int   smallFontMaxCharWidth;
-	private static int   smallFontMaxCharHeight;
-	private static int   smallFontCharsPerRow;
-	private static int   smallFontBaselineOffset;
 	
-	private static int[] mediumFontAsciiCharWidthLUT;
-	private static int   mediumFontMaxCharWidth;
-	private static int   mediumFontMaxCharHeight;
-	private static int   mediumFontCharsPerRow;
-	private static int   mediumFontBaselineOffset;
+	private static class FontAtlas {
+		final int detailsOffset; // where this font's (x,y,width) is stored in each nonAsciiCharMap value
+		final int[] textureHandle = new int[1];
+		Font font;
+		FontRenderContext fontRenderContext;
+		int[] asciiCharWidthLUT;
+		int maxCharWidth;
+		int maxCharHeight;
+		int charsPerRow;
+		int baselineOffset;
+		int textHeight;
+		int slotCount;  // number of characters that fit in the texture
+		int nextSlot;   // index of the first unused slot
+		int generation; // incremented each time the atlas is regenerated, so characters rasterized for an old atlas are ignored
+		FloatBuffer queue = Buffers.newDirectFloatBuffer(5 * 4096); // (x,y,s,t,w) for each queued character
+		int queuedCharCount;
+		FontAtlas(int detailsOffset) {
+			this.detailsOffset = detailsOffset;
+		}
+	}
+	
+	private static class RasterizedChar {
+		final FontAtlas atlas;
+		final int generation;
+		final int x;
+		final int y;
+		final int width;
+		final int height;
+		final ByteBuffer pixels;
+		RasterizedChar(FontAtlas atlas, int generation, int x, int y, int width, int height, ByteBuffer pixels) {
+			this.atlas = atlas;
+			this.generation = generation;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.pixels = pixels;
+		}
+	}
+	
+	private static final FontAtlas smallFont  = new FontAtlas(0);
+	private static final FontAtlas mediumFont = new FontAtlas(3);
+	private static final FontAtlas largeFont  = new FontAtlas(6);
+	private static final FontAtlas[] fontAtlases = new FontAtlas[] {smallFont, mediumFont, largeFont};
+	
+	private static class GeometryQueue {
+		FloatBuffer vertices = Buffers.newDirectFloatBuffer(6 * 4096); // (x,y,r,g,b,a) for each queued vertex
+		int vertexCount;
+		float[] region = clearRegion(new float[4]);
+		void ensureCapacity(int newVertexCount) {
+			if(vertices.remaining() >= newVertexCount * 6)
+				return;
+			FloatBuffer biggerBuffer = Buffers.newDirectFloatBuffer(Math.max(vertices.capacity() * 2, vertices.position() + newVertexCount * 6));
+			vertices.flip();
+			biggerBuffer.put(vertices);
+			vertices = biggerBuffer;
+		}
+	}
 	
-	private static int[] largeFontAsciiCharWidthLUT;
-	private static int   largeFontMaxCharWidth;
-	private static int   largeFontMaxCharHeight;
-	private static int   largeFontCharsPerRow;
-	private static int   largeFontBaselineOffset;
+	// draw calls with up to this many vertices are queued instead of being drawn immediately
+	private static final int MAX_QUEUED_VERTEX_COUNT = 64;
+	
+	// queued triangles, lines and text are drawn in that order, with the matrix and scissor test that were in use when they were queued
+	// each region is the area covered by that queue: [0] = minX, [1] = maxX, [2] = minY, [3] = maxY
+	private static final GeometryQueue queuedTriangles = new GeometryQueue();
+	private static final GeometryQueue queuedLines = new GeometryQueue();
+	private static int queuedCharCount = 0;
+	private static float[] queuedTextRegion = clearRegion(new float[4]);
+	private static float[] queuedMatrix = new float[16];
+	private static boolean queuedScissorEnabled;
+	private static int[] queuedScissorBox = new int[4];
+	private static float[] newRegion = new float[4];
+	
+	// new characters are drawn by this thread, then sent to the GPU the next time text is flushed
+	private static final ExecutorService glyphRasterizer = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task);
+		thread.setName("Glyph Rasterizer Thread");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Queue<RasterizedChar> rasterizedChars = new ConcurrentLinkedQueue<RasterizedChar>();
 	
 	// texture atlases contain the printable ASCII characters, plus any characters in this map
 	// each map value is an int[] containing:
@@ -2560,12 +2885,9 @@ public class OpenGL {
 		FontRenderer.lineHeightHandle = gl.glGetUniformLocation(FontRenderer.programHandle, "lineHeight");
 		
 		// create the textures
-		createTexture(gl, handle, 512, 512, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, false);
-		FontRenderer.smallFontTextureHandle[0] = handle[0];
-		createTexture(gl, handle, 512, 512, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, false);
-		FontRenderer.mediumFontTextureHandle[0] = handle[0];
-		createTexture(gl, handle, 512, 512, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, false);
-		FontRenderer.largeFontTextureHandle[0] = handle[0];
+		createTexture(gl, smallFont.textureHandle,  512, 512, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, false);
+		createTexture(gl, mediumFont.textureHandle, 512, 512, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, false);
+		createTexture(gl, largeFont.textureHandle,  512, 512, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE, false);
 		
 	}
 	
@@ -13,6 +13,7 @@ public class OpenGLCameraChart extends PositionedChart {
 	
 	ConnectionCamera camera = null;
 	long previousFrameTimestamp = 0;
+	int previousFrameWidth = 0;
 	
 	// image region on screen
 	int[] texHandle;
@@ -82,19 +83,8 @@ public class OpenGLCameraChart extends PositionedChart {
 		
 	}
 
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long nowTimestamp, int lastSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long nowTimestamp, long lastSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 
-		// get the image
-		ConnectionCamera.GLframe f = null;
-		if(camera == null)
-			f = new ConnectionCamera.GLframe(null, true, 1, 1, "[select a camera]", 0);
-		else if(OpenGLChartsView.instance.isLiveView() && !ConnectionsController.importing)
-			f = camera.getLiveImage();
-		else {
-			long lastTimestamp = OpenGLChartsView.instance.isLiveView() ? ConnectionsController.getLastTimestamp() : OpenGLChartsView.instance.pausedTimestamp;
-			f = camera.getImageAtOrBeforeTimestamp(lastTimestamp);
-		}
-		
 		// calculate x and y positions of everything
 		xDisplayLeft = Theme.tilePadding;
 		xDisplayRight = width - Theme.tilePadding;
@@ -104,16 +94,32 @@ public class OpenGLCameraChart extends PositionedChart {
 		displayHeight = yDisplayTop - yDisplayBottom;
 
 		if(showLabel) {
-			labelWidth = OpenGL.largeTextWidth(gl, f.label);
 			yLabelBaseline = Theme.tilePadding;
 			yLabelTop = yLabelBaseline + OpenGL.largeTextHeight;
-			xLabelLeft = (width / 2f) - (labelWidth / 2f);
-			xLabelRight = xLabelLeft + labelWidth;
 		
 			yDisplayBottom = yLabelTop + Theme.tickTextPadding + Theme.tilePadding;
 			displayHeight = yDisplayTop - yDisplayBottom;
 		}
 		
+		// get the image, decoded at a scale that covers the display region (in the image's orientation)
+		int maxWidth  = (int) Math.ceil(rotateClockwise ? displayHeight : displayWidth);
+		int maxHeight = (int) Math.ceil(rotateClockwise ? displayWidth : displayHeight);
+		ConnectionCamera.GLframe f = null;
+		if(camera == null)
+			f = new ConnectionCamera.GLframe(null, true, 1, 1, "[select a camera]", 0);
+		else if(OpenGLChartsView.instance.isLiveView() && !ConnectionsController.importing)
+			f = camera.getLiveImage(maxWidth, maxHeight);
+		else {
+			long lastTimestamp = OpenGLChartsView.instance.isLiveView() ? ConnectionsController.getLastTimestamp() : OpenGLChartsView.instance.pausedTimestamp;
+			f = camera.getImageAtOrBeforeTimestamp(lastTimestamp, maxWidth, maxHeight);
+		}
+		
+		if(showLabel) {
+			labelWidth = OpenGL.largeTextWidth(gl, f.label);
+			xLabelLeft = (width / 2f) - (labelWidth / 2f);
+			xLabelRight = xLabelLeft + labelWidth;
+		}
+		
 		// maintain the image aspect ratio, so it doesn't stretch
 		float desiredAspectRatio = rotateClockwise ? (float) f.height / (float) f.width : (float) f.width / (float) f.height;
 		float currentAspectRatio = displayWidth / displayHeight;
@@ -141,10 +147,12 @@ public class OpenGLCameraChart extends PositionedChart {
 			OpenGL.createTexture(gl, texHandle, f.width, f.height, f.isBgr ? GL3.GL_BGR : GL3.GL_RGB, GL3.GL_UNSIGNED_BYTE, true);
 			OpenGL.writeTexture (gl, texHandle, f.width, f.height, f.isBgr ? GL3.GL_BGR : GL3.GL_RGB, GL3.GL_UNSIGNED_BYTE, f.buffer);
 			previousFrameTimestamp = f.timestamp;
-		} else if(f.timestamp != previousFrameTimestamp) {
-			// only replace the texture if a new image is available
+			previousFrameWidth = f.width;
+		} else if(f.timestamp != previousFrameTimestamp || f.width != previousFrameWidth) {
+			// only replace the texture if a new image is available, or if the same image was decoded at a different scale
 			OpenGL.writeTexture(gl, texHandle, f.width, f.height, f.isBgr ? GL3.GL_BGR : GL3.GL_RGB, GL3.GL_UNSIGNED_BYTE, f.buffer);
 			previousFrameTimestamp = f.timestamp;
+			previousFrameWidth = f.width;
 		}
 		
 		     if(!mirrorX && !mirrorY) OpenGL.drawTexturedBox(gl, texHandle, false, xDisplayLeft,  yDisplayTop,     displayWidth, -displayHeight, 0, rotateClockwise);
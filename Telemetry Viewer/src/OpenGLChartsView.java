@@ -67,8 +67,8 @@ public class OpenGLChartsView extends JPanel {
 	private boolean triggeredView;
 	long pausedTimestamp;
 	ConnectionTelemetry pausedPrimaryConnection; // if the mouse was over a chart while timeshifting, or if there was only one connection, we also track the corresponding connection and its sample number, to allow sub-millisecond time shifting.
-	int pausedPrimaryConnectionSampleNumber;
-	Map<ConnectionTelemetry, Integer> endSampleNumbers = new HashMap<ConnectionTelemetry, Integer>();
+	long pausedPrimaryConnectionSampleNumber;
+	Map<ConnectionTelemetry, Long> endSampleNumbers = new HashMap<ConnectionTelemetry, Long>();
 	
 	// mouse pointer's current location (pixels, origin at bottom-left)
 	int mouseX;
@@ -88,6 +88,8 @@ public class OpenGLChartsView extends JPanel {
 	// benchmarks for the entire frame
 	long cpuStartNanoseconds;
 	long cpuStopNanoseconds;
+	long startAllocatedBytes;
+	long stopAllocatedBytes;
 	double previousCpuMilliseconds;
 	double previousGpuMilliseconds;
 	double cpuMillisecondsAccumulator;
@@ -96,6 +98,9 @@ public class OpenGLChartsView extends JPanel {
 	final int SAMPLE_COUNT = 60;
 	double averageCpuMilliseconds;
 	double averageGpuMilliseconds;
+	long previousAllocatedBytes;
+	long allocatedBytesAccumulator;
+	long averageAllocatedBytes;
 	int[] gpuQueryHandles = new int[2];
 	long[] gpuTimes = new long[2];
 	boolean openGLES;
@@ -162,6 +167,9 @@ public class OpenGLChartsView extends JPanel {
 				gl.glEnable(GL3.GL_BLEND);
 				gl.glBlendFunc(GL3.GL_SRC_ALPHA, GL3.GL_ONE_MINUS_SRC_ALPHA);
 				
+				// a new context starts with the scissor test disabled
+				OpenGL.disableScissorTest(gl);
+				
 				// disable antialiasing when using OpenGL ES, because rendering to off-screen framebuffers doesn't seem to support MSAA in OpenGL ES 3.1
 				if(!gl.isGL3() && SettingsController.getAntialiasingLevel() > 1) {
 					SettingsController.setAntialiasingLevel(1);
@@ -244,6 +252,9 @@ public class OpenGLChartsView extends JPanel {
 				if(eventHandler != null && !eventHandler.dragInProgress)
 					eventHandler = null;
 				
+				// charts showing the same data can share query results until the end of this frame
+				FrameQueryCache.beginFrame();
+				
 				// prepare OpenGL
 				GL2ES3 gl = drawable.getGL().getGL2ES3();
 				OpenGL.useMatrix(gl, screenMatrix);
@@ -257,20 +268,25 @@ public class OpenGLChartsView extends JPanel {
 						gl.glGetQueryObjecti64v(gpuQueryHandles[1], GL3.GL_QUERY_RESULT, gpuTimes, 1);
 					}
 					previousGpuMilliseconds = (gpuTimes[1] - gpuTimes[0]) / 1000000.0;
+					previousAllocatedBytes = stopAllocatedBytes - startAllocatedBytes;
 					if(count < SAMPLE_COUNT) {
 						cpuMillisecondsAccumulator += previousCpuMilliseconds;
 						gpuMillisecondsAccumulator += previousGpuMilliseconds;
+						allocatedBytesAccumulator += previousAllocatedBytes;
 						count++;
 					} else {
 						averageCpuMilliseconds = cpuMillisecondsAccumulator / 60.0;
 						averageGpuMilliseconds = gpuMillisecondsAccumulator / 60.0;
+						averageAllocatedBytes = allocatedBytesAccumulator / 60;
 						cpuMillisecondsAccumulator = 0;
 						gpuMillisecondsAccumulator = 0;
+						allocatedBytesAccumulator = 0;
 						count = 0;
 					}
 					
 					// start timers for *this frame*
 					cpuStartNanoseconds = System.nanoTime();
+					startAllocatedBytes = ChartUtils.getAllocatedBytes();
 					if(!openGLES)
 						gl.glQueryCounter(gpuQueryHandles[0], GL3.GL_TIMESTAMP);
 				}
@@ -417,7 +433,7 @@ public class OpenGLChartsView extends JPanel {
 							endTimestamp = Long.MIN_VALUE;
 							endSampleNumbers.clear();
 							for(ConnectionTelemetry connection : ConnectionsController.telemetryConnections) {
-								int sampleCount = connection.getSampleCount();
+								long sampleCount = connection.getSampleCount();
 								endSampleNumbers.put(connection, sampleCount - 1);
 								if(sampleCount > 0) {
 									long lastTimestamp = connection.getTimestamp(sampleCount - 1);
@@ -426,7 +442,7 @@ public class OpenGLChartsView extends JPanel {
 								}
 							}
 							for(ConnectionCamera connection : ConnectionsController.cameraConnections) {
-								int sampleCount = connection.getSampleCount();
+								long sampleCount = connection.getSampleCount();
 								if(sampleCount > 0) {
 									long lastTimestamp = connection.getTimestamp(sampleCount - 1);
 									if(endTimestamp < lastTimestamp)
@@ -441,7 +457,7 @@ public class OpenGLChartsView extends JPanel {
 								if(connection == pausedPrimaryConnection) {
 									endSampleNumbers.put(connection, pausedPrimaryConnectionSampleNumber);
 								} else {
-									int lastSampleNumber = connection.getSampleCount() - 1;
+									long lastSampleNumber = connection.getSampleCount() - 1;
 									endSampleNumbers.put(connection, connection.datasets.getClosestSampleNumberAtOrBefore(pausedTimestamp, lastSampleNumber));
 								}
 							}
@@ -449,11 +465,11 @@ public class OpenGLChartsView extends JPanel {
 						// if the sample numbers don't correspond within 10ms of the timestamp, fake them forward or backward
 						// this helps charts to line up if multiple connections exist, but one connection has samples before or after another connection
 						if(endTimestamp != Long.MIN_VALUE)
-							for(Entry<ConnectionTelemetry, Integer> entry : endSampleNumbers.entrySet()) {
+							for(Entry<ConnectionTelemetry, Long> entry : endSampleNumbers.entrySet()) {
 								ConnectionTelemetry connection = entry.getKey();
 								if(triggeredView && connection == pausedPrimaryConnection)
 									continue;
-								int endSampleNumber = entry.getValue();
+								long endSampleNumber = entry.getValue();
 								long connectionEndTimestamp = connection.getTimestamp(endSampleNumber);
 								long errorMilliseconds = endTimestamp - connectionEndTimestamp;
 								if(errorMilliseconds > 10 || errorMilliseconds < -10) {
@@ -471,7 +487,7 @@ public class OpenGLChartsView extends JPanel {
 					chartUnderMouse = null;
 					for(PositionedChart chart : charts) {
 						
-						int lastSampleNumber = -1;
+						long lastSampleNumber = -1;
 						synchronized(instance) {
 							if(chart.datasets.connection != null)
 								lastSampleNumber = endSampleNumbers.get(chart.datasets.connection);
@@ -568,8 +584,8 @@ public class OpenGLChartsView extends JPanel {
 						if(width < 1 || height < 1)
 							continue;
 						
-						gl.glEnable(GL3.GL_SCISSOR_TEST);
-						gl.glScissor(xOffset, yOffset, width, height);
+						OpenGL.enableScissorTest(gl);
+						OpenGL.setScissorBox(gl, xOffset, yOffset, width, height);
 						
 						float[] chartMatrix = Arrays.copyOf(screenMatrix, 16);
 						OpenGL.translateMatrix(chartMatrix, xOffset, yOffset, 0);
@@ -578,7 +594,7 @@ public class OpenGLChartsView extends JPanel {
 						EventHandler chartEventHandler = chart.draw(gl, chartMatrix, width, height, endTimestamp, lastSampleNumber, zoomLevel, (eventHandler != null) ? -1 : mouseX - xOffset, (eventHandler != null) ? -1 :mouseY - yOffset);
 						
 						OpenGL.useMatrix(gl, screenMatrix);
-						gl.glDisable(GL3.GL_SCISSOR_TEST);
+						OpenGL.disableScissorTest(gl);
 	
 						// check if the mouse is over this chart
 						width += (int) Theme.tileShadowOffset;
@@ -632,7 +648,9 @@ public class OpenGLChartsView extends JPanel {
 				// GPU benchmarking is not possible with OpenGL ES
 				if(SettingsController.getBenchmarking()) {
 					// stop timers for *this frame*
+					OpenGL.flush(gl);
 					cpuStopNanoseconds = System.nanoTime();
+					stopAllocatedBytes = ChartUtils.getAllocatedBytes();
 					if(!openGLES)
 						gl.glQueryCounter(gpuQueryHandles[1], GL3.GL_TIMESTAMP);
 					
@@ -641,9 +659,12 @@ public class OpenGLChartsView extends JPanel {
 					String line2 =             String.format("CPU = %.3fms (Average = %.3fms)", previousCpuMilliseconds, averageCpuMilliseconds);
 					String line3 = !openGLES ? String.format("GPU = %.3fms (Average = %.3fms)", previousGpuMilliseconds, averageGpuMilliseconds) :
 					                                         "GPU = unknown";
-					float textHeight = 3*OpenGL.smallTextHeight + 2*Theme.tickTextPadding;
+					String line4 = startAllocatedBytes >= 0 ? String.format("Heap allocated = %,d KB (Average = %,d KB)", previousAllocatedBytes / 1024, averageAllocatedBytes / 1024) :
+					                                          "Heap allocated = unknown";
+					float textHeight = 4*OpenGL.smallTextHeight + 3*Theme.tickTextPadding;
 					float textWidth = Float.max(OpenGL.smallTextWidth(gl, line1), OpenGL.smallTextWidth(gl, line2));
 					textWidth = Float.max(textWidth, OpenGL.smallTextWidth(gl, line3));
+					textWidth = Float.max(textWidth, OpenGL.smallTextWidth(gl, line4));
 					float boxWidth = textWidth + 2*Theme.tickTextPadding;
 					float boxHeight = textHeight + 2*Theme.tickTextPadding;
 					int xBoxLeft = (canvasWidth / 2) - (int) (textWidth / 2);
@@ -655,15 +676,21 @@ public class OpenGLChartsView extends JPanel {
 					OpenGL.drawSmallText(gl, line1, (canvasWidth / 2) - (int) (OpenGL.smallTextWidth(gl, line1) / 2), yTextBaseline, 0);
 					OpenGL.drawSmallText(gl, line2, xTextLeft, yTextBaseline - lineSpacing, 0);
 					OpenGL.drawSmallText(gl, line3, xTextLeft, yTextBaseline - lineSpacing - lineSpacing, 0);
+					OpenGL.drawSmallText(gl, line4, xTextLeft, yTextBaseline - lineSpacing - lineSpacing - lineSpacing, 0);
 					
-					String message = "Entire Frame: " + line2 + " " + line3;
+					String message = "Entire Frame: " + line2 + " " + line3 + " " + line4 + " " + FrameQueryCache.getPreviousFrameSummary();
 					for(int i = 0; i < charts.size(); i++) {
 						PositionedChart chart = charts.get(i);
-						message += ",     Chart " + i + ": " + chart.line1 + " " + line3;
+						message += ",     Chart " + i + ": " + chart.line1 + " " + chart.line2 + " " + chart.line3;
 					}
 					NotificationsController.showDebugMessage(message);
 				}
 				
+				// draw any text that is still queued
+				OpenGL.flush(gl);
+				
+				FrameQueryCache.endFrame();
+				
 			}
 			
 			@Override public void dispose(GLAutoDrawable drawable) {
@@ -881,11 +908,11 @@ public class OpenGLChartsView extends JPanel {
 						else if(delta >= 0)
 							delta = 1;
 						
-						int trueLastSampleNumber = connection.getSampleCount() - 1;
-						int oldSampleNumber = liveView ? trueLastSampleNumber :
+						long trueLastSampleNumber = connection.getSampleCount() - 1;
+						long oldSampleNumber = liveView ? trueLastSampleNumber :
 						                      !liveView && pausedPrimaryConnection == connection ? pausedPrimaryConnectionSampleNumber :
 						                      connection.datasets.getClosestSampleNumberAtOrBefore(pausedTimestamp, trueLastSampleNumber);
-						int newSampleNumber = oldSampleNumber + (int) delta;
+						long newSampleNumber = oldSampleNumber + (int) delta;
 						if(newSampleNumber < 0)
 							newSampleNumber = 0;
 						if(newSampleNumber >= trueLastSampleNumber)
@@ -1065,7 +1092,7 @@ public class OpenGLChartsView extends JPanel {
 		boolean triggeredView = instance.triggeredView;
 		long pausedTimestamp = instance.pausedTimestamp;
 		ConnectionTelemetry pausedPrimaryConnection = instance.pausedPrimaryConnection;
-		int pausedPrimaryConnectionSampleNumber = instance.pausedPrimaryConnectionSampleNumber;
+		long pausedPrimaryConnectionSampleNumber = instance.pausedPrimaryConnectionSampleNumber;
 		
 		PositionedChart maximizedChart = instance.maximizedChart;
 
@@ -1112,7 +1139,7 @@ public class OpenGLChartsView extends JPanel {
 		
 	}
 	
-	public void setPausedView(long timestamp, ConnectionTelemetry connection, int sampleNumber, boolean notifyTimeline) {
+	public void setPausedView(long timestamp, ConnectionTelemetry connection, long sampleNumber, boolean notifyTimeline) {
 		
 		liveView = false;
 		pausedView = true;
@@ -1135,7 +1162,7 @@ public class OpenGLChartsView extends JPanel {
 		
 	}
 	
-	public void setTriggeredView(long timestamp, ConnectionTelemetry connection, int sampleNumber) {
+	public void setTriggeredView(long timestamp, ConnectionTelemetry connection, long sampleNumber) {
 		
 		liveView = false;
 		pausedView = false;
@@ -1147,7 +1174,7 @@ public class OpenGLChartsView extends JPanel {
 		
 	}
 	
-	public int getLastSampleNumber(ConnectionTelemetry connection) {
+	public long getLastSampleNumber(ConnectionTelemetry connection) {
 		
 		synchronized(instance) {
 			
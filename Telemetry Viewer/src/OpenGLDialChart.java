@@ -114,7 +114,7 @@ public class OpenGLDialChart extends PositionedChart {
 		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		EventHandler handler = null;
 		
@@ -123,8 +123,8 @@ public class OpenGLDialChart extends PositionedChart {
 			return handler;
 		
 		// get the sample
-		int lastSampleNumber = endSampleNumber;
-		int trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
+		long lastSampleNumber = endSampleNumber;
+		long trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
 		if(lastSampleNumber > trueLastSampleNumber)
 			lastSampleNumber = trueLastSampleNumber;
 		Dataset dataset = datasets.getNormal(0);
@@ -1,7 +1,10 @@
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL2ES3;
 import com.jogamp.opengl.GL3;
@@ -16,6 +19,7 @@ public class OpenGLFrequencyDomainCache {
 	
 	int previousDftWindowLength;
 	int previousDftsCount;
+	int previousSampleRate;
 	DatasetsInterface previousDatasets;
 	String previousChartMode;
 	
@@ -26,6 +30,17 @@ public class OpenGLFrequencyDomainCache {
 	int[] waveformViewTexHandle;
 	int[] waterfallViewTexHandle;
 	
+	// the waterfall texture is a ring buffer with one row per DFT
+	// rows are only rasterized when their DFT becomes available, or when the power scale or colors change
+	private ByteBuffer waterfallPixels;     // CPU-side copy of the texture, 4 floats (r,g,b,a) per pixel
+	private long[] waterfallRowContents;    // [rowN] = DFT number currently rasterized into that row, or -1 if the row is empty
+	private int waterfallTextureWidth;
+	private int waterfallTextureHeight;
+	private float waterfallMinPower;
+	private float waterfallMaxPower;
+	private DFT[] waterfallDfts;            // the ring buffer that the texture was rasterized from
+	private List<float[]> waterfallColors = new ArrayList<>();
+	
 	private static class DFT {
 		
 		static double binSizeHz;
@@ -35,16 +50,40 @@ public class OpenGLFrequencyDomainCache {
 		static float minPower;
 		static float maxPower;
 		static int windowLength;
-		static int firstDft;
-		static int lastDft;
-		
-		List<float[]> forDataset = new ArrayList<>(); // .get(datasetN)[binN]
-		int firstSampleNumber = -1;
-		boolean populated;
+		static long firstDft;
+		static long lastDft;
+		
+		volatile List<float[]> forDataset = new ArrayList<>(); // .get(datasetN)[binN]
+		volatile long firstSampleNumber = -1;
+		volatile boolean populated;
+		boolean failed; // true if the pool could not calculate this DFT, so it won't be attempted again
+		ForkJoinTask<?> pendingTask; // non-null while this DFT is being calculated by the pool
+		
+		/**
+		 * Cancels any pending calculation and marks this DFT as empty.
+		 * 
+		 * @param firstSampleNumber    The sample number this DFT will now correspond to.
+		 */
+		synchronized void reset(long firstSampleNumber) {
+			if(pendingTask != null)
+				pendingTask.cancel(false);
+			pendingTask = null;
+			this.firstSampleNumber = firstSampleNumber;
+			populated = false;
+			failed = false;
+		}
 		
 	}
 	private DFT[] dft; // ring buffer
 	
+	// the Multiple and Waterfall modes calculate each missing DFT as an independent task
+	// results are written into the ring buffer as they complete, so the render thread never waits for them
+	private static final ForkJoinPool dftPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	
+	// caches are not thread-safe, so the pool tasks share one cache per dataset, and hold its lock while reading samples
+	private volatile StorageFloats.Cache[] taskCaches = new StorageFloats.Cache[0];
+	private volatile boolean taskFailureShown = false;
+	
 	/**
 	 * Prepares the cache.
 	 */
@@ -64,6 +103,7 @@ public class OpenGLFrequencyDomainCache {
 		
 		previousDftWindowLength = 0;
 		previousDftsCount = 0;
+		previousSampleRate = 0;
 		previousDatasets = new DatasetsInterface();
 		previousChartMode = "";
 		
@@ -80,30 +120,44 @@ public class OpenGLFrequencyDomainCache {
 	 * @param datasets           Datasets to visualize, along with their sample caches.
 	 * @param chartMode          "Single" or "Multiple" or "Waterfall"
 	 */
-	public void calculateDfts(int endSampleNumber, int windowLength, int dftsCount, DatasetsInterface datasets, String chartMode) {
+	public void calculateDfts(long endSampleNumber, int windowLength, int dftsCount, DatasetsInterface datasets, String chartMode) {
 		
 		datasetsCount = datasets.normalsCount();
+		int currentSampleRate = datasets.hasNormals() ? datasets.connection.sampleRate : 0;
 		
 		// flush the cache if necessary
-		if(previousDftWindowLength != windowLength || !previousDatasets.equals(datasets) || previousDftsCount != dftsCount || !previousChartMode.equals(chartMode)) {
+		// (the sample rate determines the bin count, so DFTs from pool tasks can't be mixed across sample rates)
+		if(previousDftWindowLength != windowLength || !previousDatasets.equals(datasets) || previousDftsCount != dftsCount || !previousChartMode.equals(chartMode) || previousSampleRate != currentSampleRate) {
+			
+			for(DFT oldDft : dft)
+				oldDft.reset(-1);
 			
 			dft = new DFT[dftsCount];
 			for(int dftN = 0; dftN < dftsCount; dftN++)
 				dft[dftN] = new DFT();
+			
+			StorageFloats.Cache[] oldCaches = taskCaches;
+			StorageFloats.Cache[] newCaches = new StorageFloats.Cache[datasetsCount];
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
+				newCaches[datasetN] = datasets.getNormal(datasetN).createCache();
+			taskCaches = newCaches;
+			releaseTaskCaches(oldCaches); // after replacing them, so any pending task will release what it uses
+			taskFailureShown = false;
 
 			previousDftWindowLength = windowLength;
 			previousDftsCount = dftsCount;
 			previousDatasets = datasets;
 			previousChartMode = chartMode;
+			previousSampleRate = currentSampleRate;
 			
 		}
 		
 		// calculate the DFTs
 		if(chartMode.equals("Single")) {
 			
-			int trueLastSampleNumber = datasets.hasNormals() ? datasets.connection.getSampleCount() - 1 : 0;
-			int lastSampleNumber = Integer.min(endSampleNumber, trueLastSampleNumber);
-			int firstSampleNumber = lastSampleNumber - windowLength + 1;
+			long trueLastSampleNumber = datasets.hasNormals() ? datasets.connection.getSampleCount() - 1 : 0;
+			long lastSampleNumber = Long.min(endSampleNumber, trueLastSampleNumber);
+			long firstSampleNumber = lastSampleNumber - windowLength + 1;
 			if(firstSampleNumber < 0)
 				firstSampleNumber = 0;
 			if(lastSampleNumber < firstSampleNumber)
@@ -129,8 +183,8 @@ public class OpenGLFrequencyDomainCache {
 			
 			// calculate the DFT for each dataset
 			int sampleRate = datasets.connection.sampleRate;
-			final int first = firstSampleNumber;
-			final int last = lastSampleNumber;
+			final long first = firstSampleNumber;
+			final long last = lastSampleNumber;
 			theDft.forDataset.clear();
 			datasets.forEachNormal((dataset, cache) -> {
 				float[] samples = dataset.getSamplesArray(first, last, cache);
@@ -147,7 +201,7 @@ public class OpenGLFrequencyDomainCache {
 			DFT.maxHz    = firstDft[firstDft.length - 2];
 			DFT.minPower = firstDft[1];
 			DFT.maxPower = firstDft[1];
-			DFT.windowLength = lastSampleNumber - firstSampleNumber + 1;
+			DFT.windowLength = (int) (lastSampleNumber - firstSampleNumber + 1);
 			
 			theDft.forDataset.forEach(datasetsDft -> {
 				for(int i = 1; i < datasetsDft.length; i += 2) {
@@ -167,22 +221,57 @@ public class OpenGLFrequencyDomainCache {
 				return;
 
 			// calculate the DFTs for each dataset
+			// the newest DFTs are submitted first, so the top of the waterfall fills in first
 			int sampleRate = datasets.connection.sampleRate;
-			int trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
-			for(int dftN = DFT.firstDft; dftN <= DFT.lastDft; dftN++) {
-				int firstSampleNumber = dftN * windowLength;
-				int lastSampleNumber = firstSampleNumber + windowLength - 1;
-				DFT theDft = dft[dftN % dftsCount];
-				if(theDft.firstSampleNumber != firstSampleNumber || !theDft.populated) {
-					theDft.firstSampleNumber = firstSampleNumber;
-					theDft.populated = false;
-					if(lastSampleNumber <= trueLastSampleNumber) {
-						theDft.forDataset.clear();
-						datasets.forEachNormal((dataset, cache) -> {
-							float[] samples = dataset.getSamplesArray(firstSampleNumber, lastSampleNumber, cache);
-							theDft.forDataset.add(calculateDFT(samples, sampleRate));
-						});
-						theDft.populated = true;
+			long trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
+			updateLUTs(windowLength, sampleRate);
+			double[][] sin = sinLUT;
+			double[][] cos = cosLUT;
+			int binCount = DFT.binCount;
+			List<Dataset> list = new ArrayList<Dataset>(datasets.normalDatasets);
+			StorageFloats.Cache[] caches = taskCaches;
+			for(long dftN = DFT.lastDft; dftN >= DFT.firstDft; dftN--) {
+				long firstSampleNumber = dftN * windowLength;
+				long lastSampleNumber = firstSampleNumber + windowLength - 1;
+				DFT theDft = dft[(int) (dftN % dftsCount)];
+				synchronized(theDft) {
+					if(theDft.firstSampleNumber != firstSampleNumber || (!theDft.populated && !theDft.failed && theDft.pendingTask == null)) {
+						theDft.reset(firstSampleNumber);
+						if(lastSampleNumber <= trueLastSampleNumber)
+							theDft.pendingTask = dftPool.submit(() -> {
+								List<float[]> forDataset = new ArrayList<>(list.size());
+								try {
+									for(int datasetN = 0; datasetN < list.size(); datasetN++) {
+										float[] samples;
+										synchronized(caches[datasetN]) {
+											samples = list.get(datasetN).getSamplesArray(firstSampleNumber, lastSampleNumber, caches[datasetN]);
+											if(caches != taskCaches)
+												caches[datasetN].dispose(); // the caches were replaced while this task was pending
+										}
+										forDataset.add(calculateDFT(samples, sin, cos, binCount));
+									}
+								} catch(Exception e) {
+									// only notify the user once, because every DFT will probably fail for the same reason
+									if(!taskFailureShown) {
+										taskFailureShown = true;
+										NotificationsController.showFailureForMilliseconds("Unable to calculate the DFT of samples " + firstSampleNumber + " to " + lastSampleNumber + ":\n" + e.getMessage(), 5000, true);
+									}
+									e.printStackTrace();
+								} finally {
+									synchronized(theDft) {
+										// discard the result if this part of the ring buffer has been reused
+										if(theDft.firstSampleNumber == firstSampleNumber) {
+											if(forDataset.size() == list.size()) {
+												theDft.forDataset = forDataset;
+												theDft.populated = true;
+											} else {
+												theDft.failed = true;
+											}
+											theDft.pendingTask = null;
+										}
+									}
+								}
+							});
 					}
 				}
 			}
@@ -195,22 +284,23 @@ public class OpenGLFrequencyDomainCache {
 			DFT.minPower = 0;
 			DFT.maxPower = 1;
 			DFT.windowLength = windowLength;
-			DFT theDft = dft[DFT.firstDft % dftsCount];
-			float[] firstDft = theDft.forDataset.get(0);
-			if(theDft.populated) {
-				DFT.maxHz    = (float) ((double) (firstDft.length - 1) * (double) sampleRate / (double) windowLength);
-				DFT.minPower = firstDft[0];
-				DFT.maxPower = firstDft[0];
-				for(int dftN = DFT.firstDft; dftN <= DFT.lastDft; dftN++) {
-					theDft = dft[dftN % dftsCount];
-					if(theDft.populated)
-						theDft.forDataset.forEach(datasetsDft -> {
-							for(int i = 0; i < datasetsDft.length; i++) {
-								float y = datasetsDft[i];
-								if(y > DFT.maxPower) DFT.maxPower = y;
-								if(y < DFT.minPower) DFT.minPower = y;
-							}
-						});
+			DFT.maxHz    = (float) ((double) (binCount - 1) * (double) sampleRate / (double) windowLength);
+			boolean firstPopulatedDft = true;
+			for(long dftN = DFT.firstDft; dftN <= DFT.lastDft; dftN++) {
+				DFT theDft = dft[(int) (dftN % dftsCount)];
+				if(!theDft.populated)
+					continue;
+				for(float[] datasetsDft : theDft.forDataset) {
+					if(firstPopulatedDft) {
+						DFT.minPower = datasetsDft[0];
+						DFT.maxPower = datasetsDft[0];
+						firstPopulatedDft = false;
+					}
+					for(int i = 0; i < datasetsDft.length; i++) {
+						float y = datasetsDft[i];
+						if(y > DFT.maxPower) DFT.maxPower = y;
+						if(y < DFT.minPower) DFT.minPower = y;
+					}
 				}
 			}
 			
@@ -280,7 +370,7 @@ public class OpenGLFrequencyDomainCache {
 	 */
 	public int getActualWindowCount() {
 		
-		return DFT.lastDft - DFT.firstDft + 1;
+		return (int) (DFT.lastDft - DFT.firstDft + 1);
 		
 	}
 	
@@ -357,7 +447,7 @@ public class OpenGLFrequencyDomainCache {
 	public float[] getWaterfallPowerLevelsForBin(int binN, int rowN) {
 		
 		// map rowN to the ringbuffer
-		DFT theDft = dft[(DFT.lastDft - rowN) % dft.length];
+		DFT theDft = dft[(int) ((DFT.lastDft - rowN) % dft.length)];
 		if(!theDft.populated)
 			return null;
 		
@@ -440,14 +530,14 @@ public class OpenGLFrequencyDomainCache {
 	 */
 	public void renderMultiple(float[] chartMatrix, int bottomLeftX, int bottomLeftY, int width, int height, float minPower, float maxPower, GL2ES3 gl, List<Dataset> datasets, int rowCount) {
 		
-		if(!dft[0].populated)
+		if(DFT.binCount == 0)
 			return;
 		
 		// calculate a 2D histogram for each dataset
-		int xBinCount = dft[0].forDataset.get(0).length;
+		int xBinCount = DFT.binCount;
 		histogram = new int[datasetsCount][xBinCount][rowCount];
-		for(int dftN = DFT.firstDft; dftN <= DFT.lastDft; dftN++) {
-			DFT theDft = dft[dftN % dft.length];
+		for(long dftN = DFT.firstDft; dftN <= DFT.lastDft; dftN++) {
+			DFT theDft = dft[(int) (dftN % dft.length)];
 			if(theDft.populated) {
 				for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
 					float[] dft = theDft.forDataset.get(datasetN);
@@ -523,70 +613,137 @@ public class OpenGLFrequencyDomainCache {
 	 */
 	public void renderWaterfall(float[] chartMatrix, int bottomLeftX, int bottomLeftY, int width, int height, float minPower, float maxPower, GL2ES3 gl, List<Dataset> datasets) {
 		
-		int binCount = dft[0].forDataset.get(0).length;
+		int binCount = DFT.binCount;
 		int dftsCount = dft.length; // but some DFTs might not be populated
-		int datasetsCount = datasets.size();
+		if(binCount == 0)
+			return;
+		int rowByteCount = binCount * 4 * 4; // 4 bytes per: r,g,b,a
+		
+		// (re)create the texture if its size changed
+		boolean fullRedraw = false;
+		if(waterfallViewTexHandle == null || waterfallTextureWidth != binCount || waterfallTextureHeight != dftsCount) {
+			if(waterfallViewTexHandle != null)
+				gl.glDeleteTextures(1, waterfallViewTexHandle, 0);
+			waterfallViewTexHandle = new int[1];
+			OpenGL.createTexture(gl, waterfallViewTexHandle, binCount, dftsCount, GL3.GL_RGBA, GL3.GL_FLOAT, false);
+			waterfallPixels = Buffers.newDirectByteBuffer(rowByteCount * dftsCount);
+			waterfallRowContents = new long[dftsCount];
+			waterfallTextureWidth = binCount;
+			waterfallTextureHeight = dftsCount;
+			fullRedraw = true;
+		}
 		
-		int pixelCount = binCount * dftsCount;
+		// re-rasterize every row if the power scale, colors or ring buffer changed
+		boolean colorsChanged = waterfallColors.size() != datasets.size();
+		for(int datasetN = 0; datasetN < datasets.size() && !colorsChanged; datasetN++)
+			if(waterfallColors.get(datasetN) != datasets.get(datasetN).glColor)
+				colorsChanged = true;
+		if(fullRedraw || colorsChanged || minPower != waterfallMinPower || maxPower != waterfallMaxPower || waterfallDfts != dft) {
+			waterfallColors.clear();
+			datasets.forEach(dataset -> waterfallColors.add(dataset.glColor));
+			waterfallMinPower = minPower;
+			waterfallMaxPower = maxPower;
+			waterfallDfts = dft;
+			Arrays.fill(waterfallRowContents, -2); // -2 = unknown, so every row will be rasterized
+			fullRedraw = true;
+		}
 		
-		ByteBuffer bytes = Buffers.newDirectByteBuffer(pixelCount * 4 * 4); // 4 bytes per: r,g,b,a
-		FloatBuffer pixels = bytes.asFloatBuffer();
+		// rasterize any rows that are out of date
+		// DFT number n is stored in texture row (dftsCount - 1 - (n % dftsCount)), so the newest DFT can be drawn at the bottom
+		FloatBuffer pixels = waterfallPixels.asFloatBuffer();
+		for(int y = 0; y < dftsCount; y++) {
+			
+			long dftN = DFT.lastDft - y;
+			int rowN = dftsCount - 1 - (int) Math.floorMod(dftN, (long) dftsCount);
+			DFT theDft = dftN >= 0 ? dft[(int) (dftN % dftsCount)] : null;
+			boolean available = theDft != null && theDft.populated && theDft.firstSampleNumber == dftN * DFT.windowLength;
+			long contents = available ? dftN : -1;
+			if(waterfallRowContents[rowN] == contents)
+				continue;
+			
+			rasterizeWaterfallRow(pixels, rowN * binCount * 4, binCount, available ? theDft.forDataset : null, minPower, maxPower, datasets);
+			waterfallRowContents[rowN] = contents;
+			
+			if(!fullRedraw) {
+				waterfallPixels.position(rowN * rowByteCount);
+				ByteBuffer row = waterfallPixels.slice();
+				row.limit(rowByteCount);
+				waterfallPixels.rewind();
+				OpenGL.writeTextureRegion(gl, waterfallViewTexHandle, 0, rowN, binCount, 1, GL3.GL_RGBA, GL3.GL_FLOAT, row);
+			}
+			
+		}
+		if(fullRedraw)
+			OpenGL.writeTextureRegion(gl, waterfallViewTexHandle, 0, 0, binCount, dftsCount, GL3.GL_RGBA, GL3.GL_FLOAT, waterfallPixels);
+		
+		// draw the ring buffer so the newest DFT is at the bottom
+		float startY = (float) Math.floorMod(dftsCount - 1 - DFT.lastDft, (long) dftsCount) / (float) dftsCount;
+		OpenGL.drawVerticalRingbufferTexturedBox(gl, waterfallViewTexHandle, bottomLeftX, bottomLeftY, width, height, 1f/binCount/2f, startY);
+		
+	}
+	
+	/**
+	 * Rasterizes one row of the waterfall, blending the datasets together.
+	 * 
+	 * @param pixels        Where to write the row, 4 floats (r,g,b,a) per pixel.
+	 * @param offset        Index of the first float of the row.
+	 * @param binCount      Number of pixels in the row.
+	 * @param forDataset    DFT for each dataset, or null to make the row fully transparent.
+	 * @param minPower      Lower limit, if a DFT bin is <= this it will be drawn as fully transparent. Units are log10(Watts).
+	 * @param maxPower      Upper limit, if a DFT bin is >= this, it will be drawn as fully opaque. Units are log10(Watts).
+	 * @param datasets      The datasets to visualize.
+	 */
+	private static void rasterizeWaterfallRow(FloatBuffer pixels, int offset, int binCount, List<float[]> forDataset, float minPower, float maxPower, List<Dataset> datasets) {
+		
+		for(int i = offset; i < offset + binCount * 4; i++)
+			pixels.put(i, 0);
+		
+		if(forDataset == null)
+			return;
 		
 		// populate the pixels, simulating glBlendFuncSeparate(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA, GL_ONE, GL_ONE_MINUS_SRC_ALPHA)
-		for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+		for(int datasetN = 0; datasetN < datasets.size(); datasetN++) {
 			float newR = datasets.get(datasetN).glColor[0];
 			float newG = datasets.get(datasetN).glColor[1];
 			float newB = datasets.get(datasetN).glColor[2];
 			
-			for(int y = 0; y < dftsCount; y++) {
+			float[] dft = forDataset.get(datasetN);
+			
+			for(int x = 0; x < binCount; x++) {
+				int index = offset + (x * 4); // 4 floats per pixel
 				
-				int dftN = DFT.lastDft - y;
-				DFT theDft = dftN >= 0 ? dft[dftN % dftsCount] : null;
-				if(theDft == null || !theDft.populated)
-					continue;
+				float r = pixels.get(index + 0);
+				float g = pixels.get(index + 1);
+				float b = pixels.get(index + 2);
+				float a = pixels.get(index + 3);
 				
-				float[] dft = theDft.forDataset.get(datasetN);
+				float newA = (dft[x] - minPower) / (maxPower - minPower);
 				
-				for(int x = 0; x < binCount; x++) {
-					int index = (x + (y * binCount)) * 4; // 4 floats per pixel
-					
-					float r = pixels.get(index + 0);
-					float g = pixels.get(index + 1);
-					float b = pixels.get(index + 2);
-					float a = pixels.get(index + 3);
-					
-					float newA = (dft[x] - minPower) / (maxPower - minPower);
-					
-					r = (newR * newA) + (r * (1f - newA));
-					g = (newG * newA) + (g * (1f - newA));
-					b = (newB * newA) + (b * (1f - newA));
-					a = (newA * 1f)   + (a * (1f - newA));
-					
-					pixels.put(index + 0, r);
-					pixels.put(index + 1, g);
-					pixels.put(index + 2, b);
-					pixels.put(index + 3, a);
-				}
+				r = (newR * newA) + (r * (1f - newA));
+				g = (newG * newA) + (g * (1f - newA));
+				b = (newB * newA) + (b * (1f - newA));
+				a = (newA * 1f)   + (a * (1f - newA));
 				
+				pixels.put(index + 0, r);
+				pixels.put(index + 1, g);
+				pixels.put(index + 2, b);
+				pixels.put(index + 3, a);
 			}
 		}
 		
-		if(waterfallViewTexHandle == null) {
-			waterfallViewTexHandle = new int[1];
-			OpenGL.createTexture(gl, waterfallViewTexHandle, binCount, dftsCount, GL3.GL_RGBA, GL3.GL_FLOAT, false);
-		}
-		OpenGL.writeTexture(gl, waterfallViewTexHandle, binCount, dftsCount, GL3.GL_RGBA, GL3.GL_FLOAT, bytes);
-		OpenGL.drawTexturedBox(gl, waterfallViewTexHandle, false, bottomLeftX, bottomLeftY, width, height, 1f/binCount/2f, false);
-		
 	}
 	
 	/**
-	 * Deletes the off-screen framebuffer and texture.
+	 * Cancels any pending DFT calculations, and deletes the off-screen framebuffer and texture.
 	 * 
 	 * @param gl    The OpenGL context.
 	 */
 	public void freeResources(GL2ES3 gl) {
 		
+		for(DFT oldDft : dft)
+			oldDft.reset(-1);
+		releaseTaskCaches(taskCaches);
+		
 		if(liveViewTexHandle != null)
 			gl.glDeleteTextures(1, liveViewTexHandle, 0);
 		if(liveViewFbHandle != null)
@@ -600,6 +757,23 @@ public class OpenGLFrequencyDomainCache {
 		waveformViewTexHandle = null;
 		waterfallViewTexHandle = null;
 		liveViewFbHandle = null;
+		waterfallPixels = null;
+		waterfallTextureWidth = 0;
+		waterfallTextureHeight = 0;
+		
+	}
+	
+	/**
+	 * Releases any samples held by task caches. The caches remain usable.
+	 * 
+	 * @param caches    The task caches.
+	 */
+	private static void releaseTaskCaches(StorageFloats.Cache[] caches) {
+		
+		for(StorageFloats.Cache cache : caches)
+			synchronized(cache) {
+				cache.dispose();
+			}
 		
 	}
 	
@@ -607,19 +781,16 @@ public class OpenGLFrequencyDomainCache {
 	private double[][] cosLUT;
 	
 	/**
-	 * Calculates a DFT, using look-up tables for sine and cosine.
-	 * The returned DFT will contain a sequence of power levels. The corresponding frequencies are *not* included.
+	 * Updates the bin size, bin count, and sine and cosine look-up tables if necessary.
 	 * 
-	 * @param samples       A series of samples, as a float[].
-	 * @param sampleRate    Sample rate, in Hz.
-	 * @returns             The DFT. If the samples have units of Volts, these numbers will have units of log10(Watts).
+	 * @param sampleCount    Number of samples in each DFT.
+	 * @param sampleRate     Sample rate, in Hz.
 	 */
-	private float[] calculateDFT(float[] samples, int sampleRate) {
+	private void updateLUTs(int sampleCount, int sampleRate) {
 		
 		// bin size (in Hertz) is the reciprocal of the window size (in seconds)
 		// example: 500ms window -> 1/0.5 = 2 Hz bin size
 		double samplesPerSecond = sampleRate;
-		int sampleCount = samples.length;
 		DFT.binSizeHz = 1.0 / ((double) sampleCount / samplesPerSecond);
 		
 		// maximum frequency range (in Hertz) is from 0 to the sample rate (in Hertz), divided by 2
@@ -628,34 +799,54 @@ public class OpenGLFrequencyDomainCache {
 		DFT.binCount = (int) (maxFrequencyHz / DFT.binSizeHz) + 1;
 		
 		// generate the sine and cosine LUTs
-		if(sinLUT == null || cosLUT == null || sinLUT[0].length != sampleCount || cosLUT[0].length != sampleCount) {
-			sinLUT = new double[DFT.binCount][sampleCount];
-			cosLUT = new double[DFT.binCount][sampleCount];
+		// new arrays are allocated (instead of reusing the old ones) because pool tasks may still be reading the old ones
+		if(sinLUT == null || cosLUT == null || sinLUT.length != DFT.binCount || sinLUT[0].length != sampleCount || cosLUT[0].length != sampleCount) {
+			sinLUT = null;
+			cosLUT = null;
+			double[][] sin = new double[DFT.binCount][sampleCount];
+			double[][] cos = new double[DFT.binCount][sampleCount];
 			System.gc();
 			for(int bin = 0; bin < DFT.binCount; bin++) {
 				double frequencyHz  = (double) bin * DFT.binSizeHz;
 				for(int sample = 0; sample < sampleCount; sample++) {
-					double timeSec      = (double) sample / samplesPerSecond;
-					sinLUT[bin][sample] = Math.sin(2.0 * Math.PI * frequencyHz * timeSec);
-					cosLUT[bin][sample] = Math.cos(2.0 * Math.PI * frequencyHz * timeSec);
+					double timeSec   = (double) sample / samplesPerSecond;
+					sin[bin][sample] = Math.sin(2.0 * Math.PI * frequencyHz * timeSec);
+					cos[bin][sample] = Math.cos(2.0 * Math.PI * frequencyHz * timeSec);
 				}
 			}
+			sinLUT = sin;
+			cosLUT = cos;
 		}
 		
+	}
+	
+	/**
+	 * Calculates a DFT, using look-up tables for sine and cosine.
+	 * The returned DFT will contain a sequence of power levels. The corresponding frequencies are *not* included.
+	 * This method is thread-safe, so it can be called from the pool.
+	 * 
+	 * @param samples     A series of samples, as a float[].
+	 * @param sinLUT      Sine look-up table, from updateLUTs().
+	 * @param cosLUT      Cosine look-up table, from updateLUTs().
+	 * @param binCount    Number of bins, from updateLUTs().
+	 * @returns           The DFT. If the samples have units of Volts, these numbers will have units of log10(Watts).
+	 */
+	private static float[] calculateDFT(float[] samples, double[][] sinLUT, double[][] cosLUT, int binCount) {
+		
+		int sampleCount = samples.length;
+		
 		// calc the DFT, assuming the samples are in Volts, and assuming the load is a unit load (1 ohm)
-		float[] powerLevels = new float[DFT.binCount];
+		float[] powerLevels = new float[binCount];
 		
-		for(int bin = 0; bin < DFT.binCount; bin++) {
+		for(int bin = 0; bin < binCount; bin++) {
 			double realV = 0.0;
 			double imaginaryV = 0.0;
-//			double frequencyHz = (double) bin * binSizeHz;
+			double[] cos = cosLUT[bin];
+			double[] sin = sinLUT[bin];
 			for(int x = 0; x < sampleCount; x++) {
 				double sample = samples[x];
-//				double timeSec   = (double) x / samplesPerSecond;
-//				realV      += sample * Math.cos(2.0 * Math.PI * frequencyHz * timeSec);
-//				imaginaryV += sample * Math.sin(2.0 * Math.PI * frequencyHz * timeSec);
-				realV      += sample * cosLUT[bin][x];
-				imaginaryV += sample * sinLUT[bin][x];
+				realV      += sample * cos[x];
+				imaginaryV += sample * sin[x];
 			}
 			realV      /= (double) sampleCount;
 			imaginaryV /= (double) sampleCount;
@@ -683,61 +874,18 @@ public class OpenGLFrequencyDomainCache {
 	 */
 	float[] calculateDFTxy(float[] samples, int sampleRate) {
 		
-		// bin size (in Hertz) is the reciprocal of the window size (in seconds)
-		// example: 500ms window -> 1/0.5 = 2 Hz bin size
-		double samplesPerSecond = sampleRate;
-		int sampleCount = samples.length;
-		DFT.binSizeHz = 1.0 / ((double) sampleCount / samplesPerSecond);
-		
-		// maximum frequency range (in Hertz) is from 0 to the sample rate (in Hertz), divided by 2
-		// example: sampling at 1kHz -> 0 Hz to 1000/2 = 500 Hz
-		double maxFrequencyHz = samplesPerSecond / 2.0;
-		DFT.binCount = (int) (maxFrequencyHz / DFT.binSizeHz) + 1;
-		
-		// generate the sine and cosine LUTs
-		if(sinLUT == null || cosLUT == null || sinLUT[0].length != sampleCount || cosLUT[0].length != sampleCount) {
-			sinLUT = new double[DFT.binCount][sampleCount];
-			cosLUT = new double[DFT.binCount][sampleCount];
-			System.gc();
-			for(int bin = 0; bin < DFT.binCount; bin++) {
-				double frequencyHz  = (double) bin * DFT.binSizeHz;
-				for(int sample = 0; sample < sampleCount; sample++) {
-					double timeSec      = (double) sample / samplesPerSecond;
-					sinLUT[bin][sample] = Math.sin(2.0 * Math.PI * frequencyHz * timeSec);
-					cosLUT[bin][sample] = Math.cos(2.0 * Math.PI * frequencyHz * timeSec);
-				}
-			}
-		}
+		updateLUTs(samples.length, sampleRate);
 		
 		// calc the DFT, assuming the samples are in Volts, and assuming the load is a unit load (1 ohm)
-		float[] powerLevels = new float[DFT.binCount*2];
+		float[] powerLevels = calculateDFT(samples, sinLUT, cosLUT, DFT.binCount);
+		float[] xy = new float[DFT.binCount*2];
 		
 		for(int bin = 0; bin < DFT.binCount; bin++) {
-			double realV = 0.0;
-			double imaginaryV = 0.0;
-			double frequencyHz = (double) bin * DFT.binSizeHz;
-			for(int x = 0; x < sampleCount; x++) {
-				double sample = samples[x];
-//				double timeSec   = (double) x / samplesPerSecond;
-//				realV      += sample * Math.cos(2.0 * Math.PI * frequencyHz * timeSec);
-//				imaginaryV += sample * Math.sin(2.0 * Math.PI * frequencyHz * timeSec);
-				realV      += sample * cosLUT[bin][x];
-				imaginaryV += sample * sinLUT[bin][x];
-			}
-			realV      /= (double) sampleCount;
-			imaginaryV /= (double) sampleCount;
-			double powerW = (realV * realV) + (imaginaryV * imaginaryV);
-			powerW *= 2; // because DFT is from -Fs to +Fs
-			
-			// ensure powerW != 0, which would cause the Math.log10() below to return -Infinity
-			if(powerW == 0)
-				powerW = Math.pow(10, -36); // arbitrarily picked because it looks like a reasonable min
-			
-			powerLevels[bin*2]     = (float) frequencyHz;
-			powerLevels[bin*2 + 1] = (float) Math.log10(powerW);
+			xy[bin*2]     = (float) ((double) bin * DFT.binSizeHz);
+			xy[bin*2 + 1] = powerLevels[bin];
 		}
 		
-		return powerLevels;
+		return xy;
 		
 	}
 	
@@ -90,6 +90,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 	// x-axis scale
 	boolean showXaxisScale;
 	Map<Float, String> xDivisions;
+	ChartUtils.DivisionsCache xDivisionsCache = new ChartUtils.DivisionsCache();
 	float yXaxisTickTextBaseline;
 	float yXaxisTickTextTop;
 	float yXaxisTickBottom;
@@ -98,6 +99,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 	// y-axis scale
 	boolean showYaxisScale;
 	Map<Float, String> yDivisions;
+	ChartUtils.DivisionsCache yDivisionsCache = new ChartUtils.DivisionsCache();
 	float xYaxisTickTextRight;
 	float xYaxisTickLeft;
 	float xYaxisTickRight;
@@ -213,7 +215,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		EventHandler handler = null;
 		
@@ -327,7 +329,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 				
 				int windowCount = cache.getActualWindowCount();
 				int windowLength = cache.getWindowLength();
-				int trueTotalSampleCount = windowCount * windowLength;
+				long trueTotalSampleCount = windowCount * windowLength;
 				dftWindowCountText = windowCount + " windows (total of " + trueTotalSampleCount + " samples)";
 				yDftWindowCountTextBaseline = Theme.tilePadding;
 				xDftWindowCountTextLeft = width - Theme.tilePadding - OpenGL.smallTextWidth(gl, dftWindowCountText);
@@ -357,7 +359,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 				
 				int windowCount = cache.getActualWindowCount();
 				int windowLength = cache.getWindowLength();
-				int trueTotalSampleCount = windowCount * windowLength;
+				long trueTotalSampleCount = windowCount * windowLength;
 				dftWindowCountText = windowCount + " windows (total of " + trueTotalSampleCount + " samples)";
 				yDftWindowCountTextBaseline = yPowerTextTop + Theme.tickTextPadding;
 				xDftWindowCountTextLeft = width - Theme.tilePadding - OpenGL.smallTextWidth(gl, dftWindowCountText);
@@ -424,7 +426,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 		}
 		
 		if(showYaxisScale) {
-			yDivisions = waterfallMode ? ChartUtils.getYdivisions125(plotHeight, plotMinY, plotMaxY) : ChartUtils.getLogYdivisions(plotHeight, plotMinY, plotMaxY);
+			yDivisions = waterfallMode ? yDivisionsCache.getYdivisions125(plotHeight, plotMinY, plotMaxY) : yDivisionsCache.getLogYdivisions(plotHeight, plotMinY, plotMaxY);
 			float maxTextWidth = 0;
 			for(String text : yDivisions.values()) {
 				float textWidth = OpenGL.smallTextWidth(gl, text);
@@ -450,7 +452,7 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 		}
 		
 		// get the x divisions now that we know the final plot width
-		xDivisions = ChartUtils.getFloatXdivisions125(gl, plotWidth, plotMinX, plotMaxX);
+		xDivisions = xDivisionsCache.getFloatXdivisions125(gl, plotWidth, plotMinX, plotMaxX);
 		
 		// stop if the plot is too small
 		if(plotWidth < 1 || plotHeight < 1)
@@ -637,9 +639,9 @@ public class OpenGLFrequencyDomainChart extends PositionedChart {
 				if(waterfallRowN > waterfallRowCount - 1)
 					waterfallRowN = waterfallRowCount - 1;
 				int windowLength = cache.getWindowLength();
-				int trueLastSampleNumber = endSampleNumber - (endSampleNumber % windowLength);
-				int rowLastSampleNumber = trueLastSampleNumber - (waterfallRowN * windowLength) - 1;
-				int rowFirstSampleNumber = rowLastSampleNumber - windowLength + 1;
+				long trueLastSampleNumber = endSampleNumber - (endSampleNumber % windowLength);
+				long rowLastSampleNumber = trueLastSampleNumber - (waterfallRowN * windowLength) - 1;
+				long rowFirstSampleNumber = rowLastSampleNumber - windowLength + 1;
 				if(rowFirstSampleNumber >= 0) {
 					// for waterfall view, get the power levels (one per dataset) for the mouseX frequency and mouseY time
 					float[] binValues = cache.getWaterfallPowerLevelsForBin(binN, waterfallRowN);
@@ -1,5 +1,4 @@
 import java.awt.Color;
-import java.nio.FloatBuffer;
 import java.util.Map;
 
 import com.jogamp.opengl.GL2ES3;
@@ -27,8 +26,8 @@ import com.jogamp.opengl.GL3;
  */
 public class OpenGLHistogramChart extends PositionedChart {
 	
-	FloatBuffer[] samples; // [datasetN]
-	int[][] bins; // [datasetN][binN]
+	StreamingHistogram histogram = new StreamingHistogram();
+	int[][] bins = new int[0][0]; // [datasetN][binN]
 	int binCount;
 	
 	// plot region
@@ -61,6 +60,7 @@ public class OpenGLHistogramChart extends PositionedChart {
 	// x-axis scale
 	boolean showXaxisScale;
 	Map<Float, String> xDivisions;
+	ChartUtils.DivisionsCache xDivisionsCache = new ChartUtils.DivisionsCache();
 	float yXaxisTickTextBaseline;
 	float yXaxisTickTextTop;
 	float yXaxisTickBottom;
@@ -86,6 +86,8 @@ public class OpenGLHistogramChart extends PositionedChart {
 	
 	// y-axis scale
 	boolean showYaxisScale;
+	ChartUtils.DivisionsCache yDivisionsFrequencyCache = new ChartUtils.DivisionsCache();
+	ChartUtils.DivisionsCache yDivisionsRelativeFrequencyCache = new ChartUtils.DivisionsCache();
 	float xYaxisLeftTickTextRight;
 	float xYaxisLeftTickLeft;
 	float xYaxisLeftTickRight;
@@ -154,9 +156,6 @@ public class OpenGLHistogramChart extends PositionedChart {
 		// create the control widgets and event handlers
 		datasetsAndDurationWidget = new WidgetDatasets(newDatasets -> {
 		                                                   datasets.setNormals(newDatasets);
-		                                                   int datasetsCount = datasets.normalsCount();
-		                                                   samples = new FloatBuffer[datasetsCount];
-		                                                   bins = new int[datasetsCount][binCount];
 		                                               },
 		                                               null,
 		                                               null,
@@ -173,7 +172,6 @@ public class OpenGLHistogramChart extends PositionedChart {
 		                                            BinCountMaximum,
 		                                            newBinCount -> {
 		                                                binCount = newBinCount;
-		                                                bins = new int[datasets.normalsCount()][binCount];
 		                                            });
 		
 		xAxisTypeWidget = new WidgetHistogramXaxisType(xAxisMinimumDefault,
@@ -237,26 +235,21 @@ public class OpenGLHistogramChart extends PositionedChart {
 		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		EventHandler handler = null;
 		
 		// get the samples
-		int trueLastSampleNumber = datasets.hasNormals() ? datasets.connection.getSampleCount() - 1 : -1;
-		int lastSampleNumber = Integer.min(trueLastSampleNumber, endSampleNumber);
-		int firstSampleNumber = lastSampleNumber - (int) (duration * zoomLevel) + 1;
+		long trueLastSampleNumber = datasets.hasNormals() ? datasets.connection.getSampleCount() - 1 : -1;
+		long lastSampleNumber = Long.min(trueLastSampleNumber, endSampleNumber);
+		long firstSampleNumber = lastSampleNumber - (int) (duration * zoomLevel) + 1;
 		if(firstSampleNumber < 0)
 			firstSampleNumber = 0;
 		if(firstSampleNumber > lastSampleNumber)
 			firstSampleNumber = lastSampleNumber + 1;
 		
-		int sampleCount = lastSampleNumber - firstSampleNumber + 1;
+		int sampleCount = (int) (lastSampleNumber - firstSampleNumber + 1);
 		int datasetsCount = datasets.normalsCount();
-		if(sampleCount > 0)
-			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
-				Dataset dataset = datasets.getNormal(datasetN);
-				samples[datasetN] = datasets.getSamplesBuffer(dataset, firstSampleNumber, lastSampleNumber);
-			}
 
 		// determine the true x-axis scale
 		float[] minMax = datasets.getRange(firstSampleNumber, lastSampleNumber);
@@ -279,25 +272,11 @@ public class OpenGLHistogramChart extends PositionedChart {
 		float range = maxX - minX;
 		float binSize = range / (float) binCount;
 
-		// calculate the histogram
+		// update the histogram
+		// only samples that entered or left the window are binned, unless the bin layout changed
 		int maxBinSize = 0;
 		if(sampleCount > 0) {
-			// empty the bins
-			for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
-				for(int binN = 0; binN < binCount; binN++)
-					bins[datasetN][binN] = 0;
-			
-			// fill the bins
-			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
-				for(int sampleN = 0; sampleN < sampleCount; sampleN++) {
-					float sample = samples[datasetN].get();
-					if(sample >= minX && sample < maxX) {
-						int binN = (int) Math.floor((sample - minX) / range * binCount);
-						if(binN == binCount) binN--; // needed because of float math imperfection
-						bins[datasetN][binN]++;
-					}
-				}
-			}
+			bins = histogram.update(datasets, firstSampleNumber, lastSampleNumber, minX, maxX, binCount);
 			
 			// get the max
 			for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
@@ -411,8 +390,8 @@ public class OpenGLHistogramChart extends PositionedChart {
 		}
 		
 		// get the y divisions now that we know the final plot height
-		Map<Float, String> yDivisionsFrequency = ChartUtils.getYdivisions125(plotHeight, minYfreq, maxYfreq);
-		Map<Float, String> yDivisionsRelativeFrequency = ChartUtils.getYdivisions125(plotHeight, minYrelFreq, maxYrelFreq);
+		Map<Float, String> yDivisionsFrequency = yDivisionsFrequencyCache.getYdivisions125(plotHeight, minYfreq, maxYfreq);
+		Map<Float, String> yDivisionsRelativeFrequency = yDivisionsRelativeFrequencyCache.getYdivisions125(plotHeight, minYrelFreq, maxYrelFreq);
 		
 		if(showYaxisTitle) {
 			// the left y-axis is for Relative Frequency unless only Frequency will be shown
@@ -485,7 +464,7 @@ public class OpenGLHistogramChart extends PositionedChart {
 		}
 		
 		// get the x divisions now that we know the final plot width
-		xDivisions = ChartUtils.getFloatXdivisions125(gl, plotWidth, minX, maxX);
+		xDivisions = xDivisionsCache.getFloatXdivisions125(gl, plotWidth, minX, maxX);
 		
 		// stop if the plot is too small
 		if(plotWidth < 1 || plotHeight < 1)
@@ -619,8 +598,8 @@ public class OpenGLHistogramChart extends PositionedChart {
 
 		// clip to the plot region
 		int[] originalScissorArgs = new int[4];
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-		gl.glScissor(originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, (int) plotWidth, (int) plotHeight);
+		OpenGL.getScissorBox(originalScissorArgs);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, (int) plotWidth, (int) plotHeight);
 		
 		// draw the bins
 		if(sampleCount > 0) {
@@ -644,7 +623,7 @@ public class OpenGLHistogramChart extends PositionedChart {
 		}
 
 		// stop clipping to the plot region
-		gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
 		
 		// draw the tooltip if the mouse is in the plot region
 		if(sampleCount > 0 && SettingsController.getTooltipVisibility() && mouseX >= xPlotLeft && mouseX <= xPlotRight && mouseY >= yPlotBottom && mouseY <= yPlotTop) {
@@ -70,14 +70,14 @@ public class OpenGLQuaternionChart extends PositionedChart {
 		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		// sanity check
 		if(datasets.normalsCount() != 4)
 			return null;
 		
 		// determine which sample to use
-		int lastSampleNumber = datasets.connection.getSampleCount() - 1;
+		long lastSampleNumber = datasets.connection.getSampleCount() - 1;
 		if(endSampleNumber < lastSampleNumber)
 			lastSampleNumber = endSampleNumber;
 
@@ -1,7 +1,5 @@
 import javax.swing.SwingUtilities;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-
 import com.jogamp.opengl.GL2ES3;
 
 /**
@@ -18,6 +16,7 @@ import com.jogamp.opengl.GL2ES3;
  *         Median
  *         Standard Deviation
  *         90th Percentile
+ *     Exact or approximate percentiles.
  */
 public class OpenGLStatisticsChart extends PositionedChart {
 	
@@ -34,8 +33,14 @@ public class OpenGLStatisticsChart extends PositionedChart {
 	boolean showStandardDeviations;
 	boolean showPercentile;
 	boolean showDuration;
+	boolean approximatePercentiles;
 	String showAs;
 	
+	// statistics
+	StreamingStatistics statistics = new StreamingStatistics();
+	double[] percentiles = new double[] {50, 90};
+	double[] percentileValues = new double[2];
+	
 	// control widgets
 	WidgetDatasets datasetsAndDurationWidget;
 	WidgetCheckbox currentValuesWidget;
@@ -45,6 +50,7 @@ public class OpenGLStatisticsChart extends PositionedChart {
 	WidgetCheckbox medianWidget;
 	WidgetCheckbox standardDeviationWidget;
 	WidgetCheckbox percentileWidget;
+	WidgetCheckbox approximatePercentilesWidget;
 	WidgetCheckbox showDurationWidget;
 	
 	@Override public String toString() {
@@ -80,9 +86,16 @@ public class OpenGLStatisticsChart extends PositionedChart {
 		medianWidget            = new WidgetCheckbox("Show Median",             true, isSelected -> showMedians = isSelected);
 		standardDeviationWidget = new WidgetCheckbox("Show Standard Deviation", true, isSelected -> showStandardDeviations = isSelected);
 		percentileWidget        = new WidgetCheckbox("Show 90th Percentile",    true, isSelected -> showPercentile = isSelected);
+		approximatePercentilesWidget = new WidgetCheckbox("Approximate Percentiles", false, isSelected -> approximatePercentiles = isSelected) {
+			@Override public void importState(ConnectionsController.QueueOfLines lines) {
+				// layouts from older versions don't have this setting, so keep the default
+				if(lines.peek() != null && lines.peek().startsWith("approximate percentiles = "))
+					super.importState(lines);
+			}
+		};
 		showDurationWidget      = new WidgetCheckbox("Show Duration Label",     true, isSelected -> showDuration = isSelected);
 
-		widgets = new Widget[11];
+		widgets = new Widget[12];
 		widgets[0]  = datasetsAndDurationWidget;
 		widgets[1]  = null;
 		widgets[2]  = currentValuesWidget;
@@ -92,11 +105,12 @@ public class OpenGLStatisticsChart extends PositionedChart {
 		widgets[6]  = medianWidget;
 		widgets[7]  = standardDeviationWidget;
 		widgets[8]  = percentileWidget;
-		widgets[9]  = null;
-		widgets[10] = showDurationWidget;		
+		widgets[9]  = approximatePercentilesWidget;
+		widgets[10] = null;
+		widgets[11] = showDurationWidget;		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		EventHandler handler = null;
 		
@@ -112,12 +126,12 @@ public class OpenGLStatisticsChart extends PositionedChart {
 		}
 		
 		// get the samples
-		int trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
+		long trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
 		DatasetsController controller = datasets.getNormal(0).controller;
-		int lastSampleNumber = -1;
-		int firstSampleNumber = -1;
+		long lastSampleNumber = -1;
+		long firstSampleNumber = -1;
 		if(sampleCountMode) {
-			lastSampleNumber = Integer.min(endSampleNumber, trueLastSampleNumber);
+			lastSampleNumber = Long.min(endSampleNumber, trueLastSampleNumber);
 			firstSampleNumber = endSampleNumber - (int) Math.round(durationSampleCount * zoomLevel) + 1;
 		} else {
 			lastSampleNumber = controller.getClosestSampleNumberAtOrBefore(endTimestamp, trueLastSampleNumber);
@@ -138,7 +152,7 @@ public class OpenGLStatisticsChart extends PositionedChart {
 			firstSampleNumber = 0;
 		if(firstSampleNumber > lastSampleNumber)
 			firstSampleNumber = lastSampleNumber;
-		sampleCount = lastSampleNumber - firstSampleNumber + 1;
+		sampleCount = (int) (lastSampleNumber - firstSampleNumber + 1);
 		if(lastSampleNumber < 0)
 			sampleCount = 0;
 		String durationLabel = sampleCountMode             ? "(" + sampleCount + " Samples)" :
@@ -168,28 +182,27 @@ public class OpenGLStatisticsChart extends PositionedChart {
 		if(showPercentile)         text[0][line++] = "90th Pctl";
 		
 		// subsequent columns of text are the dataset names and numeric values
-		if(sampleCount > 0)
+		if(sampleCount > 0) {
+			statistics.update(datasets, firstSampleNumber, lastSampleNumber);
 			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
 				Dataset dataset = datasets.getNormal(datasetN);
-				float[] samples = datasets.getSamplesArray(dataset, firstSampleNumber, lastSampleNumber);
-				float[] range   = datasets.getRange(dataset, firstSampleNumber, lastSampleNumber);
-				
-				double[] doubles = new double[samples.length];
-				for(int i = 0; i < samples.length; i++)
-					doubles[i] = (double) samples[i];
-				DescriptiveStatistics stats = new DescriptiveStatistics(doubles);
+				float currentValue = datasets.getSample(dataset, lastSampleNumber);
+				float[] range = datasets.getRange(dataset, firstSampleNumber, lastSampleNumber);
+				if(showMedians || showPercentile)
+					statistics.getPercentiles(datasets, datasetN, approximatePercentiles, percentiles, percentileValues);
 				
 				int column = datasetN + 1;
 				line = 0;
 				text[column][line++] = dataset.name;
-				if(showCurrentValues)      text[column][line++] = ChartUtils.formattedNumber(samples[samples.length - 1], 5) + " " + dataset.unit;
+				if(showCurrentValues)      text[column][line++] = ChartUtils.formattedNumber(currentValue, 5) + " " + dataset.unit;
 				if(showMinimums)           text[column][line++] = ChartUtils.formattedNumber(range[0], 5) + " " + dataset.unit;
 				if(showMaximums)           text[column][line++] = ChartUtils.formattedNumber(range[1], 5) + " " + dataset.unit;
-				if(showMeans)              text[column][line++] = ChartUtils.formattedNumber(stats.getMean(), 5) + " " + dataset.unit;
-				if(showMedians)            text[column][line++] = ChartUtils.formattedNumber(stats.getPercentile(50), 5) + " " + dataset.unit;
-				if(showStandardDeviations) text[column][line++] = ChartUtils.formattedNumber(stats.getStandardDeviation(), 5) + " " + dataset.unit;
-				if(showPercentile)         text[column][line++] = ChartUtils.formattedNumber(stats.getPercentile(90), 5) + " " + dataset.unit;
+				if(showMeans)              text[column][line++] = ChartUtils.formattedNumber(statistics.getMean(datasetN), 5) + " " + dataset.unit;
+				if(showMedians)            text[column][line++] = ChartUtils.formattedNumber(percentileValues[0], 5) + " " + dataset.unit;
+				if(showStandardDeviations) text[column][line++] = ChartUtils.formattedNumber(statistics.getStandardDeviation(datasetN), 5) + " " + dataset.unit;
+				if(showPercentile)         text[column][line++] = ChartUtils.formattedNumber(percentileValues[1], 5) + " " + dataset.unit;
 			}
+		}
 		
 		// determine the width of each piece of text, and track the max for each column
 		float[] columnWidth = new float[datasetsCount + 1];
@@ -69,6 +69,7 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 	// y-axis scale
 	boolean showYaxisScale;
 	Map<Float, String> yDivisions;
+	ChartUtils.DivisionsCache yDivisionsCache = new ChartUtils.DivisionsCache();
 	float xYaxisTickTextRight;
 	float xYaxisTickLeft;
 	float xYaxisTickRight;
@@ -91,7 +92,7 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 	// trigger
 	boolean triggerEnabled = false;
 	boolean triggeringPaused = false;
-	int earlierEndSampleNumber = -1;
+	long earlierEndSampleNumber = -1;
 	long earlierEndTimestamp = -1;
 	float earlierPlotMaxY = 1;
 	float earlierPlotMinY = -1;
@@ -129,7 +130,10 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 				allDatasets.add(state.dataset);
 		});
 		
+		StorageTimestamps.Cache oldCache = timestampsCache;
 		timestampsCache = allDatasets.isEmpty() ? null : allDatasets.get(0).controller.createTimestampsCache();
+		if(oldCache != null)
+			oldCache.dispose();
 		
 	}
 	
@@ -227,7 +231,7 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		EventHandler handler = null;
 		
@@ -359,7 +363,7 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 		}
 		
 		if(showYaxisScale) {
-			yDivisions = ChartUtils.getYdivisions125(plotHeight, plotMinY, plotMaxY);
+			yDivisions = yDivisionsCache.getYdivisions125(plotHeight, plotMinY, plotMaxY);
 			float maxTextWidth = 0;
 			for(String text : yDivisions.values()) {
 				float textWidth = OpenGL.smallTextWidth(gl, text);
@@ -484,7 +488,7 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 			float triggerLevel = triggerWidget.getTriggerLevel();
 			float yTriggerLevel = (triggerLevel - plotMinY) / plotRange * plotHeight + yPlotBottom;
 			
-			int triggeredSampleNumber = triggerWidget.getTriggeredSampleNumber();
+			long triggeredSampleNumber = triggerWidget.getTriggeredSampleNumber();
 			float triggerPoint = triggeredSampleNumber >= 0 ? plot.getPixelXforSampleNumber(triggeredSampleNumber, plotWidth) : 0;
 			float xTriggerPoint = xPlotLeft + triggerPoint;
 			
@@ -599,10 +603,19 @@ public class OpenGLTimeDomainChart extends PositionedChart {
 		
 	}
 	
+	@Override public void disposeNonGpu() {
+		
+		triggerWidget.dispose();
+		
+	}
+	
 	@Override public void disposeGpu(GL2ES3 gl) {
 		
 		super.disposeGpu(gl);
 		plot.freeResources(gl);
+		triggerWidget.releaseSamples();
+		if(timestampsCache != null)
+			timestampsCache.dispose();
 		
 	}
 
@@ -1,4 +1,5 @@
 import java.awt.Component;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -58,6 +59,10 @@ public class OpenGLTimelineChart extends PositionedChart {
 	// time marker
 	float markerWidth;
 	
+	// bitfield events
+	BitfieldEventsOverview eventsOverview = new BitfieldEventsOverview(datasets);
+	ChartUtils.DivisionsCache divisionsCache = new ChartUtils.DivisionsCache();
+	
 	// time label region
 	boolean showTime;
 	float yTimeTop;
@@ -128,7 +133,7 @@ public class OpenGLTimelineChart extends PositionedChart {
 		
 	}
 	
-	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long nowTimestamp, int lastSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	@Override public EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long nowTimestamp, long lastSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		EventHandler handler = null;
 
@@ -360,7 +365,7 @@ public class OpenGLTimelineChart extends PositionedChart {
 				return handler;
 			
 			// get the divisions
-			Map<Float, String> divisions = ChartUtils.getTimestampDivisions(gl, timelineWidth, minTimestamp, maxTimestamp);
+			Map<Float, String> divisions = divisionsCache.getTimestampDivisions(gl, timelineWidth, minTimestamp, maxTimestamp);
 			
 			// draw the tick lines
 			OpenGL.buffer.rewind();
@@ -402,18 +407,33 @@ public class OpenGLTimelineChart extends PositionedChart {
 			// draw any bitfield events
 			if(haveTelemetry && (datasets.hasEdges() || datasets.hasLevels())) {
 				int[] originalScissorArgs = new int[4];
-				gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-				gl.glScissor(originalScissorArgs[0] + (int) xTimelineLeft, originalScissorArgs[1] + (int) (y + 2*markerWidth), (int) timelineWidth, (int) (height - yTimelineBottom));
-				int trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
-				BitfieldEvents events = new BitfieldEvents(false, false, datasets, 0, trueLastSampleNumber);
-				long min = minTimestamp;
-				long max = maxTimestamp;
-				List<BitfieldEvents.EdgeMarker>  edgeMarkers  = events.getEdgeMarkers ((connection, sampleNumber) -> (float) (connection.datasets.getTimestamp(sampleNumber) - min) / (float) (max - min) * timelineWidth);
-				List<BitfieldEvents.LevelMarker> levelMarkers = events.getLevelMarkers((connection, sampleNumber) -> (float) (connection.datasets.getTimestamp(sampleNumber) - min) / (float) (max - min) * timelineWidth);
-				EventHandler h = ChartUtils.drawMarkers(gl, edgeMarkers, levelMarkers, xTimelineLeft, showTime ? yTimeBaseline2 - Theme.tickTextPadding - Theme.lineWidth : height - Theme.lineWidth, xTimelineRight, y + 2*markerWidth, mouseX, mouseY);
-				if(handler == null)
-					handler = h;
-				gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+				OpenGL.getScissorBox(originalScissorArgs);
+				OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) xTimelineLeft, originalScissorArgs[1] + (int) (y + 2*markerWidth), (int) timelineWidth, (int) (height - yTimelineBottom));
+				
+				// draw a summary of all events
+				float yEventsTop = showTime ? yTimeBaseline2 - Theme.tickTextPadding - Theme.lineWidth : height - Theme.lineWidth;
+				eventsOverview.update();
+				float yOverviewTop = eventsOverview.draw(gl, minTimestamp, maxTimestamp, xTimelineLeft, xTimelineRight, y + 2*markerWidth, yEventsTop);
+				
+				// only draw detailed edge markers near the mouse
+				if(datasets.hasEdges() && mouseX >= xTimelineLeft && mouseX <= xTimelineRight && mouseY >= y + 2*markerWidth && mouseY <= yEventsTop) {
+					long min = minTimestamp;
+					long max = maxTimestamp;
+					float radius = 25 * ChartsController.getDisplayScalingFactor();
+					long minMouseTimestamp = min + (long) ((mouseX - radius - xTimelineLeft) / timelineWidth * (max - min));
+					long maxMouseTimestamp = min + (long) ((mouseX + radius - xTimelineLeft) / timelineWidth * (max - min));
+					long trueLastSampleNumber = datasets.connection.getSampleCount() - 1;
+					long minSampleNumber = Long.max(0, datasets.connection.datasets.getClosestSampleNumberAtOrBefore(minMouseTimestamp, trueLastSampleNumber));
+					long maxSampleNumber = Long.max(0, datasets.connection.datasets.getClosestSampleNumberAtOrBefore(maxMouseTimestamp, trueLastSampleNumber));
+					BitfieldEvents events = new BitfieldEvents(false, false, datasets, minSampleNumber, maxSampleNumber);
+					List<BitfieldEvents.EdgeMarker>  edgeMarkers  = events.getEdgeMarkers ((connection, sampleNumber) -> (float) (connection.datasets.getTimestamp(sampleNumber) - min) / (float) (max - min) * timelineWidth);
+					List<BitfieldEvents.LevelMarker> levelMarkers = new ArrayList<>();
+					EventHandler h = ChartUtils.drawMarkers(gl, edgeMarkers, levelMarkers, xTimelineLeft, yEventsTop, xTimelineRight, yOverviewTop, mouseX, mouseY);
+					if(handler == null)
+						handler = h;
+				}
+				
+				OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
 			}
 			
 			// draw a tooltip if the mouse is not over a button or bitfield event
@@ -426,12 +446,12 @@ public class OpenGLTimelineChart extends PositionedChart {
 					
 					// only telemetry connections exist, so find the closest sample number
 					long[] connectionErrors       = new long[ConnectionsController.telemetryConnections.size()];
-					int[] connectionSampleNumbers = new  int[ConnectionsController.telemetryConnections.size()];
+					long[] connectionSampleNumbers = new long[ConnectionsController.telemetryConnections.size()];
 					for(int i = 0; i < ConnectionsController.telemetryConnections.size(); i++) {
 						ConnectionTelemetry connection = ConnectionsController.telemetryConnections.get(i);
-						int trueLastSampleNumber = connection.getSampleCount() - 1;
-						int closestSampleNumberBefore = connection.datasets.getClosestSampleNumberAtOrBefore(mouseTimestamp, trueLastSampleNumber);
-						int closestSampleNumberAfter = closestSampleNumberBefore + 1;
+						long trueLastSampleNumber = connection.getSampleCount() - 1;
+						long closestSampleNumberBefore = connection.datasets.getClosestSampleNumberAtOrBefore(mouseTimestamp, trueLastSampleNumber);
+						long closestSampleNumberAfter = closestSampleNumberBefore + 1;
 						if(closestSampleNumberAfter > trueLastSampleNumber)
 							closestSampleNumberAfter = trueLastSampleNumber;
 						
@@ -449,7 +469,7 @@ public class OpenGLTimelineChart extends PositionedChart {
 						if(connectionErrors[i] < connectionErrors[n])
 							n = i;
 					ConnectionTelemetry connection = ConnectionsController.telemetryConnections.get(n);
-					int sampleNumber = connectionSampleNumbers[n];
+					long sampleNumber = connectionSampleNumbers[n];
 
 					mouseTimestamp = connection.datasets.getTimestamp(sampleNumber);
 					float tooltipX = (float) (mouseTimestamp - minTimestamp) / (float) (maxTimestamp - minTimestamp) * timelineWidth + xTimelineLeft;
@@ -509,12 +529,12 @@ public class OpenGLTimelineChart extends PositionedChart {
 			
 			// only telemetry connections exist, so find the closest sample number
 			long[] connectionErrors       = new long[ConnectionsController.telemetryConnections.size()];
-			int[] connectionSampleNumbers = new  int[ConnectionsController.telemetryConnections.size()];
+			long[] connectionSampleNumbers = new long[ConnectionsController.telemetryConnections.size()];
 			for(int i = 0; i < ConnectionsController.telemetryConnections.size(); i++) {
 				ConnectionTelemetry connection = ConnectionsController.telemetryConnections.get(i);
-				int trueLastSampleNumber = connection.getSampleCount() - 1;
-				int closestSampleNumberBefore = connection.datasets.getClosestSampleNumberAtOrBefore(mouseTimestamp, trueLastSampleNumber);
-				int closestSampleNumberAfter = closestSampleNumberBefore + 1;
+				long trueLastSampleNumber = connection.getSampleCount() - 1;
+				long closestSampleNumberBefore = connection.datasets.getClosestSampleNumberAtOrBefore(mouseTimestamp, trueLastSampleNumber);
+				long closestSampleNumberAfter = closestSampleNumberBefore + 1;
 				if(closestSampleNumberAfter > trueLastSampleNumber)
 					closestSampleNumberAfter = trueLastSampleNumber;
 				
@@ -532,7 +552,7 @@ public class OpenGLTimelineChart extends PositionedChart {
 				if(connectionErrors[i] < connectionErrors[n])
 					n = i;
 			ConnectionTelemetry connection = ConnectionsController.telemetryConnections.get(n);
-			int sampleNumber = connectionSampleNumbers[n];
+			long sampleNumber = connectionSampleNumbers[n];
 
 			OpenGLChartsView.instance.setPausedView(connection.datasets.getTimestamp(sampleNumber), connection, sampleNumber, true);
 			
@@ -17,6 +17,10 @@ public abstract class Plot {
 	BitfieldEvents events;
 	boolean cachedMode;
 	
+	// reused every frame to avoid allocations
+	int[] originalScissorArgs = new int[4];
+	float[] offscreenMatrix = new float[16];
+	
 	/**
 	 * Step 1: (Required) Calculate the domain and range of the plot.
 	 * 
@@ -129,13 +133,13 @@ public abstract class Plot {
 	static class TooltipInfo {
 		
 		boolean draw;
-		int sampleNumber;
+		long sampleNumber;
 		String label;
 		float pixelX;
 		
 		TooltipInfo(boolean draw, long sampleNumber, String label, float pixelX) {
 			this.draw = draw;
-			this.sampleNumber = (int) sampleNumber;
+			this.sampleNumber = sampleNumber;
 			this.label = label;
 			this.pixelX = pixelX;
 		}
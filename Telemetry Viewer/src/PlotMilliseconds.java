@@ -39,6 +39,8 @@ public class PlotMilliseconds extends Plot {
 	long          previousMaxSampleNumber;
 	
 	StorageTimestamps.Cache timestampsCache;
+	FloatBuffer scratchBuffer; // for checking timestamps near the edges of the plot
+	ChartUtils.DivisionsCache xDivisionsCache = new ChartUtils.DivisionsCache();
 	
 	/**
 	 * Step 1: (Required) Calculate the domain and range of the plot.
@@ -71,7 +73,7 @@ public class PlotMilliseconds extends Plot {
 
 		// determine which samples to acquire
 		datasetsController = datasets.hasAnyType() ? datasets.connection.datasets : null;
-		int sampleCount = datasetsController == null ? 0 : datasetsController.getSampleCount();
+		long sampleCount = datasetsController == null ? 0 : datasetsController.getSampleCount();
 		if(sampleCount > 0) {
 			maxSampleNumber = datasetsController.getClosestSampleNumberAfter(plotMaxX);
 			minSampleNumber = datasetsController.getClosestSampleNumberAtOrBefore(plotMinX, sampleCount - 1);
@@ -91,7 +93,7 @@ public class PlotMilliseconds extends Plot {
 		}
 		
 		// get the range
-		float[] range = datasets.getRange((int) minSampleNumber, (int) maxSampleNumber);
+		float[] range = datasets.getRange(minSampleNumber, maxSampleNumber);
 		samplesMinY = range[0];
 		samplesMaxY = range[1];
 		
@@ -131,7 +133,7 @@ public class PlotMilliseconds extends Plot {
 	@Override public Map<Float, String> getXdivisions(GL2ES3 gl, float plotWidth) {
 		
 		if(xAxisMode == Mode.SHOWS_TIMESTAMPS)
-			return ChartUtils.getTimestampDivisions(gl, plotWidth, plotMinX, plotMaxX);
+			return xDivisionsCache.getTimestampDivisions(gl, plotWidth, plotMinX, plotMaxX);
 			
 		Map<Float, String> divisions = new HashMap<Float, String>();
 		
@@ -154,9 +156,7 @@ public class PlotMilliseconds extends Plot {
 		seconds = leftMillisecondsElapsed / 1000;  leftMillisecondsElapsed %= 1000;
 		milliseconds = leftMillisecondsElapsed;
 		leftMillisecondsElapsed = plotMinX - firstTimestamp;
-		String leftLabel = (xAxisMode == Mode.SHOWS_HOURS)   ? String.format("%s%02d:%02d:%02d.%03d", negative ? "-" : "", hours, minutes, seconds, milliseconds) :
-		                   (xAxisMode == Mode.SHOWS_MINUTES) ? String.format("%s%02d:%02d.%03d",      negative ? "-" : "",        minutes, seconds, milliseconds) :
-		                                                       String.format("%s%02d.%03d",           negative ? "-" : "",                 seconds, milliseconds);
+		String leftLabel = formatElapsedTime(negative, hours, minutes, seconds, milliseconds, 2);
 
 		long rightMillisecondsElapsed = plotMaxX - firstTimestamp;
 		hours = rightMillisecondsElapsed / 3600000; rightMillisecondsElapsed %= 3600000;
@@ -164,9 +164,7 @@ public class PlotMilliseconds extends Plot {
 		seconds = rightMillisecondsElapsed / 1000;  rightMillisecondsElapsed %= 1000;
 		milliseconds = rightMillisecondsElapsed;
 		rightMillisecondsElapsed = plotMaxX - firstTimestamp;
-		String rightLabel = (xAxisMode == Mode.SHOWS_HOURS)   ? String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds, milliseconds) :
-		                    (xAxisMode == Mode.SHOWS_MINUTES) ? String.format("%02d:%02d.%03d",             minutes, seconds, milliseconds) :
-		                                                        String.format("%02d.%03d",                           seconds, milliseconds);
+		String rightLabel = formatElapsedTime(false, hours, minutes, seconds, milliseconds, 2);
 		
 		float maxLabelWidth = Float.max(OpenGL.smallTextWidth(gl, leftLabel), OpenGL.smallTextWidth(gl, rightLabel));
 		float padding = maxLabelWidth / 2f;
@@ -243,9 +241,7 @@ public class PlotMilliseconds extends Plot {
 			minutes = millisecondsElapsed / 60000; millisecondsElapsed %= 60000;
 			seconds = millisecondsElapsed / 1000;  millisecondsElapsed %= 1000;
 			milliseconds = millisecondsElapsed;
-			String label = (xAxisMode == Mode.SHOWS_HOURS)           ? String.format("%s%02d:%02d:%02d.%03d", negative ? "-" : "", hours, minutes, seconds, milliseconds) :
-			               (xAxisMode == Mode.SHOWS_MINUTES)         ? String.format("%s%02d:%02d.%03d",      negative ? "-" : "",        minutes, seconds, milliseconds) :
-			                                                           String.format("%s%01d.%03d",           negative ? "-" : "",                 seconds, milliseconds);
+			String label = formatElapsedTime(negative, hours, minutes, seconds, milliseconds, 1);
 			if(pixelX <= plotWidth)
 				divisions.put(pixelX, label);
 			else
@@ -266,15 +262,18 @@ public class PlotMilliseconds extends Plot {
 	 */
 	@Override public void acquireSamplesNonCachedMode(float plotMinY, float plotMaxY, int plotWidth, int plotHeight) {
 		
-		events = new BitfieldEvents(true, true, datasets, (int) minSampleNumber, (int) maxSampleNumber);
+		if(events == null)
+			events = new BitfieldEvents(true, true);
+		events.findEvents(datasets, minSampleNumber, maxSampleNumber);
 			
-		bufferX = datasetsController.getTimestampsBuffer((int) minSampleNumber, (int) maxSampleNumber, timestampsCache, plotMinX);
+		bufferX = datasetsController.getTimestampsBuffer(minSampleNumber, maxSampleNumber, timestampsCache, plotMinX, bufferX);
 		
-		buffersY = new FloatBuffer[datasets.normalsCount()];
+		if(buffersY == null || buffersY.length != datasets.normalsCount())
+			buffersY = new FloatBuffer[datasets.normalsCount()];
 		for(int datasetN = 0; datasetN < datasets.normalsCount(); datasetN++) {
 			Dataset dataset = datasets.getNormal(datasetN);
 			if(!dataset.isBitfield)
-				buffersY[datasetN] = datasets.getSamplesBuffer(dataset, (int) minSampleNumber, (int) maxSampleNumber);
+				buffersY[datasetN] = datasets.getSamplesBuffer(dataset, minSampleNumber, maxSampleNumber);
 		}
 		
 	}
@@ -289,7 +288,9 @@ public class PlotMilliseconds extends Plot {
 	 */
 	@Override void acquireSamplesCachedMode(float plotMinY, float plotMaxY, int plotWidth, int plotHeight) {
 		
-		events = new BitfieldEvents(true, true, datasets, (int) minSampleNumber, (int) maxSampleNumber);
+		if(events == null)
+			events = new BitfieldEvents(true, true);
+		events.findEvents(datasets, minSampleNumber, maxSampleNumber);
 		
 		// check if the cache must be flushed
 		cacheIsValid = datasets.normalDatasets.equals(previousNormalDatasets) &&
@@ -339,29 +340,29 @@ public class PlotMilliseconds extends Plot {
 			draw1.enabled = false;
 			draw2.enabled = false;
 			
-		} else if(datasetsController.getTimestamp((int) lastSampleNumber) <= splittingTimestamp || datasetsController.getTimestamp((int) firstSampleNumber) >= splittingTimestamp) {
+		} else if(datasetsController.getTimestamp(lastSampleNumber) <= splittingTimestamp || datasetsController.getTimestamp(firstSampleNumber) >= splittingTimestamp) {
 			
 			// only 1 draw call required (no need to wrap around the ring buffer)
-			long leftTimestamp  = Long.max(plotMinX, datasetsController.getTimestamp((int) firstSampleNumber));
-			long rightTimestamp = Long.min(plotMaxX, datasetsController.getTimestamp((int) lastSampleNumber));
+			long leftTimestamp  = Long.max(plotMinX, datasetsController.getTimestamp(firstSampleNumber));
+			long rightTimestamp = Long.min(plotMaxX, datasetsController.getTimestamp(lastSampleNumber));
 			draw1.enableAndAcquire(datasets, firstSampleNumber, lastSampleNumber, leftTimestamp, rightTimestamp, plotWidth, plotHeight);
 			draw2.enabled = false;
 			
 		} else {
 			
 			// to prevent a possible cache flush BETWEEN draw1 and draw2, first ask for the full range so the cache will be flushed if necessary BEFORE we prepare for draw1 and draw2
-			long leftTimestamp  = Long.max(plotMinX, datasetsController.getTimestamp((int) firstSampleNumber));
-			long rightTimestamp = Long.min(plotMaxX, datasetsController.getTimestamp((int) lastSampleNumber));
+			long leftTimestamp  = Long.max(plotMinX, datasetsController.getTimestamp(firstSampleNumber));
+			long rightTimestamp = Long.min(plotMaxX, datasetsController.getTimestamp(lastSampleNumber));
 			draw1.enableAndAcquire(datasets, firstSampleNumber, lastSampleNumber, leftTimestamp, rightTimestamp, plotWidth, plotHeight);
 			
 			// 2 draw calls required because we need to wrap around the ring buffer
 			long splittingSampleNumber = datasetsController.getClosestSampleNumberAfter(splittingTimestamp);
 			
-			leftTimestamp  = Long.max(plotMinX,           datasetsController.getTimestamp((int) firstSampleNumber));
-			rightTimestamp = Long.min(splittingTimestamp, datasetsController.getTimestamp((int) splittingSampleNumber));
+			leftTimestamp  = Long.max(plotMinX,           datasetsController.getTimestamp(firstSampleNumber));
+			rightTimestamp = Long.min(splittingTimestamp, datasetsController.getTimestamp(splittingSampleNumber));
 			draw1.enableAndAcquire(datasets, firstSampleNumber, splittingSampleNumber, leftTimestamp, rightTimestamp, plotWidth, plotHeight);
-			leftTimestamp  = Long.max(splittingTimestamp, datasetsController.getTimestamp((int) splittingSampleNumber - 1));
-			rightTimestamp = Long.min(plotMaxX,           datasetsController.getTimestamp((int) lastSampleNumber));
+			leftTimestamp  = Long.max(splittingTimestamp, datasetsController.getTimestamp(splittingSampleNumber - 1));
+			rightTimestamp = Long.min(plotMaxX,           datasetsController.getTimestamp(lastSampleNumber));
 			draw2.enableAndAcquire(datasets, splittingSampleNumber - 1, lastSampleNumber, leftTimestamp, rightTimestamp, plotWidth, plotHeight);
 			
 		}
@@ -426,7 +427,7 @@ public class PlotMilliseconds extends Plot {
 		
 		double millisecondsPerPixel = (double) plotDomain / (double) plotWidth;
 		long extraMillisecondsNeeded = (long) Math.ceil(millisecondsPerPixel * Theme.lineWidth);
-		long requiredTimestamp = datasetsController.getTimestamp((int) sampleNumber) - extraMillisecondsNeeded;
+		long requiredTimestamp = datasetsController.getTimestamp(sampleNumber) - extraMillisecondsNeeded;
 		
 		final int bufferSizeMinusOne = 100 - 1; // 10 was too small
 		
@@ -435,11 +436,11 @@ public class PlotMilliseconds extends Plot {
 		while(sampleN >= 0) {
 			if(sampleN < bufferSizeMinusOne) {
 				extraSamplesNeeded++;
-				if(datasetsController.getTimestamp((int) sampleN) < requiredTimestamp)
+				if(datasetsController.getTimestamp(sampleN) < requiredTimestamp)
 					return extraSamplesNeeded;
 				sampleN--;
 			} else {
-				FloatBuffer buffer = datasetsController.getTimestampsBuffer((int) (sampleN - bufferSizeMinusOne), (int) sampleN, timestampsCache, requiredTimestamp);
+				FloatBuffer buffer = scratchBuffer = datasetsController.getTimestampsBuffer(sampleN - bufferSizeMinusOne, sampleN, timestampsCache, requiredTimestamp, scratchBuffer);
 				for(int i = bufferSizeMinusOne; i >= 0; i--) {
 					extraSamplesNeeded++;
 					if(buffer.get(i) < 0)
@@ -464,7 +465,7 @@ public class PlotMilliseconds extends Plot {
 		
 		double millisecondsPerPixel = (double) plotDomain / (double) plotWidth;
 		long extraMillisecondsNeeded = (int) Math.ceil(millisecondsPerPixel * Theme.lineWidth);
-		long requiredTimestamp = datasetsController.getTimestamp((int) sampleNumber) + extraMillisecondsNeeded;
+		long requiredTimestamp = datasetsController.getTimestamp(sampleNumber) + extraMillisecondsNeeded;
 		
 		final int bufferSizeMinusOne = 100 - 1; // 10 was too small
 		
@@ -473,11 +474,11 @@ public class PlotMilliseconds extends Plot {
 		while(sampleN <= maxSampleNumber) {
 			if(sampleN + bufferSizeMinusOne > maxSampleNumber) {
 				extraSamplesNeeded++;
-				if(datasetsController.getTimestamp((int) sampleN) > requiredTimestamp)
+				if(datasetsController.getTimestamp(sampleN) > requiredTimestamp)
 					return extraSamplesNeeded;
 				sampleN++;
 			} else {
-				FloatBuffer buffer = datasetsController.getTimestampsBuffer((int) sampleN, (int) (sampleN + bufferSizeMinusOne), timestampsCache, requiredTimestamp);
+				FloatBuffer buffer = scratchBuffer = datasetsController.getTimestampsBuffer(sampleN, sampleN + bufferSizeMinusOne, timestampsCache, requiredTimestamp, scratchBuffer);
 				for(int i = 0; i <= bufferSizeMinusOne; i++) {
 					extraSamplesNeeded++;
 					if(buffer.get(i) > 0)
@@ -508,9 +509,8 @@ public class PlotMilliseconds extends Plot {
 		float plotRange = plotMaxY - plotMinY;
 		
 		// clip to the plot region
-		int[] originalScissorArgs = new int[4];
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-		gl.glScissor(originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
+		OpenGL.getScissorBox(originalScissorArgs);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
 		
 		float[] plotMatrix = Arrays.copyOf(chartMatrix, 16);
 		// adjust so: x = (x - plotMinX) / domain * plotWidth + xPlotLeft;
@@ -532,7 +532,7 @@ public class PlotMilliseconds extends Plot {
 				OpenGL.drawLinesX_Y(gl, GL3.GL_LINE_STRIP, dataset.glColor, bufferX, buffersY[i], (int) plotSampleCount);
 				
 				// also draw points if there are relatively few samples on screen
-				float occupiedPlotWidthPercentage = (float) (datasetsController.getTimestamp((int) maxSampleNumber) - datasetsController.getTimestamp((int) minSampleNumber)) / (float) plotDomain;
+				float occupiedPlotWidthPercentage = (float) (datasetsController.getTimestamp(maxSampleNumber) - datasetsController.getTimestamp(minSampleNumber)) / (float) plotDomain;
 				float occupiedPlotWidth = plotWidth * occupiedPlotWidthPercentage;
 				boolean fewSamplesOnScreen = (occupiedPlotWidth / plotSampleCount) > (2 * Theme.pointWidth);
 				if(fewSamplesOnScreen)
@@ -551,7 +551,7 @@ public class PlotMilliseconds extends Plot {
 		}
 
 		// stop clipping to the plot region
-		gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
 		
 	}
 	
@@ -577,7 +577,6 @@ public class PlotMilliseconds extends Plot {
 		}
 		
 		// draw on the off-screen framebuffer
-		float[] offscreenMatrix = new float[16];
 		OpenGL.makeOrthoMatrix(offscreenMatrix, 0, plotWidth, 0, plotHeight, -1, 1);
 		if(cacheIsValid)
 			OpenGL.continueDrawingOffscreen(gl, offscreenMatrix, fbHandle, texHandle, plotWidth, plotHeight);
@@ -587,43 +586,43 @@ public class PlotMilliseconds extends Plot {
 		// erase the invalid parts of the framebuffer
 		if(plotMinX < datasetsController.getFirstTimestamp()) {
 			// if x<0 is on screen, we need to erase the x<0 region because it may have old data on it
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
+			OpenGL.enableScissorTest(gl);
 			int[] args = calculateScissorArgs(plotMaxX, plotMaxX + plotDomain, plotWidth, plotHeight);
-			gl.glScissor(args[0], args[1], args[2], args[3]);
+			OpenGL.setScissorBox(gl, args[0], args[1], args[2], args[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
-		if(plotMaxX > datasetsController.getTimestamp((int) maxSampleNumber)) {
+		if(plotMaxX > datasetsController.getTimestamp(maxSampleNumber)) {
 			// if x>maxTimestamp is on screen, we need to erase the x>maxTimestamp region because it may have old data on it
-			long maxTimestamp = datasetsController.getTimestamp((int) maxSampleNumber);
+			long maxTimestamp = datasetsController.getTimestamp(maxSampleNumber);
 			long firstTimestamp = datasetsController.getFirstTimestamp();
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
+			OpenGL.enableScissorTest(gl);
 			int[] args = calculateScissorArgs(maxTimestamp, plotMaxX, plotWidth, plotHeight);
-			gl.glScissor(args[0], args[1], args[2], args[3]);
+			OpenGL.setScissorBox(gl, args[0], args[1], args[2], args[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
 			if((plotMaxX - firstTimestamp) % plotDomain < (maxTimestamp - firstTimestamp) % plotDomain) {
 				args = calculateScissorArgs(plotMaxX - ((plotMaxX - firstTimestamp) % plotDomain), plotMaxX, plotWidth, plotHeight);
-				gl.glScissor(args[0], args[1], args[2], args[3]);
+				OpenGL.setScissorBox(gl, args[0], args[1], args[2], args[3]);
 				gl.glClearColor(0, 0, 0, 0);
 				gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
 			}
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		if(draw1.enabled) {
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
-			gl.glScissor(draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
+			OpenGL.enableScissorTest(gl);
+			OpenGL.setScissorBox(gl, draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		if(draw2.enabled) {
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
-			gl.glScissor(draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
+			OpenGL.enableScissorTest(gl);
+			OpenGL.setScissorBox(gl, draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		
 		// adjust so: x = (x - plotMinX) / domain * plotWidth;
@@ -642,26 +641,26 @@ public class PlotMilliseconds extends Plot {
 				if(dataset.isBitfield)
 					continue;
 				
-				float occupiedPlotWidthPercentage = (float) (datasetsController.getTimestamp((int) maxSampleNumber) - datasetsController.getTimestamp((int) minSampleNumber)) / (float) plotDomain;
+				float occupiedPlotWidthPercentage = (float) (datasetsController.getTimestamp(maxSampleNumber) - datasetsController.getTimestamp(minSampleNumber)) / (float) plotDomain;
 				float occupiedPlotWidth = plotWidth * occupiedPlotWidthPercentage;
 				boolean fewSamplesOnScreen = (occupiedPlotWidth / plotSampleCount) > (2 * Theme.pointWidth);
 				
 				if(draw1.enabled) {
-					gl.glEnable(GL3.GL_SCISSOR_TEST);
-					gl.glScissor(draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
+					OpenGL.enableScissorTest(gl);
+					OpenGL.setScissorBox(gl, draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
 					OpenGL.drawLinesX_Y(gl, GL3.GL_LINE_STRIP, dataset.glColor, draw1.bufferX, draw1.buffersY[i], draw1.sampleCount);
 					if(fewSamplesOnScreen)
 						OpenGL.drawPointsX_Y(gl, dataset.glColor, draw1.bufferX, draw1.buffersY[i], draw1.sampleCount);
-					gl.glDisable(GL3.GL_SCISSOR_TEST);
+					OpenGL.disableScissorTest(gl);
 				}
 				
 				if(draw2.enabled) {
-					gl.glEnable(GL3.GL_SCISSOR_TEST);
-					gl.glScissor(draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
+					OpenGL.enableScissorTest(gl);
+					OpenGL.setScissorBox(gl, draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
 					OpenGL.drawLinesX_Y(gl, GL3.GL_LINE_STRIP, dataset.glColor, draw2.bufferX, draw2.buffersY[i], draw2.sampleCount);
 					if(fewSamplesOnScreen)
 						OpenGL.drawPointsX_Y(gl, dataset.glColor, draw2.bufferX, draw2.buffersY[i], draw2.sampleCount);
-					gl.glDisable(GL3.GL_SCISSOR_TEST);
+					OpenGL.disableScissorTest(gl);
 				}
 				
 			}
@@ -685,9 +684,8 @@ public class PlotMilliseconds extends Plot {
 		OpenGL.drawRingbufferTexturedBox(gl, texHandle, xPlotLeft, yPlotBottom, plotWidth, plotHeight, startX);
 
 		// clip to the plot region
-		int[] originalScissorArgs = new int[4];
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-		gl.glScissor(originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
+		OpenGL.getScissorBox(originalScissorArgs);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
 		
 		// draw any bitfield changes
 		if(plotSampleCount >= 2) {
@@ -697,7 +695,7 @@ public class PlotMilliseconds extends Plot {
 		}
 		
 		// stop clipping to the plot region
-		gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
 		
 //		// draw the framebuffer without ringbuffer wrapping, 10 pixels above the plot
 //		gl.glDisable(GL2.GL_SCISSOR_TEST);
@@ -726,29 +724,27 @@ public class PlotMilliseconds extends Plot {
 			if(mouseTimestamp < datasetsController.getFirstTimestamp())
 				return new TooltipInfo(false, 0, "", 0);
 			
-			long closestSampleNumberBefore = datasetsController.getClosestSampleNumberAtOrBefore(mouseTimestamp, (int) maxSampleNumber - 1);
+			long closestSampleNumberBefore = datasetsController.getClosestSampleNumberAtOrBefore(mouseTimestamp, maxSampleNumber - 1);
 			long closestSampleNumberAfter = closestSampleNumberBefore + 1;
 			if(closestSampleNumberAfter > maxSampleNumber)
 				closestSampleNumberAfter = maxSampleNumber;
 
-			double beforeError = (double) ((mouseX / plotWidth) * plotDomain) - (double) (datasetsController.getTimestamp((int) closestSampleNumberBefore) - plotMinX);
-			double afterError = (double) (datasetsController.getTimestamp((int) closestSampleNumberAfter) - plotMinX) - (double) ((mouseX / plotWidth) * plotDomain);
+			double beforeError = (double) ((mouseX / plotWidth) * plotDomain) - (double) (datasetsController.getTimestamp(closestSampleNumberBefore) - plotMinX);
+			double afterError = (double) (datasetsController.getTimestamp(closestSampleNumberAfter) - plotMinX) - (double) ((mouseX / plotWidth) * plotDomain);
 			
 			long closestSampleNumber = (beforeError < afterError) ? closestSampleNumberBefore : closestSampleNumberAfter;
 			
 			String label = "";
 			if(xAxisMode == Mode.SHOWS_TIMESTAMPS) {
-				label = "Sample " + closestSampleNumber + "\n" + SettingsController.formatTimestampToMilliseconds(datasetsController.getTimestamp((int) closestSampleNumber));
+				label = "Sample " + closestSampleNumber + "\n" + SettingsController.formatTimestampToMilliseconds(datasetsController.getTimestamp(closestSampleNumber));
 			} else {
-				long millisecondsElapsed = datasetsController.getTimestamp((int) closestSampleNumber) - datasetsController.getFirstTimestamp();
+				long millisecondsElapsed = datasetsController.getTimestamp(closestSampleNumber) - datasetsController.getFirstTimestamp();
 				long hours = millisecondsElapsed / 3600000; millisecondsElapsed %= 3600000;
 				long minutes = millisecondsElapsed / 60000; millisecondsElapsed %= 60000;
 				long seconds = millisecondsElapsed / 1000;  millisecondsElapsed %= 1000;
 				long milliseconds = millisecondsElapsed;
 				
-				String time = (xAxisMode == Mode.SHOWS_HOURS)   ? String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds, milliseconds) :
-				              (xAxisMode == Mode.SHOWS_MINUTES) ? String.format("%02d:%02d.%03d",             minutes, seconds, milliseconds) :
-				                                                  String.format("%01d.%03d",                           seconds, milliseconds);
+				String time = formatElapsedTime(false, hours, minutes, seconds, milliseconds, 1);
 				
 				label = "Sample " + closestSampleNumber + "\nt = " + time;
 			}
@@ -770,7 +766,7 @@ public class PlotMilliseconds extends Plot {
 	 */
 	@Override float getPixelXforSampleNumber(long sampleNumber, float plotWidth) {
 		
-		return (float) (datasetsController.getTimestamp((int) sampleNumber) - plotMinX) / (float) plotDomain * plotWidth;
+		return (float) (datasetsController.getTimestamp(sampleNumber) - plotMinX) / (float) plotDomain * plotWidth;
 		
 	}
 	
@@ -791,6 +787,60 @@ public class PlotMilliseconds extends Plot {
 		
 	}
 	
+	/**
+	 * Formats an elapsed time for the x-axis. This is called for every division label every frame, so it avoids the overhead of String.format().
+	 * 
+	 * @param negative         True to prefix the time with a "-".
+	 * @param hours            Hours, only shown if the x-axis shows hours.
+	 * @param minutes          Minutes, only shown if the x-axis shows hours or minutes.
+	 * @param seconds          Seconds.
+	 * @param milliseconds     Milliseconds.
+	 * @param secondsDigits    Minimum number of digits for the seconds if they are the first number shown.
+	 * @return                 The formatted time, such as "01:02:03.004", "02:03.004" or "3.004".
+	 */
+	private String formatElapsedTime(boolean negative, long hours, long minutes, long seconds, long milliseconds, int secondsDigits) {
+		
+		StringBuilder text = new StringBuilder(16);
+		if(negative)
+			text.append('-');
+		if(xAxisMode == Mode.SHOWS_HOURS) {
+			appendPadded(text, hours, 2).append(':');
+			appendPadded(text, minutes, 2).append(':');
+			appendPadded(text, seconds, 2);
+		} else if(xAxisMode == Mode.SHOWS_MINUTES) {
+			appendPadded(text, minutes, 2).append(':');
+			appendPadded(text, seconds, 2);
+		} else {
+			appendPadded(text, seconds, secondsDigits);
+		}
+		text.append('.');
+		appendPadded(text, milliseconds, 3);
+		return text.toString();
+		
+	}
+	
+	/**
+	 * Appends a number with leading zeros, like String.format("%0Nd").
+	 * 
+	 * @param text      Where to append the number.
+	 * @param number    The number.
+	 * @param digits    Minimum number of digits.
+	 * @return          The StringBuilder, for chaining.
+	 */
+	private static StringBuilder appendPadded(StringBuilder text, long number, int digits) {
+		
+		if(number < 0) {
+			text.append('-');
+			number = -number;
+			digits--;
+		}
+		for(long limit = 10; digits > 1; digits--, limit *= 10)
+			if(number < limit)
+				text.append('0');
+		return text.append(number);
+		
+	}
+	
 	private class DrawCallData {
 		
 		boolean enabled;        // if this object contains samples to draw
@@ -830,12 +880,13 @@ public class PlotMilliseconds extends Plot {
 			sampleCount = (int) (lastSampleNumber - firstSampleNumber + 1);
 			
 			// acquire the samples
-			bufferX = datasetsController.getTimestampsBuffer((int) firstSampleNumber, (int) lastSampleNumber, timestampsCache, xOffset);
-			buffersY = new FloatBuffer[datasets.normalsCount()];
+			bufferX = datasetsController.getTimestampsBuffer(firstSampleNumber, lastSampleNumber, timestampsCache, xOffset, bufferX);
+			if(buffersY == null || buffersY.length != datasets.normalsCount())
+				buffersY = new FloatBuffer[datasets.normalsCount()];
 			for(int datasetN = 0; datasetN < datasets.normalsCount(); datasetN++) {
 				Dataset dataset = datasets.getNormal(datasetN);
 				if(!dataset.isBitfield)
-					buffersY[datasetN] = datasets.getSamplesBuffer(dataset, (int) firstSampleNumber, (int) lastSampleNumber);
+					buffersY[datasetN] = datasets.getSamplesBuffer(dataset, firstSampleNumber, lastSampleNumber);
 			}
 			
 		}
@@ -91,7 +91,7 @@ public class PlotSampleCount extends Plot {
 		}
 		
 		// get the range
-		float[] range = datasets.getRange((int) minSampleNumber, (int) maxSampleNumber);
+		float[] range = datasets.getRange(minSampleNumber, maxSampleNumber);
 		samplesMinY = range[0];
 		samplesMaxY = range[1];
 		
@@ -131,13 +131,16 @@ public class PlotSampleCount extends Plot {
 	 */
 	@Override void acquireSamplesNonCachedMode(float plotMinY, float plotMaxY, int plotWidth, int plotHeight) {
 		
-		events = new BitfieldEvents(true, false, datasets, (int) minSampleNumber, (int) maxSampleNumber);
+		if(events == null)
+			events = new BitfieldEvents(true, false);
+		events.findEvents(datasets, minSampleNumber, maxSampleNumber);
 		
-		buffersY = new FloatBuffer[datasets.normalsCount()];
+		if(buffersY == null || buffersY.length != datasets.normalsCount())
+			buffersY = new FloatBuffer[datasets.normalsCount()];
 		for(int datasetN = 0; datasetN < datasets.normalsCount(); datasetN++) {
 			Dataset dataset = datasets.getNormal(datasetN);
 			if(!dataset.isBitfield)
-				buffersY[datasetN] = datasets.getSamplesBuffer(dataset, (int) minSampleNumber, (int) maxSampleNumber);
+				buffersY[datasetN] = datasets.getSamplesBuffer(dataset, minSampleNumber, maxSampleNumber);
 		}
 		
 	}
@@ -152,7 +155,9 @@ public class PlotSampleCount extends Plot {
 	 */
 	@Override void acquireSamplesCachedMode(float plotMinY, float plotMaxY, int plotWidth, int plotHeight) {
 		
-		events = new BitfieldEvents(true, false, datasets, (int) minSampleNumber, (int) maxSampleNumber);
+		if(events == null)
+			events = new BitfieldEvents(true, false);
+		events.findEvents(datasets, minSampleNumber, maxSampleNumber);
 		
 		// check if the cache must be flushed
 		cacheIsValid = datasets.normalDatasets.equals(previousNormalDatasets) &&
@@ -291,9 +296,8 @@ public class PlotSampleCount extends Plot {
 		float plotRange = plotMaxY - plotMinY;
 		
 		// clip to the plot region
-		int[] originalScissorArgs = new int[4];
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-		gl.glScissor(originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
+		OpenGL.getScissorBox(originalScissorArgs);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
 		
 		float[] plotMatrix = Arrays.copyOf(chartMatrix, 16);
 		// adjust so: x = (x - plotMinX) / domain * plotWidth + xPlotLeft;
@@ -332,7 +336,7 @@ public class PlotSampleCount extends Plot {
 		}
 
 		// stop clipping to the plot region
-		gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
 		
 	}
 	
@@ -358,7 +362,6 @@ public class PlotSampleCount extends Plot {
 		}
 		
 		// draw on the off-screen framebuffer
-		float[] offscreenMatrix = new float[16];
 		OpenGL.makeOrthoMatrix(offscreenMatrix, 0, plotWidth, 0, plotHeight, -1, 1);
 		if(cacheIsValid)
 			OpenGL.continueDrawingOffscreen(gl, offscreenMatrix, fbHandle, texHandle, plotWidth, plotHeight);
@@ -368,41 +371,41 @@ public class PlotSampleCount extends Plot {
 		// erase the invalid parts of the framebuffer
 		if(plotMinX < 0) {
 			// if x<0 is on screen, we need to erase the x<0 region because it may have old data on it
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
+			OpenGL.enableScissorTest(gl);
 			int[] args = calculateScissorArgs(plotMaxX, plotMaxX - plotMinX, plotWidth, plotHeight);
-			gl.glScissor(args[0], args[1], args[2], args[3]);
+			OpenGL.setScissorBox(gl, args[0], args[1], args[2], args[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		if(plotMaxX > maxSampleNumber) {
 			// if x>maxSampleNumber is on screen, we need to erase the x>maxSampleNumber region because it may have old data on it
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
+			OpenGL.enableScissorTest(gl);
 			int[] args = calculateScissorArgs(maxSampleNumber, plotMaxX, plotWidth, plotHeight);
-			gl.glScissor(args[0], args[1], args[2], args[3]);
+			OpenGL.setScissorBox(gl, args[0], args[1], args[2], args[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
 			if(plotMaxX % plotDomain < maxSampleNumber % plotDomain) {
 				args = calculateScissorArgs(plotMaxX - (plotMaxX % plotDomain), plotMaxX, plotWidth, plotHeight);
-				gl.glScissor(args[0], args[1], args[2], args[3]);
+				OpenGL.setScissorBox(gl, args[0], args[1], args[2], args[3]);
 				gl.glClearColor(0, 0, 0, 0);
 				gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
 			}
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		if(draw1.enabled) {
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
-			gl.glScissor(draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
+			OpenGL.enableScissorTest(gl);
+			OpenGL.setScissorBox(gl, draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		if(draw2.enabled) {
-			gl.glEnable(GL3.GL_SCISSOR_TEST);
-			gl.glScissor(draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
+			OpenGL.enableScissorTest(gl);
+			OpenGL.setScissorBox(gl, draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
 			gl.glClearColor(0, 0, 0, 0);
 			gl.glClear(GL3.GL_COLOR_BUFFER_BIT);
-			gl.glDisable(GL3.GL_SCISSOR_TEST);
+			OpenGL.disableScissorTest(gl);
 		}
 		
 		// adjust so: x = (x - plotMinX) / domain * plotWidth;
@@ -424,21 +427,21 @@ public class PlotSampleCount extends Plot {
 				boolean fewSamplesOnScreen = (plotWidth / (float) plotDomain) > (2 * Theme.pointWidth);
 				
 				if(draw1.enabled) {
-					gl.glEnable(GL3.GL_SCISSOR_TEST);
-					gl.glScissor(draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
+					OpenGL.enableScissorTest(gl);
+					OpenGL.setScissorBox(gl, draw1.scissorArgs[0], draw1.scissorArgs[1], draw1.scissorArgs[2], draw1.scissorArgs[3]);
 					OpenGL.drawLinesY(gl, GL3.GL_LINE_STRIP, dataset.glColor, draw1.buffersY[i], draw1.sampleCount, draw1.xOffset);
 					if(fewSamplesOnScreen)
 						OpenGL.drawPointsY(gl, dataset.glColor, draw1.buffersY[i], draw1.sampleCount, draw1.xOffset);
-					gl.glDisable(GL3.GL_SCISSOR_TEST);
+					OpenGL.disableScissorTest(gl);
 				}
 				
 				if(draw2.enabled) {
-					gl.glEnable(GL3.GL_SCISSOR_TEST);
-					gl.glScissor(draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
+					OpenGL.enableScissorTest(gl);
+					OpenGL.setScissorBox(gl, draw2.scissorArgs[0], draw2.scissorArgs[1], draw2.scissorArgs[2], draw2.scissorArgs[3]);
 					OpenGL.drawLinesY(gl, GL3.GL_LINE_STRIP, dataset.glColor, draw2.buffersY[i], draw2.sampleCount, draw2.xOffset);
 					if(fewSamplesOnScreen)
 						OpenGL.drawPointsY(gl, dataset.glColor, draw2.buffersY[i], draw2.sampleCount, draw2.xOffset);
-					gl.glDisable(GL3.GL_SCISSOR_TEST);
+					OpenGL.disableScissorTest(gl);
 				}
 				
 			}
@@ -462,9 +465,8 @@ public class PlotSampleCount extends Plot {
 		OpenGL.drawRingbufferTexturedBox(gl, texHandle, xPlotLeft, yPlotBottom, plotWidth, plotHeight, startX+0f);
 		
 		// clip to the plot region
-		int[] originalScissorArgs = new int[4];
-		gl.glGetIntegerv(GL3.GL_SCISSOR_BOX, originalScissorArgs, 0);
-		gl.glScissor(originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
+		OpenGL.getScissorBox(originalScissorArgs);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0] + (int) xPlotLeft, originalScissorArgs[1] + (int) yPlotBottom, plotWidth, plotHeight);
 		
 		// draw any bitfield changes
 		if(plotSampleCount >= 2) {
@@ -474,12 +476,12 @@ public class PlotSampleCount extends Plot {
 		}
 
 		// stop clipping to the plot region
-		gl.glScissor(originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
+		OpenGL.setScissorBox(gl, originalScissorArgs[0], originalScissorArgs[1], originalScissorArgs[2], originalScissorArgs[3]);
 		
 //		// draw the framebuffer without ringbuffer wrapping, 10 pixels above the plot
-//		gl.glDisable(GL3.GL_SCISSOR_TEST);
+//		OpenGL.disableScissorTest(gl);
 //		OpenGL.drawTexturedBox(gl, texHandle, true, xPlotLeft, yPlotBottom + plotHeight + 10, plotWidth, plotHeight, 0, false);
-//		gl.glEnable(GL3.GL_SCISSOR_TEST);
+//		OpenGL.enableScissorTest(gl);
 		
 	}
 	
@@ -576,11 +578,12 @@ public class PlotSampleCount extends Plot {
 			sampleCount = (int) (lastSampleNumber - firstSampleNumber + 1);
 			
 			// acquire the samples
-			buffersY = new FloatBuffer[datasets.normalsCount()];
+			if(buffersY == null || buffersY.length != datasets.normalsCount())
+				buffersY = new FloatBuffer[datasets.normalsCount()];
 			for(int datasetN = 0; datasetN < datasets.normalsCount(); datasetN++) {
 				Dataset dataset = datasets.getNormal(datasetN);
 				if(!dataset.isBitfield)
-					buffersY[datasetN] = datasets.getSamplesBuffer(dataset, (int) firstSampleNumber, (int) lastSampleNumber);
+					buffersY[datasetN] = datasets.getSamplesBuffer(dataset, firstSampleNumber, lastSampleNumber);
 			}
 			
 		}
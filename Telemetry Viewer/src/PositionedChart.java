@@ -51,6 +51,8 @@ public abstract class PositionedChart {
 	
 	long cpuStartNanoseconds;
 	long cpuStopNanoseconds;
+	long startAllocatedBytes;
+	long stopAllocatedBytes;
 	double previousCpuMilliseconds;
 	double previousGpuMilliseconds;
 	double cpuMillisecondsAccumulator;
@@ -59,12 +61,16 @@ public abstract class PositionedChart {
 	final int SAMPLE_COUNT = 60;
 	double averageCpuMilliseconds;
 	double averageGpuMilliseconds;
+	long previousAllocatedBytes;
+	long allocatedBytesAccumulator;
+	long averageAllocatedBytes;
 	int[] gpuQueryHandles;
 	long[] gpuTimes = new long[2];
 	String line1;
 	String line2;
+	String line3;
 	
-	public final EventHandler draw(GL2ES3 gl, float[] chartMatrix, int width, int height, long nowTimestamp, int lastSampleNumber, double zoomLevel, int mouseX, int mouseY) {
+	public final EventHandler draw(GL2ES3 gl, float[] chartMatrix, int width, int height, long nowTimestamp, long lastSampleNumber, double zoomLevel, int mouseX, int mouseY) {
 		
 		boolean openGLES = OpenGLChartsView.instance.openGLES;
 		if(!openGLES && gpuQueryHandles == null) {
@@ -83,20 +89,25 @@ public abstract class PositionedChart {
 				gl.glGetQueryObjecti64v(gpuQueryHandles[1], GL3.GL_QUERY_RESULT, gpuTimes, 1);
 			}
 			previousGpuMilliseconds = (gpuTimes[1] - gpuTimes[0]) / 1000000.0;
+			previousAllocatedBytes = stopAllocatedBytes - startAllocatedBytes;
 			if(count < SAMPLE_COUNT) {
 				cpuMillisecondsAccumulator += previousCpuMilliseconds;
 				gpuMillisecondsAccumulator += previousGpuMilliseconds;
+				allocatedBytesAccumulator += previousAllocatedBytes;
 				count++;
 			} else {
 				averageCpuMilliseconds = cpuMillisecondsAccumulator / 60.0;
 				averageGpuMilliseconds = gpuMillisecondsAccumulator / 60.0;
+				averageAllocatedBytes = allocatedBytesAccumulator / 60;
 				cpuMillisecondsAccumulator = 0;
 				gpuMillisecondsAccumulator = 0;
+				allocatedBytesAccumulator = 0;
 				count = 0;
 			}
 			
 			// start timers for *this frame*
 			cpuStartNanoseconds = System.nanoTime();
+			startAllocatedBytes = ChartUtils.getAllocatedBytes();
 			if(!openGLES)
 				gl.glQueryCounter(gpuQueryHandles[0], GL3.GL_TIMESTAMP);
 		}
@@ -108,7 +119,9 @@ public abstract class PositionedChart {
 		// GPU benchmarking is not possible with OpenGL ES
 		if(SettingsController.getBenchmarking()) {
 			// stop timers for *this frame*
+			OpenGL.flush(gl);
 			cpuStopNanoseconds = System.nanoTime();
+			stopAllocatedBytes = ChartUtils.getAllocatedBytes();
 			if(!openGLES)
 				gl.glQueryCounter(gpuQueryHandles[1], GL3.GL_TIMESTAMP);
 			
@@ -116,11 +129,15 @@ public abstract class PositionedChart {
 			line1 =             String.format("CPU = %.3fms (Average = %.3fms)", previousCpuMilliseconds, averageCpuMilliseconds);
 			line2 = !openGLES ? String.format("GPU = %.3fms (Average = %.3fms)", previousGpuMilliseconds, averageGpuMilliseconds) :
 			                                  "GPU = unknown";
-			float textHeight = 2 * OpenGL.smallTextHeight + Theme.tickTextPadding;
+			line3 = startAllocatedBytes >= 0 ? String.format("Heap allocated = %,d KB (Average = %,d KB)", previousAllocatedBytes / 1024, averageAllocatedBytes / 1024) :
+			                                   "Heap allocated = unknown";
+			float textHeight = 3 * OpenGL.smallTextHeight + 2 * Theme.tickTextPadding;
 			float textWidth = Float.max(OpenGL.smallTextWidth(gl, line1), OpenGL.smallTextWidth(gl, line2));
+			textWidth = Float.max(textWidth, OpenGL.smallTextWidth(gl, line3));
 			OpenGL.drawBox(gl, Theme.neutralColor, Theme.tileShadowOffset, 0, textWidth + Theme.tickTextPadding*2, textHeight + Theme.tickTextPadding*2);
-			OpenGL.drawSmallText(gl, line1, (int) (Theme.tickTextPadding + Theme.tileShadowOffset), (int) (2 * Theme.tickTextPadding + OpenGL.smallTextHeight), 0);
-			OpenGL.drawSmallText(gl, line2, (int) (Theme.tickTextPadding + Theme.tileShadowOffset), (int) Theme.tickTextPadding, 0);
+			OpenGL.drawSmallText(gl, line1, (int) (Theme.tickTextPadding + Theme.tileShadowOffset), (int) (3 * Theme.tickTextPadding + 2 * OpenGL.smallTextHeight), 0);
+			OpenGL.drawSmallText(gl, line2, (int) (Theme.tickTextPadding + Theme.tileShadowOffset), (int) (2 * Theme.tickTextPadding + OpenGL.smallTextHeight), 0);
+			OpenGL.drawSmallText(gl, line3, (int) (Theme.tickTextPadding + Theme.tileShadowOffset), (int) Theme.tickTextPadding, 0);
 		}
 		
 		return handler;
@@ -141,7 +158,7 @@ public abstract class PositionedChart {
 	 * @param mouseY              Mouse's y position, in pixels, relative to the chart.
 	 * @return                    An EventHandler if the mouse is over something that can be clicked or dragged.
 	 */
-	public abstract EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, int endSampleNumber, double zoomLevel, int mouseX, int mouseY);
+	public abstract EventHandler drawChart(GL2ES3 gl, float[] chartMatrix, int width, int height, long endTimestamp, long endSampleNumber, double zoomLevel, int mouseX, int mouseY);
 	
 	public final void importChart(ConnectionsController.QueueOfLines lines) {
 
@@ -199,6 +216,9 @@ public abstract class PositionedChart {
 			gpuQueryHandles = null;
 		}
 		
+		// release shared samples here because this is the thread that uses the caches
+		datasets.dispose();
+		
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,295 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Lossless compression for samples that are being moved to disk.
+ * 
+ * StorageFloats compresses each SamplePageCache page independently, so reading part of a slot only requires decompressing the pages that overlap it.
+ * Every encoded page starts with a one byte header that specifies the encoding:
+ * 
+ *     ENCODING_RAW      The values are stored as-is. This is used when neither of the other encodings would be smaller.
+ *     ENCODING_XOR      For float32 values. Each value is XOR'd with the previous value, and only the meaningful bits of the result are stored.
+ *                       This is the "Gorilla" encoding, which works well for slowly changing signals because consecutive floats share their sign, exponent and upper mantissa bits.
+ *     ENCODING_DELTA    For integer values. Each frame of FRAME_SIZE values stores its first value, then the zigzag encoded differences between consecutive values,
+ *                       bit-packed at the smallest width that fits every difference in that frame. Differences wrap around at the width of the type.
+ */
+public class SampleCodec {
+	
+	public static final byte ENCODING_RAW   = 0;
+	public static final byte ENCODING_XOR   = 1;
+	public static final byte ENCODING_DELTA = 2;
+	
+	private static final int FRAME_SIZE = 1024;
+	
+	/**
+	 * @param count    Number of values in a page.
+	 * @return         Size of a buffer that can hold any encoded page, in bytes.
+	 */
+	public static int getMaxEncodedSize(int count) {
+		
+		// worst case for XOR is 44 bits per value, worst case for RAW is 32 bits per value
+		return 1 + (count * 44 + 7) / 8 + 8;
+		
+	}
+	
+	/**
+	 * Encodes a page of values.
+	 * 
+	 * @param values         The values, at their native width and in native byte order. Absolute gets are used, so the position is ignored.
+	 * @param type           How the values are stored.
+	 * @param count          Number of values.
+	 * @param destination    Where the encoded page will be written. It must hold at least getMaxEncodedSize(count) bytes.
+	 * @return               Number of bytes written to destination.
+	 */
+	public static int encode(ByteBuffer values, StorageFloats.Type type, int count, byte[] destination) {
+		
+		int rawByteCount = count * type.byteCount;
+		
+		BitWriter writer = new BitWriter(destination, 1);
+		if(type == StorageFloats.Type.FLOAT32) {
+			destination[0] = ENCODING_XOR;
+			encodeXor(values, count, writer);
+		} else {
+			destination[0] = ENCODING_DELTA;
+			encodeDelta(values, type, count, writer);
+		}
+		int byteCount = writer.finish();
+		
+		// fall back to storing the values as-is if they did not compress
+		if(byteCount >= 1 + rawByteCount) {
+			destination[0] = ENCODING_RAW;
+			ByteBuffer source = values.duplicate();
+			source.clear();
+			source.get(destination, 1, rawByteCount);
+			byteCount = 1 + rawByteCount;
+		}
+		
+		return byteCount;
+		
+	}
+	
+	/**
+	 * Decodes a page of values.
+	 * 
+	 * @param encoded        The encoded page, from its current position to its limit. An empty buffer leaves destination unchanged.
+	 * @param type           How the values are stored.
+	 * @param count          Number of values.
+	 * @param destination    Where the values will be written, at their native width. Absolute puts are used, so the position is ignored.
+	 */
+	public static void decode(ByteBuffer encoded, StorageFloats.Type type, int count, ByteBuffer destination) {
+		
+		if(!encoded.hasRemaining())
+			return;
+		
+		byte encoding = encoded.get();
+		if(encoding == ENCODING_RAW) {
+			ByteBuffer target = destination.duplicate();
+			target.clear();
+			encoded.limit(Integer.min(encoded.limit(), encoded.position() + count * type.byteCount));
+			target.put(encoded);
+		} else if(encoding == ENCODING_XOR) {
+			decodeXor(new BitReader(encoded), count, destination);
+		} else {
+			decodeDelta(new BitReader(encoded), type, count, destination);
+		}
+		
+	}
+	
+	private static int getRaw(ByteBuffer values, StorageFloats.Type type, int index) {
+		
+		switch(type) {
+			case UINT8:  return values.get(index) & 0xFF;
+			case UINT16: return values.getShort(index * 2) & 0xFFFF;
+			case INT16:  return values.getShort(index * 2);
+			default:     return values.getInt(index * 4);
+		}
+		
+	}
+	
+	private static void putRaw(ByteBuffer values, StorageFloats.Type type, int index, int raw) {
+		
+		switch(type) {
+			case UINT8:  values.put(index, (byte) raw);             break;
+			case UINT16:
+			case INT16:  values.putShort(index * 2, (short) raw);   break;
+			default:     values.putInt(index * 4, raw);             break;
+		}
+		
+	}
+	
+	private static void encodeXor(ByteBuffer values, int count, BitWriter writer) {
+		
+		int previous = values.getInt(0);
+		writer.write(previous, 32);
+		int previousLeading = -1;
+		int previousTrailing = 0;
+		
+		for(int i = 1; i < count; i++) {
+			int value = values.getInt(i * 4);
+			int xor = value ^ previous;
+			previous = value;
+			if(xor == 0) {
+				// same as the previous value
+				writer.write(0, 1);
+				continue;
+			}
+			int leading  = Integer.numberOfLeadingZeros(xor);
+			int trailing = Integer.numberOfTrailingZeros(xor);
+			if(previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+				// meaningful bits fit in the previous window
+				writer.write(0b10, 2);
+				writer.write(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+			} else {
+				// new window
+				int meaningful = 32 - leading - trailing;
+				writer.write(0b11, 2);
+				writer.write(leading, 5);
+				writer.write(meaningful - 1, 5);
+				writer.write(xor >>> trailing, meaningful);
+				previousLeading = leading;
+				previousTrailing = trailing;
+			}
+		}
+		
+	}
+	
+	private static void decodeXor(BitReader reader, int count, ByteBuffer destination) {
+		
+		int previous = reader.read(32);
+		destination.putInt(0, previous);
+		int leading = 0;
+		int trailing = 0;
+		
+		for(int i = 1; i < count; i++) {
+			if(reader.read(1) == 1) {
+				if(reader.read(1) == 1) {
+					leading  = reader.read(5);
+					trailing = 32 - leading - (reader.read(5) + 1);
+				}
+				previous ^= reader.read(32 - leading - trailing) << trailing;
+			}
+			destination.putInt(i * 4, previous);
+		}
+		
+	}
+	
+	private static void encodeDelta(ByteBuffer values, StorageFloats.Type type, int count, BitWriter writer) {
+		
+		// differences wrap around at the width of the type, so a uint8 counter going from 255 to 0 is a difference of +1
+		int shift = 32 - 8 * type.byteCount;
+		
+		for(int frameStart = 0; frameStart < count; frameStart += FRAME_SIZE) {
+			int frameEnd = Integer.min(count, frameStart + FRAME_SIZE);
+			
+			// find the width needed by the largest difference in this frame
+			int first = getRaw(values, type, frameStart);
+			int previous = first;
+			int allBits = 0;
+			for(int i = frameStart + 1; i < frameEnd; i++) {
+				int value = getRaw(values, type, i);
+				int delta = ((value - previous) << shift) >> shift;
+				allBits |= (delta << 1) ^ (delta >> 31);
+				previous = value;
+			}
+			int width = 32 - Integer.numberOfLeadingZeros(allBits);
+			
+			writer.write(first, 32);
+			writer.write(width, 6);
+			previous = first;
+			for(int i = frameStart + 1; i < frameEnd; i++) {
+				int value = getRaw(values, type, i);
+				int delta = ((value - previous) << shift) >> shift;
+				writer.write((delta << 1) ^ (delta >> 31), width);
+				previous = value;
+			}
+		}
+		
+	}
+	
+	private static void decodeDelta(BitReader reader, StorageFloats.Type type, int count, ByteBuffer destination) {
+		
+		for(int frameStart = 0; frameStart < count; frameStart += FRAME_SIZE) {
+			int frameEnd = Integer.min(count, frameStart + FRAME_SIZE);
+			
+			int value = reader.read(32);
+			int width = reader.read(6);
+			putRaw(destination, type, frameStart, value);
+			for(int i = frameStart + 1; i < frameEnd; i++) {
+				int zigzag = reader.read(width);
+				value += (zigzag >>> 1) ^ -(zigzag & 1);
+				putRaw(destination, type, i, value);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Writes a stream of bits (most significant bit first) into a byte array.
+	 */
+	private static class BitWriter {
+		
+		private final byte[] bytes;
+		private int byteCount;
+		private long accumulator = 0;
+		private int accumulatedBits = 0;
+		
+		BitWriter(byte[] bytes, int offset) { this.bytes = bytes; this.byteCount = offset; }
+		
+		/**
+		 * @param value    Bits to write, in the least significant bits of this int.
+		 * @param width    Number of bits to write, 0 to 32.
+		 */
+		void write(int value, int width) {
+			
+			accumulator = (accumulator << width) | (value & ((1L << width) - 1));
+			accumulatedBits += width;
+			while(accumulatedBits >= 8) {
+				accumulatedBits -= 8;
+				bytes[byteCount++] = (byte) (accumulator >>> accumulatedBits);
+			}
+			
+		}
+		
+		/**
+		 * Pads the last byte with zeros.
+		 * 
+		 * @return    Number of bytes used, including the offset.
+		 */
+		int finish() {
+			
+			if(accumulatedBits > 0)
+				write(0, 8 - accumulatedBits);
+			return byteCount;
+			
+		}
+		
+	}
+	
+	/**
+	 * Reads a stream of bits (most significant bit first) from a ByteBuffer.
+	 */
+	private static class BitReader {
+		
+		private final ByteBuffer bytes;
+		private long accumulator = 0;
+		private int accumulatedBits = 0;
+		
+		BitReader(ByteBuffer bytes) { this.bytes = bytes; }
+		
+		/**
+		 * @param width    Number of bits to read, 0 to 32.
+		 * @return         The bits, in the least significant bits of this int.
+		 */
+		int read(int width) {
+			
+			while(accumulatedBits < width) {
+				accumulator = (accumulator << 8) | (bytes.hasRemaining() ? bytes.get() & 0xFF : 0);
+				accumulatedBits += 8;
+			}
+			accumulatedBits -= width;
+			return (int) ((accumulator >>> accumulatedBits) & ((1L << width) - 1));
+			
+		}
+		
+	}
+	
+}
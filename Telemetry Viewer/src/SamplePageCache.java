@@ -0,0 +1,209 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * A process-wide cache of samples that have been moved to disk.
+ * 
+ * StorageFloats and StorageTimestamps move older slots to disk. Every chart, exporter and trigger that reads those samples
+ * gets them through this class, so a region that is being shown by several charts is only read from disk once and only held in memory once.
+ * 
+ * Samples are cached in "pages" of PAGE_SIZE values, keyed by (storage object, page number.)
+ * StorageFloats also caches pages that have been converted to floats, so charts can share them instead of each holding a copy.
+ * A page is reference counted while it is being read from, and pages that are not in use are evicted (least recently used first) to stay under MEMORY_CAP_BYTES.
+ * Slots are never modified after they have been moved to disk (and complete pages are never modified in memory), so a cached page only becomes stale when its storage object is cleared or disposed.
+ */
+public class SamplePageCache {
+	
+	public static final int PAGE_SIZE = 65536; // 64K values, must evenly divide the slot size
+	public static final long MEMORY_CAP_BYTES = 256L * 1024L * 1024L; // 256MB
+	
+	private static final Map<Key, Page> pages = new LinkedHashMap<Key, Page>(16, 0.75f, true); // in least recently used order
+	private static long usedBytes = 0;
+	
+	/**
+	 * Fills a page with values from disk, for storage objects that do not store their values as-is.
+	 */
+	public interface PageReader {
+		
+		/**
+		 * @param pageN          Which page to read.
+		 * @param destination    Where the values must be written. Its byte order is the page's byte order.
+		 */
+		public void read(int pageN, ByteBuffer destination) throws IOException;
+		
+	}
+	
+	/**
+	 * Gets a page of values from the cache, reading it from disk if necessary.
+	 * The page MUST be released with release() when done reading from it.
+	 * 
+	 * @param owner              The storage object that owns the file.
+	 * @param file               The file to read from if the page is not cached. The values are stored as-is, with page N at byte offset headerByteCount + N * PAGE_SIZE * bytesPerValue.
+	 * @param headerByteCount    Size of the file's header, in bytes.
+	 * @param bytesPerValue      Size of each value, in bytes.
+	 * @param pageN              Which page to get. The page MUST be entirely on disk.
+	 * @return                   The page.
+	 */
+	public static Page acquire(Object owner, FileChannel file, int headerByteCount, int bytesPerValue, int pageN) {
+		
+		return acquire(owner, bytesPerValue, pageN, (n, destination) -> {
+			long offset = headerByteCount + (long) n * (long) PAGE_SIZE * (long) bytesPerValue;
+			while(destination.hasRemaining())
+				if(file.read(destination, offset + destination.position()) < 0)
+					throw new EOFException("The cache file is incomplete.");
+		});
+		
+	}
+	
+	/**
+	 * Gets a page of values from the cache, reading it with a PageReader if necessary.
+	 * The page MUST be released with release() when done reading from it.
+	 * 
+	 * @param owner            The storage object that owns the file.
+	 * @param bytesPerValue    Size of each value, in bytes.
+	 * @param pageN            Which page to get. The page MUST be complete, so its values never change.
+	 * @param reader           Reads the page if it is not cached.
+	 * @return                 The page.
+	 */
+	public static Page acquire(Object owner, int bytesPerValue, int pageN, PageReader reader) {
+		
+		Page page;
+		Key key = new Key(owner, pageN);
+		
+		synchronized(pages) {
+			page = pages.get(key);
+			if(page == null) {
+				int byteCount = PAGE_SIZE * bytesPerValue;
+				ByteBuffer buffer = evict(byteCount);
+				if(buffer == null)
+					buffer = Buffers.newDirectByteBuffer(byteCount);
+				page = new Page(key, buffer);
+				pages.put(key, page);
+				usedBytes += byteCount;
+			}
+			page.referenceCount++;
+		}
+		
+		// read outside of the lock, so other threads can use other pages in the meantime
+		synchronized(page) {
+			if(!page.loaded) {
+				try {
+					reader.read(pageN, page.bytes.duplicate().order(page.bytes.order()));
+					page.loaded = true;
+				} catch (IOException e) {
+					NotificationsController.showCriticalFault("Error while reading values from a cache file.");
+					e.printStackTrace();
+					// don't keep the incomplete page, so it will be read again next time
+					synchronized(pages) {
+						if(pages.remove(key, page))
+							usedBytes -= page.bytes.capacity();
+					}
+				}
+			}
+		}
+		
+		return page;
+		
+	}
+	
+	/**
+	 * Indicates that a page is no longer being read from, so it may be evicted.
+	 * 
+	 * @param page    Page that was obtained from acquire().
+	 */
+	public static void release(Page page) {
+		
+		synchronized(pages) {
+			page.referenceCount--;
+			if(usedBytes > MEMORY_CAP_BYTES)
+				evict(0);
+		}
+		
+	}
+	
+	/**
+	 * Removes all pages belonging to a storage object.
+	 * This must be called when the storage object is cleared or disposed.
+	 * 
+	 * @param owner    The storage object.
+	 */
+	public static void removeAll(Object owner) {
+		
+		synchronized(pages) {
+			Iterator<Page> iterator = pages.values().iterator();
+			while(iterator.hasNext()) {
+				Page page = iterator.next();
+				if(page.key.owner == owner) {
+					iterator.remove();
+					usedBytes -= page.bytes.capacity();
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Evicts unused pages (least recently used first) until there is room for a new page.
+	 * The caller must hold the lock on the pages map.
+	 * 
+	 * @param byteCount    Size of the new page, or 0 if just enforcing the memory cap.
+	 * @return             The buffer of an evicted page of exactly byteCount bytes, which can be reused, or null if none was evicted.
+	 */
+	private static ByteBuffer evict(int byteCount) {
+		
+		ByteBuffer reusable = null;
+		
+		Iterator<Page> iterator = pages.values().iterator();
+		while(usedBytes + byteCount > MEMORY_CAP_BYTES && iterator.hasNext()) {
+			Page page = iterator.next();
+			if(page.referenceCount > 0)
+				continue; // in use
+			iterator.remove();
+			usedBytes -= page.bytes.capacity();
+			if(reusable == null && page.bytes.capacity() == byteCount)
+				reusable = page.bytes;
+		}
+		
+		if(reusable != null)
+			reusable.clear();
+		return reusable;
+		
+	}
+	
+	private static class Key {
+		
+		final Object owner;
+		final int pageN;
+		
+		Key(Object owner, int pageN) { this.owner = owner; this.pageN = pageN; }
+		
+		@Override public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).owner == owner && ((Key) other).pageN == pageN;
+		}
+		
+		@Override public int hashCode() {
+			return System.identityHashCode(owner) * 31 + pageN;
+		}
+		
+	}
+	
+	public static class Page {
+		
+		private final Key key;
+		private volatile boolean loaded = false;
+		private int referenceCount = 0; // guarded by the lock on the pages map
+		
+		/** The values, as raw bytes. Use duplicate() or absolute get()s, because several threads may read from a page at the same time. */
+		public final ByteBuffer bytes;
+		
+		private Page(Key key, ByteBuffer bytes) { this.key = key; this.bytes = bytes; }
+		
+	}
+	
+}
@@ -0,0 +1,950 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Makes the samples of a ConnectionTelemetry durable, so a session can be reopened after the program exits, and recovered after a crash or power loss.
+ * 
+ * Each run of the program records into a new session directory inside the cache directory. It contains:
+ *     session.tvs                     A settings file (data structures, charts, etc.) that is kept up to date while recording.
+ *     connection N journal.bin        An append-only journal for each connection.
+ *     StorageFloats@*.bin             The files used by StorageFloats and StorageTimestamps. They start with a header, and are no longer deleted when the program exits.
+ *     StorageTimestamps@*.bin
+ *     connection N tail S.bin         Samples of slot S that are still only in memory.
+ * 
+ * The journal is a sequence of records, each prefixed with its length and CRC32, so a record that was only partially written before a crash is detected and ignored:
+ *     STORAGE records identify the file used by the timestamps and by each dataset.
+ *     SLOT records contain the page index and block summaries of a slot, once that slot has been moved to disk by the timestamps and every dataset.
+ *     CHECKPOINT records mark the end of a checkpoint, and where the connection is in the settings file.
+ *     CLOSED records are written when the program exits normally.
+ * 
+ * A background thread makes a checkpoint for each connection every CHECKPOINT_INTERVAL_MILLISECONDS:
+ *     SLOT records are appended for any slots that have been moved to disk, and the journal is forced to disk. Tail files for those slots are then deleted.
+ *     Samples that are still only in memory are appended to the tail files, and forced to disk.
+ * A session can then be reopened (or recovered after a crash, up to the last checkpoint) without re-parsing anything:
+ * the slots are restored from their index, and only the samples in the (at most three) tail files are replayed.
+ * 
+ * Old sessions are deleted when the program starts: sessions are kept (newest first) until there are MAX_KEPT_SESSIONS of them or they occupy MAX_KEPT_BYTES,
+ * then any older sessions that were closed normally are deleted. Interrupted sessions are never deleted automatically.
+ */
+public class SessionJournal {
+	
+	public static final long CHECKPOINT_INTERVAL_MILLISECONDS = 2000;
+	public static final String SESSION_FILE_NAME = "session.tvs";
+	public static final int MAX_KEPT_SESSIONS = 10;
+	public static final long MAX_KEPT_BYTES = 10L * 1024 * 1024 * 1024; // 10GB
+	
+	private static final int JOURNAL_MAGIC = 0x5456534A; // "TVSJ"
+	private static final int JOURNAL_VERSION = 1;
+	private static final int JOURNAL_HEADER_SIZE = 8;
+	private static final byte STORAGE    = 1;
+	private static final byte SLOT       = 2;
+	private static final byte CHECKPOINT = 3;
+	private static final byte CLOSED     = 4;
+	private static final byte TAIL       = 5;
+	private static final int TIMESTAMPS_LOCATION = -1; // STORAGE records use this location for the timestamps
+	private static final int MAX_TAIL_RECORD_SAMPLE_COUNT = SamplePageCache.PAGE_SIZE;
+	
+	private static final Path cacheDirectory = Paths.get("cache");
+	private static volatile Path directory = null;
+	private static volatile Thread restoreThread = null; // non-null while a reopened session is being restored
+	private static volatile boolean restoreCanceled = false; // not an interrupt, because that would close the FileChannels being used
+	private static final Thread checkpointThread;
+	static {
+		checkpointThread = new Thread(() -> {
+			while(true) {
+				try {
+					Thread.sleep(CHECKPOINT_INTERVAL_MILLISECONDS);
+				} catch(InterruptedException e) {
+					return;
+				}
+				checkpointAll();
+			}
+		});
+		checkpointThread.setPriority(Thread.MIN_PRIORITY);
+		checkpointThread.setName("Session Journal Thread");
+		checkpointThread.setDaemon(true);
+		checkpointThread.start();
+	}
+	
+	private final ConnectionTelemetry connection;
+	private Path journalPath = null; // null until something needs to be recorded
+	private FileChannel journal;
+	private long journalLength;
+	private final Map<Integer, String> recordedStorages = new HashMap<Integer, String>(); // keys are locations, values are file names
+	private final Map<Integer, FileChannel> tailFiles = new HashMap<Integer, FileChannel>(); // keys are slot numbers
+	private int durableSlotCount = 0;
+	private int firstTailSlotN = 0; // tail files below this slot have been deleted
+	private long tailedSampleCount = 0;
+	private int recordedConnectionN = -1;
+	private boolean restored = false;
+	
+	/**
+	 * Prepares, but does not create, a journal for a connection. The journal is created once the connection has samples.
+	 * 
+	 * @param connection    The connection.
+	 */
+	public SessionJournal(ConnectionTelemetry connection) {
+		
+		this.connection = connection;
+		
+	}
+	
+	/**
+	 * @return    The directory where the current session is being recorded. It is created if necessary.
+	 */
+	public static Path getDirectory() {
+		
+		if(directory == null) {
+			synchronized(SessionJournal.class) {
+				if(directory == null)
+					directory = createSessionDirectory();
+			}
+		}
+		
+		return directory;
+		
+	}
+	
+	/**
+	 * Creates a new, empty, session directory.
+	 * 
+	 * @return    The directory.
+	 */
+	private static Path createSessionDirectory() {
+		
+		String name = "session " + new SimpleDateFormat("yyyy-MM-dd HH.mm.ss").format(new Date());
+		Path path = cacheDirectory.resolve(name);
+		for(int i = 2; Files.exists(path); i++)
+			path = cacheDirectory.resolve(name + " (" + i + ")");
+		
+		try {
+			Files.createDirectories(path);
+		} catch(IOException e) {
+			NotificationsController.showCriticalFault("Unable to create the session directory at \"" + path.toString() + "\"");
+			e.printStackTrace();
+		}
+		
+		return path;
+		
+	}
+	
+	/**
+	 * Makes a checkpoint for every connection, and updates the session's settings file if anything has been recorded.
+	 */
+	private static void checkpointAll() {
+		
+		boolean recorded = false;
+		for(ConnectionTelemetry connection : new ArrayList<ConnectionTelemetry>(ConnectionsController.telemetryConnections))
+			if(connection.journal.checkpoint())
+				recorded = true;
+		
+		if(recorded)
+			saveSettings();
+		
+	}
+	
+	/**
+	 * Writes the current settings to the session's settings file, if they have changed.
+	 * A temporary file is moved over the settings file, so it is never left partially written.
+	 */
+	private static void saveSettings() {
+		
+		Path sessionFile = getDirectory().resolve(SESSION_FILE_NAME);
+		Path temporaryFile = getDirectory().resolve(SESSION_FILE_NAME + ".tmp");
+		try {
+			ConnectionsController.exportSettingsFile(temporaryFile.toString());
+			if(Files.exists(sessionFile) && Arrays.equals(Files.readAllBytes(sessionFile), Files.readAllBytes(temporaryFile)))
+				Files.delete(temporaryFile);
+			else
+				Files.move(temporaryFile, sessionFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(Exception e) {
+			// the settings may have been changing, try again during the next checkpoint
+		}
+		
+	}
+	
+	/**
+	 * Records any new slots and samples for this connection.
+	 * 
+	 * @return    True if the connection has samples.
+	 */
+	private synchronized boolean checkpoint() {
+		
+		long sampleCount = connection.getSampleCount();
+		int connectionN = ConnectionsController.allConnections.indexOf(connection);
+		if(sampleCount == 0 || connectionN < 0 || connection.mode == ConnectionTelemetry.Mode.STRESS_TEST)
+			return false;
+		
+		DatasetsController datasets = connection.datasets;
+		List<Dataset> list = datasets.getList();
+		
+		try {
+			
+			if(journalPath == null)
+				createJournal();
+			
+			boolean journalChanged = false;
+			
+			// identify the files
+			if(!datasets.timestamps.getFileName().equals(recordedStorages.get(TIMESTAMPS_LOCATION))) {
+				appendStorageRecord(TIMESTAMPS_LOCATION, datasets.timestamps.getFileName());
+				journalChanged = true;
+			}
+			for(Dataset dataset : list) {
+				if(!dataset.floats.getFileName().equals(recordedStorages.get(dataset.location))) {
+					appendStorageRecord(dataset.location, dataset.floats.getFileName());
+					journalChanged = true;
+				}
+			}
+			
+			// index any slots that have been moved to disk by the timestamps and every dataset
+			while((long) (durableSlotCount + 1) * StorageFloats.SLOT_SIZE <= sampleCount) {
+				int slotN = durableSlotCount;
+				boolean onDisk = datasets.timestamps.isSlotOnDisk(slotN);
+				for(Dataset dataset : list)
+					if(!dataset.floats.isSlotOnDisk(slotN))
+						onDisk = false;
+				if(!onDisk)
+					break;
+				
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(SLOT);
+				out.writeInt(slotN);
+				datasets.timestamps.writeSlotIndex(slotN, out);
+				out.writeInt(list.size());
+				for(Dataset dataset : list) {
+					out.writeInt(dataset.location);
+					dataset.floats.writeSlotIndex(slotN, out);
+				}
+				appendRecord(journal, journalLength, bytes.toByteArray());
+				journalLength += 8 + bytes.size();
+				durableSlotCount++;
+				journalChanged = true;
+			}
+			
+			if(journalChanged) {
+				journal.force(true);
+				
+				// tail files for those slots are no longer needed
+				for(Integer slotN : new ArrayList<Integer>(tailFiles.keySet()))
+					if(slotN < durableSlotCount)
+						tailFiles.remove(slotN).close();
+				for(; firstTailSlotN < durableSlotCount; firstTailSlotN++)
+					Files.deleteIfExists(getTailPath(firstTailSlotN));
+			}
+			
+			// append any samples that are still only in memory to the tail files
+			long firstSampleNumber = Long.max(tailedSampleCount, (long) durableSlotCount * StorageFloats.SLOT_SIZE);
+			boolean tailsChanged = false;
+			List<FileChannel> changedTailFiles = new ArrayList<FileChannel>();
+			while(firstSampleNumber < sampleCount) {
+				int slotN = (int) (firstSampleNumber / StorageFloats.SLOT_SIZE);
+				long endOfSlot = (long) (slotN + 1) * StorageFloats.SLOT_SIZE;
+				int count = (int) Long.min(Long.min(sampleCount, endOfSlot) - firstSampleNumber, MAX_TAIL_RECORD_SAMPLE_COUNT);
+				
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(TAIL);
+				out.writeLong(firstSampleNumber);
+				out.writeInt(count);
+				boolean inMemory = datasets.timestamps.writeRawTimestamps(firstSampleNumber, count, out);
+				out.writeInt(list.size());
+				for(Dataset dataset : list) {
+					out.writeInt(dataset.location);
+					inMemory &= dataset.floats.writeRawValues(firstSampleNumber, count, out);
+				}
+				if(!inMemory)
+					break; // the slot was moved to disk in the meantime, so it will be indexed during the next checkpoint
+				
+				FileChannel tail = tailFiles.get(slotN);
+				if(tail == null) {
+					tail = FileChannel.open(getTailPath(slotN), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					tailFiles.put(slotN, tail);
+				}
+				appendRecord(tail, tail.size(), bytes.toByteArray());
+				if(!changedTailFiles.contains(tail))
+					changedTailFiles.add(tail);
+				
+				firstSampleNumber += count;
+				tailedSampleCount = firstSampleNumber;
+				tailsChanged = true;
+			}
+			for(FileChannel tail : changedTailFiles)
+				tail.force(true);
+			
+			// mark the end of the checkpoint
+			if(journalChanged || tailsChanged || connectionN != recordedConnectionN) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(CHECKPOINT);
+				out.writeInt(connectionN);
+				out.writeLong(tailedSampleCount);
+				appendRecord(journal, journalLength, bytes.toByteArray());
+				journalLength += 8 + bytes.size();
+				journal.force(true);
+				recordedConnectionN = connectionN;
+			}
+		
+		} catch(IOException e) {
+			NotificationsController.showCriticalFault("Error while writing the session journal at \"" + journalPath + "\"");
+			e.printStackTrace();
+		}
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Creates the journal file in the current session directory, and writes its header.
+	 */
+	private void createJournal() throws IOException {
+		
+		for(int id = 0; journalPath == null; id++) {
+			Path path = getDirectory().resolve("connection " + id + " journal.bin");
+			if(Files.exists(path))
+				continue;
+			journal = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			journalPath = path;
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+		header.putInt(JOURNAL_MAGIC).putInt(JOURNAL_VERSION).flip();
+		while(header.hasRemaining())
+			journal.write(header, header.position());
+		journalLength = JOURNAL_HEADER_SIZE;
+		
+	}
+	
+	/**
+	 * Appends a STORAGE record to the journal.
+	 * 
+	 * @param location    Dataset location, or TIMESTAMPS_LOCATION.
+	 * @param fileName    Name of the file, relative to the session directory.
+	 */
+	private void appendStorageRecord(int location, String fileName) throws IOException {
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(STORAGE);
+		out.writeInt(location);
+		out.writeUTF(fileName);
+		appendRecord(journal, journalLength, bytes.toByteArray());
+		journalLength += 8 + bytes.size();
+		recordedStorages.put(location, fileName);
+		
+	}
+	
+	/**
+	 * @param slotN    Slot number.
+	 * @return         Path of the tail file for that slot.
+	 */
+	private Path getTailPath(int slotN) {
+		
+		String journalName = journalPath.getFileName().toString();
+		return journalPath.resolveSibling(journalName.replace(" journal.bin", " tail " + slotN + ".bin"));
+		
+	}
+	
+	/**
+	 * Writes a record: its length, its CRC32, then its contents.
+	 * 
+	 * @param file        File to write to.
+	 * @param position    Where to write the record.
+	 * @param record      Contents of the record, starting with its type.
+	 */
+	private static void appendRecord(FileChannel file, long position, byte[] record) throws IOException {
+		
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length);
+		ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+		buffer.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+		while(buffer.hasRemaining())
+			file.write(buffer, position + buffer.position());
+		
+	}
+	
+	/**
+	 * Reads the records from a journal or tail file, stopping at the end of the file or at the first record that is incomplete or corrupt.
+	 * 
+	 * @param in         Stream positioned at the first record.
+	 * @param handler    Called with each record. It may stop the reading by returning false.
+	 * @return           Number of bytes occupied by the records that were read.
+	 */
+	private static long readRecords(InputStream in, RecordHandler handler) throws IOException {
+		
+		DataInputStream stream = new DataInputStream(in);
+		long length = 0;
+		while(true) {
+			byte[] record;
+			try {
+				int recordLength = stream.readInt();
+				int recordCrc = stream.readInt();
+				if(recordLength < 1)
+					return length;
+				record = new byte[recordLength];
+				stream.readFully(record);
+				CRC32 crc = new CRC32();
+				crc.update(record, 0, record.length);
+				if((int) crc.getValue() != recordCrc)
+					return length;
+			} catch(EOFException e) {
+				return length;
+			}
+			if(!handler.handle(record[0], new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1))))
+				return length;
+			length += 8 + record.length;
+		}
+		
+	}
+	
+	private interface RecordHandler {
+		
+		/**
+		 * @param type    Record type.
+		 * @param in      Contents of the record, after its type.
+		 * @return        True to continue reading records, or false to stop.
+		 */
+		public boolean handle(byte type, DataInputStream in) throws IOException;
+		
+	}
+	
+	/**
+	 * Summary of a journal, from readJournal().
+	 */
+	private static class JournalInfo {
+		
+		int connectionN = -1;
+		long sampleCount = 0;
+		boolean closed = false;
+		long length = JOURNAL_HEADER_SIZE; // bytes occupied by the header and the valid records
+		
+	}
+	
+	/**
+	 * Reads the CHECKPOINT and CLOSED records of a journal.
+	 * 
+	 * @param path    The journal.
+	 * @return        Summary of the journal, or null if it is not a journal.
+	 */
+	private static JournalInfo readJournal(Path path) {
+		
+		JournalInfo info = new JournalInfo();
+		try(InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+			DataInputStream header = new DataInputStream(in);
+			if(header.readInt() != JOURNAL_MAGIC || header.readInt() != JOURNAL_VERSION)
+				return null;
+			info.length += readRecords(in, (type, record) -> {
+				if(type == CHECKPOINT) {
+					info.connectionN = record.readInt();
+					info.sampleCount = record.readLong();
+				}
+				info.closed = (type == CLOSED);
+				return true;
+			});
+		} catch(IOException e) {
+			return null;
+		}
+		return info;
+		
+	}
+	
+	/**
+	 * @param sessionDirectory    A session directory.
+	 * @return                    The journals in that directory.
+	 */
+	private static List<Path> getJournals(Path sessionDirectory) {
+		
+		List<Path> journals = new ArrayList<Path>();
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(sessionDirectory, "connection * journal.bin")) {
+			files.forEach(journals::add);
+		} catch(IOException e) {
+			// no journals
+		}
+		return journals;
+		
+	}
+	
+	/**
+	 * Asks the user if the most recent interrupted session (one that has samples, but was not closed normally) should be recovered.
+	 * If the user declines, the session is marked as closed so the user will not be asked again. It can still be reopened by opening its session.tvs file.
+	 * Old sessions are then deleted.
+	 */
+	public static void offerRecovery() {
+		
+		for(Path session : getSessions()) {
+			if(isCurrentSession(session) || !Files.exists(session.resolve(SESSION_FILE_NAME)))
+				continue;
+			
+			long sampleCount = 0;
+			boolean interrupted = false;
+			Map<Path, JournalInfo> journals = new HashMap<Path, JournalInfo>();
+			for(Path journal : getJournals(session)) {
+				JournalInfo info = readJournal(journal);
+				if(info != null)
+					journals.put(journal, info);
+				if(info != null && info.sampleCount > 0) {
+					sampleCount += info.sampleCount;
+					interrupted |= !info.closed;
+				}
+			}
+			if(!interrupted)
+				continue;
+			
+			int result = JOptionPane.showConfirmDialog(Main.window, "The previous session (\"" + session.getFileName() + "\") was interrupted.\n" + sampleCount + " samples can be recovered. Recover them now?", "Recover Session", JOptionPane.YES_NO_OPTION);
+			if(result == JOptionPane.YES_OPTION) {
+				openSession(session);
+			} else {
+				// any incomplete record left by the crash is removed first, otherwise it would hide the CLOSED record
+				for(Map.Entry<Path, JournalInfo> journal : journals.entrySet()) {
+					try(FileChannel file = FileChannel.open(journal.getKey(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+						long length = journal.getValue().length;
+						file.truncate(length);
+						appendRecord(file, length, new byte[] {CLOSED});
+						file.force(true);
+					} catch(IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+			break;
+		}
+		
+		pruneSessions();
+		
+	}
+	
+	/**
+	 * Deletes the oldest sessions that were closed normally, so the cache directory does not grow forever.
+	 * Sessions are kept (newest first) until there are MAX_KEPT_SESSIONS of them or they occupy MAX_KEPT_BYTES.
+	 * The current session and interrupted sessions are always kept, but they still count towards those limits.
+	 */
+	private static void pruneSessions() {
+		
+		int keptCount = 0;
+		long keptByteCount = 0;
+		boolean limitReached = false;
+		int deletedCount = 0;
+		
+		for(Path session : getSessions()) {
+			boolean interrupted = false;
+			for(Path journal : getJournals(session)) {
+				JournalInfo info = readJournal(journal);
+				if(info != null && info.sampleCount > 0 && !info.closed)
+					interrupted = true;
+			}
+			long byteCount = 0;
+			try(DirectoryStream<Path> files = Files.newDirectoryStream(session)) {
+				for(Path file : files)
+					byteCount += Files.size(file);
+			} catch(IOException e) {
+				// count what could be read
+			}
+			
+			limitReached |= keptCount >= MAX_KEPT_SESSIONS || keptByteCount + byteCount > MAX_KEPT_BYTES;
+			if(isCurrentSession(session) || interrupted || !limitReached) {
+				keptCount++;
+				keptByteCount += byteCount;
+			} else {
+				deleteSession(session);
+				deletedCount++;
+			}
+		}
+		
+		if(deletedCount > 0)
+			NotificationsController.showDebugMessage("Deleted " + deletedCount + " old session" + (deletedCount == 1 ? "." : "s."));
+		
+	}
+	
+	/**
+	 * @return    The session directories, newest first.
+	 */
+	private static List<Path> getSessions() {
+		
+		List<Path> sessions = new ArrayList<Path>();
+		try(DirectoryStream<Path> directories = Files.newDirectoryStream(cacheDirectory, "session *")) {
+			directories.forEach(sessions::add);
+		} catch(IOException e) {
+			// no sessions
+		}
+		Collections.sort(sessions);
+		Collections.reverse(sessions);
+		return sessions;
+		
+	}
+	
+	/**
+	 * @param sessionDirectory    A session directory.
+	 * @return                    True if it is the directory where the current session is being recorded.
+	 */
+	private static boolean isCurrentSession(Path sessionDirectory) {
+		
+		return directory != null && sessionDirectory.toAbsolutePath().normalize().equals(directory.toAbsolutePath().normalize());
+		
+	}
+	
+	/**
+	 * Deletes a session directory and its files. Files that are still open are left behind.
+	 * 
+	 * @param sessionDirectory    The session directory.
+	 */
+	private static void deleteSession(Path sessionDirectory) {
+		
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(sessionDirectory)) {
+			for(Path file : files)
+				Files.deleteIfExists(file);
+			Files.deleteIfExists(sessionDirectory);
+		} catch(IOException e) {
+			// the files may still be open, leave them
+		}
+		
+	}
+	
+	/**
+	 * Reopens a session: its settings file is imported, then the samples of each connection are restored from its journal.
+	 * The reopened session becomes the current session, so any new samples will be appended to it.
+	 * 
+	 * @param sessionDirectory    The session directory.
+	 */
+	public static void openSession(Path sessionDirectory) {
+		
+		Path previousDirectory = getDirectory();
+		if(isCurrentSession(sessionDirectory)) {
+			NotificationsController.showFailureForMilliseconds("That session is already open.", 5000, true);
+			return;
+		}
+		
+		// the reopened session becomes the current session, so the connections created by the settings file will use it
+		ConnectionsController.removeAllConnections();
+		directory = sessionDirectory;
+		if(!ConnectionsController.importSettingsFile(sessionDirectory.resolve(SESSION_FILE_NAME).toString(), false)) {
+			directory = previousDirectory;
+			ConnectionsController.removeAllConnections();
+			ConnectionsController.addConnection(new ConnectionTelemetry());
+			return;
+		}
+		
+		// the previous session is removed if nothing was recorded into it
+		if(getJournals(previousDirectory).isEmpty())
+			deleteSession(previousDirectory);
+		
+		// restoring a large session can take a while, so it is done by another thread, and importing/connecting is prohibited until it finishes
+		List<Path> journals = getJournals(sessionDirectory);
+		ConnectionsController.importing = true;
+		ConnectionsController.realtimeImporting = false;
+		CommunicationView.instance.redraw();
+		AtomicLong completedJournalCount = NotificationsController.showProgressBar("Reopening session...", Math.max(1, journals.size()));
+		
+		restoreThread = new Thread(() -> {
+			
+			long sampleCount = 0;
+			for(Path journal : journals) {
+				if(restoreCanceled)
+					break; // the program is exiting
+				JournalInfo info = readJournal(journal);
+				completedJournalCount.incrementAndGet();
+				if(info == null || info.connectionN < 0 || info.connectionN >= ConnectionsController.allConnections.size())
+					continue;
+				Connection connection = ConnectionsController.allConnections.get(info.connectionN);
+				if(!(connection instanceof ConnectionTelemetry))
+					continue;
+				ConnectionTelemetry telemetry = (ConnectionTelemetry) connection;
+				try {
+					synchronized(telemetry.journal) {
+						telemetry.journal.restore(journal);
+					}
+					sampleCount += telemetry.getSampleCount();
+				} catch(IOException e) {
+					NotificationsController.showFailureForMilliseconds("Unable to restore the samples of " + telemetry.name + " from \"" + journal.getFileName() + "\":\n" + e.getMessage(), 5000, true);
+					e.printStackTrace();
+				}
+			}
+			
+			ConnectionsController.previouslyImported = true;
+			ConnectionsController.importing = false;
+			CommunicationView.instance.redraw();
+			completedJournalCount.set(Math.max(1, journals.size())); // to ensure it gets marked done
+			NotificationsController.showDebugMessage("Reopened session \"" + sessionDirectory.getFileName() + "\" with " + sampleCount + " samples.");
+			restoreThread = null;
+			
+		});
+		restoreThread.setName("Session Restore Thread");
+		restoreThread.start();
+		
+	}
+	
+	/**
+	 * Restores the samples of this connection from a journal. The connection's datasets MUST match the data structure of the journal,
+	 * and this connection MUST NOT have any samples yet.
+	 * This journal then continues to be used, so any new samples are appended to the reopened session.
+	 * 
+	 * @param path    The journal.
+	 */
+	private void restore(Path path) throws IOException {
+		
+		DatasetsController datasets = connection.datasets;
+		Path sessionDirectory = path.getParent();
+		Map<Integer, String> storages = new HashMap<Integer, String>();
+		List<Dataset> list = datasets.getList();
+		int[] slotCount = new int[1];
+		
+		// restore the slots from the journal
+		long length;
+		try(InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+			
+			new DataInputStream(in).readFully(new byte[JOURNAL_HEADER_SIZE]);
+			length = JOURNAL_HEADER_SIZE + readRecords(in, (type, record) -> {
+				if(type == STORAGE) {
+					int location = record.readInt();
+					String fileName = record.readUTF();
+					if(slotCount[0] > 0)
+						return !fileName.equals(storages.get(location)) ? false : true; // a file can't be replaced once slots have been restored
+					storages.put(location, fileName);
+				} else if(type == SLOT) {
+					int slotN = record.readInt();
+					if(slotN != slotCount[0])
+						return false;
+					if(slotN == 0) {
+						if(!storages.containsKey(TIMESTAMPS_LOCATION))
+							throw new IOException("The journal does not identify the timestamps file.");
+						datasets.timestamps.restore(sessionDirectory.resolve(storages.get(TIMESTAMPS_LOCATION)));
+						for(Dataset dataset : list) {
+							if(!storages.containsKey(dataset.location))
+								throw new IOException("The journal does not contain samples for " + dataset.name + ".");
+							dataset.floats.restore(sessionDirectory.resolve(storages.get(dataset.location)));
+						}
+					}
+					datasets.timestamps.restoreSlot(slotN, record);
+					int datasetCount = record.readInt();
+					if(datasetCount != list.size())
+						throw new IOException("The journal does not match the data structure.");
+					for(int i = 0; i < datasetCount; i++) {
+						Dataset dataset = datasets.getByLocation(record.readInt());
+						if(dataset == null)
+							throw new IOException("The journal does not match the data structure.");
+						dataset.floats.restoreSlot(slotN, record);
+					}
+					slotCount[0]++;
+				}
+				return true;
+			});
+			
+		}
+		
+		// discard anything after the last valid record, then continue using this journal
+		journal = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		journal.truncate(length);
+		journalPath = path;
+		journalLength = length;
+		
+		// the journal may identify files that were never used by a slot
+		if(slotCount[0] == 0 && storages.containsKey(TIMESTAMPS_LOCATION)) {
+			datasets.timestamps.restore(sessionDirectory.resolve(storages.get(TIMESTAMPS_LOCATION)));
+			for(Dataset dataset : list)
+				if(storages.containsKey(dataset.location))
+					dataset.floats.restore(sessionDirectory.resolve(storages.get(dataset.location)));
+		}
+		
+		durableSlotCount = slotCount[0];
+		firstTailSlotN = durableSlotCount;
+		for(int slotN = Integer.max(0, durableSlotCount - 3); slotN < durableSlotCount; slotN++)
+			Files.deleteIfExists(getTailPath(slotN)); // left behind if a crash occurred right after the slots were indexed
+		long sampleCount = (long) durableSlotCount * StorageFloats.SLOT_SIZE;
+		tailedSampleCount = sampleCount;
+		recordedStorages.clear();
+		recordedStorages.put(TIMESTAMPS_LOCATION, datasets.timestamps.getFileName());
+		for(Dataset dataset : list)
+			recordedStorages.put(dataset.location, dataset.floats.getFileName());
+		datasets.setRestoredSampleCount(sampleCount);
+		for(Dataset dataset : list)
+			dataset.restoreEdges(sampleCount);
+		
+		// replay the tail files, then continue appending to them
+		for(int slotN = durableSlotCount; Files.exists(getTailPath(slotN)); slotN++) {
+			long tailLength;
+			try(InputStream in = new BufferedInputStream(Files.newInputStream(getTailPath(slotN)))) {
+				tailLength = readRecords(in, (type, record) -> {
+					if(type != TAIL || record.readLong() != tailedSampleCount)
+						return false;
+					int count = record.readInt();
+					long[] timestamps = new long[count];
+					for(int i = 0; i < count; i++)
+						timestamps[i] = record.readLong();
+					int datasetCount = record.readInt();
+					if(datasetCount != list.size())
+						return false;
+					Dataset[] tailDatasets = new Dataset[datasetCount];
+					int[][] values = new int[datasetCount][count];
+					for(int datasetN = 0; datasetN < datasetCount; datasetN++) {
+						tailDatasets[datasetN] = datasets.getByLocation(record.readInt());
+						if(tailDatasets[datasetN] == null)
+							return false;
+						for(int i = 0; i < count; i++)
+							values[datasetN][i] = tailDatasets[datasetN].floats.readRawValue(record);
+					}
+					for(int i = 0; i < count; i++) {
+						long sampleNumber = tailedSampleCount + i;
+						for(int datasetN = 0; datasetN < datasetCount; datasetN++) {
+							if(tailDatasets[datasetN].floats.getType() == StorageFloats.Type.FLOAT32)
+								tailDatasets[datasetN].setConvertedSample(sampleNumber, Float.intBitsToFloat(values[datasetN][i]));
+							else
+								tailDatasets[datasetN].setRawSample(sampleNumber, values[datasetN][i]);
+						}
+						datasets.incrementSampleCountWithTimestamp(timestamps[i]);
+					}
+					tailedSampleCount += count;
+					return true;
+				});
+			}
+			FileChannel tail = FileChannel.open(getTailPath(slotN), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			tail.truncate(tailLength);
+			tailFiles.put(slotN, tail);
+			if(tailedSampleCount < (long) (slotN + 1) * StorageFloats.SLOT_SIZE)
+				break; // this tail is incomplete, so later tails (if any) can't be used
+		}
+		
+		recordedConnectionN = -1;
+		restored = true;
+		
+	}
+	
+	/**
+	 * Forgets everything that has been recorded for this connection. This must be called before the samples are cleared, while synchronized on this object.
+	 * A reopened session is left intact: a new session is started instead.
+	 */
+	public synchronized void reset() {
+		
+		if(journalPath == null)
+			return;
+		
+		closeFiles();
+		try {
+			if(restored) {
+				if(journalPath.getParent().equals(directory))
+					directory = createSessionDirectory();
+			} else {
+				for(int slotN = firstTailSlotN; slotN < durableSlotCount || Files.exists(getTailPath(slotN)); slotN++)
+					Files.deleteIfExists(getTailPath(slotN));
+				Files.deleteIfExists(journalPath);
+			}
+		} catch(IOException e) {
+			NotificationsController.showCriticalFault("Unable to delete the session journal at \"" + journalPath.toString() + "\"");
+			e.printStackTrace();
+		}
+		
+		journalPath = null;
+		recordedStorages.clear();
+		durableSlotCount = 0;
+		firstTailSlotN = 0;
+		tailedSampleCount = 0;
+		recordedConnectionN = -1;
+		restored = false;
+		
+	}
+	
+	/**
+	 * Makes a final checkpoint, marks the journal as closed, then closes the journal and the connection's files.
+	 * The files are left on disk, so the session can be reopened later.
+	 * The connection MUST be disconnected, and no other methods of its datasets may be in progress.
+	 */
+	public synchronized void close() {
+		
+		connection.datasets.close(); // waits for any slots to finish moving to disk
+		checkpoint();
+		
+		if(journalPath != null) {
+			try {
+				appendRecord(journal, journalLength, new byte[] {CLOSED});
+				journal.force(true);
+			} catch(IOException e) {
+				NotificationsController.showCriticalFault("Error while writing the session journal at \"" + journalPath.toString() + "\"");
+				e.printStackTrace();
+			}
+			closeFiles();
+		}
+		
+	}
+	
+	/**
+	 * Closes the journal and any tail files.
+	 */
+	private void closeFiles() {
+		
+		try {
+			journal.close();
+			for(FileChannel tail : tailFiles.values())
+				tail.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+		tailFiles.clear();
+		
+	}
+	
+	/**
+	 * Closes every connection's journal when the program exits. Sessions that have samples are left on disk, so they can be reopened later.
+	 * If nothing was recorded, the session directory is removed.
+	 */
+	public static void closeSession() {
+		
+		checkpointThread.interrupt();
+		try { checkpointThread.join(); } catch(InterruptedException e) { }
+		
+		Thread restoring = restoreThread;
+		if(restoring != null) {
+			restoreCanceled = true;
+			try { restoring.join(); } catch(InterruptedException e) { }
+		}
+		
+		for(ConnectionTelemetry connection : ConnectionsController.telemetryConnections) {
+			if(connection.connected)
+				connection.disconnect(null);
+			connection.journal.close();
+		}
+		
+		if(getJournals(getDirectory()).isEmpty())
+			deleteSession(getDirectory());
+		else
+			saveSettings();
+		
+	}
+	
+	/**
+	 * Opens a session file from the file chooser or drag-n-drop. This method is thread-safe.
+	 * 
+	 * @param path    Path to a session.tvs file.
+	 */
+	public static void openSessionFile(String path) {
+		
+		SwingUtilities.invokeLater(() -> openSession(Paths.get(path).toAbsolutePath().getParent()));
+		
+	}
+	
+}
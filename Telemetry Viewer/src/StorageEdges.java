@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A sorted list of sample numbers, stored as a primitive long[].
+ * Each Bitfield State uses one of these to index the sample numbers where the Bitfield transitioned to that State.
+ * 
+ * Sample numbers are appended by the thread that receives telemetry, while any number of other threads may read them.
+ * The array is only replaced (never modified in place) when it grows, and the count is updated last,
+ * so readers always see a fully populated array for the count they read.
+ */
+public class StorageEdges {
+	
+	private volatile long[] sampleNumbers = new long[1024];
+	private volatile int count = 0;
+	
+	/**
+	 * Appends a sample number to the end of the index.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param sampleNumber    The sample number. This MUST be greater than any sample number already in the index.
+	 */
+	public void append(long sampleNumber) {
+		
+		int n = count;
+		if(n == sampleNumbers.length)
+			sampleNumbers = Arrays.copyOf(sampleNumbers, n * 2);
+		sampleNumbers[n] = sampleNumber;
+		count = n + 1;
+		
+	}
+	
+	/**
+	 * @return    Number of sample numbers in the index.
+	 */
+	public int getCount() {
+		
+		return count;
+		
+	}
+	
+	/**
+	 * @param index    Index of a sample number, which MUST be less than getCount().
+	 * @return         The sample number.
+	 */
+	public long get(int index) {
+		
+		return sampleNumbers[index];
+		
+	}
+	
+	/**
+	 * Uses a binary search to find the first sample number that is >= a specified sample number.
+	 * 
+	 * @param sampleNumber    The sample number to search for.
+	 * @param count           Number of items to search, usually from getCount().
+	 * @return                Index of the first sample number >= sampleNumber, or count if there is none.
+	 */
+	public int getIndexAtOrAfter(long sampleNumber, int count) {
+		
+		long[] array = sampleNumbers;
+		int low = 0;
+		int high = count;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(array[middle] < sampleNumber)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+		
+	}
+	
+	/**
+	 * Gets the first sample number in a range.
+	 * 
+	 * @param minimumSampleNumber    First sample number to test, inclusive.
+	 * @param maximumSampleNumber    Last sample number to test, inclusive.
+	 * @return                       The first sample number in that range, or -1 if there is none.
+	 */
+	public long getFirstBetween(long minimumSampleNumber, long maximumSampleNumber) {
+		
+		int n = count;
+		int index = getIndexAtOrAfter(minimumSampleNumber, n);
+		if(index < n && sampleNumbers[index] <= maximumSampleNumber)
+			return sampleNumbers[index];
+		else
+			return -1;
+		
+	}
+	
+	/**
+	 * Iterates over the sample numbers in a range.
+	 * 
+	 * @param minimumSampleNumber    First sample number to test, inclusive.
+	 * @param maximumSampleNumber    Last sample number to test, inclusive.
+	 * @param consumer               Will be called with each sample number, in ascending order.
+	 */
+	public void forEachBetween(long minimumSampleNumber, long maximumSampleNumber, LongConsumer consumer) {
+		
+		int n = count;
+		long[] array = sampleNumbers;
+		for(int index = getIndexAtOrAfter(minimumSampleNumber, n); index < n && array[index] <= maximumSampleNumber; index++)
+			consumer.accept(array[index]);
+		
+	}
+	
+	/**
+	 * Empties the index.
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 */
+	public void clear() {
+		
+		sampleNumbers = new long[1024];
+		count = 0;
+		
+	}
+	
+}
@@ -1,29 +1,65 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import com.jogamp.common.nio.Buffers;
 
 public class StorageFloats {
 	
 	// floats are buffered into "slots" which each hold 1M values.
 	// to speed up min/max calculations, the min and max value is tracked for smaller "blocks" of 1K values.
+	// to speed up mean/variance/RMS calculations, each slot also tracks the sum and sum of squared deviations of its blocks.
+	// sample numbers are longs, and the table of slots grows as needed, so the number of samples is only limited by disk space.
+	// integer samples are stored at their native width, and only converted to float (and scaled by the conversion factor) when read.
 	public static final int BLOCK_SIZE = 1024; // 1K
 	public static final int SLOT_SIZE  = 1048576; // 1M
-	private final int MAX_SAMPLE_NUMBER = Integer.MAX_VALUE;
-	private final int BYTES_PER_VALUE = 4; // 4 bytes per float
+	private static final int BLOCKS_PER_SLOT = SLOT_SIZE / BLOCK_SIZE;
+	private final int BYTES_PER_VALUE;
+	private final Type type;
+	private final float conversionFactor;
 	
-	private volatile Slot[] slot                 = new Slot [MAX_SAMPLE_NUMBER / SLOT_SIZE  + 1]; // +1 to round up
-	private volatile float[] minimumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
-	private volatile float[] maximumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
+	/**
+	 * How samples are stored. FLOAT32 samples are stored after being scaled by the conversion factor.
+	 * The integer types store the raw value, and are scaled by the conversion factor when converted to float.
+	 */
+	public enum Type {
+		FLOAT32(4), UINT8(1), UINT16(2), INT16(2), UINT32(4);
+		final int byteCount;
+		Type(int byteCount) { this.byteCount = byteCount; }
+	}
+	
+	private volatile Slot[] slot = new Slot[16]; // grows as needed
+	
+	// incremented by clear(), so anything derived from older samples can tell that it is stale
+	private volatile int clearCount = 0;
 	
 	// older slots can be swapped to disk when memory runs low.
-	private final Path filePath;
-	private final FileChannel file;
+	// each page of a slot is compressed independently and appended to the file, and the slot keeps an index of where its pages are.
+	// the file lives in the session directory and starts with a header, so the SessionJournal can reopen it after the program exits or crashes.
+	private volatile Path filePath;
+	private volatile FileChannel file;
+	private final AtomicLong fileLength = new AtomicLong(0);
+	private static final int PAGES_PER_SLOT = SLOT_SIZE / SamplePageCache.PAGE_SIZE;
+	private static final int FILE_MAGIC = 0x54565346; // "TVSF"
+	private static final int FILE_HEADER_SIZE = 16;
+	
+	// each Cache shares the samples it provides instead of holding its own copy.
+	// a range inside one complete page is provided from a page of floats in the SamplePageCache,
+	// and any other range is provided from a Window, which is shared by every Cache that requests a range it can hold.
+	private final Object floatPages = new Object(); // owner of the SamplePageCache pages that hold converted floats
+	private final List<Window> windows = new ArrayList<Window>(); // guarded by itself
+	private Window spareWindow = null; // most recently released Window, reused by the next new Window of a similar size, guarded by windows
+	private static final int MAX_WINDOW_MARGIN = SamplePageCache.PAGE_SIZE; // a Window holds at most this many samples on either side of the requested range
 	
 	private ConnectionTelemetry connection;
 
@@ -34,67 +70,169 @@ public class StorageFloats {
 	 */
 	public StorageFloats(ConnectionTelemetry connection) {
 		
+		this(connection, Type.FLOAT32, 1);
+		
+	}
+	
+	/**
+	 * Prepares storage space for a sequence of samples.
+	 * 
+	 * @param connection          The corresponding connection.
+	 * @param type                How the samples will be stored.
+	 * @param conversionFactor    Multiplier that converts a raw sample into a float.
+	 */
+	public StorageFloats(ConnectionTelemetry connection, Type type, float conversionFactor) {
+		
 		this.connection = connection;
+		this.type = type;
+		this.conversionFactor = conversionFactor;
+		BYTES_PER_VALUE = type.byteCount;
 		
-		filePath = Paths.get("cache/" + this.toString() + ".bin");
+		createFile();
+		
+	}
+	
+	/**
+	 * Creates an empty file in the current session directory, and writes its header.
+	 */
+	private void createFile() {
+		
+		filePath = SessionJournal.getDirectory().resolve(this.toString() + ".bin");
 		
-		FileChannel temp = null;
 		try {
-			temp = FileChannel.open(filePath, StandardOpenOption.CREATE,
+			file = FileChannel.open(filePath, StandardOpenOption.CREATE,
 			                                  StandardOpenOption.TRUNCATE_EXISTING,
 			                                  StandardOpenOption.READ,
 			                                  StandardOpenOption.WRITE);
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			header.putInt(FILE_MAGIC).putInt(type.ordinal()).putFloat(conversionFactor).putInt(0).flip();
+			while(header.hasRemaining())
+				file.write(header, header.position());
+			fileLength.set(FILE_HEADER_SIZE);
 		} catch (IOException e) {
 			NotificationsController.showCriticalFault("Unable to create the cache file for \"" + filePath.toString() + "\"");
 			e.printStackTrace();
 		}
-		file = temp;
 		
 	}
 	
 	/**
 	 * Sets a value, and updates the min/max records.
+	 * If this storage uses an integer type, the value is converted back to the nearest raw integer.
 	 * This method is NOT reentrant! Only one thread may call this at a time.
 	 * 
-	 * @param value    The new value.
+	 * @param sampleNumber    The sample number.
+	 * @param value           The new value, already scaled by the conversion factor.
+	 * @return                The value as it will be read back.
 	 */
-	public void setValue(int sampleNumber, float value) {
+	public float setValue(long sampleNumber, float value) {
 		
-		int slotN  = sampleNumber / SLOT_SIZE;
-		int valueN = sampleNumber % SLOT_SIZE;
-		int blockN = sampleNumber / BLOCK_SIZE;
+		if(type != Type.FLOAT32)
+			return setRawValue(sampleNumber, (int) Math.round(value / (double) conversionFactor));
+		
+		Slot s = prepareSlot(sampleNumber);
+		((float[]) s.value)[(int) (sampleNumber % SLOT_SIZE)] = value;
+		updateSummary(s, sampleNumber, value);
+		return value;
+		
+	}
+	
+	/**
+	 * Sets a raw value, and updates the min/max records.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param sampleNumber    The sample number.
+	 * @param raw             The new value, as provided by BinaryFieldProcessor.extractRawValue().
+	 * @return                The value as it will be read back (converted to float and scaled by the conversion factor.)
+	 */
+	public float setRawValue(long sampleNumber, int raw) {
+		
+		Slot s = prepareSlot(sampleNumber);
+		float value = store(s.value, (int) (sampleNumber % SLOT_SIZE), raw);
+		updateSummary(s, sampleNumber, value);
+		return value;
+		
+	}
+	
+	/**
+	 * Gets the slot for a new sample, creating the slot (and moving an older slot to disk) if necessary.
+	 * 
+	 * @param sampleNumber    The sample number.
+	 * @return                The corresponding slot.
+	 */
+	private Slot prepareSlot(long sampleNumber) {
+		
+		int slotN  = (int) (sampleNumber / SLOT_SIZE);
+		int valueN = (int) (sampleNumber % SLOT_SIZE);
 		
 		if(valueN == 0) {
-			slot[slotN] = new Slot();
+			growSlotTable(slotN);
+			slot[slotN] = new Slot(true);
 			if(slotN > 1)
 				slot[slotN - 2].flushToDisk(slotN - 2);
 		}
-		slot[slotN].value[valueN] = value;
+		return slot[slotN];
+		
+	}
+	
+	/**
+	 * Grows the table of slots if it can not hold a slot number.
+	 * The existing slots are shared with the old table, so threads that are still using the old table are not affected.
+	 * 
+	 * @param slotN    The slot number.
+	 */
+	private void growSlotTable(int slotN) {
+		
+		if(slotN >= slot.length)
+			slot = Arrays.copyOf(slot, Integer.max(slotN + 1, slot.length * 2));
+		
+	}
+	
+	/**
+	 * Updates the min/max/sum records after a sample has been written.
+	 * 
+	 * @param s               The slot containing the sample.
+	 * @param sampleNumber    The sample number.
+	 * @param value           The sample, as a float.
+	 */
+	private void updateSummary(Slot s, long sampleNumber, float value) {
+		
+		int blockInSlotN = (int) (sampleNumber % SLOT_SIZE) / BLOCK_SIZE;
 		
 		if(sampleNumber % BLOCK_SIZE == 0) {
-			minimumValueInBlock[blockN] = value;
-			maximumValueInBlock[blockN] = value;
+			s.minimumValueInBlock[blockInSlotN] = value;
+			s.maximumValueInBlock[blockInSlotN] = value;
+			s.sumInBlock[blockInSlotN] = value;
+			s.sumOfSquaredDeviationsInBlock[blockInSlotN] = 0;
 		} else {
-			if(value < minimumValueInBlock[blockN])
-				minimumValueInBlock[blockN] = value;
-			if(value > maximumValueInBlock[blockN])
-				maximumValueInBlock[blockN] = value;
+			if(value < s.minimumValueInBlock[blockInSlotN])
+				s.minimumValueInBlock[blockInSlotN] = value;
+			if(value > s.maximumValueInBlock[blockInSlotN])
+				s.maximumValueInBlock[blockInSlotN] = value;
+			// Welford's algorithm, so the sum of squared deviations doesn't suffer from catastrophic cancellation
+			int count = (int) (sampleNumber % BLOCK_SIZE) + 1;
+			double oldMean = s.sumInBlock[blockInSlotN] / (count - 1);
+			s.sumInBlock[blockInSlotN] += value;
+			double newMean = s.sumInBlock[blockInSlotN] / count;
+			s.sumOfSquaredDeviationsInBlock[blockInSlotN] += (value - oldMean) * (value - newMean);
 		}
 		
 	}
 	
 	/**
 	 * Obtains the samples buffer so that multiple Parser threads may write directly into it (in parallel.)
+	 * Use store() and getValue() to access it, because the array type depends on the storage type.
 	 * 
 	 * @param sampleNumber    The sample number whose buffer is wanted.
-	 * @return                Corresponding buffer.
+	 * @return                Corresponding buffer: a float[], byte[], short[] or int[].
 	 */
-	public float[] getSlot(int sampleNumber) {
+	public Object getSlot(long sampleNumber) {
 		
-		int slotN = sampleNumber / SLOT_SIZE;
+		int slotN = (int) (sampleNumber / SLOT_SIZE);
 
+		growSlotTable(slotN);
 		if(slot[slotN] == null) {
-			slot[slotN] = new Slot();
+			slot[slotN] = new Slot(true);
 			if(slotN > 1)
 				slot[slotN - 2].flushToDisk(slotN - 2);
 		}
@@ -104,19 +242,125 @@ public class StorageFloats {
 	}
 	
 	/**
-	 * Specifies the minimum and maximum values found in a block.
+	 * Writes a raw value into a slot buffer.
+	 * 
+	 * @param array    Slot buffer, from getSlot().
+	 * @param index    Index into the slot buffer.
+	 * @param raw      The raw value, as provided by BinaryFieldProcessor.extractRawValue().
+	 * @return         The value, converted to float and scaled by the conversion factor.
+	 */
+	public float store(Object array, int index, int raw) {
+		
+		switch(type) {
+			case UINT8:  ((byte[])  array)[index] = (byte)  raw; break;
+			case UINT16:
+			case INT16:  ((short[]) array)[index] = (short) raw; break;
+			case UINT32: ((int[])   array)[index] = raw;         break;
+			case FLOAT32:
+				float value = Float.intBitsToFloat(raw) * conversionFactor;
+				((float[]) array)[index] = value;
+				return value;
+		}
+		return toFloat(raw);
+		
+	}
+	
+	/**
+	 * Reads a value from a slot buffer.
+	 * 
+	 * @param array    Slot buffer, from getSlot().
+	 * @param index    Index into the slot buffer.
+	 * @return         The value, converted to float and scaled by the conversion factor.
+	 */
+	public float getValue(Object array, int index) {
+		
+		switch(type) {
+			case UINT8:  return toFloat(((byte[])  array)[index]);
+			case UINT16:
+			case INT16:  return toFloat(((short[]) array)[index]);
+			case UINT32: return toFloat(((int[])   array)[index]);
+			default:     return ((float[]) array)[index];
+		}
+		
+	}
+	
+	/**
+	 * Converts a raw integer sample to float, and scales it by the conversion factor.
+	 * 
+	 * @param raw    The raw sample. Only the bits used by the storage type are considered.
+	 * @return       The sample as a float.
+	 */
+	private float toFloat(int raw) {
+		
+		switch(type) {
+			case UINT8:  return (raw & 0xFF)   * conversionFactor;
+			case UINT16: return (raw & 0xFFFF) * conversionFactor;
+			case INT16:  return (short) raw    * conversionFactor;
+			case UINT32: return (raw & 0xFFFFFFFFL) * conversionFactor;
+			default:     return Float.intBitsToFloat(raw) * conversionFactor;
+		}
+		
+	}
+	
+	/**
+	 * Converts part of a slot buffer to floats.
+	 * 
+	 * @param array          Slot buffer.
+	 * @param offset         First index to convert.
+	 * @param length         Number of values to convert.
+	 * @param destination    Where the floats will be written, starting at its current position.
+	 */
+	private void copyValues(Object array, int offset, int length, FloatBuffer destination) {
+		
+		if(type == Type.FLOAT32) {
+			destination.put((float[]) array, offset, length);
+			return;
+		}
+		
+		for(int i = offset; i < offset + length; i++)
+			destination.put(getValue(array, i));
+		
+	}
+	
+	/**
+	 * Specifies the minimum, maximum, sum and sum of squared deviations of the values in a block.
 	 * This method is NOT reentrant! Only one thread may call this at a time.
 	 * 
-	 * @param firstSampleNumber    First sample number of the block.
-	 * @param minValue             Minimum value in the block.
-	 * @param maxValue             Maximum value in the block.
+	 * @param firstSampleNumber         First sample number of the block.
+	 * @param minValue                  Minimum value in the block.
+	 * @param maxValue                  Maximum value in the block.
+	 * @param sum                       Sum of the values in the block.
+	 * @param sumOfSquaredDeviations    Sum of (value - mean)^2 for the values in the block.
 	 */
-	public void setRangeOfBlock(int firstSampleNumber, float minValue, float maxValue) {
+	public void setSummaryOfBlock(long firstSampleNumber, float minValue, float maxValue, double sum, double sumOfSquaredDeviations) {
 
-		int blockN = firstSampleNumber / BLOCK_SIZE;
+		int blockInSlotN = (int) (firstSampleNumber % SLOT_SIZE) / BLOCK_SIZE;
+		Slot s = slot[(int) (firstSampleNumber / SLOT_SIZE)];
 
-		minimumValueInBlock[blockN] = minValue;
-		maximumValueInBlock[blockN] = maxValue;
+		s.minimumValueInBlock[blockInSlotN] = minValue;
+		s.maximumValueInBlock[blockInSlotN] = maxValue;
+		s.sumInBlock[blockInSlotN] = sum;
+		s.sumOfSquaredDeviationsInBlock[blockInSlotN] = sumOfSquaredDeviations;
+		
+	}
+	
+	/**
+	 * @param blockN    Which block. This MUST be a block that has been populated.
+	 * @return          Minimum value in the block.
+	 */
+	public float getMinimumOfBlock(long blockN) {
+		
+		return slot[(int) (blockN / BLOCKS_PER_SLOT)].minimumValueInBlock[(int) (blockN % BLOCKS_PER_SLOT)];
+		
+	}
+	
+	/**
+	 * @param blockN    Which block. This MUST be a block that has been populated.
+	 * @return          Maximum value in the block.
+	 */
+	public float getMaximumOfBlock(long blockN) {
+		
+		return slot[(int) (blockN / BLOCKS_PER_SLOT)].maximumValueInBlock[(int) (blockN % BLOCKS_PER_SLOT)];
 		
 	}
 	
@@ -136,11 +380,10 @@ public class StorageFloats {
 	 * @param cache           Place to cache samples.
 	 * @return                The corresponding value.
 	 */
-	public float getSample(int sampleNumber, Cache cache) {
+	public float getSample(long sampleNumber, Cache cache) {
 		
 		cache.update(sampleNumber, sampleNumber);
-		cache.cacheFloats.position(sampleNumber - cache.startOfCache);
-		return cache.cacheFloats.get();
+		return cache.floats.get((int) (sampleNumber - cache.startOfCache));
 		
 	}
 	
@@ -150,13 +393,15 @@ public class StorageFloats {
 	 * @param firstSampleNumber    First sample number to obtain, inclusive.
 	 * @param lastSampleNumber     Last sample number to obtain, inclusive.
 	 * @param cache                Place to cache samples.
-	 * @return                     The samples, as a FloatBuffer, positioned at the first sample number.
+	 * @return                     The samples, as a read-only FloatBuffer, positioned at the first sample number.
+	 *                             The samples may be shared with other charts, and remain valid until two more ranges that need a different page or Window have been requested from the cache.
 	 */
-	public FloatBuffer getSamplesBuffer(int firstSampleNumber, int lastSampleNumber, Cache cache) {
+	public FloatBuffer getSamplesBuffer(long firstSampleNumber, long lastSampleNumber, Cache cache) {
 
 		cache.update(firstSampleNumber, lastSampleNumber);
-		cache.cacheFloats.position(firstSampleNumber - cache.startOfCache);
-		return cache.cacheFloats.slice(); // must slice, to prevent the position() from changing if getSample() or getSamplesBuffer() is called again before "using" this buffer
+		FloatBuffer buffer = cache.floats.asReadOnlyBuffer(); // a new view, so its position is not shared with anything else
+		buffer.position((int) (firstSampleNumber - cache.startOfCache));
+		return buffer.slice();
 		
 	}
 	
@@ -168,29 +413,26 @@ public class StorageFloats {
 	 * @param cache                Place to cache samples.
 	 * @return                     A MinMax object, which has "min" and "max" fields.
 	 */
-	public MinMax getRange(int firstSampleNumber, int lastSampleNumber, Cache cache) {
-		
-		// save the cache's current position, and restore it when done
-		int oldPosition = cache.cacheFloats.position();
+	public MinMax getRange(long firstSampleNumber, long lastSampleNumber, Cache cache) {
 		
 		MinMax range = new MinMax();
 		
-		int firstBlock = firstSampleNumber / BLOCK_SIZE;
-		int lastBlock = lastSampleNumber / BLOCK_SIZE;
-		for(int block = firstBlock; block <= lastBlock; block++) {
+		long firstBlock = firstSampleNumber / BLOCK_SIZE;
+		long lastBlock = lastSampleNumber / BLOCK_SIZE;
+		for(long block = firstBlock; block <= lastBlock; block++) {
 			boolean entireBlockInRange = (firstSampleNumber <= block * BLOCK_SIZE) &&
 			                             (lastSampleNumber >= (block + 1) * BLOCK_SIZE - 1);
 			if(entireBlockInRange) {
-				float min = minimumValueInBlock[block];
-				float max = maximumValueInBlock[block];
+				float min = getMinimumOfBlock(block);
+				float max = getMaximumOfBlock(block);
 				if(min < range.min)
 					range.min = min;
 				if(max > range.max)
 					range.max = max;
 			} else {
-				int firstSampleInBlock = Integer.max(firstSampleNumber, block * BLOCK_SIZE);
-				int lastSampleInBlock = Integer.min(lastSampleNumber, (block + 1) * BLOCK_SIZE - 1);
-				for(int sampleN = firstSampleInBlock; sampleN <= lastSampleInBlock; sampleN++) {
+				long firstSampleInBlock = Long.max(firstSampleNumber, block * BLOCK_SIZE);
+				long lastSampleInBlock = Long.min(lastSampleNumber, (block + 1) * BLOCK_SIZE - 1);
+				for(long sampleN = firstSampleInBlock; sampleN <= lastSampleInBlock; sampleN++) {
 					float value = getSample(sampleN, cache);
 					if(value < range.min)
 						range.min = value;
@@ -200,11 +442,42 @@ public class StorageFloats {
 			}
 		}
 		
+		return range;
+		
+	}
+	
+	/**
+	 * Gets the count, mean and sum of squared deviations of a sequence of samples.
+	 * Entire blocks are aggregated from their summaries, so only the samples in partial blocks at either end of the range need to be read.
+	 * 
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive.
+	 * @param cache                Place to cache samples.
+	 * @return                     An Aggregate object, which can provide the mean, standard deviation, RMS, etc.
+	 */
+	public Aggregate getAggregate(long firstSampleNumber, long lastSampleNumber, Cache cache) {
 		
-		// restore cache position
-		cache.cacheFloats.position(oldPosition);
+		Aggregate aggregate = new Aggregate();
 		
-		return range;
+		long firstBlock = firstSampleNumber / BLOCK_SIZE;
+		long lastBlock = lastSampleNumber / BLOCK_SIZE;
+		for(long block = firstBlock; block <= lastBlock; block++) {
+			boolean entireBlockInRange = (firstSampleNumber <= block * BLOCK_SIZE) &&
+			                             (lastSampleNumber >= (block + 1) * BLOCK_SIZE - 1);
+			if(entireBlockInRange) {
+				Slot s = slot[(int) (block / BLOCKS_PER_SLOT)];
+				int blockInSlotN = (int) (block % BLOCKS_PER_SLOT);
+				aggregate.add(BLOCK_SIZE, s.sumInBlock[blockInSlotN], s.sumOfSquaredDeviationsInBlock[blockInSlotN]);
+			} else {
+				long firstSampleInBlock = Long.max(firstSampleNumber, block * BLOCK_SIZE);
+				long lastSampleInBlock = Long.min(lastSampleNumber, (block + 1) * BLOCK_SIZE - 1);
+				cache.update(firstSampleInBlock, lastSampleInBlock);
+				for(long sampleN = firstSampleInBlock; sampleN <= lastSampleInBlock; sampleN++)
+					aggregate.add(cache.floats.get((int) (sampleN - cache.startOfCache)));
+			}
+		}
+		
+		return aggregate;
 		
 	}
 	
@@ -229,18 +502,38 @@ public class StorageFloats {
 			
 		}
 		
-		// empty the file
+		// empty the file, but leave the file of a reopened session intact and start a new file in the current session instead
+		SamplePageCache.removeAll(this);
+		SamplePageCache.removeAll(floatPages);
 		try {
-			file.truncate(0);
+			if(filePath.getParent().equals(SessionJournal.getDirectory())) {
+				file.truncate(FILE_HEADER_SIZE);
+				fileLength.set(FILE_HEADER_SIZE);
+			} else {
+				file.close();
+				createFile();
+			}
 		} catch (IOException e) {
 			NotificationsController.showCriticalFault("Unable to clear the cache file at \"" + filePath.toString() + "\"");
 			e.printStackTrace();
 		}
 		
-		// empty the slots
-		slot                = new Slot [MAX_SAMPLE_NUMBER / SLOT_SIZE  + 1]; // +1 to round up
-		minimumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
-		maximumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
+		// empty the slots, and stop sharing any Windows (Caches notice the new clear count and release them)
+		slot = new Slot[16];
+		synchronized(windows) {
+			windows.clear();
+			spareWindow = null;
+		}
+		clearCount++;
+		
+	}
+	
+	/**
+	 * @return    Number of times clear() has been called. If this changes, any results derived from the samples are stale.
+	 */
+	public int getClearCount() {
+		
+		return clearCount;
 		
 	}
 	
@@ -267,6 +560,8 @@ public class StorageFloats {
 		}
 		
 		// remove the file from disk
+		SamplePageCache.removeAll(this);
+		SamplePageCache.removeAll(floatPages);
 		try {
 			file.close();
 			Files.deleteIfExists(filePath);
@@ -277,131 +572,592 @@ public class StorageFloats {
 		
 	}
 	
+	/**
+	 * Closes the file, but leaves it on disk so the session can be reopened later.
+	 * This method should be called when the program exits.
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 */
+	public void close() {
+		
+		// slots may be flushing to disk, so wait for that to finish
+		for(Slot s : slot) {
+			
+			if(s == null)
+				break; // reached the end
+			
+			while(s.flushing)
+				; // wait
+			
+		}
+		
+		SamplePageCache.removeAll(this);
+		SamplePageCache.removeAll(floatPages);
+		try {
+			file.close();
+		} catch (IOException e) {
+			NotificationsController.showCriticalFault("Unable to close the cache file at \"" + filePath.toString() + "\"");
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/**
+	 * @return    How samples are stored.
+	 */
+	public Type getType() {
+		
+		return type;
+		
+	}
+	
+	/**
+	 * @return    Name of the file, relative to the session directory.
+	 */
+	public String getFileName() {
+		
+		return filePath.getFileName().toString();
+		
+	}
+	
+	/**
+	 * @param slotN    Slot number.
+	 * @return         True if every value in that slot has been written to the file.
+	 */
+	public boolean isSlotOnDisk(int slotN) {
+		
+		Slot[] table = slot;
+		return slotN < table.length && table[slotN] != null && !table[slotN].inRam && !table[slotN].flushing;
+		
+	}
+	
+	/**
+	 * Writes the page index and block summaries of a slot, so the slot can be restored by restoreSlot().
+	 * 
+	 * @param slotN    Slot number. This slot MUST be on disk.
+	 * @param out      Where to write.
+	 */
+	public void writeSlotIndex(int slotN, DataOutputStream out) throws IOException {
+		
+		Slot s = slot[slotN];
+		for(int pageN = 0; pageN < PAGES_PER_SLOT; pageN++) {
+			out.writeLong(s.pageOffset[pageN]);
+			out.writeInt(s.pageLength[pageN]);
+		}
+		for(int blockN = 0; blockN < BLOCKS_PER_SLOT; blockN++) {
+			out.writeFloat(s.minimumValueInBlock[blockN]);
+			out.writeFloat(s.maximumValueInBlock[blockN]);
+			out.writeDouble(s.sumInBlock[blockN]);
+			out.writeDouble(s.sumOfSquaredDeviationsInBlock[blockN]);
+		}
+		
+	}
+	
+	/**
+	 * Writes the raw values of samples that are still in memory, at their native width. They can be read back with readRawValue().
+	 * 
+	 * @param firstSampleNumber    First sample number to write.
+	 * @param count                Number of samples to write. These MUST be in the same slot.
+	 * @param out                  Where to write.
+	 * @return                     True on success, or false if the slot was moved to disk in the meantime.
+	 */
+	public boolean writeRawValues(long firstSampleNumber, int count, DataOutputStream out) throws IOException {
+		
+		Object array = slot[(int) (firstSampleNumber / SLOT_SIZE)].value;
+		if(array == null)
+			return false;
+		
+		int offset = (int) (firstSampleNumber % SLOT_SIZE);
+		switch(type) {
+			case UINT8:  out.write((byte[]) array, offset, count);                                          break;
+			case UINT16:
+			case INT16:  for(int i = offset; i < offset + count; i++) out.writeShort(((short[]) array)[i]); break;
+			case UINT32: for(int i = offset; i < offset + count; i++) out.writeInt(((int[]) array)[i]);     break;
+			default:     for(int i = offset; i < offset + count; i++) out.writeFloat(((float[]) array)[i]); break;
+		}
+		return true;
+		
+	}
+	
+	/**
+	 * Reads one value that was written by writeRawValues().
+	 * 
+	 * @param in    Where to read from.
+	 * @return      The raw value. For FLOAT32 storage these are the bits of the already scaled float.
+	 */
+	public int readRawValue(DataInputStream in) throws IOException {
+		
+		switch(type) {
+			case UINT8:  return in.readUnsignedByte();
+			case UINT16: return in.readUnsignedShort();
+			case INT16:  return in.readShort();
+			default:     return in.readInt();
+		}
+		
+	}
+	
+	/**
+	 * Replaces the (empty) file with the file from a previous session. Its slots must then be restored with restoreSlot().
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 * 
+	 * @param path    The file.
+	 * @throws IOException    If the file can not be opened, or does not contain samples of this type.
+	 */
+	public void restore(Path path) throws IOException {
+		
+		FileChannel restoredFile = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		while(header.hasRemaining() && restoredFile.read(header, header.position()) > 0)
+			;
+		header.flip();
+		if(header.remaining() < FILE_HEADER_SIZE || header.getInt() != FILE_MAGIC || header.getInt() != type.ordinal() || header.getFloat() != conversionFactor) {
+			restoredFile.close();
+			throw new IOException("\"" + path.toString() + "\" does not contain samples of this type.");
+		}
+		
+		SamplePageCache.removeAll(this);
+		SamplePageCache.removeAll(floatPages);
+		file.close();
+		Files.deleteIfExists(filePath);
+		
+		file = restoredFile;
+		filePath = path;
+		fileLength.set(FILE_HEADER_SIZE);
+		slot = new Slot[16];
+		synchronized(windows) {
+			windows.clear();
+			spareWindow = null;
+		}
+		clearCount++;
+		
+	}
+	
+	/**
+	 * Restores a slot that is on disk. Any pages that are written to the file later will be appended after this slot's pages.
+	 * 
+	 * @param slotN    Slot number.
+	 * @param in       Where to read the index that was written by writeSlotIndex().
+	 */
+	public void restoreSlot(int slotN, DataInputStream in) throws IOException {
+		
+		Slot s = new Slot(false);
+		for(int pageN = 0; pageN < PAGES_PER_SLOT; pageN++) {
+			s.pageOffset[pageN] = in.readLong();
+			s.pageLength[pageN] = in.readInt();
+			long end = s.pageOffset[pageN] + s.pageLength[pageN];
+			if(end > fileLength.get())
+				fileLength.set(end);
+		}
+		for(int blockN = 0; blockN < BLOCKS_PER_SLOT; blockN++) {
+			s.minimumValueInBlock[blockN] = in.readFloat();
+			s.maximumValueInBlock[blockN] = in.readFloat();
+			s.sumInBlock[blockN] = in.readDouble();
+			s.sumOfSquaredDeviationsInBlock[blockN] = in.readDouble();
+		}
+		
+		growSlotTable(slotN);
+		slot[slotN] = s;
+		
+	}
+	
+	/**
+	 * Reads values that have been moved to disk. They are provided by the SamplePageCache, which is shared with all other charts/exporters/triggers.
+	 * 
+	 * @param firstSampleNumber    First sample number to read. The slot containing it MUST be on disk.
+	 * @param count                Number of values to read. These MUST be in the same slot.
+	 * @param destination          Where the values will be written, starting at its current position.
+	 */
+	private void readFromDisk(long firstSampleNumber, int count, FloatBuffer destination) {
+		
+		while(count > 0) {
+			int pageN  = (int) (firstSampleNumber / SamplePageCache.PAGE_SIZE);
+			int offset = (int) (firstSampleNumber % SamplePageCache.PAGE_SIZE);
+			int length = Integer.min(count, SamplePageCache.PAGE_SIZE - offset);
+			SamplePageCache.Page page = SamplePageCache.acquire(this, BYTES_PER_VALUE, pageN, this::readPage);
+			ByteBuffer bytes = page.bytes.duplicate().order(page.bytes.order());
+			if(type == Type.FLOAT32) {
+				FloatBuffer values = bytes.asFloatBuffer();
+				values.position(offset);
+				values.limit(offset + length);
+				destination.put(values);
+			} else {
+				for(int i = offset; i < offset + length; i++)
+					destination.put(type == Type.UINT8  ? toFloat(bytes.get(i)) :
+					                type == Type.UINT32 ? toFloat(bytes.getInt(i * 4)) :
+					                                      toFloat(bytes.getShort(i * 2)));
+			}
+			SamplePageCache.release(page);
+			firstSampleNumber += length;
+			count -= length;
+		}
+		
+	}
+	
+	/**
+	 * Gets a sequence of values at their native width, without converting them to float.
+	 * Integer types provide their raw values, so no precision is lost. FLOAT32 provides the (converted) floats.
+	 * 
+	 * @param firstSampleNumber    First sample number to obtain, inclusive. This MUST be a valid sample number.
+	 * @param count                Number of values to obtain. They MUST be valid sample numbers.
+	 * @param destination          Where the values will be written, starting at its current position.
+	 */
+	public void getRawValues(long firstSampleNumber, int count, ByteBuffer destination) {
+		
+		while(count > 0) {
+			int slotN  = (int) (firstSampleNumber / SLOT_SIZE);
+			int offset = (int) (firstSampleNumber % SLOT_SIZE);
+			int length = Integer.min(count, SamplePageCache.PAGE_SIZE - (offset % SamplePageCache.PAGE_SIZE));
+			
+			Object array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
+			if(!slot[slotN].flushing && slot[slotN].inRam) {
+				// read from memory
+				switch(type) {
+					case UINT8:  destination.put((byte[]) array, offset, length);                   break;
+					case UINT16:
+					case INT16:  destination.asShortBuffer().put((short[]) array, offset, length); break;
+					case UINT32: destination.asIntBuffer().put((int[]) array, offset, length);     break;
+					default:     destination.asFloatBuffer().put((float[]) array, offset, length); break;
+				}
+				if(type != Type.UINT8)
+					destination.position(destination.position() + length * BYTES_PER_VALUE);
+			} else {
+				// read from disk
+				while(slot[slotN].flushing);
+				SamplePageCache.Page page = SamplePageCache.acquire(this, BYTES_PER_VALUE, (int) (firstSampleNumber / SamplePageCache.PAGE_SIZE), this::readPage);
+				ByteBuffer bytes = page.bytes.duplicate().order(page.bytes.order());
+				int pageOffset = (int) (firstSampleNumber % SamplePageCache.PAGE_SIZE);
+				for(int i = pageOffset; i < pageOffset + length; i++) {
+					switch(BYTES_PER_VALUE) {
+						case 1:  destination.put(bytes.get(i));                  break;
+						case 2:  destination.putShort(bytes.getShort(i * 2));    break;
+						default: destination.putInt(bytes.getInt(i * 4));        break;
+					}
+				}
+				SamplePageCache.release(page);
+			}
+			
+			firstSampleNumber += length;
+			count -= length;
+		}
+		
+	}
+	
+	/**
+	 * Reads and decompresses a page from the file.
+	 * 
+	 * @param pageN          Which page to read. The slot containing it MUST be on disk.
+	 * @param destination    Where the values will be written, at their native width.
+	 */
+	private void readPage(int pageN, ByteBuffer destination) throws IOException {
+		
+		Slot s = slot[pageN / PAGES_PER_SLOT];
+		int pageInSlotN = pageN % PAGES_PER_SLOT;
+		
+		ByteBuffer encoded = ByteBuffer.allocate(s.pageLength[pageInSlotN]);
+		while(encoded.hasRemaining())
+			if(file.read(encoded, s.pageOffset[pageInSlotN] + encoded.position()) < 0)
+				throw new EOFException("The cache file is incomplete.");
+		encoded.flip();
+		SampleCodec.decode(encoded, type, SamplePageCache.PAGE_SIZE, destination);
+		
+	}
+	
+	/**
+	 * Gets a page of floats from the SamplePageCache.
+	 * FLOAT32 pages that are on disk are shared with everything else that reads them, other pages are converted to floats once and then shared.
+	 * The page MUST be released with SamplePageCache.release() when done reading from it.
+	 * 
+	 * @param pageN    Which page to get. Every sample in the page MUST exist.
+	 * @return         The page.
+	 */
+	private SamplePageCache.Page acquireFloatPage(int pageN) {
+		
+		Slot s = slot[pageN / PAGES_PER_SLOT];
+		if(type == Type.FLOAT32 && !s.inRam && !s.flushing)
+			return SamplePageCache.acquire(this, BYTES_PER_VALUE, pageN, this::readPage);
+		else
+			return SamplePageCache.acquire(floatPages, 4, pageN, this::readFloatPage); // 4 bytes per float
+		
+	}
+	
+	/**
+	 * Fills a page with floats, from memory or from the file.
+	 * 
+	 * @param pageN          Which page to read. Every sample in the page MUST exist.
+	 * @param destination    Where the floats will be written.
+	 */
+	private void readFloatPage(int pageN, ByteBuffer destination) {
+		
+		long firstSampleNumber = (long) pageN * SamplePageCache.PAGE_SIZE;
+		int slotN = (int) (firstSampleNumber / SLOT_SIZE);
+		FloatBuffer floats = destination.asFloatBuffer();
+		
+		Object array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
+		if(!slot[slotN].flushing && slot[slotN].inRam) {
+			copyValues(array, (int) (firstSampleNumber % SLOT_SIZE), SamplePageCache.PAGE_SIZE, floats);
+		} else {
+			while(slot[slotN].flushing);
+			readFromDisk(firstSampleNumber, SamplePageCache.PAGE_SIZE, floats);
+		}
+		
+	}
+	
+	/**
+	 * Gets a Window that can hold a range of samples, sharing an existing Window if one can already hold it.
+	 * The Window MUST be released with releaseWindow() when no longer needed.
+	 * 
+	 * @param firstSampleNumber    Start of range, inclusive.
+	 * @param lastSampleNumber     End of range, inclusive.
+	 * @return                     The Window.
+	 */
+	private Window acquireWindow(long firstSampleNumber, long lastSampleNumber) {
+		
+		synchronized(windows) {
+			
+			for(Window window : windows) {
+				if(window.canHold(firstSampleNumber, lastSampleNumber)) {
+					window.referenceCount++;
+					return window;
+				}
+			}
+			
+			// reserve room on either side of the range, so the user can rewind a little, and new samples can arrive, without needing another Window
+			int count = (int) (lastSampleNumber - firstSampleNumber + 1);
+			int margin = Integer.min(count, MAX_WINDOW_MARGIN);
+			int size = count + 2 * margin;
+			Window window = spareWindow;
+			if(window != null && window.floats.capacity() >= size && window.floats.capacity() <= 2 * size)
+				spareWindow = null;
+			else
+				window = new Window(size);
+			window.start = Long.max(0, firstSampleNumber - margin);
+			window.count = 0;
+			window.referenceCount = 1;
+			windows.add(window);
+			return window;
+			
+		}
+		
+	}
+	
+	/**
+	 * Indicates that a Window is no longer used by a Cache. Once no Cache uses it, its buffer may be reused by another Window.
+	 * 
+	 * @param window    Window that was obtained from acquireWindow().
+	 */
+	private void releaseWindow(Window window) {
+		
+		synchronized(windows) {
+			window.referenceCount--;
+			if(window.referenceCount == 0 && windows.remove(window))
+				spareWindow = window;
+		}
+		
+	}
+	
+	/**
+	 * A place to cache samples. Each chart/exporter/trigger uses its own Cache, but the samples themselves are shared:
+	 * a range inside one complete page is provided from a pinned page of floats in the SamplePageCache,
+	 * and any other range is provided from a Window that is shared with the other Caches of this storage object.
+	 * 
+	 * The page or Window used for the previous range stays pinned until another one is needed, so the two most recently provided buffers remain valid.
+	 * A Cache MUST be disposed when no longer needed, so its page and Windows can be released.
+	 */
 	public class Cache {
 		
-		private int cacheSize = 1024;
-		private ByteBuffer cacheBytes = Buffers.newDirectByteBuffer(cacheSize * BYTES_PER_VALUE);
-		private FloatBuffer cacheFloats = cacheBytes.asFloatBuffer();
-		private int startOfCache = 0;
-		private int cachedCount = 0;
+		private SamplePageCache.Page page = null; // page holding the current range, or null
+		private Window window = null;             // Window holding the current range, or null
+		private SamplePageCache.Page previousPage = null;
+		private Window previousWindow = null;
+		private FloatBuffer floats = null; // the samples, from the page or Window, starting at startOfCache
+		private long startOfCache = 0;
+		private int cacheClearCount = clearCount;
+		private int generation = 0; // incremented whenever a different page or Window is used, so buffers from getSamplesBuffer() can be checked for validity
+		
+		/**
+		 * @return    A number that changes whenever previously provided sample buffers may no longer be valid.
+		 */
+		public int getGeneration() {
+			
+			return generation;
+			
+		}
 		
 		/**
 		 * Updates the contents of the cache.
-		 * The requested range MUST be small enough to fit inside this cache!
 		 * 
 		 * @param firstSampleNumber    Start of range, inclusive. This MUST be a valid sample number.
 		 * @param lastSampleNumber     End of range, inclusive. This MUST be a valid sample number.
 		 */
-		public void update(int firstSampleNumber, int lastSampleNumber) {
-			
-			// grow the cache to 300% if it can't hold 200% the requested range
-			if(cacheSize < 2 * (lastSampleNumber - firstSampleNumber + 1)) {
-				cacheSize = 3 * (lastSampleNumber - firstSampleNumber + 1);
-				cacheBytes = Buffers.newDirectByteBuffer(cacheSize * BYTES_PER_VALUE);
-				cacheFloats = cacheBytes.asFloatBuffer();
-				startOfCache = 0;
-				cachedCount = 0;
-			}
+		public void update(long firstSampleNumber, long lastSampleNumber) {
 			
-			// flush cache if necessary
-			if(firstSampleNumber < startOfCache || lastSampleNumber >= startOfCache + cacheSize) {
-				startOfCache = firstSampleNumber - (cacheSize / 3); // reserve a third of the cache before the currently requested range, so the user can rewind a little without needing to flush the cache
-				if(startOfCache < 0)
-					startOfCache = 0;
-				cachedCount = 0;
-				// try to fill the new cache with adjacent samples too
-				firstSampleNumber = startOfCache;
-				lastSampleNumber = startOfCache + cacheSize - 1;
-				int max = connection.getSampleCount() - 1;
-				if(lastSampleNumber > max)
-					lastSampleNumber = max;
+			// anything pinned before clear() is stale
+			if(cacheClearCount != clearCount) {
+				dispose();
+				cacheClearCount = clearCount;
 			}
 			
-			// new range starts before cached range
-			if(firstSampleNumber < startOfCache) {
-				int start = firstSampleNumber;
-				int end   = startOfCache - 1;
-				
-				int firstSlot = start / SLOT_SIZE;
-				int lastSlot  = end   / SLOT_SIZE;
-				for(int slotN = firstSlot; slotN <= lastSlot; slotN++) {
-					float[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
-					if(!slot[slotN].flushing && slot[slotN].inRam) {
-						// fill cache from slot in memory
-						int offset = start % SLOT_SIZE;
-						int length = Integer.min(end - start + 1, SLOT_SIZE - offset);
-						cacheFloats.position(start - startOfCache);
-						cacheFloats.put(array, offset, length);
-						start += length;
-					} else {
-						// fill cache from slot on disk
-						while(slot[slotN].flushing);
-						long offset = (long) start * (long) BYTES_PER_VALUE;
-						int byteCount = Integer.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE)) * BYTES_PER_VALUE;
-						cacheBytes.position((start - startOfCache) * BYTES_PER_VALUE);
-						ByteBuffer buffer = cacheBytes.slice();
-						buffer.limit(byteCount);
-						try {
-							file.read(buffer, offset);
-						} catch (IOException e) {
-							NotificationsController.showCriticalFault("Error while reading a value from the cache file at \"" + filePath.toString() + "\"");
-							e.printStackTrace();
-						}
-						start += byteCount / BYTES_PER_VALUE;
-					}
+			// use a page of floats if the range is inside one complete page
+			int pageN = (int) (firstSampleNumber / SamplePageCache.PAGE_SIZE);
+			long startOfPage = (long) pageN * SamplePageCache.PAGE_SIZE;
+			long endOfPage = startOfPage + SamplePageCache.PAGE_SIZE;
+			if(lastSampleNumber < endOfPage && endOfPage <= connection.getSampleCount()) {
+				if(page == null || startOfCache != startOfPage) {
+					SamplePageCache.Page newPage = acquireFloatPage(pageN);
+					use(newPage, null, newPage.bytes.duplicate().order(newPage.bytes.order()).asFloatBuffer(), startOfPage);
 				}
-				
-				startOfCache = firstSampleNumber;
-				cachedCount += end - firstSampleNumber + 1;
+				return;
 			}
 			
-			// new range ends after cached range
-			if(lastSampleNumber > startOfCache + cachedCount - 1) {
-				int start = startOfCache + cachedCount;
-				int end   = lastSampleNumber;
-				
-				int slotStart = start / SLOT_SIZE;
-				int slotEnd   = end   / SLOT_SIZE;
-				for(int slotN = slotStart; slotN <= slotEnd; slotN++) {
-					float[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
-					if(!slot[slotN].flushing && slot[slotN].inRam) {
-						// fill cache from slot in memory
-						int offset = start % SLOT_SIZE;
-						int length = Integer.min(end - start + 1, SLOT_SIZE - offset);
-						cacheFloats.position(start - startOfCache);
-						cacheFloats.put(array, offset, length);
-						start += length;
-					} else {
-						// fill cache from slot on disk
-						while(slot[slotN].flushing);
-						long offset = (long) start * (long) BYTES_PER_VALUE;
-						int byteCount = Integer.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE)) * BYTES_PER_VALUE;
-						ByteBuffer buffer = Buffers.newDirectByteBuffer(byteCount);
-						try {
-							file.read(buffer, offset);
-						} catch (IOException e) {
-							NotificationsController.showCriticalFault("Error while reading a value from the cache file at \"" + filePath.toString() + "\"");
-							e.printStackTrace();
-						}
-						buffer.rewind();
-						cacheFloats.position(start - startOfCache);
-						cacheFloats.put(buffer.asFloatBuffer());
-						start += byteCount / BYTES_PER_VALUE;
-					}
+			// otherwise use a Window, and try to fill a new Window with adjacent samples too
+			if(window == null || !window.canHold(firstSampleNumber, lastSampleNumber)) {
+				Window newWindow = acquireWindow(firstSampleNumber, lastSampleNumber);
+				newWindow.fill(Long.min(newWindow.start + newWindow.floats.capacity(), connection.getSampleCount()) - 1);
+				use(null, newWindow, newWindow.floats, newWindow.start);
+			}
+			window.fill(lastSampleNumber);
+			
+		}
+		
+		/**
+		 * Switches to a different page or Window. What was previously used stays pinned until the next switch.
+		 * 
+		 * @param newPage            The page, or null.
+		 * @param newWindow          The Window, or null.
+		 * @param newFloats          The samples.
+		 * @param newStartOfCache    Sample number of the first value in newFloats.
+		 */
+		private void use(SamplePageCache.Page newPage, Window newWindow, FloatBuffer newFloats, long newStartOfCache) {
+			
+			if(previousPage != null)
+				SamplePageCache.release(previousPage);
+			if(previousWindow != null)
+				releaseWindow(previousWindow);
+			
+			previousPage = page;
+			previousWindow = window;
+			page = newPage;
+			window = newWindow;
+			floats = newFloats;
+			startOfCache = newStartOfCache;
+			generation++;
+			
+		}
+		
+		/**
+		 * Releases the shared samples, so they can be evicted or reused.
+		 * The cache may still be used afterwards, and will obtain them again when needed.
+		 */
+		public void dispose() {
+			
+			use(null, null, null, 0);
+			use(null, null, null, 0);
+			
+		}
+		
+	}
+	
+	/**
+	 * A direct buffer of floats holding a contiguous range of samples, for ranges that are not inside one complete page.
+	 * Windows are shared by the Caches of this storage object, and are reference counted.
+	 * Samples are only appended to a Window while it is shared, so a buffer obtained from it stays valid while it is referenced.
+	 */
+	private class Window {
+		
+		private final FloatBuffer floats;
+		private long start;         // sample number of the first value
+		private int count;          // number of values that have been filled, guarded by this
+		private int referenceCount; // guarded by windows
+		
+		/**
+		 * @param size    Number of values the Window can hold.
+		 */
+		private Window(int size) {
+			
+			floats = Buffers.newDirectByteBuffer(size * 4).asFloatBuffer(); // 4 bytes per float
+			
+		}
+		
+		/**
+		 * @param firstSampleNumber    Start of range, inclusive.
+		 * @param lastSampleNumber     End of range, inclusive.
+		 * @return                     True if the range fits inside this Window.
+		 */
+		private boolean canHold(long firstSampleNumber, long lastSampleNumber) {
+			
+			return firstSampleNumber >= start && lastSampleNumber < start + floats.capacity();
+			
+		}
+		
+		/**
+		 * Copies samples into the Window, up to and including a sample number.
+		 * 
+		 * @param lastSampleNumber    Last sample number that must be in the Window. This MUST be a valid sample number that fits inside this Window.
+		 */
+		private synchronized void fill(long lastSampleNumber) {
+			
+			long start = this.start + count;
+			long end   = lastSampleNumber;
+			if(end < start)
+				return;
+			
+			FloatBuffer destination = floats.duplicate(); // so the position is not shared with the Caches
+			int slotStart = (int) (start / SLOT_SIZE);
+			int slotEnd   = (int) (end   / SLOT_SIZE);
+			for(int slotN = slotStart; slotN <= slotEnd; slotN++) {
+				Object array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
+				if(!slot[slotN].flushing && slot[slotN].inRam) {
+					// fill from slot in memory
+					int offset = (int) (start % SLOT_SIZE);
+					int length = (int) Long.min(end - start + 1, SLOT_SIZE - offset);
+					destination.position((int) (start - this.start));
+					copyValues(array, offset, length, destination);
+					start += length;
+				} else {
+					// fill from slot on disk
+					while(slot[slotN].flushing);
+					int length = (int) Long.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE));
+					destination.position((int) (start - this.start));
+					readFromDisk(start, length, destination);
+					start += length;
 				}
-				
-				cachedCount += lastSampleNumber - (startOfCache + cachedCount) + 1;
 			}
 			
+			count = (int) (lastSampleNumber - this.start + 1);
+			
 		}
 		
 	}
 
 	private class Slot {
 		
-		private volatile boolean inRam = true;
+		private volatile boolean inRam;
 		private volatile boolean flushing = false;
-		private volatile float[] value = new float[SLOT_SIZE];
+		private volatile Object value;
+		
+		// these stay in memory after the values are moved to disk
+		private final float[] minimumValueInBlock = new float[BLOCKS_PER_SLOT];
+		private final float[] maximumValueInBlock = new float[BLOCKS_PER_SLOT];
+		private final double[] sumInBlock = new double[BLOCKS_PER_SLOT];
+		private final double[] sumOfSquaredDeviationsInBlock = new double[BLOCKS_PER_SLOT];
+		private final long[] pageOffset = new long[PAGES_PER_SLOT];
+		private final int[] pageLength = new int[PAGES_PER_SLOT];
+		
+		/**
+		 * @param inRam    True for a new slot, or false for a slot that is being restored from the file.
+		 */
+		private Slot(boolean inRam) {
+			
+			this.inRam = inRam;
+			value = !inRam                ? null :
+			        type == Type.UINT8    ? new byte[SLOT_SIZE] :
+			        type == Type.UINT16   ? new short[SLOT_SIZE] :
+			        type == Type.INT16    ? new short[SLOT_SIZE] :
+			        type == Type.UINT32   ? new int[SLOT_SIZE] :
+			                                new float[SLOT_SIZE];
+			
+		}
 		
 		/**
 		 * Moves this slot's data from memory to disk.
@@ -409,6 +1165,10 @@ public class StorageFloats {
 		 * @param slotN    Which slot number this object represents.
 		 */
 		public void flushToDisk(int slotN) {
+			
+			// slots restored from a previous session are already on disk
+			if(!inRam)
+				return;
 						
 			// in stress test mode just delete the data
 			// because even high-end SSDs will become the bottleneck
@@ -425,10 +1185,27 @@ public class StorageFloats {
 			new Thread(() -> {
 				try {
 					ByteBuffer buffer = Buffers.newDirectByteBuffer(SLOT_SIZE * BYTES_PER_VALUE);
-					FloatBuffer temp = buffer.asFloatBuffer();
-					temp.put(value);
-					long offset = (long) slotN * (long) SLOT_SIZE * (long) BYTES_PER_VALUE;
-					file.write(buffer, offset);
+					switch(type) {
+						case UINT8:  buffer.put((byte[]) value).rewind();         break;
+						case UINT16:
+						case INT16:  buffer.asShortBuffer().put((short[]) value); break;
+						case UINT32: buffer.asIntBuffer().put((int[]) value);     break;
+						default:     buffer.asFloatBuffer().put((float[]) value); break;
+					}
+					
+					// compress each page, and append it to the file
+					byte[] encoded = new byte[SampleCodec.getMaxEncodedSize(SamplePageCache.PAGE_SIZE)];
+					for(int pageN = 0; pageN < PAGES_PER_SLOT; pageN++) {
+						buffer.limit((pageN + 1) * SamplePageCache.PAGE_SIZE * BYTES_PER_VALUE);
+						buffer.position(pageN * SamplePageCache.PAGE_SIZE * BYTES_PER_VALUE);
+						int byteCount = SampleCodec.encode(buffer.slice().order(buffer.order()), type, SamplePageCache.PAGE_SIZE, encoded);
+						long offset = fileLength.getAndAdd(byteCount);
+						ByteBuffer source = ByteBuffer.wrap(encoded, 0, byteCount);
+						while(source.hasRemaining())
+							file.write(source, offset + source.position());
+						pageOffset[pageN] = offset;
+						pageLength[pageN] = byteCount;
+					}
 					file.force(true);
 					
 					inRam = false;
@@ -460,4 +1237,73 @@ public class StorageFloats {
 		public MinMax(float min, float max) {this.min = min;             this.max = max;}
 	}
 	
+	/**
+	 * The count, mean and sum of squared deviations of a sequence of samples.
+	 * These are merged with Chan's parallel algorithm, which avoids the catastrophic cancellation of a naive sum of squares.
+	 */
+	public static class Aggregate {
+		
+		long count = 0;
+		double mean = 0;
+		double sumOfSquaredDeviations = 0;
+		
+		/**
+		 * Merges the summary of another sequence of samples into this one.
+		 * 
+		 * @param count                     Number of samples.
+		 * @param sum                       Sum of the samples.
+		 * @param sumOfSquaredDeviations    Sum of (sample - mean)^2.
+		 */
+		public void add(long count, double sum, double sumOfSquaredDeviations) {
+			
+			if(count == 0)
+				return;
+			
+			long newCount = this.count + count;
+			double delta = (sum / count) - mean;
+			mean += delta * count / newCount;
+			this.sumOfSquaredDeviations += sumOfSquaredDeviations + delta * delta * this.count * count / newCount;
+			this.count = newCount;
+			
+		}
+		
+		/**
+		 * Merges one sample into this summary.
+		 * 
+		 * @param value    The sample.
+		 */
+		public void add(float value) {
+			
+			count++;
+			double delta = value - mean;
+			mean += delta / count;
+			sumOfSquaredDeviations += delta * (value - mean);
+			
+		}
+		
+		public long   getCount()                  { return count; }
+		public double getSum()                    { return mean * count; }
+		public double getMean()                   { return mean; }
+		public double getSumOfSquaredDeviations() { return Math.max(0, sumOfSquaredDeviations); }
+		
+		/**
+		 * @return    Sample standard deviation, or 0 if there are less than two samples.
+		 */
+		public double getStandardDeviation() {
+			
+			return count < 2 ? 0 : Math.sqrt(getSumOfSquaredDeviations() / (count - 1));
+			
+		}
+		
+		/**
+		 * @return    Root mean square, or 0 if there are no samples.
+		 */
+		public double getRms() {
+			
+			return count < 1 ? 0 : Math.sqrt(mean * mean + getSumOfSquaredDeviations() / count);
+			
+		}
+		
+	}
+	
 }
@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/**
+ * An index of the frames acquired by a camera, stored as primitive arrays.
+ * For each frame number, this stores when the frame was captured, and where its JPEG is located in the cache (or imported) file.
+ * 
+ * Frames are appended by one thread at a time, while any number of other threads may read them.
+ * The arrays are only replaced (never modified in place) when they grow, and the count is updated last,
+ * so readers always see fully populated arrays for the count they read.
+ */
+public class StorageFrames {
+	
+	private volatile long[] timestamps = new long[1024]; // when each frame was captured, milliseconds since 1970-01-01
+	private volatile long[] offsets    = new long[1024]; // byte offset in the file where each jpeg starts
+	private volatile int[]  lengths    = new int[1024];  // byte count of each jpeg
+	private volatile int count = 0;
+	
+	/**
+	 * Appends a frame to the end of the index.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param timestamp    When the frame was captured (milliseconds since 1970-01-01.) This must be >= the timestamp of any frame already in the index.
+	 * @param offset       Byte offset in the file where the JPEG starts.
+	 * @param length       Byte count of the JPEG.
+	 */
+	public void append(long timestamp, long offset, int length) {
+		
+		int n = count;
+		if(n == timestamps.length) {
+			timestamps = Arrays.copyOf(timestamps, n * 2);
+			offsets    = Arrays.copyOf(offsets,    n * 2);
+			lengths    = Arrays.copyOf(lengths,    n * 2);
+		}
+		timestamps[n] = timestamp;
+		offsets[n] = offset;
+		lengths[n] = length;
+		count = n + 1;
+		
+	}
+	
+	/**
+	 * @return    Number of frames in the index.
+	 */
+	public int size() {
+		
+		return count;
+		
+	}
+	
+	/**
+	 * @return    True if there are no frames in the index.
+	 */
+	public boolean isEmpty() {
+		
+		return count == 0;
+		
+	}
+	
+	/**
+	 * @param frameNumber    Frame number.
+	 * @return               When that frame was captured (milliseconds since 1970-01-01.)
+	 */
+	public long getTimestamp(int frameNumber) {
+		
+		return timestamps[frameNumber];
+		
+	}
+	
+	/**
+	 * @param frameNumber    Frame number.
+	 * @return               Byte offset in the file where that frame's JPEG starts.
+	 */
+	public long getOffset(int frameNumber) {
+		
+		return offsets[frameNumber];
+		
+	}
+	
+	/**
+	 * @param frameNumber    Frame number.
+	 * @return               Byte count of that frame's JPEG.
+	 */
+	public int getLength(int frameNumber) {
+		
+		return lengths[frameNumber];
+		
+	}
+	
+	/**
+	 * Uses a binary search to find the last frame captured at or before a timestamp.
+	 * 
+	 * @param timestamp    Desired timestamp (milliseconds since 1970-01-01.)
+	 * @return             The frame number, or -1 if there are no frames or every frame is *after* the timestamp.
+	 */
+	public int getFrameNumberAtOrBefore(long timestamp) {
+		
+		int n = count;
+		long[] array = timestamps;
+		
+		// find the first frame *after* the timestamp, then step back one
+		int low = 0;
+		int high = n;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(array[middle] <= timestamp)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low - 1;
+		
+	}
+	
+	/**
+	 * Uses a binary search to find the first frame captured at or after a timestamp.
+	 * 
+	 * @param timestamp    Desired timestamp (milliseconds since 1970-01-01.)
+	 * @return             The frame number, or -1 if there are no frames or every frame is *before* the timestamp.
+	 */
+	public int getFrameNumberAtOrAfter(long timestamp) {
+		
+		int n = count;
+		long[] array = timestamps;
+		
+		int low = 0;
+		int high = n;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(array[middle] < timestamp)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return (low == n) ? -1 : low;
+		
+	}
+	
+	/**
+	 * Empties the index. The arrays are kept, so they can be reused.
+	 */
+	public void clear() {
+		
+		count = 0;
+		
+	}
+
+}
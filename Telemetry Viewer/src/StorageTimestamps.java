@@ -1,3 +1,5 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
@@ -5,7 +7,6 @@ import java.nio.LongBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
@@ -15,19 +16,24 @@ public class StorageTimestamps {
 	
 	// timestamps are buffered into "slots" which each hold 1M values.
 	// to speed up timestamp queries, the min and max value is tracked for smaller "blocks" of 1K values.
+	// sample numbers are longs, and the table of slots grows as needed, so the number of samples is only limited by disk space.
 	private final int BLOCK_SIZE = StorageFloats.BLOCK_SIZE;
 	private final int SLOT_SIZE  = StorageFloats.SLOT_SIZE;
-	private final int MAX_SAMPLE_NUMBER = Integer.MAX_VALUE;
+	private final int BLOCKS_PER_SLOT = SLOT_SIZE / BLOCK_SIZE;
 	private final int BYTES_PER_VALUE = 8; // 8 bytes per long
 	
-	private volatile int sampleCount = 0;
-	private volatile Slot[] slot                = new Slot[MAX_SAMPLE_NUMBER / SLOT_SIZE  + 1]; // +1 to round up
-	private volatile long[] minimumValueInBlock = new long[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
-	private volatile long[] maximumValueInBlock = new long[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
+	private volatile long sampleCount = 0;
+	private volatile Slot[] slot = new Slot[16]; // grows as needed
 	
 	// older slots can be swapped to disk when memory runs low.
-	private final Path filePath;
-	private final FileChannel file;
+	// the file lives in the session directory and starts with a header, so the SessionJournal can reopen it after the program exits or crashes.
+	private volatile Path filePath;
+	private volatile FileChannel file;
+	private static final int FILE_MAGIC = 0x54565354; // "TVST"
+	private static final int FILE_HEADER_SIZE = 16;
+	
+	// incremented by clear() and restore(), so a Cache can tell that its pinned page is stale
+	private volatile int clearCount = 0;
 	
 	private ConnectionTelemetry connection;
 
@@ -40,19 +46,30 @@ public class StorageTimestamps {
 		
 		this.connection = connection;
 		
-		filePath = Paths.get("cache/" + this.toString() + ".bin");
+		createFile();
+		
+	}
+	
+	/**
+	 * Creates an empty file in the current session directory, and writes its header.
+	 */
+	private void createFile() {
+		
+		filePath = SessionJournal.getDirectory().resolve(this.toString() + ".bin");
 		
-		FileChannel temp = null;
 		try {
-			temp = FileChannel.open(filePath, StandardOpenOption.CREATE,
+			file = FileChannel.open(filePath, StandardOpenOption.CREATE,
 			                                  StandardOpenOption.TRUNCATE_EXISTING,
 			                                  StandardOpenOption.READ,
 			                                  StandardOpenOption.WRITE);
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			header.putInt(FILE_MAGIC).putInt(BYTES_PER_VALUE).putLong(0).flip();
+			while(header.hasRemaining())
+				file.write(header, header.position());
 		} catch (IOException e) {
 			NotificationsController.showCriticalFault("Unable to create the cache file for \"" + filePath.toString() + "\"");
 			e.printStackTrace();
 		}
-		file = temp;
 		
 	}
 	
@@ -73,25 +90,28 @@ public class StorageTimestamps {
 	 */
 	public void appendTimestamp(long value) {
 		
-		int slotN  = sampleCount / SLOT_SIZE;
-		int valueN = sampleCount % SLOT_SIZE;
-		int blockN = sampleCount / BLOCK_SIZE;
+		int slotN  = (int) (sampleCount / SLOT_SIZE);
+		int valueN = (int) (sampleCount % SLOT_SIZE);
+		int blockInSlotN = valueN / BLOCK_SIZE;
 		
 		if(valueN == 0) {
-			slot[slotN] = new Slot();
+			if(slotN >= slot.length)
+				slot = Arrays.copyOf(slot, slot.length * 2); // grow the table, existing slots are shared with the old table
+			slot[slotN] = new Slot(true);
 			if(slotN > 1)
 				slot[slotN - 2].flushToDisk(slotN - 2);
 		}
-		slot[slotN].value[valueN] = value;
+		Slot s = slot[slotN];
+		s.value[valueN] = value;
 		
 		if(sampleCount % BLOCK_SIZE == 0) {
-			minimumValueInBlock[blockN] = value;
-			maximumValueInBlock[blockN] = value;
+			s.minimumValueInBlock[blockInSlotN] = value;
+			s.maximumValueInBlock[blockInSlotN] = value;
 		} else {
-			if(value < minimumValueInBlock[blockN])
-				minimumValueInBlock[blockN] = value;
-			if(value > maximumValueInBlock[blockN])
-				maximumValueInBlock[blockN] = value;
+			if(value < s.minimumValueInBlock[blockInSlotN])
+				s.minimumValueInBlock[blockInSlotN] = value;
+			if(value > s.maximumValueInBlock[blockInSlotN])
+				s.maximumValueInBlock[blockInSlotN] = value;
 		}
 		
 		sampleCount++;
@@ -107,38 +127,61 @@ public class StorageTimestamps {
 	 */
 	public void fillBlock(long value) {
 		
-		int slotN      = sampleCount / SLOT_SIZE;
-		int slotOffset = sampleCount % SLOT_SIZE;
-		int blockN     = sampleCount / BLOCK_SIZE;
+		int slotN        = (int) (sampleCount / SLOT_SIZE);
+		int slotOffset   = (int) (sampleCount % SLOT_SIZE);
+		int blockInSlotN = slotOffset / BLOCK_SIZE;
 		
 		if(slotOffset == 0) {
-			slot[slotN] = new Slot();
+			if(slotN >= slot.length)
+				slot = Arrays.copyOf(slot, slot.length * 2); // grow the table, existing slots are shared with the old table
+			slot[slotN] = new Slot(true);
 			if(slotN > 1)
 				slot[slotN - 2].flushToDisk(slotN - 2);
 		}
 		
-		Arrays.fill(slot[slotN].value, slotOffset, slotOffset + BLOCK_SIZE, value);
-		minimumValueInBlock[blockN] = value;
-		maximumValueInBlock[blockN] = value;
+		Slot s = slot[slotN];
+		Arrays.fill(s.value, slotOffset, slotOffset + BLOCK_SIZE, value);
+		s.minimumValueInBlock[blockInSlotN] = value;
+		s.maximumValueInBlock[blockInSlotN] = value;
 		
 		sampleCount += BLOCK_SIZE;
 		
 	}
 	
-	public int getClosestSampleNumberAtOrBefore(long timestamp, int maxSampleNumber) {
+	/**
+	 * @param blockN    Which block. This MUST be a block that has been populated.
+	 * @return          Minimum timestamp in the block.
+	 */
+	private long getMinimumOfBlock(long blockN) {
+		
+		return slot[(int) (blockN / BLOCKS_PER_SLOT)].minimumValueInBlock[(int) (blockN % BLOCKS_PER_SLOT)];
+		
+	}
+	
+	/**
+	 * @param blockN    Which block. This MUST be a block that has been populated.
+	 * @return          Maximum timestamp in the block.
+	 */
+	private long getMaximumOfBlock(long blockN) {
+		
+		return slot[(int) (blockN / BLOCKS_PER_SLOT)].maximumValueInBlock[(int) (blockN % BLOCKS_PER_SLOT)];
+		
+	}
+	
+	public long getClosestSampleNumberAtOrBefore(long timestamp, long maxSampleNumber) {
 		
-		int lastBlock = maxSampleNumber / BLOCK_SIZE;
+		long lastBlock = maxSampleNumber / BLOCK_SIZE;
 		
 		// check if all timestamps are younger
-		if(maximumValueInBlock[lastBlock] < timestamp)
+		if(getMaximumOfBlock(lastBlock) < timestamp)
 			return maxSampleNumber;
 		
 		// check the blocks
-		for(int i = lastBlock; i >= 0; i--) {
-			if(minimumValueInBlock[i] <= timestamp) {
-				int firstSampleNumber = i * BLOCK_SIZE;
-				int lastSampleNumber = Integer.min((i+1) * BLOCK_SIZE, maxSampleNumber);
-				for(int sampleN = lastSampleNumber; sampleN >= firstSampleNumber; sampleN--)
+		for(long i = lastBlock; i >= 0; i--) {
+			if(getMinimumOfBlock(i) <= timestamp) {
+				long firstSampleNumber = i * BLOCK_SIZE;
+				long lastSampleNumber = Long.min((i+1) * BLOCK_SIZE, maxSampleNumber);
+				for(long sampleN = lastSampleNumber; sampleN >= firstSampleNumber; sampleN--)
 					if(getTimestamp(sampleN) <= timestamp)
 						return sampleN;
 			}
@@ -149,25 +192,25 @@ public class StorageTimestamps {
 		
 	}
 	
-	public int getClosestSampleNumberAfter(long timestamp) {
+	public long getClosestSampleNumberAfter(long timestamp) {
 		
 		// abort if no samples
 		if(sampleCount == 0)
 			return -1;
 		
-		int maxSampleNumber = sampleCount - 1;
-		int lastBlock = maxSampleNumber / BLOCK_SIZE;
+		long maxSampleNumber = sampleCount - 1;
+		long lastBlock = maxSampleNumber / BLOCK_SIZE;
 		
 		// check if all timestamps are older
-		if(minimumValueInBlock[0] > timestamp)
+		if(getMinimumOfBlock(0) > timestamp)
 			return 0;
 		
 		// check the blocks
-		for(int i = 0; i <= lastBlock; i++) {
-			if(maximumValueInBlock[i] > timestamp) {
-				int firstSampleNumber = i * BLOCK_SIZE;
-				int lastSampleNumber = Integer.min((i+1) * BLOCK_SIZE, maxSampleNumber);
-				for(int sampleN = firstSampleNumber; sampleN <= lastSampleNumber; sampleN++)
+		for(long i = 0; i <= lastBlock; i++) {
+			if(getMaximumOfBlock(i) > timestamp) {
+				long firstSampleNumber = i * BLOCK_SIZE;
+				long lastSampleNumber = Long.min((i+1) * BLOCK_SIZE, maxSampleNumber);
+				for(long sampleN = firstSampleNumber; sampleN <= lastSampleNumber; sampleN++)
 					if(getTimestamp(sampleN) > timestamp)
 						return sampleN;
 			}
@@ -185,10 +228,10 @@ public class StorageTimestamps {
 	 * @param sampleNumber    Which sample number to read. This MUST be a valid sample number.
 	 * @return                The corresponding timestamp.
 	 */
-	public long getTimestamp(int sampleNumber) {
+	public long getTimestamp(long sampleNumber) {
 		
-		int slotN  = sampleNumber / SLOT_SIZE;
-		int valueN = sampleNumber % SLOT_SIZE;
+		int slotN  = (int) (sampleNumber / SLOT_SIZE);
+		int valueN = (int) (sampleNumber % SLOT_SIZE);
 		
 		// read from memory if possible
 		long[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
@@ -197,15 +240,46 @@ public class StorageTimestamps {
 		
 		// read from disk
 		while(slot[slotN].flushing);
-		ByteBuffer buffer = Buffers.newDirectByteBuffer(BYTES_PER_VALUE);
-		long offset = (long) sampleNumber * (long) BYTES_PER_VALUE;
-		try {
-			file.read(buffer, offset);
-		} catch (IOException e) {
-			NotificationsController.showCriticalFault("Error while reading a value from the cache file at \"" + filePath.toString() + "\"");
-			e.printStackTrace();
+		SamplePageCache.Page page = SamplePageCache.acquire(this, file, FILE_HEADER_SIZE, BYTES_PER_VALUE, (int) (sampleNumber / SamplePageCache.PAGE_SIZE));
+		long timestamp = page.bytes.duplicate().order(page.bytes.order()).getLong((int) (sampleNumber % SamplePageCache.PAGE_SIZE) * BYTES_PER_VALUE);
+		SamplePageCache.release(page);
+		return timestamp;
+		
+	}
+	
+	/**
+	 * Reads a sequence of timestamps. Timestamps on disk are read a page at a time, instead of one timestamp at a time.
+	 * 
+	 * @param firstSampleNumber    The first sample number, inclusive. This MUST be a valid sample number.
+	 * @param count                Number of timestamps to read. They MUST be valid sample numbers.
+	 * @param destination          Where the timestamps will be written, starting at its current position.
+	 */
+	public void getTimestamps(long firstSampleNumber, int count, LongBuffer destination) {
+		
+		long sampleNumber = firstSampleNumber;
+		long end = firstSampleNumber + count;
+		while(sampleNumber < end) {
+			int slotN  = (int) (sampleNumber / SLOT_SIZE);
+			int valueN = (int) (sampleNumber % SLOT_SIZE);
+			int n = (int) Long.min(end - sampleNumber, SamplePageCache.PAGE_SIZE - (sampleNumber % SamplePageCache.PAGE_SIZE));
+			
+			// read from memory if possible
+			long[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
+			if(!slot[slotN].flushing && slot[slotN].inRam) {
+				destination.put(array, valueN, n);
+			} else {
+				// read from disk
+				while(slot[slotN].flushing);
+				SamplePageCache.Page page = SamplePageCache.acquire(this, file, FILE_HEADER_SIZE, BYTES_PER_VALUE, (int) (sampleNumber / SamplePageCache.PAGE_SIZE));
+				LongBuffer timestamps = page.bytes.duplicate().order(page.bytes.order()).asLongBuffer();
+				int offset = (int) (sampleNumber % SamplePageCache.PAGE_SIZE);
+				timestamps.position(offset).limit(offset + n);
+				destination.put(timestamps);
+				SamplePageCache.release(page);
+			}
+			
+			sampleNumber += n;
 		}
-		return buffer.getLong(0);
 		
 	}
 	
@@ -215,51 +289,50 @@ public class StorageTimestamps {
 	 * 
 	 * @param firstSampleNumber    The first sample number, inclusive. This MUST be a valid sample number.
 	 * @param lastSampleNumber     The last sample number, inclusive. This MUST be a valid sample number.
-	 * @param cache                Cache to use, or null to not use a cache.
+	 * @param cache                Cache that keeps the most recently read page pinned, or null to not use a cache.
 	 * @param plotMinX             Timestamp at the left edge of the plot.
+	 * @param buffer               Buffer to reuse, or null. A new buffer is only allocated if this one is null or too small.
+	 * @return                     The timestamps, relative to plotMinX. This will be the provided buffer if it was big enough.
 	 */
-	public FloatBuffer getTampstamps(int firstSampleNumber, int lastSampleNumber, Cache cache, long plotMinX) {
-		
-		FloatBuffer buffer = Buffers.newDirectFloatBuffer(lastSampleNumber - firstSampleNumber + 1);
-		
-		// if using a cache, update it and provide from the cache
-		if(cache != null) {
-			cache.update(firstSampleNumber, lastSampleNumber);
-			for(int i = firstSampleNumber; i <= lastSampleNumber; i++)
-				buffer.put(cache.cacheLongs.get(i - cache.startOfCache) - plotMinX);
-			buffer.rewind();
-			return buffer;
-		}
-		
-		// if not using a cache, provide it from the file and/or memory
-		int firstSlot = firstSampleNumber / SLOT_SIZE;
-		int lastSlot  = lastSampleNumber  / SLOT_SIZE;
-		int start = firstSampleNumber;
-		int end   = lastSampleNumber;
+	public FloatBuffer getTampstamps(long firstSampleNumber, long lastSampleNumber, Cache cache, long plotMinX, FloatBuffer buffer) {
+		
+		int count = (int) (lastSampleNumber - firstSampleNumber + 1);
+		if(buffer == null || buffer.capacity() < count)
+			buffer = Buffers.newDirectFloatBuffer(count + (count / 4)); // with some room to grow
+		buffer.clear();
+		buffer.limit(count);
+		
+		// provide it from memory and/or the shared pages, the cache only keeps the most recently used page pinned
+		int firstSlot = (int) (firstSampleNumber / SLOT_SIZE);
+		int lastSlot  = (int) (lastSampleNumber  / SLOT_SIZE);
+		long start = firstSampleNumber;
+		long end   = lastSampleNumber;
 		for(int slotN = firstSlot; slotN <= lastSlot; slotN++) {
-			int valueCount = Integer.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE));
-			int byteCount  = valueCount * BYTES_PER_VALUE;
+			int valueCount = (int) Long.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE));
 			long[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
 			if(!slot[slotN].flushing && slot[slotN].inRam) {
 				// fill buffer from slot in memory
-				int offset = start % SLOT_SIZE;
+				int offset = (int) (start % SLOT_SIZE);
 				for(int i = offset; i < offset + valueCount; i++)
 					buffer.put(array[i] - plotMinX);
 				start += valueCount;
 			} else {
-				// fill cache from slot on disk
+				// fill buffer from slot on disk
 				while(slot[slotN].flushing);
-				long offset = (long) start * (long) BYTES_PER_VALUE;
-				try {
-					ByteBuffer temp = Buffers.newDirectByteBuffer(byteCount);
-					file.read(temp, offset);
-					for(int i = 0; i < valueCount; i++)
-						buffer.put(temp.getLong(i * BYTES_PER_VALUE) - plotMinX);
-				} catch (IOException e) {
-					NotificationsController.showCriticalFault("Error while reading a value from the cache file at \"" + filePath.toString() + "\"");
-					e.printStackTrace();
+				while(valueCount > 0) {
+					int offset = (int) (start % SamplePageCache.PAGE_SIZE);
+					int length = Integer.min(valueCount, SamplePageCache.PAGE_SIZE - offset);
+					int pageN = (int) (start / SamplePageCache.PAGE_SIZE);
+					SamplePageCache.Page page = SamplePageCache.acquire(this, file, FILE_HEADER_SIZE, BYTES_PER_VALUE, pageN);
+					LongBuffer values = page.bytes.duplicate().order(page.bytes.order()).asLongBuffer();
+					for(int i = offset; i < offset + length; i++)
+						buffer.put(values.get(i) - plotMinX);
+					if(cache != null)
+						cache.pin(pageN);
+					SamplePageCache.release(page);
+					start += length;
+					valueCount -= length;
 				}
-				start += valueCount;
 			}
 		}
 		buffer.rewind();
@@ -288,9 +361,16 @@ public class StorageTimestamps {
 			
 		}
 		
-		// empty the file
+		// empty the file, but leave the file of a reopened session intact and start a new file in the current session instead
+		SamplePageCache.removeAll(this);
+		clearCount++;
 		try {
-			file.truncate(0);
+			if(filePath.getParent().equals(SessionJournal.getDirectory())) {
+				file.truncate(FILE_HEADER_SIZE);
+			} else {
+				file.close();
+				createFile();
+			}
 		} catch (IOException e) {
 			NotificationsController.showCriticalFault("Unable to clear the cache file at \"" + filePath.toString() + "\"");
 			e.printStackTrace();
@@ -298,9 +378,7 @@ public class StorageTimestamps {
 		
 		// empty the slots
 		sampleCount = 0;
-		slot                = new Slot[MAX_SAMPLE_NUMBER / SLOT_SIZE  + 1]; // +1 to round up
-		minimumValueInBlock = new long[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
-		maximumValueInBlock = new long[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
+		slot = new Slot[16];
 		
 	}
 	
@@ -327,6 +405,7 @@ public class StorageTimestamps {
 		}
 		
 		// remove the file from disk
+		SamplePageCache.removeAll(this);
 		try {
 			file.close();
 			Files.deleteIfExists(filePath);
@@ -337,121 +416,208 @@ public class StorageTimestamps {
 		
 	}
 	
+	/**
+	 * Closes the file, but leaves it on disk so the session can be reopened later.
+	 * This method should be called when the program exits.
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 */
+	public void close() {
+		
+		// slots may be flushing to disk, so wait for that to finish
+		for(Slot s : slot) {
+			
+			if(s == null)
+				break; // reached the end
+			
+			while(s.flushing)
+				; // wait
+			
+		}
+		
+		SamplePageCache.removeAll(this);
+		try {
+			file.close();
+		} catch (IOException e) {
+			NotificationsController.showCriticalFault("Unable to close the cache file at \"" + filePath.toString() + "\"");
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/**
+	 * @return    Name of the file, relative to the session directory.
+	 */
+	public String getFileName() {
+		
+		return filePath.getFileName().toString();
+		
+	}
+	
+	/**
+	 * @param slotN    Slot number.
+	 * @return         True if every timestamp in that slot has been written to the file.
+	 */
+	public boolean isSlotOnDisk(int slotN) {
+		
+		Slot[] table = slot;
+		return slotN < table.length && table[slotN] != null && !table[slotN].inRam && !table[slotN].flushing;
+		
+	}
+	
+	/**
+	 * Writes the block summaries of a slot, so the slot can be restored by restoreSlot().
+	 * 
+	 * @param slotN    Slot number. This slot MUST be on disk.
+	 * @param out      Where to write.
+	 */
+	public void writeSlotIndex(int slotN, DataOutputStream out) throws IOException {
+		
+		Slot s = slot[slotN];
+		for(int blockN = 0; blockN < BLOCKS_PER_SLOT; blockN++) {
+			out.writeLong(s.minimumValueInBlock[blockN]);
+			out.writeLong(s.maximumValueInBlock[blockN]);
+		}
+		
+	}
+	
+	/**
+	 * Writes timestamps that are still in memory.
+	 * 
+	 * @param firstSampleNumber    First sample number to write.
+	 * @param count                Number of timestamps to write. These MUST be in the same slot.
+	 * @param out                  Where to write.
+	 * @return                     True on success, or false if the slot was moved to disk in the meantime.
+	 */
+	public boolean writeRawTimestamps(long firstSampleNumber, int count, DataOutputStream out) throws IOException {
+		
+		long[] array = slot[(int) (firstSampleNumber / SLOT_SIZE)].value;
+		if(array == null)
+			return false;
+		
+		int offset = (int) (firstSampleNumber % SLOT_SIZE);
+		for(int i = offset; i < offset + count; i++)
+			out.writeLong(array[i]);
+		return true;
+		
+	}
+	
+	/**
+	 * Replaces the (empty) file with the file from a previous session. Its slots must then be restored with restoreSlot(), in order.
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 * 
+	 * @param path    The file.
+	 * @throws IOException    If the file can not be opened, or does not contain timestamps.
+	 */
+	public void restore(Path path) throws IOException {
+		
+		FileChannel restoredFile = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		while(header.hasRemaining() && restoredFile.read(header, header.position()) > 0)
+			;
+		header.flip();
+		if(header.remaining() < FILE_HEADER_SIZE || header.getInt() != FILE_MAGIC || header.getInt() != BYTES_PER_VALUE) {
+			restoredFile.close();
+			throw new IOException("\"" + path.toString() + "\" does not contain timestamps.");
+		}
+		
+		SamplePageCache.removeAll(this);
+		clearCount++;
+		file.close();
+		Files.deleteIfExists(filePath);
+		
+		file = restoredFile;
+		filePath = path;
+		sampleCount = 0;
+		slot = new Slot[16];
+		
+	}
+	
+	/**
+	 * Restores a slot that is on disk. The slots MUST be restored in order.
+	 * 
+	 * @param slotN    Slot number.
+	 * @param in       Where to read the summaries that were written by writeSlotIndex().
+	 */
+	public void restoreSlot(int slotN, DataInputStream in) throws IOException {
+		
+		Slot s = new Slot(false);
+		for(int blockN = 0; blockN < BLOCKS_PER_SLOT; blockN++) {
+			s.minimumValueInBlock[blockN] = in.readLong();
+			s.maximumValueInBlock[blockN] = in.readLong();
+		}
+		
+		if(slotN >= slot.length)
+			slot = Arrays.copyOf(slot, Integer.max(slotN + 1, slot.length * 2));
+		slot[slotN] = s;
+		sampleCount = (long) (slotN + 1) * SLOT_SIZE;
+		
+	}
+	
+	/**
+	 * Reads timestamps that have been moved to disk. They are provided by the SamplePageCache, which is shared with all other charts/exporters/triggers.
+	 * 
+	 * @param firstSampleNumber    First sample number to read. The slot containing it MUST be on disk.
+	 * @param count                Number of timestamps to read. These MUST be in the same slot.
+	 * @param destination          Where the timestamps will be written, starting at its current position.
+	 */
+	private void readFromDisk(long firstSampleNumber, int count, LongBuffer destination) {
+		
+		while(count > 0) {
+			int pageN  = (int) (firstSampleNumber / SamplePageCache.PAGE_SIZE);
+			int offset = (int) (firstSampleNumber % SamplePageCache.PAGE_SIZE);
+			int length = Integer.min(count, SamplePageCache.PAGE_SIZE - offset);
+			SamplePageCache.Page page = SamplePageCache.acquire(this, file, FILE_HEADER_SIZE, BYTES_PER_VALUE, pageN);
+			LongBuffer values = page.bytes.duplicate().order(page.bytes.order()).asLongBuffer();
+			values.position(offset);
+			values.limit(offset + length);
+			destination.put(values);
+			SamplePageCache.release(page);
+			firstSampleNumber += length;
+			count -= length;
+		}
+		
+	}
+	
+	/**
+	 * Keeps the most recently read page of timestamps pinned in the SamplePageCache, so a chart that is redrawn every frame does not need to reread it.
+	 * The page is shared with all other charts/exporters/triggers, so nothing is copied.
+	 */
 	public class Cache {
 		
-		private int cacheSize = 1024;
-		private ByteBuffer cacheBytes = Buffers.newDirectByteBuffer(cacheSize * BYTES_PER_VALUE);
-		private LongBuffer cacheLongs = cacheBytes.asLongBuffer();
-		private int startOfCache = 0;
-		private int cachedCount = 0;
+		private SamplePageCache.Page page = null;
+		private int pageN = -1;
+		private int pageClearCount = clearCount;
 		
 		/**
-		 * Updates the contents of the cache.
-		 * The requested range MUST be small enough to fit inside this cache!
+		 * Pins a page, and releases the previously pinned page.
 		 * 
-		 * @param firstSampleNumber    Start of range, inclusive. This MUST be a valid sample number.
-		 * @param lastSampleNumber     End of range, inclusive. This MUST be a valid sample number.
+		 * @param newPageN    The page to pin. Its slot MUST be on disk.
 		 */
-		public void update(int firstSampleNumber, int lastSampleNumber) {
+		private synchronized void pin(int newPageN) {
 			
-			// grow the cache to 300% if it can't hold 200% the requested range
-			if(cacheSize < 2 * (lastSampleNumber - firstSampleNumber + 1)) {
-				cacheSize = 3 * (lastSampleNumber - firstSampleNumber + 1);
-				cacheBytes = Buffers.newDirectByteBuffer(cacheSize * BYTES_PER_VALUE);
-				cacheLongs = cacheBytes.asLongBuffer();
-				startOfCache = 0;
-				cachedCount = 0;
-			}
+			if(page != null && pageN == newPageN && pageClearCount == clearCount)
+				return;
 			
-			// flush cache if necessary
-			if(firstSampleNumber < startOfCache || lastSampleNumber >= startOfCache + cacheSize) {
-				startOfCache = firstSampleNumber - (cacheSize / 3); // reserve a third of the cache before the currently requested range, so the user can rewind a little without needing to flush the cache
-				if(startOfCache < 0)
-					startOfCache = 0;
-				cachedCount = 0;
-				// try to fill the new cache with adjacent samples too
-				firstSampleNumber = startOfCache;
-				lastSampleNumber = startOfCache + cacheSize - 1;
-				int max = connection.getSampleCount() - 1;
-				if(lastSampleNumber > max)
-					lastSampleNumber = max;
-			}
+			SamplePageCache.Page oldPage = page;
+			page = SamplePageCache.acquire(StorageTimestamps.this, file, FILE_HEADER_SIZE, BYTES_PER_VALUE, newPageN);
+			pageN = newPageN;
+			pageClearCount = clearCount;
+			if(oldPage != null)
+				SamplePageCache.release(oldPage);
 			
-			// new range starts before cached range
-			if(firstSampleNumber < startOfCache) {
-				int start = firstSampleNumber;
-				int end   = startOfCache - 1;
-				
-				int firstSlot = start / SLOT_SIZE;
-				int lastSlot  = end   / SLOT_SIZE;
-				for(int slotN = firstSlot; slotN <= lastSlot; slotN++) {
-					long[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
-					if(!slot[slotN].flushing && slot[slotN].inRam) {
-						// fill cache from slot in memory
-						int offset = start % SLOT_SIZE;
-						int length = Integer.min(end - start + 1, SLOT_SIZE - offset);
-						cacheLongs.position(start - startOfCache);
-						cacheLongs.put(array, offset, length);
-						start += length;
-					} else {
-						// fill cache from slot on disk
-						while(slot[slotN].flushing);
-						long offset = (long) start * (long) BYTES_PER_VALUE;
-						int byteCount = Integer.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE)) * BYTES_PER_VALUE;
-						cacheBytes.position((start - startOfCache) * BYTES_PER_VALUE);
-						ByteBuffer buffer = cacheBytes.slice();
-						buffer.limit(byteCount);
-						try {
-							file.read(buffer, offset);
-						} catch (IOException e) {
-							NotificationsController.showCriticalFault("Error while reading a value from the cache file at \"" + filePath.toString() + "\"");
-							e.printStackTrace();
-						}
-						start += byteCount / BYTES_PER_VALUE;
-					}
-				}
-				
-				startOfCache = firstSampleNumber;
-				cachedCount += end - firstSampleNumber + 1;
-			}
+		}
+		
+		/**
+		 * Releases the pinned page, if any. The cache remains usable.
+		 */
+		public synchronized void dispose() {
 			
-			// new range ends after cached range
-			if(lastSampleNumber > startOfCache + cachedCount - 1) {
-				int start = startOfCache + cachedCount;
-				int end   = lastSampleNumber;
-				
-				int slotStart = start / SLOT_SIZE;
-				int slotEnd   = end   / SLOT_SIZE;
-				for(int slotN = slotStart; slotN <= slotEnd; slotN++) {
-					long[] array = slot[slotN].value; // save a reference to the array BEFORE checking if the array is in memory, to prevent a race condition
-					if(!slot[slotN].flushing && slot[slotN].inRam) {
-						// fill cache from slot in memory
-						int offset = start % SLOT_SIZE;
-						int length = Integer.min(end - start + 1, SLOT_SIZE - offset);
-						cacheLongs.position(start - startOfCache);
-						cacheLongs.put(array, offset, length);
-						start += length;
-					} else {
-						// fill cache from slot on disk
-						while(slot[slotN].flushing);
-						long offset = (long) start * (long) BYTES_PER_VALUE;
-						int byteCount = Integer.min(end - start + 1, SLOT_SIZE - (start % SLOT_SIZE)) * BYTES_PER_VALUE;
-						ByteBuffer buffer = Buffers.newDirectByteBuffer(byteCount);
-						try {
-							file.read(buffer, offset);
-						} catch (IOException e) {
-							NotificationsController.showCriticalFault("Error while reading a value from the cache file at \"" + filePath.toString() + "\"");
-							e.printStackTrace();
-						}
-						buffer.rewind();
-						cacheLongs.position(start - startOfCache);
-						cacheLongs.put(buffer.asLongBuffer());
-						start += byteCount / BYTES_PER_VALUE;
-					}
-				}
-				
-				cachedCount += lastSampleNumber - (startOfCache + cachedCount) + 1;
-			}
+			if(page != null)
+				SamplePageCache.release(page);
+			page = null;
+			pageN = -1;
 			
 		}
 		
@@ -459,12 +625,30 @@ public class StorageTimestamps {
 
 	private class Slot {
 		
-		private volatile boolean inRam = true;
+		private volatile boolean inRam;
 		private volatile boolean flushing = false;
-		private volatile long[] value = new long[SLOT_SIZE];
+		private volatile long[] value;
+		
+		// these stay in memory after the values are moved to disk
+		private final long[] minimumValueInBlock = new long[BLOCKS_PER_SLOT];
+		private final long[] maximumValueInBlock = new long[BLOCKS_PER_SLOT];
+		
+		/**
+		 * @param inRam    True for a new slot, or false for a slot that is being restored from the file.
+		 */
+		private Slot(boolean inRam) {
+			
+			this.inRam = inRam;
+			value = inRam ? new long[SLOT_SIZE] : null;
+			
+		}
 		
 		public void flushToDisk(int slotN) {
 			
+			// slots restored from a previous session are already on disk
+			if(!inRam)
+				return;
+			
 			// in stress test mode just delete the data
 			// because even high-end SSDs will become the bottleneck
 			if(connection.mode == ConnectionTelemetry.Mode.STRESS_TEST) {
@@ -482,7 +666,7 @@ public class StorageTimestamps {
 					ByteBuffer buffer = Buffers.newDirectByteBuffer(SLOT_SIZE * BYTES_PER_VALUE);
 					LongBuffer temp = buffer.asLongBuffer();
 					temp.put(value);
-					long offset = (long) slotN * (long) SLOT_SIZE * (long) BYTES_PER_VALUE;
+					long offset = FILE_HEADER_SIZE + (long) slotN * (long) SLOT_SIZE * (long) BYTES_PER_VALUE;
 					file.write(buffer, offset);
 					file.force(true);
 					
@@ -0,0 +1,130 @@
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the histogram bins for a sliding window of samples.
+ * 
+ * When the window moves, only the samples that entered the window are added, and only the samples that left the window are subtracted.
+ * The bins are only rebuilt from scratch if the bin layout (x-axis range or bin count) or datasets change, or if the windows don't overlap enough.
+ */
+public class StreamingHistogram {
+	
+	// samples are read in chunks so the samples caches don't need to grow to the size of the entire window
+	private static final int CHUNK_SIZE = StorageFloats.SLOT_SIZE;
+	
+	private int[][] bins = new int[0][0]; // [datasetN][binN]
+	private List<Dataset> datasets = new ArrayList<Dataset>();
+	private int[] clearCounts = new int[0]; // [datasetN] = dataset's clear count when the bins were last built
+	private int binCount = 0;
+	private float minX = 0;
+	private float maxX = 0;
+	private long firstSampleNumber = 0;
+	private long lastSampleNumber = -1;
+	
+	/**
+	 * Updates the bins so they describe a new window of samples.
+	 * 
+	 * @param datasets             The normal datasets to bin, and their samples caches.
+	 * @param firstSampleNumber    First sample number of the window, inclusive.
+	 * @param lastSampleNumber     Last sample number of the window, inclusive. If less than firstSampleNumber, the bins will be emptied.
+	 * @param minX                 Minimum value of the first bin, inclusive.
+	 * @param maxX                 Maximum value of the last bin, exclusive.
+	 * @param binCount             Number of bins.
+	 * @return                     The bins, as [datasetN][binN]. This array is reused, so it must not be modified.
+	 */
+	public int[][] update(DatasetsInterface datasets, long firstSampleNumber, long lastSampleNumber, float minX, float maxX, int binCount) {
+		
+		int datasetsCount = datasets.normalsCount();
+		
+		// rebuild if the layout or datasets changed, or if any dataset was cleared
+		boolean rebuild = binCount != this.binCount || minX != this.minX || maxX != this.maxX || !datasets.normalDatasets.equals(this.datasets);
+		for(int datasetN = 0; datasetN < datasetsCount && !rebuild; datasetN++)
+			if(datasets.getNormal(datasetN).floats.getClearCount() != clearCounts[datasetN])
+				rebuild = true;
+		
+		// also rebuild if that would be cheaper than moving the window
+		if(!rebuild) {
+			long incrementalCost = Math.abs(firstSampleNumber - this.firstSampleNumber) + Math.abs(lastSampleNumber - this.lastSampleNumber);
+			long rebuildCost = lastSampleNumber - firstSampleNumber + 1;
+			if(lastSampleNumber < firstSampleNumber || this.lastSampleNumber < this.firstSampleNumber ||
+			   firstSampleNumber > this.lastSampleNumber || lastSampleNumber < this.firstSampleNumber ||
+			   incrementalCost >= rebuildCost)
+				rebuild = true;
+		}
+		
+		if(rebuild) {
+			
+			if(bins.length != datasetsCount || (datasetsCount > 0 && bins[0].length != binCount))
+				bins = new int[datasetsCount][binCount];
+			else
+				for(int[] datasetBins : bins)
+					for(int binN = 0; binN < binCount; binN++)
+						datasetBins[binN] = 0;
+			
+			this.datasets = new ArrayList<Dataset>(datasets.normalDatasets);
+			this.binCount = binCount;
+			this.minX = minX;
+			this.maxX = maxX;
+			clearCounts = new int[datasetsCount];
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+				clearCounts[datasetN] = datasets.getNormal(datasetN).floats.getClearCount();
+				addSamples(datasets, datasetN, firstSampleNumber, lastSampleNumber, 1);
+			}
+			
+		} else {
+			
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+				// samples that left the window
+				if(firstSampleNumber > this.firstSampleNumber)
+					addSamples(datasets, datasetN, this.firstSampleNumber, firstSampleNumber - 1, -1);
+				if(lastSampleNumber < this.lastSampleNumber)
+					addSamples(datasets, datasetN, lastSampleNumber + 1, this.lastSampleNumber, -1);
+				// samples that entered the window
+				if(firstSampleNumber < this.firstSampleNumber)
+					addSamples(datasets, datasetN, firstSampleNumber, this.firstSampleNumber - 1, 1);
+				if(lastSampleNumber > this.lastSampleNumber)
+					addSamples(datasets, datasetN, this.lastSampleNumber + 1, lastSampleNumber, 1);
+			}
+			
+		}
+		
+		this.firstSampleNumber = firstSampleNumber;
+		this.lastSampleNumber = lastSampleNumber;
+		
+		return bins;
+		
+	}
+	
+	/**
+	 * Adds or subtracts a sequence of samples from the bins.
+	 * 
+	 * @param datasets             The normal datasets, and their samples caches.
+	 * @param datasetN             Which normal dataset.
+	 * @param firstSampleNumber    First sample number, inclusive.
+	 * @param lastSampleNumber     Last sample number, inclusive.
+	 * @param delta                1 to add the samples, or -1 to subtract them.
+	 */
+	private void addSamples(DatasetsInterface datasets, int datasetN, long firstSampleNumber, long lastSampleNumber, int delta) {
+		
+		Dataset dataset = datasets.getNormal(datasetN);
+		int[] datasetBins = bins[datasetN];
+		float range = maxX - minX;
+		
+		for(long start = firstSampleNumber; start <= lastSampleNumber; start += CHUNK_SIZE) {
+			long end = Long.min(start + CHUNK_SIZE - 1, lastSampleNumber);
+			FloatBuffer samples = datasets.getSamplesBuffer(dataset, start, end);
+			int count = (int) (end - start + 1);
+			for(int i = 0; i < count; i++) {
+				float sample = samples.get(i);
+				if(sample >= minX && sample < maxX) {
+					int binN = (int) Math.floor((sample - minX) / range * binCount);
+					if(binN == binCount) binN--; // needed because of float math imperfection
+					datasetBins[binN] += delta;
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,526 @@
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the mean and standard deviation for a sliding window of samples, and calculates percentiles of that window.
+ * 
+ * The mean and variance are tracked with Welford's algorithm. When the window moves, only the samples that entered the window are added,
+ * and only the samples that left the window are removed. They are rebuilt from the storage's block summaries if the datasets change,
+ * if that would be cheaper than moving the window, or periodically to prevent floating point error from accumulating.
+ * 
+ * Percentiles can be exact or approximate.
+ * Exact percentiles use a sorted copy of each dataset's window. When the window moves, only the samples that entered or left the window are sorted,
+ * then they are merged with the sorted copy in a single pass, so the entire window is only sorted when it is first read or no longer overlaps.
+ * Approximate percentiles use a hierarchy of mergeable quantile summaries:
+ *     Each block of samples is summarized by SUMMARY_SIZE equally weighted values.
+ *     Each node of FANOUT blocks is summarized by merging the summaries of its children, and so on for higher levels.
+ * A window is decomposed into the largest complete nodes that fit inside it, plus the raw samples at the edges of the window.
+ * Summaries are cached, so moving the window only requires summarizing the newly completed blocks.
+ */
+public class StreamingStatistics {
+	
+	// samples are read in chunks so the samples caches don't need to grow to the size of the entire window
+	private static final int CHUNK_SIZE = StorageFloats.SLOT_SIZE;
+	
+	// recalculate from scratch after this many windows worth of samples have been added and removed
+	private static final int REBUILD_INTERVAL = 64;
+	
+	// quantile summaries
+	private static final int BLOCK_SIZE = StorageFloats.BLOCK_SIZE;
+	private static final int SUMMARY_SIZE = 64;
+	private static final int FANOUT = 16;
+	private static final int MAX_LEVEL = 4;
+	private static final int MIN_CACHED_SUMMARIES = 1024;
+	
+	private List<Dataset> datasets = new ArrayList<Dataset>();
+	private int[] clearCounts = new int[0]; // [datasetN] = dataset's clear count when the statistics were last rebuilt
+	private long firstSampleNumber = 0;
+	private long lastSampleNumber = -1;
+	private long samplesSinceRebuild = 0;
+	
+	// Welford's algorithm
+	private long[] counts = new long[0];
+	private double[] means = new double[0];
+	private double[] m2s = new double[0];
+	
+	// quantile summaries for each dataset, keyed by (level << 56 | nodeN)
+	private List<Map<Long, float[]>> summaries = new ArrayList<Map<Long, float[]>>();
+	private int[] evictionThresholds = new int[0];
+	
+	// exact percentiles, the sorted copy of each dataset's window
+	private float[][] sortedWindows = new float[0][];
+	private long[] sortedFirstSampleNumbers = new long[0];
+	private long[] sortedLastSampleNumbers = new long[0];
+	
+	// reused buffers
+	private float[] mergedSamples = new float[0];
+	private float[] enteringSamples = new float[0];
+	private float[] leavingSamples = new float[0];
+	private float[] blockSamples = new float[BLOCK_SIZE];
+	private long[] weightedValues = new long[0];
+	
+	/**
+	 * Updates the mean and variance so they describe a new window of samples.
+	 * 
+	 * @param datasets             The normal datasets, and their samples caches.
+	 * @param firstSampleNumber    First sample number of the window, inclusive.
+	 * @param lastSampleNumber     Last sample number of the window, inclusive.
+	 */
+	public void update(DatasetsInterface datasets, long firstSampleNumber, long lastSampleNumber) {
+		
+		int datasetsCount = datasets.normalsCount();
+		
+		// rebuild if the datasets changed, or if any dataset was cleared
+		boolean rebuild = !datasets.normalDatasets.equals(this.datasets);
+		for(int datasetN = 0; datasetN < datasetsCount && !rebuild; datasetN++)
+			if(datasets.getNormal(datasetN).floats.getClearCount() != clearCounts[datasetN])
+				rebuild = true;
+		
+		// also rebuild if that would be cheaper than moving the window, or if floating point error may have accumulated
+		// (rebuilding reads one summary per block, and the raw samples in the partial blocks at either end of the window)
+		long incrementalCost = Math.abs(firstSampleNumber - this.firstSampleNumber) + Math.abs(lastSampleNumber - this.lastSampleNumber);
+		long windowSize = lastSampleNumber - firstSampleNumber + 1;
+		long rebuildCost = windowSize / BLOCK_SIZE + 2 * BLOCK_SIZE;
+		if(!rebuild) {
+			if(lastSampleNumber < firstSampleNumber || this.lastSampleNumber < this.firstSampleNumber ||
+			   firstSampleNumber > this.lastSampleNumber || lastSampleNumber < this.firstSampleNumber ||
+			   incrementalCost >= rebuildCost ||
+			   samplesSinceRebuild + incrementalCost > REBUILD_INTERVAL * windowSize)
+				rebuild = true;
+		}
+		
+		if(rebuild) {
+			
+			if(!datasets.normalDatasets.equals(this.datasets)) {
+				summaries = new ArrayList<Map<Long, float[]>>(datasetsCount);
+				for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
+					summaries.add(new HashMap<Long, float[]>());
+				evictionThresholds = new int[datasetsCount];
+				Arrays.fill(evictionThresholds, MIN_CACHED_SUMMARIES);
+				sortedWindows = new float[datasetsCount][0];
+				sortedFirstSampleNumbers = new long[datasetsCount];
+				sortedLastSampleNumbers = new long[datasetsCount];
+				Arrays.fill(sortedLastSampleNumbers, -1);
+			}
+			
+			if(counts.length != datasetsCount) {
+				counts = new long[datasetsCount];
+				means  = new double[datasetsCount];
+				m2s    = new double[datasetsCount];
+			}
+			
+			this.datasets = new ArrayList<Dataset>(datasets.normalDatasets);
+			int[] newClearCounts = new int[datasetsCount];
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+				newClearCounts[datasetN] = datasets.getNormal(datasetN).floats.getClearCount();
+				if(clearCounts.length == datasetsCount && clearCounts[datasetN] != newClearCounts[datasetN]) {
+					summaries.get(datasetN).clear();
+					sortedLastSampleNumbers[datasetN] = sortedFirstSampleNumbers[datasetN] - 1;
+				}
+				if(firstSampleNumber >= 0 && lastSampleNumber >= firstSampleNumber) {
+					StorageFloats.Aggregate aggregate = datasets.getAggregate(datasets.getNormal(datasetN), firstSampleNumber, lastSampleNumber);
+					counts[datasetN] = aggregate.getCount();
+					means[datasetN]  = aggregate.getMean();
+					m2s[datasetN]    = aggregate.getSumOfSquaredDeviations();
+				} else {
+					counts[datasetN] = 0;
+					means[datasetN]  = 0;
+					m2s[datasetN]    = 0;
+				}
+			}
+			clearCounts = newClearCounts;
+			samplesSinceRebuild = 0;
+			
+		} else {
+			
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+				// samples that entered the window
+				if(firstSampleNumber < this.firstSampleNumber)
+					addSamples(datasets, datasetN, firstSampleNumber, this.firstSampleNumber - 1, true);
+				if(lastSampleNumber > this.lastSampleNumber)
+					addSamples(datasets, datasetN, this.lastSampleNumber + 1, lastSampleNumber, true);
+				// samples that left the window
+				if(firstSampleNumber > this.firstSampleNumber)
+					addSamples(datasets, datasetN, this.firstSampleNumber, firstSampleNumber - 1, false);
+				if(lastSampleNumber < this.lastSampleNumber)
+					addSamples(datasets, datasetN, lastSampleNumber + 1, this.lastSampleNumber, false);
+			}
+			samplesSinceRebuild += incrementalCost;
+			
+		}
+		
+		this.firstSampleNumber = firstSampleNumber;
+		this.lastSampleNumber = lastSampleNumber;
+		
+	}
+	
+	/**
+	 * @param datasetN    Which normal dataset.
+	 * @return            Mean of the window.
+	 */
+	public double getMean(int datasetN) {
+		
+		return means[datasetN];
+		
+	}
+	
+	/**
+	 * @param datasetN    Which normal dataset.
+	 * @return            Sample standard deviation of the window, or 0 if the window only contains one sample.
+	 */
+	public double getStandardDeviation(int datasetN) {
+		
+		if(counts[datasetN] < 2)
+			return 0;
+		
+		return Math.sqrt(Math.max(0, m2s[datasetN]) / (counts[datasetN] - 1));
+		
+	}
+	
+	/**
+	 * Calculates percentiles of the window. The update() method must be called first.
+	 * 
+	 * @param datasets       The normal datasets, and their samples caches.
+	 * @param datasetN       Which normal dataset.
+	 * @param approximate    True to use the quantile summaries, false to use a sorted copy of the window.
+	 * @param percentiles    The percentiles to calculate, each in the range (0, 100].
+	 * @param results        Array to fill with the corresponding values.
+	 */
+	public void getPercentiles(DatasetsInterface datasets, int datasetN, boolean approximate, double[] percentiles, double[] results) {
+		
+		if(lastSampleNumber < firstSampleNumber || firstSampleNumber < 0) {
+			Arrays.fill(results, 0);
+			return;
+		}
+		
+		if(approximate)
+			getApproximatePercentiles(datasets, datasetN, percentiles, results);
+		else
+			getExactPercentiles(datasets, datasetN, percentiles, results);
+		
+	}
+	
+	/**
+	 * Adds or removes a sequence of samples from the mean and variance.
+	 * 
+	 * @param datasets             The normal datasets, and their samples caches.
+	 * @param datasetN             Which normal dataset.
+	 * @param firstSampleNumber    First sample number, inclusive.
+	 * @param lastSampleNumber     Last sample number, inclusive.
+	 * @param add                  True to add the samples, or false to remove them.
+	 */
+	private void addSamples(DatasetsInterface datasets, int datasetN, long firstSampleNumber, long lastSampleNumber, boolean add) {
+		
+		Dataset dataset = datasets.getNormal(datasetN);
+		long count = counts[datasetN];
+		double mean = means[datasetN];
+		double m2 = m2s[datasetN];
+		
+		for(long start = firstSampleNumber; start <= lastSampleNumber; start += CHUNK_SIZE) {
+			long end = Long.min(start + CHUNK_SIZE - 1, lastSampleNumber);
+			FloatBuffer samples = datasets.getSamplesBuffer(dataset, start, end);
+			int sampleCount = (int) (end - start + 1);
+			for(int i = 0; i < sampleCount; i++) {
+				double sample = samples.get(i);
+				if(add) {
+					count++;
+					double delta = sample - mean;
+					mean += delta / count;
+					m2 += delta * (sample - mean);
+				} else if(count > 1) {
+					count--;
+					double delta = sample - mean;
+					mean -= delta / count;
+					m2 -= delta * (sample - mean);
+				} else {
+					count = 0;
+					mean = 0;
+					m2 = 0;
+				}
+			}
+		}
+		
+		counts[datasetN] = count;
+		means[datasetN] = mean;
+		m2s[datasetN] = m2;
+		
+	}
+	
+	/**
+	 * Calculates exact percentiles from a sorted copy of the window.
+	 * The percentiles are estimated the same way as the Apache Commons Math "legacy" estimator.
+	 */
+	private void getExactPercentiles(DatasetsInterface datasets, int datasetN, double[] percentiles, double[] results) {
+		
+		Dataset dataset = datasets.getNormal(datasetN);
+		int sampleCount = (int) (lastSampleNumber - firstSampleNumber + 1);
+		float[] sortedSamples = sortedWindows[datasetN];
+		long sortedFirst = sortedFirstSampleNumbers[datasetN];
+		long sortedLast = sortedLastSampleNumbers[datasetN];
+		
+		if(sortedLast < sortedFirst || firstSampleNumber > sortedLast || lastSampleNumber < sortedFirst) {
+			
+			// no overlap, so sort the entire window
+			if(sortedSamples.length < sampleCount)
+				sortedSamples = new float[sampleCount];
+			copySamples(datasets, dataset, firstSampleNumber, lastSampleNumber, sortedSamples, 0);
+			Arrays.sort(sortedSamples, 0, sampleCount);
+			
+		} else if(firstSampleNumber != sortedFirst || lastSampleNumber != sortedLast) {
+			
+			// sort the samples that left and entered the window
+			int leavingCount  = (int) (Long.max(0, firstSampleNumber - sortedFirst) + Long.max(0, sortedLast - lastSampleNumber));
+			int enteringCount = (int) (Long.max(0, sortedFirst - firstSampleNumber) + Long.max(0, lastSampleNumber - sortedLast));
+			if(leavingSamples.length < leavingCount)
+				leavingSamples = new float[leavingCount];
+			if(enteringSamples.length < enteringCount)
+				enteringSamples = new float[enteringCount];
+			int n = 0;
+			if(firstSampleNumber > sortedFirst)
+				n = copySamples(datasets, dataset, sortedFirst, firstSampleNumber - 1, leavingSamples, n);
+			if(lastSampleNumber < sortedLast)
+				n = copySamples(datasets, dataset, lastSampleNumber + 1, sortedLast, leavingSamples, n);
+			n = 0;
+			if(firstSampleNumber < sortedFirst)
+				n = copySamples(datasets, dataset, firstSampleNumber, sortedFirst - 1, enteringSamples, n);
+			if(lastSampleNumber > sortedLast)
+				n = copySamples(datasets, dataset, sortedLast + 1, lastSampleNumber, enteringSamples, n);
+			Arrays.sort(leavingSamples, 0, leavingCount);
+			Arrays.sort(enteringSamples, 0, enteringCount);
+			
+			// merge them with the previous window (Float.compare() matches the order used by Arrays.sort(), including NaNs and negative zero)
+			if(mergedSamples.length < sampleCount)
+				mergedSamples = new float[sampleCount];
+			int previousCount = (int) (sortedLast - sortedFirst + 1);
+			int leavingN = 0;
+			int enteringN = 0;
+			int mergedN = 0;
+			for(int i = 0; i < previousCount; i++) {
+				float value = sortedSamples[i];
+				if(leavingN < leavingCount && Float.compare(leavingSamples[leavingN], value) == 0) {
+					leavingN++;
+					continue;
+				}
+				while(enteringN < enteringCount && Float.compare(enteringSamples[enteringN], value) < 0)
+					mergedSamples[mergedN++] = enteringSamples[enteringN++];
+				mergedSamples[mergedN++] = value;
+			}
+			while(enteringN < enteringCount)
+				mergedSamples[mergedN++] = enteringSamples[enteringN++];
+			
+			float[] previous = sortedSamples;
+			sortedSamples = mergedSamples;
+			mergedSamples = previous;
+			
+		}
+		
+		sortedWindows[datasetN] = sortedSamples;
+		sortedFirstSampleNumbers[datasetN] = firstSampleNumber;
+		sortedLastSampleNumbers[datasetN] = lastSampleNumber;
+		
+		for(int i = 0; i < percentiles.length; i++) {
+			double position = percentiles[i] * (sampleCount + 1) / 100.0;
+			if(sampleCount == 1 || position < 1) {
+				results[i] = sortedSamples[0];
+			} else if(position >= sampleCount) {
+				results[i] = sortedSamples[sampleCount - 1];
+			} else {
+				int n = (int) Math.floor(position);
+				double lower = sortedSamples[n - 1];
+				double upper = sortedSamples[n];
+				results[i] = lower + (position - n) * (upper - lower);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Copies a range of samples into an array, in chunks.
+	 * 
+	 * @param datasets             The normal datasets, and their samples caches.
+	 * @param dataset              The dataset.
+	 * @param firstSampleNumber    First sample number, inclusive.
+	 * @param lastSampleNumber     Last sample number, inclusive.
+	 * @param destination          Array to fill.
+	 * @param offset               Index of the destination array for the first sample.
+	 * @return                     Index of the destination array after the last sample.
+	 */
+	private static int copySamples(DatasetsInterface datasets, Dataset dataset, long firstSampleNumber, long lastSampleNumber, float[] destination, int offset) {
+		
+		for(long start = firstSampleNumber; start <= lastSampleNumber; start += CHUNK_SIZE) {
+			long end = Long.min(start + CHUNK_SIZE - 1, lastSampleNumber);
+			int count = (int) (end - start + 1);
+			datasets.getSamplesBuffer(dataset, start, end).get(destination, offset, count);
+			offset += count;
+		}
+		
+		return offset;
+		
+	}
+	
+	/**
+	 * Calculates approximate percentiles from the quantile summaries, and the raw samples at the edges of the window.
+	 */
+	private void getApproximatePercentiles(DatasetsInterface datasets, int datasetN, double[] percentiles, double[] results) {
+		
+		Dataset dataset = datasets.getNormal(datasetN);
+		Map<Long, float[]> cache = summaries.get(datasetN);
+		int valueCount = 0;
+		long totalWeight = 0;
+		
+		long sampleNumber = firstSampleNumber;
+		while(sampleNumber <= lastSampleNumber) {
+			
+			// find the largest complete node starting here
+			int level = -1;
+			long nodeSize = BLOCK_SIZE;
+			while(level < MAX_LEVEL && sampleNumber % nodeSize == 0 && sampleNumber + nodeSize - 1 <= lastSampleNumber) {
+				level++;
+				nodeSize *= FANOUT;
+			}
+			nodeSize /= FANOUT;
+			
+			if(level < 0) {
+				// use the raw samples up to the end of this block or window
+				long end = Long.min((sampleNumber / BLOCK_SIZE + 1) * BLOCK_SIZE - 1, lastSampleNumber);
+				int count = (int) (end - sampleNumber + 1);
+				FloatBuffer samples = datasets.getSamplesBuffer(dataset, sampleNumber, end);
+				ensureWeightedCapacity(valueCount + count);
+				for(int i = 0; i < count; i++)
+					weightedValues[valueCount++] = pack(samples.get(i), 1);
+				totalWeight += count;
+				sampleNumber = end + 1;
+			} else {
+				// use the node's summary
+				float[] summary = getSummary(datasets, dataset, cache, level, sampleNumber / nodeSize);
+				int weight = (int) (nodeSize / SUMMARY_SIZE);
+				ensureWeightedCapacity(valueCount + SUMMARY_SIZE);
+				for(int i = 0; i < SUMMARY_SIZE; i++)
+					weightedValues[valueCount++] = pack(summary[i], weight);
+				totalWeight += nodeSize;
+				sampleNumber += nodeSize;
+			}
+			
+		}
+		
+		Arrays.sort(weightedValues, 0, valueCount);
+		
+		// each value represents the center of its weight, interpolate between neighboring centers
+		for(int i = 0; i < percentiles.length; i++) {
+			double targetRank = percentiles[i] / 100.0 * totalWeight;
+			double rank = 0;
+			double previousCenter = 0;
+			double previousValue = unpackValue(weightedValues[0]);
+			results[i] = unpackValue(weightedValues[valueCount - 1]);
+			for(int n = 0; n < valueCount; n++) {
+				long weight = unpackWeight(weightedValues[n]);
+				double center = rank + weight / 2.0;
+				double value = unpackValue(weightedValues[n]);
+				if(center >= targetRank) {
+					results[i] = (n == 0) ? value : previousValue + (value - previousValue) * (targetRank - previousCenter) / (center - previousCenter);
+					break;
+				}
+				rank += weight;
+				previousCenter = center;
+				previousValue = value;
+			}
+		}
+		
+		// forget about summaries that are no longer in the window
+		if(cache.size() > evictionThresholds[datasetN]) {
+			long first = firstSampleNumber;
+			long last = lastSampleNumber;
+			cache.keySet().removeIf(key -> {
+				long size = BLOCK_SIZE;
+				for(int level = 0; level < (int) (key >> 56); level++)
+					size *= FANOUT;
+				long start = (key & 0xFFFFFFFFFFFFFFL) * size;
+				return start + size - 1 < first || start > last;
+			});
+			evictionThresholds[datasetN] = Integer.max(MIN_CACHED_SUMMARIES, 2 * cache.size());
+		}
+		
+	}
+	
+	/**
+	 * Gets the quantile summary of a node, calculating and caching it if necessary.
+	 * 
+	 * @param datasets    The normal datasets, and their samples caches.
+	 * @param dataset     The dataset.
+	 * @param cache       Cached summaries for this dataset.
+	 * @param level       0 for a block, 1 for FANOUT blocks, etc.
+	 * @param nodeN       Which node of this level.
+	 * @return            SUMMARY_SIZE sorted values, each representing an equal share of the node's samples.
+	 */
+	private float[] getSummary(DatasetsInterface datasets, Dataset dataset, Map<Long, float[]> cache, int level, long nodeN) {
+		
+		long key = ((long) level << 56) | nodeN;
+		float[] summary = cache.get(key);
+		if(summary != null)
+			return summary;
+		
+		float[] values;
+		if(level == 0) {
+			FloatBuffer samples = datasets.getSamplesBuffer(dataset, nodeN * BLOCK_SIZE, nodeN * BLOCK_SIZE + BLOCK_SIZE - 1);
+			samples.get(blockSamples, 0, BLOCK_SIZE);
+			values = blockSamples;
+		} else {
+			// children are equally weighted, so their summaries can simply be combined
+			values = new float[FANOUT * SUMMARY_SIZE];
+			for(int childN = 0; childN < FANOUT; childN++)
+				System.arraycopy(getSummary(datasets, dataset, cache, level - 1, nodeN * FANOUT + childN), 0, values, childN * SUMMARY_SIZE, SUMMARY_SIZE);
+		}
+		Arrays.sort(values);
+		
+		summary = new float[SUMMARY_SIZE];
+		int stride = values.length / SUMMARY_SIZE;
+		for(int i = 0; i < SUMMARY_SIZE; i++)
+			summary[i] = values[i * stride + stride / 2];
+		
+		cache.put(key, summary);
+		return summary;
+		
+	}
+	
+	/**
+	 * Grows the weighted values array if necessary.
+	 * 
+	 * @param capacity    Required capacity.
+	 */
+	private void ensureWeightedCapacity(int capacity) {
+		
+		if(weightedValues.length < capacity)
+			weightedValues = Arrays.copyOf(weightedValues, Integer.max(capacity, 2 * weightedValues.length));
+		
+	}
+	
+	/**
+	 * Packs a value and its weight into a long that sorts in the same order as the value.
+	 */
+	private static long pack(float value, int weight) {
+		
+		int bits = Float.floatToIntBits(value);
+		bits ^= (bits >> 31) & 0x7FFFFFFF; // negative floats sort in reverse, so flip them
+		return ((long) bits << 32) | weight;
+		
+	}
+	
+	private static float unpackValue(long packed) {
+		
+		int bits = (int) (packed >> 32);
+		bits ^= (bits >> 31) & 0x7FFFFFFF;
+		return Float.intBitsToFloat(bits);
+		
+	}
+	
+	private static long unpackWeight(long packed) {
+		
+		return packed & 0xFFFFFFFFL;
+		
+	}
+	
+}
@@ -0,0 +1,257 @@
+import java.nio.FloatBuffer;
+
+/**
+ * Finds trigger events (the signal crossing a level, after first crossing the level -/+ hysteresis.)
+ * 
+ * The static search methods scan a range of samples, but skip any entire block whose min/max shows that it can't arm or fire the trigger.
+ * 
+ * An instance of this class can also be registered with a Dataset, so it will detect crossings as telemetry is received.
+ * The arming state is carried from one sample to the next, and the sample number of each crossing is stored in an index.
+ * Searches that start within the indexed range can then use that index instead of reading any samples.
+ * The index is limited to MAX_INDEXED_CROSSINGS per direction, so a noisy signal can't use an unbounded amount of memory:
+ * when that is reached, the older half is forgotten, and searches that start before the remaining crossings fall back to scanning the samples.
+ */
+public class TriggerDetector {
+	
+	private static final int BLOCK_SIZE = StorageFloats.BLOCK_SIZE;
+	private static final int MAX_INDEXED_CROSSINGS = 1048576; // per direction, so at most 16MB per detector
+	
+	final Dataset dataset;
+	final float level;
+	final float hysteresis;
+	
+	private volatile Index index = null; // null until the first sample is tested
+	private boolean risingEdgeArmed = false;
+	private boolean fallingEdgeArmed = false;
+	
+	/**
+	 * The crossings, and the range they cover. A new Index replaces the old one when crossings are forgotten,
+	 * so a search always sees a matching range and edges. Crossings after that are only appended to the newer Index,
+	 * but the search only needs crossings that were received before it started.
+	 */
+	private static class Index {
+		
+		final StorageEdges risingEdges;
+		final StorageEdges fallingEdges;
+		final long firstSampleNumber; // every crossing at or after this sample number is in the edges
+		
+		Index(StorageEdges risingEdges, StorageEdges fallingEdges, long firstSampleNumber) {
+			this.risingEdges = risingEdges;
+			this.fallingEdges = fallingEdges;
+			this.firstSampleNumber = firstSampleNumber;
+		}
+		
+	}
+	
+	/**
+	 * Creates a detector, but does not register it with the Dataset.
+	 * 
+	 * @param dataset       Dataset to test.
+	 * @param level         Trigger level.
+	 * @param hysteresis    Trigger hysteresis.
+	 */
+	public TriggerDetector(Dataset dataset, float level, float hysteresis) {
+		
+		this.dataset = dataset;
+		this.level = level;
+		this.hysteresis = hysteresis;
+		
+	}
+	
+	/**
+	 * Tests a new sample. This is called as telemetry is received.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param sampleNumber    Sample number. Samples must be provided in order.
+	 * @param value           The sample.
+	 */
+	public void process(long sampleNumber, float value) {
+		
+		if(index == null)
+			index = new Index(new StorageEdges(), new StorageEdges(), sampleNumber);
+		
+		if(value < level - hysteresis)
+			risingEdgeArmed = true;
+		if(value > level + hysteresis)
+			fallingEdgeArmed = true;
+		if(risingEdgeArmed && value >= level) {
+			append(true, sampleNumber);
+			risingEdgeArmed = false;
+		}
+		if(fallingEdgeArmed && value <= level) {
+			append(false, sampleNumber);
+			fallingEdgeArmed = false;
+		}
+		
+	}
+	
+	/**
+	 * Adds a crossing to the index. If the index is full, the older half of that direction's crossings are forgotten first.
+	 * 
+	 * @param rising          True for a rising edge, false for a falling edge.
+	 * @param sampleNumber    Sample number of the crossing.
+	 */
+	private void append(boolean rising, long sampleNumber) {
+		
+		Index i = index;
+		StorageEdges edges = rising ? i.risingEdges : i.fallingEdges;
+		
+		if(edges.getCount() == MAX_INDEXED_CROSSINGS) {
+			StorageEdges newerEdges = new StorageEdges();
+			edges.forEachBetween(edges.get(MAX_INDEXED_CROSSINGS / 2), Long.MAX_VALUE, newerEdges::append);
+			long firstSampleNumber = Long.max(i.firstSampleNumber, edges.get(MAX_INDEXED_CROSSINGS / 2 - 1) + 1);
+			i = rising ? new Index(newerEdges, i.fallingEdges, firstSampleNumber) :
+			             new Index(i.risingEdges, newerEdges, firstSampleNumber);
+			index = i;
+			edges = newerEdges;
+		}
+		
+		edges.append(sampleNumber);
+		
+	}
+	
+	/**
+	 * Tests a range of new samples that were written by the Parser threads. This is called as telemetry is received.
+	 * Blocks that can't change the arming state or fire the trigger are skipped.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param firstSampleNumber    First sample number, inclusive. This MUST be the first sample of a block.
+	 * @param lastSampleNumber     Last sample number, inclusive. This MUST be the last sample of a block.
+	 */
+	public void processBlocks(long firstSampleNumber, long lastSampleNumber) {
+		
+		if(index == null)
+			index = new Index(new StorageEdges(), new StorageEdges(), firstSampleNumber);
+		
+		for(long blockStart = firstSampleNumber; blockStart <= lastSampleNumber; blockStart += BLOCK_SIZE) {
+			long blockN = blockStart / BLOCK_SIZE;
+			float min = dataset.floats.getMinimumOfBlock(blockN);
+			float max = dataset.floats.getMaximumOfBlock(blockN);
+			boolean skipRising  = risingEdgeArmed  ? max < level : min >= level - hysteresis;
+			boolean skipFalling = fallingEdgeArmed ? min > level : max <= level + hysteresis;
+			if(skipRising && skipFalling)
+				continue;
+			Object slot = dataset.getSlot(blockStart);
+			int offset = (int) (blockStart % StorageFloats.SLOT_SIZE);
+			for(int i = 0; i < BLOCK_SIZE; i++)
+				process(blockStart + i, dataset.floats.getValue(slot, offset + i));
+		}
+		
+	}
+	
+	/**
+	 * Forgets all detected crossings. The detector will resume when the next sample is received.
+	 * 
+	 * TO PREVENT RACE CONDITIONS, THIS METHOD MUST ONLY BE CALLED WHEN NO OTHER METHODS OF THIS CLASS ARE IN PROGRESS.
+	 */
+	public void clear() {
+		
+		index = null;
+		risingEdgeArmed = false;
+		fallingEdgeArmed = false;
+		
+	}
+	
+	/**
+	 * Finds the first trigger event in a range of samples, with the trigger disarmed at the start of the range.
+	 * The index of detected crossings is used if it covers the start of the range, otherwise the samples are scanned.
+	 * 
+	 * @param cache                Place to cache samples.
+	 * @param rising               True to trigger on rising edges.
+	 * @param falling              True to trigger on falling edges.
+	 * @param minSampleNumber      First sample number to test, inclusive.
+	 * @param maxSampleNumber      Last sample number to test, inclusive. This must have already been received.
+	 * @return                     Sample number of the trigger event, or -1 if none.
+	 */
+	public long findTrigger(StorageFloats.Cache cache, boolean rising, boolean falling, long minSampleNumber, long maxSampleNumber) {
+		
+		Index i = index;
+		if(i == null || minSampleNumber < i.firstSampleNumber)
+			return findTrigger(dataset, cache, level, hysteresis, rising, falling, minSampleNumber, maxSampleNumber);
+		
+		long risingTrigger  = rising  ? findIndexedTrigger(i.risingEdges,  cache, true,  minSampleNumber, maxSampleNumber) : -1;
+		long fallingTrigger = falling ? findIndexedTrigger(i.fallingEdges, cache, false, minSampleNumber, maxSampleNumber) : -1;
+		
+		return risingTrigger  < 0 ? fallingTrigger :
+		       fallingTrigger < 0 ? risingTrigger :
+		                            Long.min(risingTrigger, fallingTrigger);
+		
+	}
+	
+	/**
+	 * The index was built with the arming state carried across the start of the range, but the search must start disarmed.
+	 * If the first indexed crossing was armed before the range started, it would not fire, and the next indexed crossing will.
+	 * (That one must have been armed after the first crossing, so it was armed within the range.)
+	 */
+	private long findIndexedTrigger(StorageEdges edges, StorageFloats.Cache cache, boolean rising, long minSampleNumber, long maxSampleNumber) {
+		
+		long crossing = edges.getFirstBetween(minSampleNumber, maxSampleNumber);
+		if(crossing < 0)
+			return -1;
+		
+		boolean armedWithinRange = false;
+		if(crossing > minSampleNumber) {
+			StorageFloats.MinMax range = dataset.getRange(minSampleNumber, crossing - 1, cache);
+			armedWithinRange = rising ? range.min < level - hysteresis :
+			                            range.max > level + hysteresis;
+		}
+		
+		return armedWithinRange ? crossing : edges.getFirstBetween(crossing + 1, maxSampleNumber);
+		
+	}
+	
+	/**
+	 * Scans a range of samples for the first trigger event, with the trigger disarmed at the start of the range.
+	 * Entire blocks are skipped if their min/max shows that they can't change the arming state or fire the trigger.
+	 * 
+	 * @param dataset              Dataset to test.
+	 * @param cache                Place to cache samples.
+	 * @param level                Trigger level.
+	 * @param hysteresis           Trigger hysteresis.
+	 * @param rising               True to trigger on rising edges.
+	 * @param falling              True to trigger on falling edges.
+	 * @param minSampleNumber      First sample number to test, inclusive.
+	 * @param maxSampleNumber      Last sample number to test, inclusive.
+	 * @return                     Sample number of the trigger event, or -1 if none.
+	 */
+	public static long findTrigger(Dataset dataset, StorageFloats.Cache cache, float level, float hysteresis, boolean rising, boolean falling, long minSampleNumber, long maxSampleNumber) {
+		
+		boolean risingEdgeArmed = false;
+		boolean fallingEdgeArmed = false;
+		
+		long sampleNumber = minSampleNumber;
+		while(sampleNumber <= maxSampleNumber) {
+			
+			long blockN = sampleNumber / BLOCK_SIZE;
+			long blockEnd = blockN * BLOCK_SIZE + BLOCK_SIZE - 1;
+			long end = Long.min(blockEnd, maxSampleNumber);
+			
+			if(sampleNumber % BLOCK_SIZE == 0 && end == blockEnd) {
+				float min = dataset.floats.getMinimumOfBlock(blockN);
+				float max = dataset.floats.getMaximumOfBlock(blockN);
+				boolean skipRising  = !rising  || (risingEdgeArmed  ? max < level : min >= level - hysteresis);
+				boolean skipFalling = !falling || (fallingEdgeArmed ? min > level : max <= level + hysteresis);
+				if(skipRising && skipFalling) {
+					sampleNumber = end + 1;
+					continue;
+				}
+			}
+			
+			FloatBuffer buffer = dataset.getSamplesBuffer(sampleNumber, end, cache);
+			for(int i = 0; sampleNumber <= end; i++, sampleNumber++) {
+				float value = buffer.get(i);
+				if(rising && value < level - hysteresis)
+					risingEdgeArmed = true;
+				if(falling && value > level + hysteresis)
+					fallingEdgeArmed = true;
+				if((risingEdgeArmed && rising && value >= level) || (fallingEdgeArmed && falling && value <= level))
+					return sampleNumber;
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+}
@@ -1,7 +1,6 @@
 import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -34,11 +33,13 @@ public class WidgetTrigger extends Widget {
 	private boolean triggerAffectsEveryChart = false;
 	private Type    triggerType = Type.RISING_EDGE;
 	private Dataset triggerChannel = null;
-	private StorageFloats.Cache samplesCache = null;
+	private StorageFloats.Cache samplesCache = null; // only used by the thread that draws the chart
+	private Dataset samplesCacheChannel = null;
 	private float   triggerLevel = 0;
 	private float   triggerHysteresis = 0;
 	private int     triggerPrePostRatio = 20;
 	private boolean userSpecifiedTheChannel = false;
+	private TriggerDetector detector = null; // detects crossings as telemetry is received
 	
 	// "view"
 	private JToggleButton modeDisabledButton;
@@ -66,6 +67,8 @@ public class WidgetTrigger extends Widget {
 		// update the model
 		triggerMode = newMode;
 		resetTrigger(true);
+		if(triggerMode == Mode.DISABLED)
+			dispose();
 		
 		// update the view
 		update();
@@ -110,8 +113,6 @@ public class WidgetTrigger extends Widget {
 		
 		// update the model
 		triggerChannel = newChannel;
-		if(triggerChannel != null)
-			samplesCache = triggerChannel.createCache();
 		resetTrigger(true);
 		if(userSpecified)
 			userSpecifiedTheChannel = true;
@@ -366,13 +367,13 @@ public class WidgetTrigger extends Widget {
 	}
 	
 	private boolean triggered = false;
-	private int triggeredSampleNumber = -1;
-	private int triggeredEndSampleNumber = -1;
+	private long triggeredSampleNumber = -1;
+	private long triggeredEndSampleNumber = -1;
 	private long triggeredTimestamp = -1;
 	private long triggeredEndTimestamp = -1;
-	private int nextTriggerableSampleNumber = -1;
+	private long nextTriggerableSampleNumber = -1;
 	private long nextTriggerableTimestamp = -1;
-	private int previousMaxSampleNumber = -1;
+	private long previousMaxSampleNumber = -1;
 	
 	/**
 	 * Prepares for detecting the next trigger event.
@@ -417,7 +418,7 @@ public class WidgetTrigger extends Widget {
 	 * 
 	 * @return    The triggered sample number, or -1 if not triggered.
 	 */
-	public int getTriggeredSampleNumber() {
+	public long getTriggeredSampleNumber() {
 		
 		return triggered ? triggeredSampleNumber : -1;
 		
@@ -460,9 +461,9 @@ public class WidgetTrigger extends Widget {
 		long chartDomain = (long) Math.ceil(chart.duration * zoomLevel);
 		double preTriggerPercent = triggerPrePostRatio / 100.0;
 		double postTriggerPercent = 1.0 - preTriggerPercent;
-		int maxSampleNumber = triggerChannel.controller.getClosestSampleNumberAtOrBefore(endTimestamp, triggerChannel.connection.getSampleCount() - 1);
+		long maxSampleNumber = triggerChannel.controller.getClosestSampleNumberAtOrBefore(endTimestamp, triggerChannel.connection.getSampleCount() - 1);
 		long startTimestamp = triggerChannel.connection.getTimestamp(maxSampleNumber) - chartDomain;
-		int minSampleNumber = triggerChannel.controller.getClosestSampleNumberAtOrBefore(startTimestamp, maxSampleNumber);
+		long minSampleNumber = triggerChannel.controller.getClosestSampleNumberAtOrBefore(startTimestamp, maxSampleNumber);
 		if(minSampleNumber > previousMaxSampleNumber && previousMaxSampleNumber != -1)
 			minSampleNumber = previousMaxSampleNumber;
 		if(recalcTrigger && triggeredMinSampleNumber != -1)
@@ -483,30 +484,19 @@ public class WidgetTrigger extends Widget {
 		}
 		
 		// check for a new trigger
-		minSampleNumber = Integer.max(minSampleNumber, triggerChannel.controller.getClosestSampleNumberAfter(nextTriggerableTimestamp));
-		boolean triggerOnRisingEdge  = (triggerType == Type.RISING_EDGE)  || (triggerType == Type.RISING_FALLING_EDGES);
-		boolean triggerOnFallingEdge = (triggerType == Type.FALLING_EDGE) || (triggerType == Type.RISING_FALLING_EDGES);
-		boolean risingEdgeArmed = false;
-		boolean fallingEdgeArmed = false;
-		FloatBuffer buffer = triggerChannel.getSamplesBuffer(minSampleNumber, maxSampleNumber, samplesCache);
-		for(int sampleNumber = minSampleNumber; sampleNumber <= maxSampleNumber; sampleNumber++) {
-			float value = buffer.get(sampleNumber - minSampleNumber);
-			if(triggerOnRisingEdge && value < triggerLevel - triggerHysteresis)
-				risingEdgeArmed = true;
-			if(triggerOnFallingEdge && value > triggerLevel + triggerHysteresis)
-				fallingEdgeArmed = true;
-			if((risingEdgeArmed && triggerOnRisingEdge && value >= triggerLevel) || (fallingEdgeArmed && triggerOnFallingEdge && value <= triggerLevel)) {
-				triggeredSampleNumber = sampleNumber;
-				triggeredTimestamp = triggerChannel.connection.getTimestamp(sampleNumber);
-				triggered = true;
-				nextTriggerableTimestamp = triggeredTimestamp + (long) Math.round(chartDomain * postTriggerPercent);
-				long millisecondsAfterTrigger = (long) Math.round(chartDomain * postTriggerPercent);
-				triggeredMinSampleNumber = minSampleNumber;
-				triggeredEndTimestamp = triggeredTimestamp + millisecondsAfterTrigger;
-				if(triggerAffectsEveryChart)
-					OpenGLChartsView.instance.setTriggeredView(triggeredEndTimestamp, triggerChannel.connection, triggeredEndSampleNumber);
-				return triggeredEndTimestamp;
-			}
+		minSampleNumber = Long.max(minSampleNumber, triggerChannel.controller.getClosestSampleNumberAfter(nextTriggerableTimestamp));
+		long sampleNumber = findTrigger(minSampleNumber, maxSampleNumber);
+		if(sampleNumber >= 0) {
+			triggeredSampleNumber = sampleNumber;
+			triggeredTimestamp = triggerChannel.connection.getTimestamp(sampleNumber);
+			triggered = true;
+			nextTriggerableTimestamp = triggeredTimestamp + (long) Math.round(chartDomain * postTriggerPercent);
+			long millisecondsAfterTrigger = (long) Math.round(chartDomain * postTriggerPercent);
+			triggeredMinSampleNumber = minSampleNumber;
+			triggeredEndTimestamp = triggeredTimestamp + millisecondsAfterTrigger;
+			if(triggerAffectsEveryChart)
+				OpenGLChartsView.instance.setTriggeredView(triggeredEndTimestamp, triggerChannel.connection, triggeredEndSampleNumber);
+			return triggeredEndTimestamp;
 		}
 		
 		// done
@@ -516,7 +506,58 @@ public class WidgetTrigger extends Widget {
 		
 	}
 	
-	int triggeredMinSampleNumber;
+	long triggeredMinSampleNumber;
+	
+	/**
+	 * Finds the first trigger event in a range of samples.
+	 * A trigger detector is registered with the trigger channel if necessary, so future searches can use its index instead of reading samples.
+	 * 
+	 * @param minSampleNumber    First sample number to test, inclusive.
+	 * @param maxSampleNumber    Last sample number to test, inclusive.
+	 * @return                   Sample number of the trigger event, or -1 if none.
+	 */
+	private long findTrigger(long minSampleNumber, long maxSampleNumber) {
+		
+		if(detector == null || detector.dataset != triggerChannel || detector.level != triggerLevel || detector.hysteresis != triggerHysteresis) {
+			dispose();
+			detector = new TriggerDetector(triggerChannel, triggerLevel, triggerHysteresis);
+			triggerChannel.addTriggerDetector(detector);
+		}
+		
+		if(samplesCache == null || samplesCacheChannel != triggerChannel) {
+			releaseSamples();
+			samplesCache = triggerChannel.createCache();
+			samplesCacheChannel = triggerChannel;
+		}
+		
+		boolean triggerOnRisingEdge  = (triggerType == Type.RISING_EDGE)  || (triggerType == Type.RISING_FALLING_EDGES);
+		boolean triggerOnFallingEdge = (triggerType == Type.FALLING_EDGE) || (triggerType == Type.RISING_FALLING_EDGES);
+		return detector.findTrigger(samplesCache, triggerOnRisingEdge, triggerOnFallingEdge, minSampleNumber, maxSampleNumber);
+		
+	}
+	
+	/**
+	 * Unregisters the trigger detector, so it stops testing samples as telemetry is received.
+	 * This should be called when the chart is removed. A new detector will be registered if the trigger is used again.
+	 */
+	public void dispose() {
+		
+		if(detector != null) {
+			detector.dataset.removeTriggerDetector(detector);
+			detector = null;
+		}
+		
+	}
+	
+	/**
+	 * Releases any samples held by the cache. This must be called by the thread that draws the chart.
+	 */
+	public void releaseSamples() {
+		
+		if(samplesCache != null)
+			samplesCache.dispose();
+		
+	}
 	
 	/**
 	 * Checks for a new trigger event if the chart is showing sample numbers as the x-axis.
@@ -526,7 +567,7 @@ public class WidgetTrigger extends Widget {
 	 * @param recalcTrigger      If true, force recalculation of the trigger.
 	 * @return                   Sample number that should be at the right edge of the plot.
 	 */
-	public int checkForTriggerSampleCountMode(int endSampleNumber, double zoomLevel, boolean recalcTrigger) {
+	public long checkForTriggerSampleCountMode(long endSampleNumber, double zoomLevel, boolean recalcTrigger) {
 		
 		// recalculate the trigger if the user is dragging the trigger level or pre/post markers
 		if(recalcTrigger)
@@ -546,8 +587,8 @@ public class WidgetTrigger extends Widget {
 			chartDomain = 1;
 		double preTriggerPercent = triggerPrePostRatio / 100.0;
 		double postTriggerPercent = 1.0 - preTriggerPercent;
-		int maxSampleNumber = Integer.min(endSampleNumber, triggerChannel.connection.getSampleCount() - 1);
-		int minSampleNumber = maxSampleNumber - chartDomain;
+		long maxSampleNumber = Long.min(endSampleNumber, triggerChannel.connection.getSampleCount() - 1);
+		long minSampleNumber = maxSampleNumber - chartDomain;
 		if(minSampleNumber > previousMaxSampleNumber && previousMaxSampleNumber != -1)
 			minSampleNumber = previousMaxSampleNumber;
 		if(recalcTrigger && triggeredMinSampleNumber != -1)
@@ -568,31 +609,20 @@ public class WidgetTrigger extends Widget {
 		}
 		
 		// check for a new trigger
-		minSampleNumber = Integer.max(minSampleNumber, nextTriggerableSampleNumber);
-		boolean triggerOnRisingEdge  = (triggerType == Type.RISING_EDGE)  || (triggerType == Type.RISING_FALLING_EDGES);
-		boolean triggerOnFallingEdge = (triggerType == Type.FALLING_EDGE) || (triggerType == Type.RISING_FALLING_EDGES);
-		boolean risingEdgeArmed = false;
-		boolean fallingEdgeArmed = false;
-		FloatBuffer buffer = triggerChannel.getSamplesBuffer(minSampleNumber, maxSampleNumber, samplesCache);
-		for(int sampleNumber = minSampleNumber; sampleNumber <= maxSampleNumber; sampleNumber++) {
-			float value = buffer.get(sampleNumber - minSampleNumber);
-			if(triggerOnRisingEdge && value < triggerLevel - triggerHysteresis)
-				risingEdgeArmed = true;
-			if(triggerOnFallingEdge && value > triggerLevel + triggerHysteresis)
-				fallingEdgeArmed = true;
-			if((risingEdgeArmed && triggerOnRisingEdge && value >= triggerLevel) || (fallingEdgeArmed && triggerOnFallingEdge && value <= triggerLevel)) {
-				triggeredSampleNumber = sampleNumber;
-				triggered = true;
-				nextTriggerableSampleNumber = triggeredSampleNumber + (int) Math.round(chartDomain * postTriggerPercent);
-				long triggeredTimestamp = triggerChannel.connection.getTimestamp(triggeredSampleNumber);
-				long millisecondsAfterTrigger = (long) ((chartDomain / triggerChannel.connection.sampleRate * 1000) * postTriggerPercent);
-				long triggeredEndTimestamp = triggeredTimestamp + millisecondsAfterTrigger;
-				triggeredMinSampleNumber = minSampleNumber;
-				triggeredEndSampleNumber = triggeredSampleNumber + (int) Math.round(chartDomain * postTriggerPercent);
-				if(triggerAffectsEveryChart)
-					OpenGLChartsView.instance.setTriggeredView(triggeredEndTimestamp, triggerChannel.connection, triggeredEndSampleNumber);
-				return triggeredEndSampleNumber;
-			}
+		minSampleNumber = Long.max(minSampleNumber, nextTriggerableSampleNumber);
+		long sampleNumber = findTrigger(minSampleNumber, maxSampleNumber);
+		if(sampleNumber >= 0) {
+			triggeredSampleNumber = sampleNumber;
+			triggered = true;
+			nextTriggerableSampleNumber = triggeredSampleNumber + (int) Math.round(chartDomain * postTriggerPercent);
+			long triggeredTimestamp = triggerChannel.connection.getTimestamp(triggeredSampleNumber);
+			long millisecondsAfterTrigger = (long) ((chartDomain / triggerChannel.connection.sampleRate * 1000) * postTriggerPercent);
+			long triggeredEndTimestamp = triggeredTimestamp + millisecondsAfterTrigger;
+			triggeredMinSampleNumber = minSampleNumber;
+			triggeredEndSampleNumber = triggeredSampleNumber + (int) Math.round(chartDomain * postTriggerPercent);
+			if(triggerAffectsEveryChart)
+				OpenGLChartsView.instance.setTriggeredView(triggeredEndTimestamp, triggerChannel.connection, triggeredEndSampleNumber);
+			return triggeredEndSampleNumber;
 		}
 		
 		// done